@@ -0,0 +1,236 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+
+import java.io.*;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generator of random number seeds for the executions of an experiment.
+ * <p>
+ * All the seeds derive from a single master seed. There are two kinds of seeds:
+ * <ul>
+ *     <li>The seed of the recommendation loop (e.g. the order in which users are selected) only
+ *     depends on the master seed and the repetition, so, in each repetition, all the algorithms
+ *     face the same environment, and their results can be compared pairwise.</li>
+ *     <li>The seed of an algorithm is obtained by mixing the master seed with the name of the algorithm
+ *     and the repetition, and the seeds of its different components (for instance, the generator used
+ *     for breaking ties) are obtained by mixing the seed of the algorithm with the name of the component.</li>
+ * </ul>
+ * Therefore, seeds do not depend on the order in which they are requested: any run, or any subset of runs,
+ * can be executed (or re-executed) independently, in parallel, and it is reproduced exactly.
+ * <p>
+ * Experiments started with previous versions stored a list of seeds (one per repetition), which was used
+ * both by the loop and the algorithms. When such a list is found, its values are used directly as the seeds
+ * of every run, so resumed experiments continue with the same seeds as the original executions.
+ * <p>
+ * Objects of this class are immutable, so they can be shared by several threads.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class RunSeeds
+{
+    /**
+     * Name of the file storing the master seed (first line), followed by the legacy list of seeds, if any.
+     */
+    public static final String SEED_FILE = "rngseed";
+    /**
+     * Name of the file storing the list of seeds in previous versions. If it is found when
+     * resuming an experiment, and there is no master seed file, its seeds are used as the
+     * seeds of the runs.
+     */
+    private static final String LEGACY_SEED_FILE = "rngseedlist";
+
+    /**
+     * The master seed.
+     */
+    private final long masterSeed;
+    /**
+     * The seeds of each repetition in experiments started with previous versions (empty otherwise).
+     */
+    private final IntList legacySeeds;
+
+    /**
+     * Constructor.
+     *
+     * @param masterSeed the master seed.
+     */
+    public RunSeeds(long masterSeed)
+    {
+        this(masterSeed, new IntArrayList());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param masterSeed  the master seed.
+     * @param legacySeeds the seeds of each repetition in experiments started with previous versions.
+     */
+    private RunSeeds(long masterSeed, IntList legacySeeds)
+    {
+        this.masterSeed = masterSeed;
+        this.legacySeeds = legacySeeds;
+    }
+
+    /**
+     * Configures the seeds of an experiment. If we are resuming a previous experiment, the master
+     * seed is read from the output directory. Otherwise, a new master seed is randomly chosen
+     * and stored in the directory.
+     *
+     * @param resume true if we want to use the seed of a previous execution.
+     * @param route  the route from which to read the previous seed / to write the new seed.
+     * @return the seeds of the experiment.
+     * @throws IOException if something fails while reading / writing the seed.
+     */
+    public static RunSeeds configure(boolean resume, String route) throws IOException
+    {
+        LongList seeds = new LongArrayList();
+        if (resume)
+        {
+            readSeeds(new File(route + SEED_FILE), seeds);
+            if (seeds.isEmpty())
+            {
+                // The legacy list does not contain a master seed: we use its first value.
+                readSeeds(new File(route + LEGACY_SEED_FILE), seeds);
+                if (!seeds.isEmpty())
+                {
+                    seeds.add(0, seeds.getLong(0));
+                }
+            }
+        }
+
+        if (seeds.isEmpty())
+        {
+            seeds.add(new SplittableRandom().nextLong());
+        }
+
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(route + SEED_FILE))))
+        {
+            for (long seed : seeds)
+            {
+                bw.write(seed + "\n");
+            }
+        }
+
+        IntList legacySeeds = new IntArrayList();
+        seeds.subList(1, seeds.size()).forEach(seed -> legacySeeds.add((int) seed.longValue()));
+        return new RunSeeds(seeds.getLong(0), legacySeeds);
+    }
+
+    /**
+     * Reads the seeds in the non-empty lines of a file.
+     *
+     * @param f     the file.
+     * @param seeds the list where the seeds are stored.
+     * @throws IOException if something fails while reading the file.
+     */
+    private static void readSeeds(File f, LongList seeds) throws IOException
+    {
+        if (!f.exists())
+        {
+            return;
+        }
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(f))))
+        {
+            String line;
+            while ((line = br.readLine()) != null)
+            {
+                if (!line.trim().isEmpty())
+                {
+                    seeds.add(Long.parseLong(line.trim()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtains the master seed.
+     *
+     * @return the master seed.
+     */
+    public long getMasterSeed()
+    {
+        return masterSeed;
+    }
+
+    /**
+     * Obtains the seed for the recommendation loop of a repetition. It is the same for all the algorithms.
+     *
+     * @param repetition the number of the repetition.
+     * @return the seed of the loop.
+     */
+    public int getSeed(int repetition)
+    {
+        if (!legacySeeds.isEmpty())
+        {
+            return legacySeeds.getInt(repetition % legacySeeds.size());
+        }
+        return new SplittableRandom(mix(masterSeed, repetition)).nextInt();
+    }
+
+    /**
+     * Obtains the seed for a single run of an algorithm.
+     *
+     * @param algorithm  the name of the algorithm.
+     * @param repetition the number of the repetition.
+     * @return the seed of the algorithm.
+     */
+    public int getSeed(String algorithm, int repetition)
+    {
+        if (!legacySeeds.isEmpty())
+        {
+            return this.getSeed(repetition);
+        }
+        return new SplittableRandom(mix(mix(masterSeed, algorithm.hashCode()), repetition)).nextInt();
+    }
+
+    /**
+     * Obtains the seed for a component of a run.
+     *
+     * @param algorithm  the name of the algorithm.
+     * @param repetition the number of the repetition.
+     * @param component  the name of the component.
+     * @return the seed of the component.
+     */
+    public int getSeed(String algorithm, int repetition, String component)
+    {
+        return derive(this.getSeed(algorithm, repetition), component);
+    }
+
+    /**
+     * Derives the seed of a component from the seed of a run.
+     *
+     * @param seed      the seed of the run.
+     * @param component the name of the component.
+     * @return the seed of the component.
+     */
+    public static int derive(int seed, String component)
+    {
+        return new SplittableRandom(mix(seed, component.hashCode())).nextInt();
+    }
+
+    /**
+     * Mixes a seed with a value.
+     *
+     * @param seed  the seed.
+     * @param value the value.
+     * @return the new seed.
+     */
+    private static long mix(long seed, long value)
+    {
+        return new SplittableRandom(seed ^ new SplittableRandom(value).nextLong()).nextLong();
+    }
+}
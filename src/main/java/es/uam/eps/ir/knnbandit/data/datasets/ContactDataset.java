@@ -15,18 +15,20 @@ import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.SimpleFastU
 import es.uam.eps.ir.knnbandit.graph.Graph;
 import es.uam.eps.ir.knnbandit.graph.fast.FastDirectedUnweightedGraph;
 import es.uam.eps.ir.knnbandit.graph.fast.FastUndirectedUnweightedGraph;
-import es.uam.eps.ir.knnbandit.graph.io.GraphReader;
-import es.uam.eps.ir.knnbandit.graph.io.TextGraphReader;
+import es.uam.eps.ir.knnbandit.graph.index.CompactUnweightedAutoRelation;
+import es.uam.eps.ir.knnbandit.graph.io.ParallelTextEdgeReader;
 import es.uam.eps.ir.knnbandit.utils.Pair;
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
-import org.jooq.lambda.tuple.Tuple2;
 import org.jooq.lambda.tuple.Tuple3;
 import org.ranksys.formats.parsing.Parser;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Stores a social network-based contact recommendation dataset.
@@ -112,7 +114,7 @@ public class ContactDataset<U> extends GeneralDataset<U, U>
     }
 
     /**
-     * Loads the dataset.
+     * Loads the dataset. Users are indexed in the order in which they first appear in the file.
      *
      * @param filename  name of the file containing the dataset.
      * @param directed  true if the graph is directed, false otherwise
@@ -123,24 +125,25 @@ public class ContactDataset<U> extends GeneralDataset<U, U>
      */
     public static <U> ContactDataset<U> load(String filename, boolean directed, boolean notReciprocal, Parser<U> uParser, String separator)
     {
-        // Read the ratings.
-        Set<U> users = new HashSet<>();
-        List<Tuple3<U, U, Double>> triplets = new ArrayList<>();
-
-        Graph<U> graph;
-        GraphReader<U> greader = new TextGraphReader<>(directed, false, false, separator, uParser);
-        graph = greader.read(filename);
-
-        graph.getAllNodes().forEach(users::add);
-        int numEdges = ((int) graph.getEdgeCount()) * (directed ? 1 : 2);
-        int numRecipr = graph.getAllNodes().mapToInt(graph::getMutualNodesCount).sum();
-
-        graph.getAllNodes().forEach(u -> graph.getAdjacentNodes(u).forEach(v -> triplets.add(new Tuple3<>(u, v, 1.0))));
+        // Read the edges, storing the users directly in the index.
+        FastUpdateableUserIndex<U> uIndex = SimpleFastUpdateableUserIndex.load(Stream.empty());
+        CompactUnweightedAutoRelation edges;
+        try
+        {
+            ParallelTextEdgeReader<U> greader = new ParallelTextEdgeReader<>(directed, false, separator, uParser);
+            edges = greader.read(filename, uIndex);
+        }
+        catch (IOException ioe)
+        {
+            throw new UncheckedIOException(ioe);
+        }
+        FastUpdateableItemIndex<U> iIndex = SimpleFastUpdateableItemIndex.load(IntStream.range(0, uIndex.numUsers()).mapToObj(uIndex::uidx2user));
 
-        FastUpdateableUserIndex<U> uIndex = SimpleFastUpdateableUserIndex.load(users.stream());
-        FastUpdateableItemIndex<U> iIndex = SimpleFastUpdateableItemIndex.load(users.stream());
-        SimpleFastPreferenceData<U, U> prefData = SimpleFastPreferenceData.load(triplets.stream(), uIndex, iIndex);
+        // For undirected graphs, each edge is already stored in both directions.
+        int numEdges = edges.numPairs();
+        int numRecipr = directed ? edges.numReciprocal() : numEdges;
 
+        SimpleFastPreferenceData<U, U> prefData = EdgePreferenceData.load(edges, directed, uIndex, iIndex);
         return new ContactDataset<>(uIndex, iIndex, prefData, numEdges, numRecipr, directed, notReciprocal);
     }
 
@@ -193,4 +196,72 @@ public class ContactDataset<U> extends GeneralDataset<U, U>
         return this.getNumRel();
     }
 
+    /**
+     * Preference data built directly from the edges of a graph.
+     *
+     * @param <U> type of the users.
+     */
+    private static class EdgePreferenceData<U> extends SimpleFastPreferenceData<U, U>
+    {
+        /**
+         * Constructor.
+         *
+         * @param numPreferences number of preferences.
+         * @param uidxList       preferences of each user.
+         * @param iidxList       preferences of each item.
+         * @param uIndex         user index.
+         * @param iIndex         item index.
+         */
+        private EdgePreferenceData(int numPreferences, List<List<IdxPref>> uidxList, List<List<IdxPref>> iidxList, FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<U> iIndex)
+        {
+            super(numPreferences, uidxList, iidxList, uIndex, iIndex);
+        }
+
+        /**
+         * Builds the preference data from the edges of a graph.
+         *
+         * @param edges    the edges of the graph.
+         * @param directed true if the graph is directed, false otherwise.
+         * @param uIndex   user index.
+         * @param iIndex   item index.
+         * @param <U>      type of the users.
+         * @return the preference data.
+         */
+        static <U> EdgePreferenceData<U> load(CompactUnweightedAutoRelation edges, boolean directed, FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<U> iIndex)
+        {
+            List<List<IdxPref>> uidxList = toLists(edges);
+            // In undirected graphs, the relation is symmetric, so both lists are equal.
+            List<List<IdxPref>> iidxList = directed ? toLists(edges.transpose()) : uidxList;
+            return new EdgePreferenceData<>(edges.numPairs(), uidxList, iidxList, uIndex, iIndex);
+        }
+
+        /**
+         * Obtains the preference lists from a relation.
+         *
+         * @param edges the relation.
+         * @return the preference lists (null for those users without preferences).
+         */
+        private static List<List<IdxPref>> toLists(CompactUnweightedAutoRelation edges)
+        {
+            List<List<IdxPref>> lists = new ArrayList<>(edges.numElems());
+            for (int idx = 0; idx < edges.numElems(); ++idx)
+            {
+                int size = edges.numRelated(idx);
+                if (size == 0)
+                {
+                    lists.add(null);
+                }
+                else
+                {
+                    List<IdxPref> list = new ArrayList<>(size);
+                    for (int j = 0; j < size; ++j)
+                    {
+                        list.add(new IdxPref(edges.getRelated(idx, j), 1.0));
+                    }
+                    lists.add(list);
+                }
+            }
+            return lists;
+        }
+    }
 }
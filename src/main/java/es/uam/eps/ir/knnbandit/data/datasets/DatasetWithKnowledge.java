@@ -15,7 +15,6 @@ import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.SimpleFastU
 import es.uam.eps.ir.knnbandit.data.preference.userknowledge.fast.SimpleFastUserKnowledgePreferenceData;
 import es.uam.eps.ir.knnbandit.recommendation.KnowledgeDataUse;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
-import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
 import org.jooq.lambda.tuple.Tuple2;
 import org.jooq.lambda.tuple.Tuple4;
 import org.ranksys.formats.parsing.Parser;
@@ -51,6 +50,14 @@ public class DatasetWithKnowledge<U, I> extends GeneralDataset<U, I>
      * Number of relevant (and known) ratings.
      */
     protected final int numRelKnown;
+    /**
+     * Reduced dataset containing only the ratings known by the users (a view over the knowledge data).
+     */
+    private final GeneralDataset<U, I> knownDataset;
+    /**
+     * Reduced dataset containing only the ratings unknown by the users (a view over the knowledge data).
+     */
+    private final GeneralDataset<U, I> unknownDataset;
 
     /**
      * Constructor.
@@ -63,29 +70,31 @@ public class DatasetWithKnowledge<U, I> extends GeneralDataset<U, I>
      */
     protected DatasetWithKnowledge(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, SimpleFastUserKnowledgePreferenceData<U, I> knowledgeData, int numRel, int numRelKnown, DoublePredicate relevance)
     {
-        super(uIndex, iIndex, (SimpleFastPreferenceData<U, I>) knowledgeData.getPreferenceData(), numRel, relevance);
+        super(uIndex, iIndex, knowledgeData.getPreferenceData(), numRel, relevance);
         this.knowledgeData = knowledgeData;
         this.numRelKnown = numRelKnown;
+        this.knownDataset = new GeneralDataset<>(uIndex, iIndex, knowledgeData.getKnownPreferenceData(), numRelKnown, relevance);
+        this.unknownDataset = new GeneralDataset<>(uIndex, iIndex, knowledgeData.getUnknownPreferenceData(), numRel - numRelKnown, relevance);
     }
 
     /**
      * Obtains a reduced dataset containing only the set of rating given by users to items they did know before
-     * the recommendation.
+     * the recommendation. It shares the ratings with this dataset.
      * @return the reduced dataset.
      */
     public OfflineDataset<U,I> getKnownDataset()
     {
-        return new GeneralDataset<>(this.userIndex, this.itemIndex, this.getKnownPrefData(), this.getNumRelKnown(), this.relevance);
+        return this.knownDataset;
     }
 
     /**
      * Obtains a reduced dataset containing only the set of rating given by users to items they did not know before
-     * the recommendation.
+     * the recommendation. It shares the ratings with this dataset.
      * @return the reduced dataset.
      */
     public OfflineDataset<U,I> getUnknownDataset()
     {
-        return new GeneralDataset<>(this.userIndex, this.itemIndex, this.getUnknownPrefData(), this.getNumRelUnknown(), this.relevance);
+        return this.unknownDataset;
     }
 
     /**
@@ -103,23 +112,6 @@ public class DatasetWithKnowledge<U, I> extends GeneralDataset<U, I>
         }
     }
 
-    /**
-     * Obtains the data previously known by the users.
-     * @return the previously known ratings.
-     */
-    private SimpleFastPreferenceData<U, I> getKnownPrefData()
-    {
-        return (SimpleFastPreferenceData<U, I>) this.knowledgeData.getKnownPreferenceData();
-    }
-    /**
-     * Obtains the data unknown by the users before the rating.
-     * @return the previously unknown ratings.
-     */
-    private SimpleFastPreferenceData<U, I> getUnknownPrefData()
-    {
-        return (SimpleFastPreferenceData<U, I>) this.knowledgeData.getUnknownPreferenceData();
-    }
-
     /**
      * Obtains the number of relevant and known ratings.
      * @return the number of relevant and known ratings.
@@ -11,20 +11,33 @@ package es.uam.eps.ir.knnbandit.data.preference.updateable.fast;
 
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
+import es.uam.eps.ir.knnbandit.utils.FastRating;
+import es.uam.eps.ir.knnbandit.warmup.SharedWarmup;
 import es.uam.eps.ir.ranksys.core.preference.IdPref;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 
 import java.io.Serializable;
 import java.util.*;
 import java.util.function.BiPredicate;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntPredicate;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.Comparator.comparingInt;
 
 /**
  * Simple implementation of FastPreferenceData backed by nested lists.
+ * <p>
+ * Optionally, the data can be layered over an immutable shared base (see {@link SharedPreferenceBase}).
+ * In that case, the nested lists only store the ratings which are not in the base, or whose
+ * value differs from the one in the base, and the ratings of the base which have been deleted
+ * are stored in a set of tombstones. The preferences of a user (or an item) are obtained by
+ * lazily merging the row of the base with the corresponding list.
  *
  * @param <U> User type.
  * @param <I> Item type.
@@ -46,6 +59,22 @@ public abstract class AbstractSimpleFastUpdateablePreferenceData<U, I> extends S
      * Current number of preferences.
      */
     private int numPreferences;
+    /**
+     * Immutable shared base under the lists (null if there is none).
+     */
+    private SharedPreferenceBase base;
+    /**
+     * For each user, number of preferences in the base which are overridden by the lists, or deleted.
+     */
+    private final Int2IntOpenHashMap uShadowed = new Int2IntOpenHashMap();
+    /**
+     * For each item, number of preferences in the base which are overridden by the lists, or deleted.
+     */
+    private final Int2IntOpenHashMap iShadowed = new Int2IntOpenHashMap();
+    /**
+     * Tombstones: the (user, item) pairs of the preferences in the base which have been deleted.
+     */
+    private final LongOpenHashSet deleted = new LongOpenHashSet();
 
     private final short UPDATED = 0;
     private final short NEW = 1;
@@ -99,30 +128,86 @@ public abstract class AbstractSimpleFastUpdateablePreferenceData<U, I> extends S
         this.predicate = predicate;
     }
 
+    /**
+     * Initializes the preference data with the warm-up ratings. The ratings are stored in an
+     * immutable base which is shared with any other preference data of the same type initialized
+     * with the same warm-up, and the lists are left empty.
+     *
+     * @param warmup the shared warm-up.
+     */
+    public void init(SharedWarmup warmup)
+    {
+        SharedPreferenceBase shared = warmup.getBase(this.getClass(), this::buildBase);
+        this.init(shared);
+    }
+
+    /**
+     * Builds a shared base from a list of ratings. The ratings are aggregated in an empty copy of
+     * this preference data (with the same way of updating the values), so this object is not modified.
+     *
+     * @param ratings the ratings.
+     * @return the shared base.
+     */
+    private SharedPreferenceBase buildBase(List<FastRating> ratings)
+    {
+        List<List<IdxPref>> uLists = new ArrayList<>(Collections.nCopies(this.numUsers(), null));
+        List<List<IdxPref>> iLists = new ArrayList<>(Collections.nCopies(this.numItems(), null));
+        AbstractSimpleFastUpdateablePreferenceData<U, I> scratch = new AbstractSimpleFastUpdateablePreferenceData<U, I>(0, uLists, iLists,
+                (FastUpdateableUserIndex<U>) this.ui, (FastUpdateableItemIndex<I>) this.ii, predicate, uPrefFun, iPrefFun)
+        {
+            @Override
+            public double updatedValue(double newValue, double oldValue)
+            {
+                return AbstractSimpleFastUpdateablePreferenceData.this.updatedValue(newValue, oldValue);
+            }
+        };
+
+        ratings.forEach(t -> scratch.updateRating(t.uidx(), t.iidx(), t.value()));
+        return SharedPreferenceBase.load(scratch);
+    }
+
+    /**
+     * Removes all the preferences, and places the preference data over a shared base.
+     *
+     * @param base the shared base.
+     */
+    public void init(SharedPreferenceBase base)
+    {
+        this.clear();
+        this.base = base;
+        this.numPreferences = base.numPreferences();
+    }
+
     @Override
     public int numUsers(int iidx)
     {
+        int count = (base == null) ? 0 : base.numUsers(iidx) - iShadowed.get(iidx);
         if (iidxList.get(iidx) == null)
         {
-            return 0;
+            return count;
         }
-        return iidxList.get(iidx).size();
+        return count + iidxList.get(iidx).size();
     }
 
     @Override
     public int numItems(int uidx)
     {
+        int count = (base == null) ? 0 : base.numItems(uidx) - uShadowed.get(uidx);
         if (uidxList.get(uidx) == null)
         {
-            return 0;
+            return count;
         }
-        return uidxList.get(uidx).size();
+        return count + uidxList.get(uidx).size();
     }
 
     @Override
     public Stream<IdxPref> getUidxPreferences(int uidx)
     {
-        if (uidxList.get(uidx) == null)
+        if (base != null && base.numItems(uidx) > 0)
+        {
+            return this.merge(base.getUidxPreferences(uidx), uidxList.get(uidx), uShadowed.get(uidx), this.numItems(uidx), iidx -> deleted.contains(key(uidx, iidx)));
+        }
+        else if (uidxList.get(uidx) == null)
         {
             return Stream.empty();
         }
@@ -135,7 +220,11 @@ public abstract class AbstractSimpleFastUpdateablePreferenceData<U, I> extends S
     @Override
     public Stream<IdxPref> getIidxPreferences(int iidx)
     {
-        if (iidxList.get(iidx) == null)
+        if (base != null && base.numUsers(iidx) > 0)
+        {
+            return this.merge(base.getIidxPreferences(iidx), iidxList.get(iidx), iShadowed.get(iidx), this.numUsers(iidx), uidx -> deleted.contains(key(uidx, iidx)));
+        }
+        else if (iidxList.get(iidx) == null)
         {
             return Stream.empty();
         }
@@ -145,6 +234,41 @@ public abstract class AbstractSimpleFastUpdateablePreferenceData<U, I> extends S
         }
     }
 
+    /**
+     * Merges a row of the shared base with the corresponding list of preferences. When both
+     * contain the same element, the value in the list is kept. The merge is lazy: elements
+     * are only read when the stream consumes them.
+     *
+     * @param baseRow  the row of the shared base, sorted by identifier.
+     * @param list     the list (null if it does not exist), sorted by identifier.
+     * @param shadowed the number of preferences in the row of the base which are overridden or deleted.
+     * @param size     the number of merged preferences.
+     * @param isDeleted checks whether the preference for an element of the row of the base has been deleted.
+     * @return the merged preferences, sorted by identifier.
+     */
+    private Stream<IdxPref> merge(Stream<IdxPref> baseRow, List<IdxPref> list, int shadowed, int size, IntPredicate isDeleted)
+    {
+        if ((list == null || list.isEmpty()) && shadowed == 0)
+        {
+            return baseRow;
+        }
+
+        IntPredicate filter = deleted.isEmpty() ? idx -> false : isDeleted;
+        return StreamSupport.stream(new MergeSpliterator(baseRow.iterator(), list == null ? Collections.emptyList() : list, filter, size), false);
+    }
+
+    /**
+     * Obtains the key of a (user, item) pair in the set of tombstones.
+     *
+     * @param uidx the identifier of the user.
+     * @param iidx the identifier of the item.
+     * @return the key.
+     */
+    private static long key(int uidx, int iidx)
+    {
+        return ((long) uidx << 32) | (iidx & 0xFFFFFFFFL);
+    }
+
     @Override
     public int numPreferences()
     {
@@ -155,46 +279,50 @@ public abstract class AbstractSimpleFastUpdateablePreferenceData<U, I> extends S
     public IntStream getUidxWithPreferences()
     {
         return IntStream.range(0, numUsers())
-                .filter(uidx -> uidxList.get(uidx) != null);
+                .filter(uidx -> uidxList.get(uidx) != null || (base != null && base.numItems(uidx) > 0));
     }
 
     @Override
     public IntStream getIidxWithPreferences()
     {
         return IntStream.range(0, this.numItems())
-                .filter(iidx -> iidxList.get(iidx) != null);
+                .filter(iidx -> iidxList.get(iidx) != null || (base != null && base.numUsers(iidx) > 0));
     }
 
     @Override
     public int numUsersWithPreferences()
     {
-        return (int) uidxList.stream()
-                .filter(Objects::nonNull)
-                .count();
+        return (int) this.getUidxWithPreferences().count();
     }
 
     @Override
     public int numItemsWithPreferences()
     {
-        return (int) iidxList.stream()
-                .filter(Objects::nonNull)
-                .count();
+        return (int) this.getIidxWithPreferences().count();
     }
 
     @Override
     public Optional<IdxPref> getPreference(int uidx, int iidx)
     {
         List<IdxPref> uList = uidxList.get(uidx);
-        if (uList == null)
+        if (uList != null)
         {
-            return Optional.empty();
+            Comparator<IdxPref> comp = comparingInt(x -> x.v1);
+            int position = Collections.binarySearch(uList, new IdxPref(iidx, 1.0), comp);
+
+            if (position >= 0)
+            {
+                return Optional.of(uList.get(position));
+            }
         }
-        Comparator<IdxPref> comp = comparingInt(x -> x.v1);
-        int position = Collections.binarySearch(uList, new IdxPref(iidx, 1.0), comp);
 
-        if (position >= 0)
+        if (base != null)
         {
-            return Optional.of(uList.get(position));
+            int position = base.find(uidx, iidx);
+            if (position >= 0 && !deleted.contains(key(uidx, iidx)))
+            {
+                return Optional.of(new IdxPref(iidx, base.getValue(position)));
+            }
         }
 
         return Optional.empty();
@@ -248,6 +376,32 @@ public abstract class AbstractSimpleFastUpdateablePreferenceData<U, I> extends S
 
         boolean hasBeenUpdated;
 
+        // If the rating is in the shared base, and it has not been overridden (or deleted) yet, we override it.
+        int basePosition = (base == null) ? -1 : base.find(uidx, iidx);
+        if (basePosition >= 0 && !this.contains(iidx, this.uidxList.get(uidx)) && !deleted.contains(key(uidx, iidx)))
+        {
+            double oldValue = base.getValue(basePosition);
+            double newValue = this.updatedValue(rating, oldValue);
+            if (!predicate.test(newValue, oldValue))
+            {
+                return false;
+            }
+
+            if (this.uidxList.get(uidx) == null)
+            {
+                this.uidxList.set(uidx, new ArrayList<>());
+            }
+            if (this.iidxList.get(iidx) == null)
+            {
+                this.iidxList.set(iidx, new ArrayList<>());
+            }
+            this.updatePreference(iidx, newValue, this.uidxList.get(uidx));
+            this.updatePreference(uidx, newValue, this.iidxList.get(iidx));
+            this.uShadowed.addTo(uidx, 1);
+            this.iShadowed.addTo(iidx, 1);
+            return true;
+        }
+
         // Update the value for the user
         if(this.uidxList.get(uidx) == null)
         {
@@ -322,6 +476,18 @@ public abstract class AbstractSimpleFastUpdateablePreferenceData<U, I> extends S
         }
     }
 
+    /**
+     * Checks whether a list contains a preference.
+     *
+     * @param idx  the identifier of the preference.
+     * @param list the list (it might be null).
+     * @return true if the list contains the preference, false otherwise.
+     */
+    private boolean contains(int idx, List<IdxPref> list)
+    {
+        return list != null && Collections.binarySearch(list, new IdxPref(idx, 1.0), comparingInt(x -> x.v1)) >= 0;
+    }
+
     @Override
     public void updateDelete(int uidx, int iidx)
     {
@@ -331,6 +497,24 @@ public abstract class AbstractSimpleFastUpdateablePreferenceData<U, I> extends S
             return;
         }
 
+        // If the rating is in the shared base, and it has not been deleted yet, we leave a tombstone.
+        // Once deleted, a new rating for the pair is stored in the lists, as any other rating.
+        if (base != null && base.find(uidx, iidx) >= 0 && deleted.add(key(uidx, iidx)))
+        {
+            if (this.updateDelete(iidx, this.uidxList.get(uidx)))
+            {
+                // The rating was overridden, so it was already counted as shadowed.
+                this.updateDelete(uidx, this.iidxList.get(iidx));
+            }
+            else
+            {
+                this.uShadowed.addTo(uidx, 1);
+                this.iShadowed.addTo(iidx, 1);
+            }
+            this.numPreferences--;
+            return;
+        }
+
         // First, delete from the uidxList.
         if (this.updateDelete(iidx, this.uidxList.get(uidx)))
         {
@@ -374,6 +558,10 @@ public abstract class AbstractSimpleFastUpdateablePreferenceData<U, I> extends S
     public void clear()
     {
         this.numPreferences = 0;
+        this.base = null;
+        this.uShadowed.clear();
+        this.iShadowed.clear();
+        this.deleted.clear();
         this.uidxList.parallelStream()
                 .filter(Objects::nonNull)
                 .forEach(List::clear);
@@ -382,4 +570,94 @@ public abstract class AbstractSimpleFastUpdateablePreferenceData<U, I> extends S
                 .forEach(List::clear);
     }
 
+    /**
+     * Spliterator which lazily merges a row of the shared base with the corresponding list of preferences.
+     */
+    private static class MergeSpliterator extends Spliterators.AbstractSpliterator<IdxPref>
+    {
+        /**
+         * Iterator over the row of the shared base.
+         */
+        private final Iterator<IdxPref> baseRow;
+        /**
+         * The list of preferences.
+         */
+        private final List<IdxPref> list;
+        /**
+         * Checks whether the preference for an element of the row of the base has been deleted.
+         */
+        private final IntPredicate isDeleted;
+        /**
+         * The next preference of the base (null if there are no more).
+         */
+        private IdxPref nextBase;
+        /**
+         * The position of the next preference in the list.
+         */
+        private int j;
+
+        /**
+         * Constructor.
+         *
+         * @param baseRow   iterator over the row of the shared base, sorted by identifier.
+         * @param list      the list of preferences, sorted by identifier.
+         * @param isDeleted checks whether the preference for an element of the row of the base has been deleted.
+         * @param size      the number of merged preferences.
+         */
+        MergeSpliterator(Iterator<IdxPref> baseRow, List<IdxPref> list, IntPredicate isDeleted, int size)
+        {
+            super(size, Spliterator.ORDERED | Spliterator.SIZED | Spliterator.NONNULL);
+            this.baseRow = baseRow;
+            this.list = list;
+            this.isDeleted = isDeleted;
+            this.j = 0;
+            this.nextBase = this.advanceBase();
+        }
+
+        /**
+         * Finds the next preference of the base which has not been deleted.
+         *
+         * @return the preference, null if there are no more.
+         */
+        private IdxPref advanceBase()
+        {
+            while (baseRow.hasNext())
+            {
+                IdxPref pref = baseRow.next();
+                if (!isDeleted.test(pref.v1))
+                {
+                    return pref;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super IdxPref> action)
+        {
+            IdxPref fromList = j < list.size() ? list.get(j) : null;
+            if (fromList == null && nextBase == null)
+            {
+                return false;
+            }
+
+            if (nextBase == null || (fromList != null && fromList.v1 <= nextBase.v1))
+            {
+                // The value in the list overrides the one in the base.
+                if (nextBase != null && fromList.v1 == nextBase.v1)
+                {
+                    nextBase = this.advanceBase();
+                }
+                ++j;
+                action.accept(fromList);
+            }
+            else
+            {
+                IdxPref pref = nextBase;
+                nextBase = this.advanceBase();
+                action.accept(pref);
+            }
+            return true;
+        }
+    }
 }
@@ -0,0 +1,250 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.data.preference.updateable.fast;
+
+import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Immutable, compact set of preferences, which can be shared by several preference data objects
+ * (for instance, the warm-up data of different executions of the recommendation loop). Preferences
+ * are stored in compressed sparse row format, both by user and by item, and sorted by identifier.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class SharedPreferenceBase
+{
+    /**
+     * Number of users.
+     */
+    private final int numUsers;
+    /**
+     * Number of items.
+     */
+    private final int numItems;
+    /**
+     * Position of the first preference of each user. It has numUsers + 1 positions.
+     */
+    private final int[] uOffsets;
+    /**
+     * Items rated by each user.
+     */
+    private final int[] uIidxs;
+    /**
+     * Ratings of each user.
+     */
+    private final double[] uValues;
+    /**
+     * Position of the first preference of each item. It has numItems + 1 positions.
+     */
+    private final int[] iOffsets;
+    /**
+     * Users who rated each item.
+     */
+    private final int[] iUidxs;
+    /**
+     * Ratings of each item.
+     */
+    private final double[] iValues;
+
+    /**
+     * Constructor.
+     *
+     * @param numUsers number of users.
+     * @param numItems number of items.
+     * @param uOffsets position of the first preference of each user.
+     * @param uIidxs   items rated by each user.
+     * @param uValues  ratings of each user.
+     * @param iOffsets position of the first preference of each item.
+     * @param iUidxs   users who rated each item.
+     * @param iValues  ratings of each item.
+     */
+    private SharedPreferenceBase(int numUsers, int numItems, int[] uOffsets, int[] uIidxs, double[] uValues, int[] iOffsets, int[] iUidxs, double[] iValues)
+    {
+        this.numUsers = numUsers;
+        this.numItems = numItems;
+        this.uOffsets = uOffsets;
+        this.uIidxs = uIidxs;
+        this.uValues = uValues;
+        this.iOffsets = iOffsets;
+        this.iUidxs = iUidxs;
+        this.iValues = iValues;
+    }
+
+    /**
+     * Builds a shared base containing a copy of the preferences in a preference data object.
+     *
+     * @param data the preference data.
+     * @return the shared base.
+     */
+    public static SharedPreferenceBase load(AbstractSimpleFastUpdateablePreferenceData<?, ?> data)
+    {
+        int numUsers = data.numUsers();
+        int numItems = data.numItems();
+
+        // First, we store the preferences by user. As user lists are sorted, rows are already sorted.
+        int[] uOffsets = new int[numUsers + 1];
+        for (int uidx = 0; uidx < numUsers; ++uidx)
+        {
+            uOffsets[uidx + 1] = uOffsets[uidx] + data.numItems(uidx);
+        }
+        int numPrefs = uOffsets[numUsers];
+        int[] uIidxs = new int[numPrefs];
+        double[] uValues = new double[numPrefs];
+        IntStream.range(0, numUsers).parallel().forEach(uidx ->
+        {
+            int[] pos = {uOffsets[uidx]};
+            data.getUidxPreferences(uidx).forEach(pref ->
+            {
+                uIidxs[pos[0]] = pref.v1;
+                uValues[pos[0]] = pref.v2;
+                pos[0]++;
+            });
+        });
+
+        // Then, we obtain the transposed rows, which are sorted too, since users are traversed in order.
+        int[] iOffsets = new int[numItems + 1];
+        for (int j = 0; j < numPrefs; ++j)
+        {
+            iOffsets[uIidxs[j] + 1]++;
+        }
+        for (int iidx = 0; iidx < numItems; ++iidx)
+        {
+            iOffsets[iidx + 1] += iOffsets[iidx];
+        }
+        int[] counts = Arrays.copyOf(iOffsets, numItems);
+        int[] iUidxs = new int[numPrefs];
+        double[] iValues = new double[numPrefs];
+        for (int uidx = 0; uidx < numUsers; ++uidx)
+        {
+            for (int j = uOffsets[uidx]; j < uOffsets[uidx + 1]; ++j)
+            {
+                int pos = counts[uIidxs[j]]++;
+                iUidxs[pos] = uidx;
+                iValues[pos] = uValues[j];
+            }
+        }
+
+        return new SharedPreferenceBase(numUsers, numItems, uOffsets, uIidxs, uValues, iOffsets, iUidxs, iValues);
+    }
+
+    /**
+     * Obtains the number of users in the base.
+     *
+     * @return the number of users.
+     */
+    public int numUsers()
+    {
+        return numUsers;
+    }
+
+    /**
+     * Obtains the number of items in the base.
+     *
+     * @return the number of items.
+     */
+    public int numItems()
+    {
+        return numItems;
+    }
+
+    /**
+     * Obtains the number of preferences in the base.
+     *
+     * @return the number of preferences.
+     */
+    public int numPreferences()
+    {
+        return uOffsets[numUsers];
+    }
+
+    /**
+     * Obtains the number of items rated by a user.
+     *
+     * @param uidx the identifier of the user.
+     * @return the number of items rated by the user (0 if the user is not in the base).
+     */
+    public int numItems(int uidx)
+    {
+        return (uidx < 0 || uidx >= numUsers) ? 0 : uOffsets[uidx + 1] - uOffsets[uidx];
+    }
+
+    /**
+     * Obtains the number of users who rated an item.
+     *
+     * @param iidx the identifier of the item.
+     * @return the number of users who rated the item (0 if the item is not in the base).
+     */
+    public int numUsers(int iidx)
+    {
+        return (iidx < 0 || iidx >= numItems) ? 0 : iOffsets[iidx + 1] - iOffsets[iidx];
+    }
+
+    /**
+     * Obtains the preferences of a user, sorted by item identifier.
+     *
+     * @param uidx the identifier of the user.
+     * @return the preferences of the user.
+     */
+    public Stream<IdxPref> getUidxPreferences(int uidx)
+    {
+        if (this.numItems(uidx) == 0)
+        {
+            return Stream.empty();
+        }
+        return IntStream.range(uOffsets[uidx], uOffsets[uidx + 1]).mapToObj(j -> new IdxPref(uIidxs[j], uValues[j]));
+    }
+
+    /**
+     * Obtains the preferences for an item, sorted by user identifier.
+     *
+     * @param iidx the identifier of the item.
+     * @return the preferences for the item.
+     */
+    public Stream<IdxPref> getIidxPreferences(int iidx)
+    {
+        if (this.numUsers(iidx) == 0)
+        {
+            return Stream.empty();
+        }
+        return IntStream.range(iOffsets[iidx], iOffsets[iidx + 1]).mapToObj(j -> new IdxPref(iUidxs[j], iValues[j]));
+    }
+
+    /**
+     * Finds the position of the preference of a user for an item.
+     *
+     * @param uidx the identifier of the user.
+     * @param iidx the identifier of the item.
+     * @return the position of the preference if it exists, a negative value otherwise.
+     */
+    public int find(int uidx, int iidx)
+    {
+        if (this.numItems(uidx) == 0)
+        {
+            return -1;
+        }
+        int pos = Arrays.binarySearch(uIidxs, uOffsets[uidx], uOffsets[uidx + 1], iidx);
+        return pos >= 0 ? pos : -1;
+    }
+
+    /**
+     * Obtains the rating stored in a given position.
+     *
+     * @param pos the position, as returned by the find method.
+     * @return the rating.
+     */
+    public double getValue(int pos)
+    {
+        return uValues[pos];
+    }
+}
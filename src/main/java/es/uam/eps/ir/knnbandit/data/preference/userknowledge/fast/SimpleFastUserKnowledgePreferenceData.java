@@ -9,30 +9,35 @@
  */
 package es.uam.eps.ir.knnbandit.data.preference.userknowledge.fast;
 
-import es.uam.eps.ir.knnbandit.utils.OrderedListCombiner;
 import es.uam.eps.ir.ranksys.core.preference.IdPref;
-import es.uam.eps.ir.ranksys.core.preference.PreferenceData;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
-import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
-import org.jooq.lambda.function.Function5;
-import org.jooq.lambda.tuple.Tuple3;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterators;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterators;
 import org.jooq.lambda.tuple.Tuple4;
-import org.jooq.lambda.tuple.Tuple5;
 
 import java.io.Serializable;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import static java.util.Comparator.comparingInt;
-
 /**
- * Simple implementation of FastPreferenceData backed by nested lists.
+ * Simple implementation of FastUserKnowledgePreferenceData backed by primitive arrays.
+ * <p>
+ * The preferences are stored twice, in compressed sparse row format: once grouped by user (and sorted
+ * by item inside each user), and once grouped by item (and sorted by user inside each item). Each
+ * copy has a bitset indicating which preferences were known by the users, so known and unknown
+ * preferences are obtained by filtering the preferences of the user (or item) while iterating.
+ * <p>
+ * The preference data objects with all, only the known and only the unknown preferences are views
+ * over the same arrays, so they do not need any additional memory.
  *
  * @param <U> User type.
  * @param <I> Item type.
@@ -43,225 +48,359 @@ import static java.util.Comparator.comparingInt;
 public class SimpleFastUserKnowledgePreferenceData<U, I> extends StreamsAbstractFastUserKnowledgePreferenceData<U, I> implements FastUserKnowledgePointWisePreferenceData<U, I>, Serializable
 {
     /**
-     * User preferences.
+     * For each user, the position of its first preference in the user arrays (the last position stores the number of preferences).
+     */
+    private final int[] uidxPtr;
+    /**
+     * Items rated by each user.
+     */
+    private final int[] uidxIidxs;
+    /**
+     * Values of the preferences, grouped by user.
+     */
+    private final double[] uidxVs;
+    /**
+     * Positions in the user arrays of the preferences which were known by the users.
+     */
+    private final BitSet uidxKnown;
+    /**
+     * For each item, the position of its first preference in the item arrays (the last position stores the number of preferences).
+     */
+    private final int[] iidxPtr;
+    /**
+     * Users who rated each item.
+     */
+    private final int[] iidxUidxs;
+    /**
+     * Values of the preferences, grouped by item.
      */
-    private final List<List<IdxPref>> uidxKnownList;
+    private final double[] iidxVs;
     /**
-     * Item preferences.
+     * Positions in the item arrays of the preferences which were known by the users.
      */
-    private final List<List<IdxPref>> iidxKnownList;
+    private final BitSet iidxKnown;
     /**
-     * Information about the knowledge of the users.
+     * Number of known items of each user.
      */
-    private final List<List<IdxPref>> uidxUnknownList;
+    private final int[] uidxNumKnown;
     /**
-     * Information about the knowledge of the items.
+     * Number of users who knew each item.
      */
-    private final List<List<IdxPref>> iidxUnknownList;
+    private final int[] iidxNumKnown;
     /**
      * Current number of preferences.
      */
-    private int numPreferences;
+    private final int numPreferences;
     /**
      * Number of preferences known.
      */
-    private int numKnown;
+    private final int numKnown;
+    /**
+     * View containing all the preferences.
+     */
+    private final FilteredPreferenceData allData;
+    /**
+     * View containing the preferences known by the users.
+     */
+    private final FilteredPreferenceData knownData;
+    /**
+     * View containing the preferences unknown by the users.
+     */
+    private final FilteredPreferenceData unknownData;
 
     /**
-     * Constructor with default IdxPref to IdPref converter.
+     * Constructor.
      *
-     * @param numPreferences  Initial number of total preferences.
-     * @param uidxKnownList   List of lists of preferences by user index.
-     * @param iidxUnknownList List of lists of preferences by item index.
-     * @param uIndex          User index.
-     * @param iIndex          Item index.
+     * @param uidxs    the users of the preferences.
+     * @param iidxs    the items of the preferences.
+     * @param vs       the values of the preferences.
+     * @param known    the positions of the preferences which were known by the users.
+     * @param uIndex   User index.
+     * @param iIndex   Item index.
+     * @param uPrefFun User IdxPref to IdPref converter.
+     * @param iPrefFun Item IdxPref to IdPref converter.
      */
-    protected SimpleFastUserKnowledgePreferenceData(int numPreferences, int numKnown, List<List<IdxPref>> uidxKnownList, List<List<IdxPref>> iidxKnownList,
-                                                    List<List<IdxPref>> uidxUnknownList, List<List<IdxPref>> iidxUnknownList,
-                                                    FastUserIndex<U> uIndex, FastItemIndex<I> iIndex)
+    private SimpleFastUserKnowledgePreferenceData(int[] uidxs, int[] iidxs, double[] vs, BitSet known,
+                                                  FastUserIndex<U> uIndex, FastItemIndex<I> iIndex,
+                                                  Function<IdxPref, IdPref<I>> uPrefFun, Function<IdxPref, IdPref<U>> iPrefFun)
     {
-        this(numPreferences, numKnown, uidxKnownList, iidxKnownList, uidxUnknownList, iidxUnknownList, uIndex, iIndex,
-             (Function<IdxPref, IdPref<I>> & Serializable) p -> new IdPref<>(iIndex.iidx2item(p)),
-             (Function<IdxPref, IdPref<U>> & Serializable) p -> new IdPref<>(uIndex.uidx2user(p)));
+        super(uIndex, iIndex, uPrefFun, iPrefFun);
+
+        int numUsers = uIndex.numUsers();
+        int numItems = iIndex.numItems();
+        this.numPreferences = uidxs.length;
+        this.numKnown = known.cardinality();
+
+        // Sort the preferences by user and item (for the user arrays) and by item and user (for the item arrays).
+        int[] identity = IntStream.range(0, numPreferences).toArray();
+        this.uidxPtr = new int[numUsers + 1];
+        this.iidxPtr = new int[numItems + 1];
+        int[] byUser = sort(sort(identity, iidxs, new int[numItems + 1]), uidxs, uidxPtr);
+        int[] byItem = sort(sort(identity, uidxs, new int[numUsers + 1]), iidxs, iidxPtr);
+
+        this.uidxIidxs = new int[numPreferences];
+        this.uidxVs = new double[numPreferences];
+        this.uidxKnown = new BitSet(numPreferences);
+        this.uidxNumKnown = new int[numUsers];
+        for (int p = 0; p < numPreferences; ++p)
+        {
+            int j = byUser[p];
+            uidxIidxs[p] = iidxs[j];
+            uidxVs[p] = vs[j];
+            if (known.get(j))
+            {
+                uidxKnown.set(p);
+                uidxNumKnown[uidxs[j]]++;
+            }
+        }
+
+        this.iidxUidxs = new int[numPreferences];
+        this.iidxVs = new double[numPreferences];
+        this.iidxKnown = new BitSet(numPreferences);
+        this.iidxNumKnown = new int[numItems];
+        for (int p = 0; p < numPreferences; ++p)
+        {
+            int j = byItem[p];
+            iidxUidxs[p] = uidxs[j];
+            iidxVs[p] = vs[j];
+            if (known.get(j))
+            {
+                iidxKnown.set(p);
+                iidxNumKnown[iidxs[j]]++;
+            }
+        }
+
+        this.allData = new FilteredPreferenceData(-1);
+        this.knownData = new FilteredPreferenceData(1);
+        this.unknownData = new FilteredPreferenceData(0);
     }
 
     /**
-     * Constructor with custom IdxPref to IdPref converter.
+     * Stable counting sort of a permutation of the preferences.
      *
-     * @param numPreferences  Initial number of total preferences.
-     * @param uidxKnownList   List of lists of preferences by user index.
-     * @param iidxUnknownList List of lists of preferences by item index.
-     * @param uIndex          User index.
-     * @param iIndex          Item index.
-     * @param uPrefFun        User IdxPref to IdPref converter.
-     * @param iPrefFun        Item IdxPref to IdPref converter.
+     * @param order the permutation of the preferences.
+     * @param keys  the key of each preference.
+     * @param ptr   array (with the number of keys plus one positions) where the first position of each key in the sorted permutation is stored.
+     * @return the sorted permutation.
      */
-    protected SimpleFastUserKnowledgePreferenceData(int numPreferences, int numKnown, List<List<IdxPref>> uidxKnownList, List<List<IdxPref>> iidxKnownList,
-                                                    List<List<IdxPref>> uidxUnknownList, List<List<IdxPref>> iidxUnknownList,
-                                                    FastUserIndex<U> uIndex, FastItemIndex<I> iIndex,
-                                                    Function<IdxPref, IdPref<I>> uPrefFun, Function<IdxPref, IdPref<U>> iPrefFun)
+    private static int[] sort(int[] order, int[] keys, int[] ptr)
     {
-        super(uIndex, iIndex, uPrefFun, iPrefFun);
-        this.uidxKnownList = uidxKnownList;
-        this.iidxKnownList = iidxKnownList;
-        this.uidxUnknownList = uidxUnknownList;
-        this.iidxUnknownList = iidxUnknownList;
-
-        this.numPreferences = numPreferences;
-        this.numKnown = numKnown;
-
-        uidxKnownList.parallelStream()
-                .filter(Objects::nonNull)
-                .forEach(l -> l.sort(comparingInt(IdxPref::v1)));
-        iidxKnownList.parallelStream()
-                .filter(Objects::nonNull)
-                .forEach(l -> l.sort(comparingInt(IdxPref::v1)));
-        uidxUnknownList.parallelStream()
-                .filter(Objects::nonNull)
-                .forEach(l -> l.sort(comparingInt(IdxPref::v1)));
-        iidxUnknownList.parallelStream()
-                .filter(Objects::nonNull)
-                .forEach(l -> l.sort(comparingInt(IdxPref::v1)));
+        int numKeys = ptr.length - 1;
+        for (int j : order)
+        {
+            ptr[keys[j] + 1]++;
+        }
+        for (int k = 0; k < numKeys; ++k)
+        {
+            ptr[k + 1] += ptr[k];
+        }
+
+        int[] next = Arrays.copyOf(ptr, numKeys);
+        int[] sorted = new int[order.length];
+        for (int j : order)
+        {
+            sorted[next[keys[j]]++] = j;
+        }
+        return sorted;
     }
 
     /**
-     * Loads a SimpleFastPreferenceData from a stream of user-item-value triples.
+     * Loads a SimpleFastUserKnowledgePreferenceData from a stream of user-item-value-known tuples.
      *
      * @param <U>    User type.
      * @param <I>    Item type.
-     * @param tuples Stream of user-item-value triples.
+     * @param tuples Stream of user-item-value-known tuples.
      * @param uIndex User index.
      * @param iIndex Item index.
-     * @return an instance of SimpleFastPreferenceData containing the data from the input stream.
+     * @return an instance of SimpleFastUserKnowledgePreferenceData containing the data from the input stream.
      */
     public static <U, I> SimpleFastUserKnowledgePreferenceData<U, I> load(Stream<Tuple4<U, I, Double, Boolean>> tuples, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex)
     {
-        return load(tuples.map(t -> t.concat((Void) null)),
-                    (uidx, iidx, v, known, o) -> new IdxPref(iidx, v),
-                    (uidx, iidx, v, known, o) -> new IdxPref(uidx, v),
-                    uIndex, iIndex,
+        return load(tuples, uIndex, iIndex,
                     (Function<IdxPref, IdPref<I>> & Serializable) p -> new IdPref<>(iIndex.iidx2item(p)),
                     (Function<IdxPref, IdPref<U>> & Serializable) p -> new IdPref<>(uIndex.uidx2user(p)));
     }
 
     /**
-     * Loads a SimpleFastPreferenceData from a stream of user-item-value-other tuples. It can accomodate other information, thus you need to provide sub-classes of IdxPref IdPref accomodating for this new information.
+     * Loads a SimpleFastUserKnowledgePreferenceData from a stream of user-item-value-known tuples.
      *
-     * @param <U>         User type.
-     * @param <I>         Item type.
-     * @param <O>         Additional information type.
-     * @param tuples      Stream of user-item-value-other tuples.
-     * @param uIdxPrefFun Converts a tuple to a user IdxPref.
-     * @param iIdxPrefFun Converts a tuple to a item IdxPref.
-     * @param uIndex      User index.
-     * @param iIndex      Item index.
-     * @param uIdPrefFun  User IdxPref to IdPref converter.
-     * @param iIdPrefFun  Item IdxPref to IdPref converter.
-     * @return an instance of SimpleFastPreferenceData containing the data from the input stream.
+     * @param <U>        User type.
+     * @param <I>        Item type.
+     * @param tuples     Stream of user-item-value-known tuples.
+     * @param uIndex     User index.
+     * @param iIndex     Item index.
+     * @param uIdPrefFun User IdxPref to IdPref converter.
+     * @param iIdPrefFun Item IdxPref to IdPref converter.
+     * @return an instance of SimpleFastUserKnowledgePreferenceData containing the data from the input stream.
      */
-    public static <U, I, O> SimpleFastUserKnowledgePreferenceData<U, I> load(Stream<Tuple5<U, I, Double, Boolean, O>> tuples,
-                                                                             Function5<Integer, Integer, Double, Boolean, O, ? extends IdxPref> uIdxPrefFun,
-                                                                             Function5<Integer, Integer, Double, Boolean, O, ? extends IdxPref> iIdxPrefFun,
-                                                                             FastUserIndex<U> uIndex, FastItemIndex<I> iIndex,
-                                                                             Function<IdxPref, IdPref<I>> uIdPrefFun,
-                                                                             Function<IdxPref, IdPref<U>> iIdPrefFun)
-    {
-        AtomicInteger numPreferences = new AtomicInteger();
-        AtomicInteger numKnown = new AtomicInteger();
-        List<List<IdxPref>> uidxKnownList = new ArrayList<>();
-        List<List<IdxPref>> uidxUnknownList = new ArrayList<>();
-
-        for (int uidx = 0; uidx < uIndex.numUsers(); uidx++)
+    public static <U, I> SimpleFastUserKnowledgePreferenceData<U, I> load(Stream<Tuple4<U, I, Double, Boolean>> tuples,
+                                                                          FastUserIndex<U> uIndex, FastItemIndex<I> iIndex,
+                                                                          Function<IdxPref, IdPref<I>> uIdPrefFun,
+                                                                          Function<IdxPref, IdPref<U>> iIdPrefFun)
+    {
+        IntArrayList uidxs = new IntArrayList();
+        IntArrayList iidxs = new IntArrayList();
+        DoubleArrayList vs = new DoubleArrayList();
+        BitSet known = new BitSet();
+
+        tuples.forEach(t ->
         {
-            uidxKnownList.add(null);
-            uidxUnknownList.add(null);
+            if (t.v4)
+            {
+                known.set(uidxs.size());
+            }
+            uidxs.add(uIndex.user2uidx(t.v1));
+            iidxs.add(iIndex.item2iidx(t.v2));
+            vs.add(t.v3.doubleValue());
+        });
+
+        return new SimpleFastUserKnowledgePreferenceData<>(uidxs.toIntArray(), iidxs.toIntArray(), vs.toDoubleArray(), known, uIndex, iIndex, uIdPrefFun, iIdPrefFun);
+    }
+
+    /**
+     * Checks whether a user is stored in the data.
+     *
+     * @param uidx the user.
+     * @return true if the user is stored, false otherwise.
+     */
+    private boolean isStoredUser(int uidx)
+    {
+        return uidx >= 0 && uidx < uidxNumKnown.length;
+    }
+
+    /**
+     * Checks whether an item is stored in the data.
+     *
+     * @param iidx the item.
+     * @return true if the item is stored, false otherwise.
+     */
+    private boolean isStoredItem(int iidx)
+    {
+        return iidx >= 0 && iidx < iidxNumKnown.length;
+    }
+
+    /**
+     * Obtains the preferences stored in a range of positions of the user or item arrays.
+     *
+     * @param idxs   the user or item arrays of indexes.
+     * @param vs     the user or item arrays of values.
+     * @param known  the known bitset of the user or item arrays.
+     * @param filter 1 for obtaining only the known preferences, 0 for only the unknown ones, -1 for all of them.
+     * @param start  the first position.
+     * @param end    the last position (not included).
+     * @return the preferences.
+     */
+    private static Stream<IdxPref> prefs(int[] idxs, double[] vs, BitSet known, int filter, int start, int end)
+    {
+        IntStream positions = IntStream.range(start, end);
+        if (filter >= 0)
+        {
+            boolean isKnown = filter == 1;
+            positions = positions.filter(p -> known.get(p) == isKnown);
         }
+        return positions.mapToObj(p -> new IdxPref(idxs[p], vs[p]));
+    }
 
+    /**
+     * Obtains the preferences of a user.
+     *
+     * @param uidx   the user.
+     * @param filter 1 for obtaining only the known preferences, 0 for only the unknown ones, -1 for all of them.
+     * @return the preferences of the user, sorted by item.
+     */
+    private Stream<IdxPref> userPrefs(int uidx, int filter)
+    {
+        if (!isStoredUser(uidx))
+        {
+            return Stream.empty();
+        }
+        return prefs(uidxIidxs, uidxVs, uidxKnown, filter, uidxPtr[uidx], uidxPtr[uidx + 1]);
+    }
 
-        List<List<IdxPref>> iidxKnownList = new ArrayList<>();
-        List<List<IdxPref>> iidxUnknownList = new ArrayList<>();
-        for (int iidx = 0; iidx < iIndex.numItems(); iidx++)
+    /**
+     * Obtains the preferences of an item.
+     *
+     * @param iidx   the item.
+     * @param filter 1 for obtaining only the known preferences, 0 for only the unknown ones, -1 for all of them.
+     * @return the preferences of the item, sorted by user.
+     */
+    private Stream<IdxPref> itemPrefs(int iidx, int filter)
+    {
+        if (!isStoredItem(iidx))
         {
-            iidxKnownList.add(null);
-            iidxUnknownList.add(null);
+            return Stream.empty();
         }
+        return prefs(iidxUidxs, iidxVs, iidxKnown, filter, iidxPtr[iidx], iidxPtr[iidx + 1]);
+    }
 
-        tuples.forEach(t ->
-                       {
-                           int uidx = uIndex.user2uidx(t.v1);
-                           int iidx = iIndex.item2iidx(t.v2);
-
-                           numPreferences.incrementAndGet();
-
-                           boolean known = t.v4;
-                           if (known)
-                           {
-                               numKnown.incrementAndGet();
-                               List<IdxPref> uList = uidxKnownList.get(uidx);
-                               if (uList == null)
-                               {
-                                   uList = new ArrayList<>();
-                                   uidxKnownList.set(uidx, uList);
-                               }
-                               uList.add(uIdxPrefFun.apply(uidx, iidx, t.v3, known, t.v5));
-
-                               List<IdxPref> iList = iidxKnownList.get(iidx);
-                               if (iList == null)
-                               {
-                                   iList = new ArrayList<>();
-                                   iidxKnownList.set(iidx, iList);
-                               }
-                               iList.add(iIdxPrefFun.apply(uidx, iidx, t.v3, known, t.v5));
-                           }
-                           else
-                           {
-                               List<IdxPref> uList = uidxUnknownList.get(uidx);
-                               if (uList == null)
-                               {
-                                   uList = new ArrayList<>();
-                                   uidxUnknownList.set(uidx, uList);
-                               }
-                               uList.add(uIdxPrefFun.apply(uidx, iidx, t.v3, known, t.v5));
-
-                               List<IdxPref> iList = iidxUnknownList.get(iidx);
-                               if (iList == null)
-                               {
-                                   iList = new ArrayList<>();
-                                   iidxUnknownList.set(iidx, iList);
-                               }
-                               iList.add(iIdxPrefFun.apply(uidx, iidx, t.v3, known, t.v5));
-                           }
-                       });
-
-        return new SimpleFastUserKnowledgePreferenceData<>(numPreferences.intValue(), numKnown.intValue(), uidxKnownList, iidxKnownList, uidxUnknownList, iidxUnknownList, uIndex, iIndex, uIdPrefFun, iIdPrefFun);
+    /**
+     * Finds the position of a preference in the user arrays.
+     *
+     * @param uidx the user.
+     * @param iidx the item.
+     * @return the position if the preference exists, a negative value otherwise.
+     */
+    private int position(int uidx, int iidx)
+    {
+        if (!isStoredUser(uidx))
+        {
+            return -1;
+        }
+        int start = uidxPtr[uidx];
+        int end = uidxPtr[uidx + 1];
+        return start == end ? -1 : Arrays.binarySearch(uidxIidxs, start, end, iidx);
     }
 
     @Override
     public int numUsers(int iidx)
     {
-        return this.numKnownUsers(iidx) + this.numUnknownUsers(iidx);
+        return isStoredItem(iidx) ? iidxPtr[iidx + 1] - iidxPtr[iidx] : 0;
     }
 
     @Override
     public int numItems(int uidx)
     {
-        return this.numKnownItems(uidx) + this.numUnknownItems(uidx);
+        return isStoredUser(uidx) ? uidxPtr[uidx + 1] - uidxPtr[uidx] : 0;
     }
 
     @Override
     public Stream<IdxPref> getUidxPreferences(int uidx)
     {
-        Stream<IdxPref> known = this.getUidxKnownPreferences(uidx);
-        Stream<IdxPref> unknown = this.getUidxUnknownPreferences(uidx);
-        return OrderedListCombiner.mergeLists(known, unknown, comparingInt(o -> o.v1), (x, y) -> y).stream();
+        return this.userPrefs(uidx, -1);
     }
 
     @Override
     public Stream<IdxPref> getIidxPreferences(int iidx)
     {
-        Stream<IdxPref> known = this.getIidxKnownPreferences(iidx);
-        Stream<IdxPref> unknown = this.getIidxUnknownPreferences(iidx);
-        return OrderedListCombiner.mergeLists(known, unknown, comparingInt(o -> o.v1), (x, y) -> y).stream();
+        return this.itemPrefs(iidx, -1);
+    }
+
+    @Override
+    public IntIterator getUidxIidxs(int uidx)
+    {
+        int start = isStoredUser(uidx) ? uidxPtr[uidx] : 0;
+        return IntIterators.wrap(uidxIidxs, start, this.numItems(uidx));
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx)
+    {
+        int start = isStoredUser(uidx) ? uidxPtr[uidx] : 0;
+        return DoubleIterators.wrap(uidxVs, start, this.numItems(uidx));
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx)
+    {
+        int start = isStoredItem(iidx) ? iidxPtr[iidx] : 0;
+        return IntIterators.wrap(iidxUidxs, start, this.numUsers(iidx));
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx)
+    {
+        int start = isStoredItem(iidx) ? iidxPtr[iidx] : 0;
+        return DoubleIterators.wrap(iidxVs, start, this.numUsers(iidx));
     }
 
     @Override
@@ -273,43 +412,32 @@ public class SimpleFastUserKnowledgePreferenceData<U, I> extends StreamsAbstract
     @Override
     public IntStream getUidxWithPreferences()
     {
-        return IntStream.range(0, numUsers()).filter(uidx -> (uidxKnownList.get(uidx) != null && uidxUnknownList.get(uidx) != null));
+        return IntStream.range(0, uidxNumKnown.length).filter(uidx -> (this.numKnownItems(uidx) > 0 && this.numUnknownItems(uidx) > 0));
     }
 
     @Override
     public IntStream getIidxWithPreferences()
     {
-        return IntStream.range(0, numItems()).filter(iidx -> (iidxKnownList.get(iidx) != null && iidxUnknownList.get(iidx) != null));
+        return IntStream.range(0, iidxNumKnown.length).filter(iidx -> (this.numKnownUsers(iidx) > 0 && this.numUnknownUsers(iidx) > 0));
     }
 
     @Override
     public int numUsersWithPreferences()
     {
-        return (int) IntStream.range(0, numUsers())
-                .filter(uidx -> (uidxKnownList.get(uidx) != null && uidxUnknownList.get(uidx) != null))
-                .count();
+        return (int) this.getUidxWithPreferences().count();
     }
 
     @Override
     public int numItemsWithPreferences()
     {
-        return (int) IntStream.range(0, numItems())
-                .filter(iidx -> (iidxKnownList.get(iidx) != null && iidxUnknownList.get(iidx) != null))
-                .count();
+        return (int) this.getIidxWithPreferences().count();
     }
 
     @Override
     public Optional<IdxPref> getPreference(int uidx, int iidx)
     {
-        Optional<IdxPref> pref = this.getUnknownPreference(uidx, iidx);
-        if (pref.isPresent())
-        {
-            return pref;
-        }
-        else
-        {
-            return this.getKnownPreference(uidx, iidx);
-        }
+        int p = this.position(uidx, iidx);
+        return p >= 0 ? Optional.of(new IdxPref(iidx, uidxVs[p])) : Optional.empty();
     }
 
     @Override
@@ -330,39 +458,15 @@ public class SimpleFastUserKnowledgePreferenceData<U, I> extends StreamsAbstract
     @Override
     public Optional<IdxPref> getKnownPreference(int uidx, int iidx)
     {
-        List<IdxPref> uList = uidxKnownList.get(uidx);
-        if (uList == null)
-        {
-            return Optional.empty();
-        }
-        Comparator<IdxPref> comp = comparingInt(x -> x.v1);
-        int position = Collections.binarySearch(uList, new IdxPref(iidx, 1.0), comp);
-
-        if (position >= 0)
-        {
-            return Optional.of(uList.get(position));
-        }
-
-        return Optional.empty();
+        int p = this.position(uidx, iidx);
+        return (p >= 0 && uidxKnown.get(p)) ? Optional.of(new IdxPref(iidx, uidxVs[p])) : Optional.empty();
     }
 
     @Override
     public Optional<IdxPref> getUnknownPreference(int uidx, int iidx)
     {
-        List<IdxPref> uList = uidxUnknownList.get(uidx);
-        if (uList == null)
-        {
-            return Optional.empty();
-        }
-        Comparator<IdxPref> comp = comparingInt(x -> x.v1);
-        int position = Collections.binarySearch(uList, new IdxPref(iidx, 1.0), comp);
-
-        if (position >= 0)
-        {
-            return Optional.of(uList.get(position));
-        }
-
-        return Optional.empty();
+        int p = this.position(uidx, iidx);
+        return (p >= 0 && !uidxKnown.get(p)) ? Optional.of(new IdxPref(iidx, uidxVs[p])) : Optional.empty();
     }
 
     @Override
@@ -398,121 +502,49 @@ public class SimpleFastUserKnowledgePreferenceData<U, I> extends StreamsAbstract
     @Override
     public int numKnownUsers(int iidx)
     {
-        if (iidx < 0 || iidx >= this.numItems())
-        {
-            return 0;
-        }
-        List<IdxPref> iList = iidxKnownList.get(iidx);
-        if (iList == null || iList.isEmpty())
-        {
-            return 0;
-        }
-        return iList.size();
+        return isStoredItem(iidx) ? iidxNumKnown[iidx] : 0;
     }
 
     @Override
     public int numUnknownUsers(int iidx)
     {
-        if (iidx < 0 || iidx >= this.numItems())
-        {
-            return 0;
-        }
-        List<IdxPref> iList = iidxUnknownList.get(iidx);
-        if (iList == null || iList.isEmpty())
-        {
-            return 0;
-        }
-        return iList.size();
+        return this.numUsers(iidx) - this.numKnownUsers(iidx);
     }
 
     @Override
     public int numKnownItems(int uidx)
     {
-        if (uidx < 0 || uidx >= this.numUsers())
-        {
-            return 0;
-        }
-        List<IdxPref> uList = uidxKnownList.get(uidx);
-        if (uList == null || uList.isEmpty())
-        {
-            return 0;
-        }
-        return uList.size();
+        return isStoredUser(uidx) ? uidxNumKnown[uidx] : 0;
     }
 
     @Override
     public int numUnknownItems(int uidx)
     {
-        if (uidx < 0 || uidx >= this.numUsers())
-        {
-            return 0;
-        }
-        List<IdxPref> uList = uidxUnknownList.get(uidx);
-        if (uList == null || uList.isEmpty())
-        {
-            return 0;
-        }
-        return uList.size();
+        return this.numItems(uidx) - this.numKnownItems(uidx);
     }
 
     @Override
     public Stream<IdxPref> getUidxKnownPreferences(int uidx)
     {
-        if (uidx < 0 || uidx >= this.numUsers())
-        {
-            return Stream.empty();
-        }
-        List<IdxPref> uList = uidxKnownList.get(uidx);
-        if (uList == null || uList.isEmpty())
-        {
-            return Stream.empty();
-        }
-        return uList.stream();
+        return this.userPrefs(uidx, 1);
     }
 
     @Override
     public Stream<IdxPref> getIidxKnownPreferences(int iidx)
     {
-        if (iidx < 0 || iidx >= this.numUsers())
-        {
-            return Stream.empty();
-        }
-        List<IdxPref> iList = iidxKnownList.get(iidx);
-        if (iList == null || iList.isEmpty())
-        {
-            return Stream.empty();
-        }
-        return iList.stream();
+        return this.itemPrefs(iidx, 1);
     }
 
     @Override
     public Stream<IdxPref> getUidxUnknownPreferences(int uidx)
     {
-        if (uidx < 0 || uidx >= this.numUsers())
-        {
-            return Stream.empty();
-        }
-        List<IdxPref> uList = uidxUnknownList.get(uidx);
-        if (uList == null || uList.isEmpty())
-        {
-            return Stream.empty();
-        }
-        return uList.stream();
+        return this.userPrefs(uidx, 0);
     }
 
     @Override
     public Stream<IdxPref> getIidxUnknownPreferences(int iidx)
     {
-        if (iidx < 0 || iidx >= this.numUsers())
-        {
-            return Stream.empty();
-        }
-        List<IdxPref> iList = iidxUnknownList.get(iidx);
-        if (iList == null || iList.isEmpty())
-        {
-            return Stream.empty();
-        }
-        return iList.stream();
+        return this.itemPrefs(iidx, 0);
     }
 
     @Override
@@ -522,75 +554,135 @@ public class SimpleFastUserKnowledgePreferenceData<U, I> extends StreamsAbstract
     }
 
     @Override
-    public FastPreferenceData<U, I> getKnownPreferenceData()
+    public SimpleFastPreferenceData<U, I> getKnownPreferenceData()
     {
-        List<Tuple3<U, I, Double>> triplets = new ArrayList<>();
-        this.getAllUidx().forEach(uidx ->
-                                  {
-                                      List<IdxPref> uidxList = this.uidxKnownList.get(uidx);
-                                      if (uidxList != null && !uidxList.isEmpty())
-                                      {
-                                          U u = uidx2user(uidx);
-                                          for (IdxPref iidxPref : uidxList)
-                                          {
-                                              triplets.add(new Tuple3<>(u, iidx2item(iidxPref.v1), iidxPref.v2));
-                                          }
-                                      }
-                                  });
-
-        return SimpleFastPreferenceData.load(triplets.stream(), this, this);
+        return this.knownData;
     }
 
     @Override
-    public FastPreferenceData<U, I> getUnknownPreferenceData()
+    public SimpleFastPreferenceData<U, I> getUnknownPreferenceData()
     {
-        List<Tuple3<U, I, Double>> triplets = new ArrayList<>();
-        this.getAllUidx().forEach(uidx ->
-                                  {
-                                      List<IdxPref> uidxList = this.uidxUnknownList.get(uidx);
-                                      if (uidxList != null && !uidxList.isEmpty())
-                                      {
-                                          U u = uidx2user(uidx);
-                                          for (IdxPref iidxPref : uidxList)
-                                          {
-                                              triplets.add(new Tuple3<>(u, iidx2item(iidxPref.v1), iidxPref.v2));
-                                          }
-                                      }
-                                  });
-
-        return SimpleFastPreferenceData.load(triplets.stream(), this, this);
+        return this.unknownData;
     }
 
     @Override
-    public PreferenceData<U, I> getPreferenceData()
+    public SimpleFastPreferenceData<U, I> getPreferenceData()
+    {
+        return this.allData;
+    }
+
+    /**
+     * Preference data containing a subset of the preferences (all of them, only the known ones or only the
+     * unknown ones). It does not copy the preferences: it filters them when they are accessed. It extends
+     * SimpleFastPreferenceData (with no lists of its own) so it can be used wherever a simple preference data
+     * is, and its preference streams have the IdxPref type.
+     */
+    private class FilteredPreferenceData extends SimpleFastPreferenceData<U, I>
     {
-        List<Tuple3<U, I, Double>> triplets = new ArrayList<>();
-        this.getAllUidx().forEach(uidx ->
-                                  {
-                                      List<IdxPref> uidxList = this.uidxUnknownList.get(uidx);
-                                      if (uidxList != null && !uidxList.isEmpty())
-                                      {
-                                          U u = uidx2user(uidx);
-                                          for (IdxPref iidxPref : uidxList)
-                                          {
-                                              triplets.add(new Tuple3<>(u, iidx2item(iidxPref.v1), iidxPref.v2));
-                                          }
-                                      }
+        /**
+         * 1 for only the known preferences, 0 for only the unknown ones, -1 for all of them.
+         */
+        private final int filter;
+
+        /**
+         * Constructor.
+         *
+         * @param filter 1 for only the known preferences, 0 for only the unknown ones, -1 for all of them.
+         */
+        FilteredPreferenceData(int filter)
+        {
+            super(0, Collections.emptyList(), Collections.emptyList(), SimpleFastUserKnowledgePreferenceData.this, SimpleFastUserKnowledgePreferenceData.this,
+                  SimpleFastUserKnowledgePreferenceData.this.uPrefFun, SimpleFastUserKnowledgePreferenceData.this.iPrefFun);
+            this.filter = filter;
+        }
 
-                                      uidxList = this.uidxKnownList.get(uidx);
-                                      if (uidxList != null && !uidxList.isEmpty())
-                                      {
-                                          U u = uidx2user(uidx);
-                                          for (IdxPref iidxPref : uidxList)
-                                          {
-                                              triplets.add(new Tuple3<>(u, iidx2item(iidxPref.v1), iidxPref.v2));
-                                          }
-                                      }
+        @Override
+        public int numUsers(int iidx)
+        {
+            switch (filter)
+            {
+                case 1: return numKnownUsers(iidx);
+                case 0: return numUnknownUsers(iidx);
+                default: return SimpleFastUserKnowledgePreferenceData.this.numUsers(iidx);
+            }
+        }
 
-                                  });
+        @Override
+        public int numItems(int uidx)
+        {
+            switch (filter)
+            {
+                case 1: return numKnownItems(uidx);
+                case 0: return numUnknownItems(uidx);
+                default: return SimpleFastUserKnowledgePreferenceData.this.numItems(uidx);
+            }
+        }
 
-        return SimpleFastPreferenceData.load(triplets.stream(), this, this);
-    }
+        @Override
+        public int numPreferences()
+        {
+            switch (filter)
+            {
+                case 1: return numKnown;
+                case 0: return numPreferences - numKnown;
+                default: return numPreferences;
+            }
+        }
+
+        @Override
+        public IntStream getUidxWithPreferences()
+        {
+            return IntStream.range(0, uidxNumKnown.length).filter(uidx -> this.numItems(uidx) > 0);
+        }
+
+        @Override
+        public IntStream getIidxWithPreferences()
+        {
+            return IntStream.range(0, iidxNumKnown.length).filter(iidx -> this.numUsers(iidx) > 0);
+        }
+
+        @Override
+        public int numUsersWithPreferences()
+        {
+            return (int) this.getUidxWithPreferences().count();
+        }
+
+        @Override
+        public int numItemsWithPreferences()
+        {
+            return (int) this.getIidxWithPreferences().count();
+        }
+
+        @Override
+        public Stream<IdxPref> getUidxPreferences(int uidx)
+        {
+            return userPrefs(uidx, filter);
+        }
+
+        @Override
+        public Stream<IdxPref> getIidxPreferences(int iidx)
+        {
+            return itemPrefs(iidx, filter);
+        }
 
+        @Override
+        public Optional<IdxPref> getPreference(int uidx, int iidx)
+        {
+            int p = position(uidx, iidx);
+            return (p >= 0 && (filter < 0 || uidxKnown.get(p) == (filter == 1))) ? Optional.of(new IdxPref(iidx, uidxVs[p])) : Optional.empty();
+        }
 
+        @Override
+        public Optional<? extends IdPref<I>> getPreference(U u, I i)
+        {
+            if (this.containsUser(u) && this.containsItem(i))
+            {
+                return this.getPreference(this.user2uidx(u), this.item2iidx(i)).map(uPrefFun);
+            }
+            else
+            {
+                return Optional.empty();
+            }
+        }
+    }
 }
@@ -0,0 +1,258 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.graph.index;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable, compact implementation of an unweighted relation of objects with themselves.
+ * Relations are stored in compressed sparse row format: for each object, the identifiers
+ * of the related objects are stored, sorted and without duplicates, in a single primitive
+ * array.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class CompactUnweightedAutoRelation
+{
+    /**
+     * Number of elements in the relation.
+     */
+    private final int numElems;
+    /**
+     * Position of the first related object of each element in the targets array. It has numElems + 1 positions.
+     */
+    private final int[] offsets;
+    /**
+     * Related objects. The related objects of element idx lie between positions offsets[idx] and offsets[idx+1].
+     */
+    private final int[] targets;
+
+    /**
+     * Constructor.
+     *
+     * @param numElems number of elements in the relation.
+     * @param offsets  position of the first related object of each element.
+     * @param targets  related objects.
+     */
+    private CompactUnweightedAutoRelation(int numElems, int[] offsets, int[] targets)
+    {
+        this.numElems = numElems;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Builds the relation from a list of pairs, stored as two primitive arrays. Duplicated
+     * pairs are only stored once.
+     *
+     * @param numElems  number of elements in the relation.
+     * @param firsts    first element of each pair.
+     * @param seconds   second element of each pair.
+     * @param numPairs  number of pairs to read from the arrays.
+     * @param symmetric true if each pair (a,b) also defines the pair (b,a), false otherwise.
+     * @return the relation.
+     */
+    public static CompactUnweightedAutoRelation load(int numElems, int[] firsts, int[] seconds, int numPairs, boolean symmetric)
+    {
+        // First, we count the number of pairs for each element.
+        int[] counts = new int[numElems + 1];
+        for (int i = 0; i < numPairs; ++i)
+        {
+            counts[firsts[i] + 1]++;
+            if (symmetric && firsts[i] != seconds[i])
+            {
+                counts[seconds[i] + 1]++;
+            }
+        }
+        for (int i = 0; i < numElems; ++i)
+        {
+            counts[i + 1] += counts[i];
+        }
+
+        // Then, we fill the rows.
+        int[] rawOffsets = Arrays.copyOf(counts, numElems + 1);
+        int[] rawTargets = new int[rawOffsets[numElems]];
+        for (int i = 0; i < numPairs; ++i)
+        {
+            rawTargets[counts[firsts[i]]++] = seconds[i];
+            if (symmetric && firsts[i] != seconds[i])
+            {
+                rawTargets[counts[seconds[i]]++] = firsts[i];
+            }
+        }
+
+        return compact(numElems, rawOffsets, rawTargets);
+    }
+
+    /**
+     * Sorts each row, and removes the duplicated elements.
+     *
+     * @param numElems   number of elements.
+     * @param rawOffsets the offsets of the unsorted rows.
+     * @param rawTargets the unsorted rows.
+     * @return the relation.
+     */
+    private static CompactUnweightedAutoRelation compact(int numElems, int[] rawOffsets, int[] rawTargets)
+    {
+        int[] sizes = new int[numElems];
+        IntStream.range(0, numElems).parallel().forEach(idx ->
+        {
+            int start = rawOffsets[idx];
+            int end = rawOffsets[idx + 1];
+            Arrays.sort(rawTargets, start, end);
+            int last = start;
+            for (int j = start; j < end; ++j)
+            {
+                if (j == start || rawTargets[j] != rawTargets[last - 1])
+                {
+                    rawTargets[last++] = rawTargets[j];
+                }
+            }
+            sizes[idx] = last - start;
+        });
+
+        int[] offsets = new int[numElems + 1];
+        for (int i = 0; i < numElems; ++i)
+        {
+            offsets[i + 1] = offsets[i] + sizes[i];
+        }
+
+        if (offsets[numElems] == rawOffsets[numElems])
+        {
+            return new CompactUnweightedAutoRelation(numElems, offsets, rawTargets);
+        }
+
+        int[] targets = new int[offsets[numElems]];
+        for (int i = 0; i < numElems; ++i)
+        {
+            System.arraycopy(rawTargets, rawOffsets[i], targets, offsets[i], sizes[i]);
+        }
+        return new CompactUnweightedAutoRelation(numElems, offsets, targets);
+    }
+
+    /**
+     * Obtains the transposed relation, i.e. the relation containing the pair (b,a) for each pair (a,b)
+     * in this one.
+     *
+     * @return the transposed relation.
+     */
+    public CompactUnweightedAutoRelation transpose()
+    {
+        int[] counts = new int[numElems + 1];
+        for (int target : targets)
+        {
+            counts[target + 1]++;
+        }
+        for (int i = 0; i < numElems; ++i)
+        {
+            counts[i + 1] += counts[i];
+        }
+
+        int[] tOffsets = Arrays.copyOf(counts, numElems + 1);
+        int[] tTargets = new int[targets.length];
+        // As we traverse the sources in order, the transposed rows are already sorted.
+        for (int idx = 0; idx < numElems; ++idx)
+        {
+            for (int j = offsets[idx]; j < offsets[idx + 1]; ++j)
+            {
+                tTargets[counts[targets[j]]++] = idx;
+            }
+        }
+        return new CompactUnweightedAutoRelation(numElems, tOffsets, tTargets);
+    }
+
+    /**
+     * Obtains the number of elements in the relation.
+     *
+     * @return the number of elements.
+     */
+    public int numElems()
+    {
+        return numElems;
+    }
+
+    /**
+     * Obtains the total number of pairs in the relation.
+     *
+     * @return the number of pairs.
+     */
+    public int numPairs()
+    {
+        return offsets[numElems];
+    }
+
+    /**
+     * Obtains the number of objects related to a given one.
+     *
+     * @param idx the identifier of the element.
+     * @return the number of related objects.
+     */
+    public int numRelated(int idx)
+    {
+        return offsets[idx + 1] - offsets[idx];
+    }
+
+    /**
+     * Obtains the objects related to a given one, sorted by identifier.
+     *
+     * @param idx the identifier of the element.
+     * @return a stream containing the related objects.
+     */
+    public IntStream getRelated(int idx)
+    {
+        return Arrays.stream(targets, offsets[idx], offsets[idx + 1]);
+    }
+
+    /**
+     * Obtains the identifier of the j-th object related to a given one.
+     *
+     * @param idx the identifier of the element.
+     * @param j   the position of the related object (between 0 and numRelated(idx) - 1).
+     * @return the identifier of the related object.
+     */
+    public int getRelated(int idx, int j)
+    {
+        return targets[offsets[idx] + j];
+    }
+
+    /**
+     * Checks whether a pair belongs to the relation or not.
+     *
+     * @param firstIdx  the first element of the pair.
+     * @param secondIdx the second element of the pair.
+     * @return true if the pair is contained in the relation, false otherwise.
+     */
+    public boolean containsPair(int firstIdx, int secondIdx)
+    {
+        return Arrays.binarySearch(targets, offsets[firstIdx], offsets[firstIdx + 1], secondIdx) >= 0;
+    }
+
+    /**
+     * Counts the number of pairs (a,b) in the relation such that (b,a) also belongs to the relation.
+     *
+     * @return the number of reciprocal pairs.
+     */
+    public int numReciprocal()
+    {
+        return IntStream.range(0, numElems).parallel().map(idx ->
+        {
+            int count = 0;
+            for (int j = offsets[idx]; j < offsets[idx + 1]; ++j)
+            {
+                if (this.containsPair(targets[j], idx))
+                {
+                    count++;
+                }
+            }
+            return count;
+        }).sum();
+    }
+}
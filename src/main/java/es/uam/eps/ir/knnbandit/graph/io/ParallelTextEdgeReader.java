@@ -0,0 +1,232 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.graph.io;
+
+import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
+import es.uam.eps.ir.knnbandit.graph.index.CompactUnweightedAutoRelation;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.ranksys.formats.parsing.Parser;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Reads the edges of an unweighted graph from a file, without building an intermediate graph.
+ * <p>
+ * The file data format is the following:
+ * <p>
+ * nodeA nodeB
+ * <p>
+ * Every column apart from these ones will be ignored. Columns are separated by a certain delimiter.
+ * <p>
+ * The file is read as a stream of chunks of lines. Groups of chunks are parsed in parallel, and
+ * the parsed nodes are then stored, in the order of the file, in a node index. Edges are kept
+ * as primitive arrays of node identifiers, from which a compact relation is finally built.
+ *
+ * @param <V> The type of the vertices.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class ParallelTextEdgeReader<V>
+{
+    /**
+     * Default number of lines in each chunk.
+     */
+    private static final int DEFAULT_CHUNK_SIZE = 100000;
+    /**
+     * Regular expression metacharacters.
+     */
+    private static final String REGEX_CHARS = ".$|()[]{}^?*+\\";
+
+    /**
+     * Indicates if the graph to read is directed (true) or not (false).
+     */
+    private final boolean directed;
+    /**
+     * Indicates if the graph to read allows autoloops (true) or not (false).
+     */
+    private final boolean selfloops;
+    /**
+     * Parser for reading the vertices.
+     */
+    private final Parser<V> uParser;
+    /**
+     * Field delimiter, if it is a single literal character. Otherwise, -1.
+     */
+    private final int delimiterChar;
+    /**
+     * Field delimiter, as a regular expression.
+     */
+    private final Pattern delimiter;
+    /**
+     * Number of lines in each chunk.
+     */
+    private final int chunkSize;
+    /**
+     * Number of chunks to parse in parallel.
+     */
+    private final int numChunks;
+
+    /**
+     * Constructor.
+     *
+     * @param directed  Indicates if the graph to read is directed (true) or not (false).
+     * @param selfloops Indicates if the graph to read allows autoloops (true) or not (false).
+     * @param delimiter Field delimiter.
+     * @param uParser   Parser for reading the vertices.
+     */
+    public ParallelTextEdgeReader(boolean directed, boolean selfloops, String delimiter, Parser<V> uParser)
+    {
+        this(directed, selfloops, delimiter, uParser, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directed  Indicates if the graph to read is directed (true) or not (false).
+     * @param selfloops Indicates if the graph to read allows autoloops (true) or not (false).
+     * @param delimiter Field delimiter.
+     * @param uParser   Parser for reading the vertices.
+     * @param chunkSize Number of lines in each chunk.
+     * @param numChunks Number of chunks to parse in parallel.
+     */
+    public ParallelTextEdgeReader(boolean directed, boolean selfloops, String delimiter, Parser<V> uParser, int chunkSize, int numChunks)
+    {
+        this.directed = directed;
+        this.selfloops = selfloops;
+        this.uParser = uParser;
+        this.delimiter = Pattern.compile(delimiter);
+        this.delimiterChar = (delimiter.length() == 1 && REGEX_CHARS.indexOf(delimiter.charAt(0)) < 0) ? delimiter.charAt(0) : -1;
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.numChunks = Math.max(numChunks, 1);
+    }
+
+    /**
+     * Reads the edges of the graph.
+     *
+     * @param file  the file containing the edges.
+     * @param index the index where the nodes will be stored. Nodes are added in order of appearance in the file.
+     * @return the relation containing the edges of the graph (for undirected graphs, each edge appears in both directions).
+     * @throws IOException if something fails while reading the file.
+     */
+    public CompactUnweightedAutoRelation read(String file, FastUpdateableUserIndex<V> index) throws IOException
+    {
+        try (InputStream stream = new FileInputStream(file))
+        {
+            return this.read(stream, index);
+        }
+    }
+
+    /**
+     * Reads the edges of the graph.
+     *
+     * @param stream the input stream containing the edges.
+     * @param index  the index where the nodes will be stored. Nodes are added in order of appearance in the file.
+     * @return the relation containing the edges of the graph (for undirected graphs, each edge appears in both directions).
+     * @throws IOException if something fails while reading the stream.
+     */
+    public CompactUnweightedAutoRelation read(InputStream stream, FastUpdateableUserIndex<V> index) throws IOException
+    {
+        IntArrayList sources = new IntArrayList();
+        IntArrayList targets = new IntArrayList();
+
+        String[][] chunks = new String[numChunks][chunkSize];
+        int[] sizes = new int[numChunks];
+        Object[][] parsed = new Object[numChunks][];
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(stream)))
+        {
+            boolean finished = false;
+            while (!finished)
+            {
+                // Read a group of chunks.
+                int filled = 0;
+                while (filled < numChunks && !finished)
+                {
+                    int size = 0;
+                    String line;
+                    while (size < chunkSize && (line = br.readLine()) != null)
+                    {
+                        chunks[filled][size++] = line;
+                    }
+                    sizes[filled] = size;
+                    finished = size < chunkSize;
+                    if (size > 0)
+                    {
+                        filled++;
+                    }
+                }
+
+                // Parse them in parallel.
+                final int numFilled = filled;
+                IntStream.range(0, numFilled).parallel().forEach(c -> parsed[c] = this.parseChunk(chunks[c], sizes[c]));
+
+                // And store the nodes in the index, following the file order.
+                for (int c = 0; c < numFilled; ++c)
+                {
+                    Object[] pairs = parsed[c];
+                    for (int j = 0; j < pairs.length && pairs[j] != null; j += 2)
+                    {
+                        @SuppressWarnings("unchecked") V source = (V) pairs[j];
+                        @SuppressWarnings("unchecked") V dest = (V) pairs[j + 1];
+                        sources.add(index.addUser(source));
+                        targets.add(index.addUser(dest));
+                    }
+                    parsed[c] = null;
+                    Arrays.fill(chunks[c], 0, sizes[c], null);
+                }
+            }
+        }
+
+        return CompactUnweightedAutoRelation.load(index.numUsers(), sources.elements(), targets.elements(), sources.size(), !directed);
+    }
+
+    /**
+     * Parses a chunk of lines.
+     *
+     * @param lines the lines.
+     * @param size  the number of lines in the chunk.
+     * @return an array containing the (source, destination) pairs of valid edges, followed by nulls.
+     */
+    private Object[] parseChunk(String[] lines, int size)
+    {
+        Object[] pairs = new Object[2 * size];
+        int pos = 0;
+        for (int i = 0; i < size; ++i)
+        {
+            String line = lines[i];
+            String first;
+            String second;
+            if (delimiterChar >= 0)
+            {
+                int firstEnd = line.indexOf(delimiterChar);
+                int secondEnd = line.indexOf(delimiterChar, firstEnd + 1);
+                first = line.substring(0, firstEnd);
+                second = (secondEnd < 0) ? line.substring(firstEnd + 1) : line.substring(firstEnd + 1, secondEnd);
+            }
+            else
+            {
+                String[] splits = delimiter.split(line, 3);
+                first = splits[0];
+                second = splits[1];
+            }
+
+            V source = uParser.parse(first);
+            V dest = uParser.parse(second);
+            if (!source.equals(dest) || selfloops)
+            {
+                pairs[pos++] = source;
+                pairs[pos++] = dest;
+            }
+        }
+        return pairs;
+    }
+}
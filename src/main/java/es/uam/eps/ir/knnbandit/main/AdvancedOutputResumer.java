@@ -13,9 +13,12 @@ import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
 import es.uam.eps.ir.knnbandit.selector.io.IOSelector;
 import es.uam.eps.ir.knnbandit.io.Reader;
 import es.uam.eps.ir.knnbandit.metrics.CumulativeMetric;
+import es.uam.eps.ir.knnbandit.metrics.PopularityMetric;
+import es.uam.eps.ir.knnbandit.utils.statistics.PopularityCounter;
 import es.uam.eps.ir.ranksys.fast.FastRecommendation;
 import it.unimi.dsi.fastutil.ints.IntList;
 import org.jooq.lambda.tuple.Tuple3;
+import org.ranksys.core.util.tuples.Tuple2id;
 
 import java.io.*;
 import java.util.*;
@@ -233,9 +236,24 @@ public abstract class AdvancedOutputResumer<U,I>
 
         Map<String, Supplier<CumulativeMetric<U,I>>> metricsSupps = this.getMetrics();
         Map<String, CumulativeMetric<U,I>> metrics = new HashMap<>();
+
+        // The popularity of the items is counted once, and shared by all the metrics which depend on it.
+        PopularityCounter popularity = new PopularityCounter(this.getDataset().numItems());
+        List<CumulativeMetric<U,I>> popularityMetrics = new ArrayList<>();
+        List<CumulativeMetric<U,I>> otherMetrics = new ArrayList<>();
+
         metricsSupps.forEach((name, metric) ->
         {
             CumulativeMetric<U,I> m = metric.get();
+            if (m instanceof PopularityMetric)
+            {
+                ((PopularityMetric<U,I>) m).setPopularity(popularity);
+                popularityMetrics.add(m);
+            }
+            else
+            {
+                otherMetrics.add(m);
+            }
             m.initialize(this.getDataset());
             metrics.put(name, m);
             res.put(name, new HashMap<>());
@@ -254,7 +272,16 @@ public abstract class AdvancedOutputResumer<U,I>
             FastRecommendation fastRec = triplet.v2;
             long time = triplet.v3;
 
-            metrics.values().forEach(metric -> metric.update(fastRec));
+            int uidx = fastRec.getUidx();
+            for (Tuple2id item : fastRec.getIidxs())
+            {
+                popularity.increment(item.v1);
+                for (CumulativeMetric<U,I> metric : popularityMetrics)
+                {
+                    metric.update(uidx, item.v1, item.v2);
+                }
+            }
+            otherMetrics.forEach(metric -> metric.update(fastRec));
 
             int finalI = i;
             if (numIter == list.get(i))
@@ -234,12 +234,13 @@ public class Executor<U,I>
 
             int iter = loop.getCurrentIter();
 
-            Map<String, Double> metricVals = loop.getMetricValues();
             writer.writeRanking(iter, rec, time);
             recs.add(rec);
 
+            // The metrics are only computed when their values are stored.
             if(iter % interval == 0)
             {
+                Map<String, Double> metricVals = loop.getMetricValues();
                 for(String name : metricNames)
                 {
                     double value = metricVals.get(name);
@@ -276,8 +277,10 @@ public class Executor<U,I>
             metricValues.put(name, new ArrayList<>());
         }
 
-        // First, we update the metrics, and iteration numbers:
+        // First, we update the metrics, and iteration numbers. The metrics are updated in batches,
+        // which end at the iterations in which we store their values.
         List<Pair<Integer>> recs = new ArrayList<>();
+        int start = 0;
 
         for(Tuple3<Integer,Integer,Long> triplet : recovered)
         {
@@ -285,16 +288,18 @@ public class Executor<U,I>
             int iidx = triplet.v2();
             long time = triplet.v3();
 
-            loop.fastUpdateNotRec(uidx, iidx);
             loop.increaseIteration();
             int iter = loop.getCurrentIter();
 
             recs.add(new Pair<>(uidx, iidx));
-            Map<String, Double> metricVals = loop.getMetricValues();
             writer.writeLine(iter, uidx, iidx, time);
 
             if(iter % interval == 0)
             {
+                loop.fastUpdateNotRec(recs.subList(start, recs.size()));
+                start = recs.size();
+
+                Map<String, Double> metricVals = loop.getMetricValues();
                 for(String name : metricNames)
                 {
                     double value = metricVals.get(name);
@@ -303,6 +308,12 @@ public class Executor<U,I>
             }
         }
 
+        if(start < recs.size())
+        {
+            loop.fastUpdateNotRec(recs.subList(start, recs.size()));
+        }
+
+        // Then, the recommender receives all the previous ratings at once.
         if(!loop.hasEnded())
         {
             loop.fastUpdateRec(recs.stream());
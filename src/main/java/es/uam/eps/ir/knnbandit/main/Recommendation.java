@@ -9,10 +9,11 @@
  */
 package es.uam.eps.ir.knnbandit.main;
 
-import es.uam.eps.ir.knnbandit.UntieRandomNumber;
-import es.uam.eps.ir.knnbandit.UntieRandomNumberReader;
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
 import es.uam.eps.ir.knnbandit.metrics.CumulativeMetric;
+import es.uam.eps.ir.knnbandit.metrics.RemovableCumulativeMetric;
+import es.uam.eps.ir.knnbandit.metrics.atk.WindowedMetricAtK;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommenderSupplier;
 import es.uam.eps.ir.knnbandit.recommendation.loop.FastRecommendationLoop;
 import es.uam.eps.ir.knnbandit.recommendation.loop.end.EndCondition;
@@ -79,8 +80,6 @@ public abstract class Recommendation<U,I>
 
         System.out.println("Recommenders prepared (" + (b - a) + " ms.)");
 
-        UntieRandomNumber.configure(resume, output, k);
-
         // If it does not exist, create the directory in which to store the recommendation.
         String outputFolder = output + File.separator;
         File folder = new File(outputFolder);
@@ -92,7 +91,7 @@ public abstract class Recommendation<U,I>
                 return;
             }
         }
-        UntieRandomNumber.configure(resume, output, k);
+        RunSeeds seeds = RunSeeds.configure(resume, output);
 
         // Run each algorithm
         recs.entrySet().parallelStream().forEach((entry) ->
@@ -100,8 +99,6 @@ public abstract class Recommendation<U,I>
             // Get the recommender:
             String name = entry.getKey();
             InteractiveRecommenderSupplier<U, I> rec = entry.getValue();
-            // Obtain the corresponding random numbers:
-            UntieRandomNumberReader rngSeedGen = new UntieRandomNumberReader();
             // Configure and initialize the recommendation loop:
             System.out.println("Starting algorithm " + name);
             long aaa = System.nanoTime();
@@ -114,13 +111,14 @@ public abstract class Recommendation<U,I>
             // Execute each recommender k times.
             for (int i = 0; i < k; ++i)
             {
-                // Obtain the random seed:
-                int rngSeed = rngSeedGen.nextSeed();
+                // Obtain the random seeds: the loop seed is shared by all the algorithms.
+                int rngSeed = seeds.getSeed(i);
+                InteractiveRecommenderSupplier<U, I> seededRec = rec.withSeed(seeds.getSeed(name, i));
                 long bbb = System.nanoTime();
                 System.out.println("Algorithm " + name + " (" + i + ") " + " starting (" + (bbb - aaa) / 1000000.0 + " ms.)");
 
                 // Create the recommendation loop: in this case, a general offline dataset loop
-                FastRecommendationLoop<U,I> loop = this.getRecommendationLoop(rec, endCond.get(), rngSeed);
+                FastRecommendationLoop<U,I> loop = this.getRecommendationLoop(seededRec, endCond.get(), rngSeed);
                 // Execute the loop:
                 Executor<U, I> executor = new Executor<>(ioSelector);
                 String fileName = outputFolder + name + "_" + i + ".txt" + ((ioSelector.isCompressed()) ? ".gz" : "");
@@ -199,6 +197,26 @@ public abstract class Recommendation<U,I>
         });
     }
 
+    /**
+     * Adds, for each metric supporting removals, a version of the metric computed over the last
+     * recommendations only. The new metrics are named as the original ones, followed by "@window".
+     *
+     * @param window the number of recommendations to consider in the windowed metrics.
+     */
+    public void addWindowedMetrics(int window)
+    {
+        Map<String, Supplier<CumulativeMetric<U,I>>> metrics = this.getMetrics();
+        Map<String, Supplier<CumulativeMetric<U,I>>> windowed = new HashMap<>();
+        metrics.forEach((name, supplier) ->
+        {
+            if (supplier.get() instanceof RemovableCumulativeMetric)
+            {
+                windowed.put(name + "@" + window, () -> new WindowedMetricAtK<>(window, (RemovableCumulativeMetric<U,I>) supplier.get()));
+            }
+        });
+        metrics.putAll(windowed);
+    }
+
     /**
      * Obtains the dataset.
      * @return the dataset used during the validation.
@@ -12,6 +12,7 @@ package es.uam.eps.ir.knnbandit.main;
 import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
 import es.uam.eps.ir.knnbandit.io.Reader;
 import es.uam.eps.ir.knnbandit.partition.Partition;
+import es.uam.eps.ir.knnbandit.partition.PartitionIndex;
 import es.uam.eps.ir.knnbandit.selector.io.IOSelector;
 import es.uam.eps.ir.knnbandit.utils.Pair;
 
@@ -68,36 +69,26 @@ public abstract class TrainingStatistics<U,I>
         System.out.println("Training");
         System.out.println("Num.Split\tNum.Recs\tRatings\tRel.Ratings");
 
+        PartitionIndex index = new PartitionIndex(dataset, train);
         List<Integer> splitPoints;
         if(Double.isNaN(percTrain) || percTrain <= 0.0 || percTrain >= 1.0)
         {
-            splitPoints = partition.split(dataset, train, numSplits);
+            splitPoints = partition.split(index, numSplits);
         }
         else
         {
             splitPoints = new ArrayList<>();
             for(int i = 0; i < numSplits; ++i)
             {
-                splitPoints.add(partition.split(dataset, train, percTrain*(i+1.0)));
+                splitPoints.add(partition.split(index, percTrain*(i+1.0)));
             }
         }
 
         for (int part = 0; part < numSplits; ++part)
         {
             int val = splitPoints.get(part);
-            List<Pair<Integer>> partTrain = train.subList(0, val);
-
-            long trainCount = partTrain.stream().filter(t ->
-            {
-                Optional<Double> pref = dataset.getPreference(t.v1(), t.v2());
-                return pref.isPresent();
-            }).count();
-
-            long trainRelCount = partTrain.stream().filter(t ->
-            {
-                Optional<Double> pref = dataset.getPreference(t.v1(), t.v2());
-                return pref.isPresent() && dataset.getRelevanceChecker().test(t.v2());
-            }).count();
+            int trainCount = index.numRated(val);
+            int trainRelCount = index.numRel(val);
 
             System.out.println((part + 1) + "\t" + val + "\t" + trainCount + "\t" + trainRelCount);
         }
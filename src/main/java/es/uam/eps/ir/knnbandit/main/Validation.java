@@ -9,8 +9,7 @@
  */
 package es.uam.eps.ir.knnbandit.main;
 
-import es.uam.eps.ir.knnbandit.UntieRandomNumber;
-import es.uam.eps.ir.knnbandit.UntieRandomNumberReader;
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
 import es.uam.eps.ir.knnbandit.metrics.CumulativeMetric;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommenderSupplier;
@@ -78,7 +77,7 @@ public abstract class Validation<U,I>
 
         System.out.println("Recommenders prepared (" + (b - a) + " ms.)");
 
-        UntieRandomNumber.configure(resume, output, k);
+        RunSeeds seeds = RunSeeds.configure(resume, output);
 
         // If it does not exist, create the directory in which to store the recommendation.
         String outputFolder = output + File.separator;
@@ -103,8 +102,6 @@ public abstract class Validation<U,I>
             // Get the recommender:
             String name = entry.getKey();
             InteractiveRecommenderSupplier<U, I> rec = entry.getValue();
-            // Obtain the corresponding random numbers:
-            UntieRandomNumberReader rngSeedGen = new UntieRandomNumberReader();
             // Configure and initialize the recommendation loop:
             System.out.println("Starting algorithm " + name);
             long aaa = System.nanoTime();
@@ -115,13 +112,14 @@ public abstract class Validation<U,I>
             // Execute each recommender k times.
             for (int i = 0; i < k; ++i)
             {
-                // Obtain the random seed:
-                int rngSeed = rngSeedGen.nextSeed();
+                // Obtain the random seeds: the loop seed is shared by all the algorithms.
+                int rngSeed = seeds.getSeed(i);
+                InteractiveRecommenderSupplier<U, I> seededRec = rec.withSeed(seeds.getSeed(name, i));
                 long bbb = System.nanoTime();
                 System.out.println("Algorithm " + name + " (" + i + ") " + " starting (" + (bbb - aaa) / 1000000.0 + " ms.)");
 
                 // Create the recommendation loop: in this case, a general offline dataset loop
-                FastRecommendationLoop<U,I> loop = this.getRecommendationLoop(rec, endCond.get(), rngSeed);
+                FastRecommendationLoop<U,I> loop = this.getRecommendationLoop(seededRec, endCond.get(), rngSeed);
                 // Execute the loop:
                 Executor<U, I> executor = new Executor<>(ioSelector);
                 String fileName = outputFolder + name + "_" + i + ".txt" + ((ioSelector.isCompressed()) ? ".gz" : "");
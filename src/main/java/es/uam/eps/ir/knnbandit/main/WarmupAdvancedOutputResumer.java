@@ -13,13 +13,17 @@ import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
 import es.uam.eps.ir.knnbandit.selector.io.IOSelector;
 import es.uam.eps.ir.knnbandit.io.Reader;
 import es.uam.eps.ir.knnbandit.metrics.CumulativeMetric;
+import es.uam.eps.ir.knnbandit.metrics.PopularityMetric;
 import es.uam.eps.ir.knnbandit.partition.Partition;
+import es.uam.eps.ir.knnbandit.partition.PartitionIndex;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
 import es.uam.eps.ir.knnbandit.utils.Pair;
+import es.uam.eps.ir.knnbandit.utils.statistics.PopularityCounter;
 import es.uam.eps.ir.knnbandit.warmup.Warmup;
 import es.uam.eps.ir.ranksys.fast.FastRecommendation;
 import it.unimi.dsi.fastutil.ints.IntList;
 import org.jooq.lambda.tuple.Tuple3;
+import org.ranksys.core.util.tuples.Tuple2id;
 
 import java.io.*;
 import java.util.*;
@@ -76,17 +80,18 @@ public abstract class WarmupAdvancedOutputResumer<U,I>
         InputStream stream = warmupIOSelector.getInputStream(warmupData);
         List<Pair<Integer>> train = warmupReader.readFile(stream);
 
+        PartitionIndex index = new PartitionIndex(dataset, train);
         List<Integer> splitPoints;
         if(Double.isNaN(percTrain) || percTrain <= 0.0 || percTrain >= 1.0)
         {
-            splitPoints = partition.split(dataset, train, numParts);
+            splitPoints = partition.split(index, numParts);
         }
         else
         {
             splitPoints = new ArrayList<>();
             for(int i = 0; i < numParts; ++i)
             {
-                splitPoints.add(partition.split(dataset, train, percTrain*(i+1.0)));
+                splitPoints.add(partition.split(index, percTrain*(i+1.0)));
             }
         }
 
@@ -156,6 +161,7 @@ public abstract class WarmupAdvancedOutputResumer<U,I>
 
         Warmup warmup = this.getWarmup(warmupPairs);
         List<FastRating> warmupList = warmup.getCleanTraining();
+        long[] warmupPopularity = warmup.share(warmupList).getPopularity();
 
         File[] files = directory.listFiles();
         if(files == null)
@@ -182,7 +188,7 @@ public abstract class WarmupAdvancedOutputResumer<U,I>
             Map<String, Map<String, Map<Integer, Double>>> results = new HashMap<>();
             for (File f : indivFiles)
             {
-                Map<String, Map<Integer, Double>> map = readFile(f, list, warmupList);
+                Map<String, Map<Integer, Double>> map = readFile(f, list, warmupList, warmupPopularity);
                 results.put(f.getName(), map);
             }
 
@@ -271,19 +277,37 @@ public abstract class WarmupAdvancedOutputResumer<U,I>
      * Reads a file, and obtains, for some given iteration numbers, the values of the different metrics.
      * @param f the file to read.
      * @param list the list of iteration numbers to consider.
+     * @param warmupPairs the warm-up ratings.
+     * @param warmupPopularity the popularity of the items in the warm-up ratings.
      * @return a map, indexed by metric, containing the values of the metric for the given point.
      * @throws IOException if something fails while reading the file.
      */
-    private Map<String, Map<Integer, Double>> readFile(File f, IntList list, List<FastRating> warmupPairs) throws IOException
+    private Map<String, Map<Integer, Double>> readFile(File f, IntList list, List<FastRating> warmupPairs, long[] warmupPopularity) throws IOException
     {
         Map<String, Map<Integer, Double>> res = new HashMap<>();
 
         Map<String, Supplier<CumulativeMetric<U,I>>> metricsSupps = this.getMetrics();
         Map<String, CumulativeMetric<U,I>> metrics = new HashMap<>();
 
+        // The popularity of the items is counted once, and shared by all the metrics which depend on it.
+        PopularityCounter popularity = new PopularityCounter(this.getDataset().numItems());
+        popularity.restore(warmupPopularity);
+        popularity.ensureCapacity(this.getDataset().numItems());
+        List<CumulativeMetric<U,I>> popularityMetrics = new ArrayList<>();
+        List<CumulativeMetric<U,I>> otherMetrics = new ArrayList<>();
+
         metricsSupps.forEach((name, metric) ->
         {
             CumulativeMetric<U,I> m = metric.get();
+            if (m instanceof PopularityMetric)
+            {
+                ((PopularityMetric<U,I>) m).setPopularity(popularity);
+                popularityMetrics.add(m);
+            }
+            else
+            {
+                otherMetrics.add(m);
+            }
             m.initialize(this.getDataset(), warmupPairs);
             metrics.put(name, m);
             res.put(name, new HashMap<>());
@@ -303,7 +327,16 @@ public abstract class WarmupAdvancedOutputResumer<U,I>
             FastRecommendation fastRec = triplet.v2;
             long time = triplet.v3;
 
-            metrics.values().forEach(metric -> metric.update(fastRec));
+            int uidx = fastRec.getUidx();
+            for (Tuple2id item : fastRec.getIidxs())
+            {
+                popularity.increment(item.v1);
+                for (CumulativeMetric<U,I> metric : popularityMetrics)
+                {
+                    metric.update(uidx, item.v1, item.v2);
+                }
+            }
+            otherMetrics.forEach(metric -> metric.update(fastRec));
 
             int finalI = i;
             if (numIter == list.get(i))
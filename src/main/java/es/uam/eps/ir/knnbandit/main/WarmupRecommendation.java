@@ -9,12 +9,14 @@
  */
 package es.uam.eps.ir.knnbandit.main;
 
-import es.uam.eps.ir.knnbandit.UntieRandomNumber;
-import es.uam.eps.ir.knnbandit.UntieRandomNumberReader;
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
 import es.uam.eps.ir.knnbandit.io.Reader;
 import es.uam.eps.ir.knnbandit.metrics.CumulativeMetric;
+import es.uam.eps.ir.knnbandit.metrics.RemovableCumulativeMetric;
+import es.uam.eps.ir.knnbandit.metrics.atk.WindowedMetricAtK;
 import es.uam.eps.ir.knnbandit.partition.Partition;
+import es.uam.eps.ir.knnbandit.partition.PartitionIndex;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommenderSupplier;
 import es.uam.eps.ir.knnbandit.recommendation.loop.FastRecommendationLoop;
 import es.uam.eps.ir.knnbandit.recommendation.loop.end.EndCondition;
@@ -82,7 +84,7 @@ public abstract class WarmupRecommendation<U,I>
     {
         // Obtains the dataset and the metrics.
         Dataset<U,I> dataset = this.getDataset();
-        UntieRandomNumber.configure(resume, output, k);
+        RunSeeds seeds = RunSeeds.configure(resume, output);
 
         // Select the algorithms
         long a = System.currentTimeMillis();
@@ -118,20 +120,25 @@ public abstract class WarmupRecommendation<U,I>
         List<Pair<Integer>> train = warmupReader.readFile(stream);
         System.out.println("The warmup data has been read");
 
+        PartitionIndex index = new PartitionIndex(dataset, train);
         List<Integer> splitPoints;
         if(Double.isNaN(percTrain) || percTrain <= 0.0 || percTrain >= 1.0)
         {
-            splitPoints = partition.split(dataset, train, numParts);
+            splitPoints = partition.split(index, numParts);
         }
         else
         {
             splitPoints = new ArrayList<>();
             for(int i = 0; i < numParts; ++i)
             {
-                splitPoints.add(partition.split(dataset, train, percTrain*(i+1.0)));
+                splitPoints.add(partition.split(index, percTrain*(i+1.0)));
             }
         }
 
+        // Build the warm-ups of all the parts in a single pass over the training data.
+        List<? extends Warmup> warmups = this.getWarmups(train, splitPoints);
+        System.out.println("The warmups have been built");
+
         // We parallely execute the different parts.
         IntStream.range(0, numParts).parallel().forEach(part ->
         {
@@ -159,8 +166,7 @@ public abstract class WarmupRecommendation<U,I>
                 // Obtain the lists: only the first "numParts" algorithms shall be considered
                 System.out.println("Recommenders for part " + (part + 1) + " prepared (" + (b - a) + " ms.)");
 
-                List<Pair<Integer>> partTrain = train.subList(0, splitPoints.get(part));
-                Warmup warmup = this.getWarmup(partTrain);
+                Warmup warmup = warmups.get(part);
                 int notRel = warmup.getNumRel();
 
                 System.out.println("Training: " + splitPoints.get(part) + " recommendations (" + (part + 1) + "/" + numParts + ")");
@@ -177,8 +183,6 @@ public abstract class WarmupRecommendation<U,I>
                     this.getMetrics().keySet().forEach(metricName -> averagedValues.put(metricName, new ArrayList<>()));
 
                     // Get the recommender:
-                    // Obtain the corresponding random numbers:
-                    UntieRandomNumberReader rngSeedGen = new UntieRandomNumberReader();
                     // Configure and initialize the recommendation loop:
                     System.out.println("Starting algorithm " + name + " for the " + (part + 1) + "/" + numParts + " part.");
                     long aaa = System.nanoTime();
@@ -189,13 +193,14 @@ public abstract class WarmupRecommendation<U,I>
                     // Execute each recommender k times.
                     for (int i = 0; i < k; ++i)
                     {
-                        // Obtain the random seed:
-                        int rngSeed = rngSeedGen.nextSeed();
+                        // Obtain the random seeds: the loop seed is shared by all the algorithms.
+                        int rngSeed = seeds.getSeed(i);
+                        InteractiveRecommenderSupplier<U, I> seededRec = rec.withSeed(seeds.getSeed(name, i));
                         long bbb = System.nanoTime();
                         System.out.println("Algorithm " + name + " (" + i + ") " + " for the " + (part + 1) + "/" + numParts + " split starting (" + (bbb - aaa) / 1000000.0 + " ms.)");
 
                         // Create the recommendation loop: in this case, a general offline dataset loop
-                        FastRecommendationLoop<U, I> loop = this.getRecommendationLoop(rec, endCond.get(), rngSeed);
+                        FastRecommendationLoop<U, I> loop = this.getRecommendationLoop(seededRec, endCond.get(), rngSeed);
                         // Execute the loop:
                         Executor<U, I> executor = new Executor<>(ioSelector);
                         String fileName = currentOutputFolder + name + "_" + i + ".txt" + ((ioSelector.isCompressed()) ? ".gz" : "");
@@ -280,6 +285,26 @@ public abstract class WarmupRecommendation<U,I>
         });
     }
 
+    /**
+     * Adds, for each metric supporting removals, a version of the metric computed over the last
+     * recommendations only. The new metrics are named as the original ones, followed by "@window".
+     *
+     * @param window the number of recommendations to consider in the windowed metrics.
+     */
+    public void addWindowedMetrics(int window)
+    {
+        Map<String, Supplier<CumulativeMetric<U,I>>> metrics = this.getMetrics();
+        Map<String, Supplier<CumulativeMetric<U,I>>> windowed = new HashMap<>();
+        metrics.forEach((name, supplier) ->
+        {
+            if (supplier.get() instanceof RemovableCumulativeMetric)
+            {
+                windowed.put(name + "@" + window, () -> new WindowedMetricAtK<>(window, (RemovableCumulativeMetric<U,I>) supplier.get()));
+            }
+        });
+        metrics.putAll(windowed);
+    }
+
     /**
      * Obtains the dataset.
      * @return the dataset used during the validation.
@@ -302,9 +327,11 @@ public abstract class WarmupRecommendation<U,I>
     protected abstract Map<String, Supplier<CumulativeMetric<U,I>>> getMetrics();
 
     /**
-     * Obtains the warmup
+     * Obtains the warmups for the different parts. The warmup of each part uses, as training data,
+     * the prefix of the training data defined by its split point.
      * @param trainData the training data.
-     * @return the warmup.
+     * @param splitPoints the split points.
+     * @return the warmups, in the same order as the split points.
      */
-    protected abstract Warmup getWarmup(List<Pair<Integer>> trainData);
+    protected abstract List<? extends Warmup> getWarmups(List<Pair<Integer>> trainData, List<Integer> splitPoints);
 }
@@ -9,12 +9,12 @@
  */
 package es.uam.eps.ir.knnbandit.main;
 
-import es.uam.eps.ir.knnbandit.UntieRandomNumber;
-import es.uam.eps.ir.knnbandit.UntieRandomNumberReader;
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
 import es.uam.eps.ir.knnbandit.io.Reader;
 import es.uam.eps.ir.knnbandit.metrics.CumulativeMetric;
 import es.uam.eps.ir.knnbandit.partition.Partition;
+import es.uam.eps.ir.knnbandit.partition.PartitionIndex;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommenderSupplier;
 import es.uam.eps.ir.knnbandit.recommendation.loop.FastRecommendationLoop;
 import es.uam.eps.ir.knnbandit.recommendation.loop.end.EndCondition;
@@ -97,7 +97,7 @@ public abstract class WarmupValidation<U,I>
 
         System.out.println("Recommenders prepared (" + (b - a) + " ms.)");
 
-        UntieRandomNumber.configure(resume, output, k);
+        RunSeeds seeds = RunSeeds.configure(resume, output);
 
         // If it does not exist, create the directory in which to store the recommendation.
         String outputFolder = output + File.separator;
@@ -116,13 +116,14 @@ public abstract class WarmupValidation<U,I>
         List<Pair<Integer>> train = reader.readFile(warmupIOSelector.getInputStream(warmupData));
         System.out.println("The warmup data has been read");
 
+        PartitionIndex index = new PartitionIndex(dataset, train);
         List<Integer> splitPoints = new ArrayList<>();
         switch(test)
         {
             case FIXED:
                 break;
             case VARIABLE:
-                splitPoints.addAll(partition.split(dataset, train, numParts));
+                splitPoints.addAll(partition.split(index, numParts));
                 break;
             default:
                 System.err.println("ERROR: Invalid parameter");
@@ -145,22 +146,25 @@ public abstract class WarmupValidation<U,I>
             System.out.println("Started part " + (part + 1) + "/" + numParts);
 
             List<Pair<Integer>> partValidation;
+            PartitionIndex partIndex;
             double realPercTrain;
             switch (test)
             {
                 case FIXED: // Fix the test set (as the whole warmup data), and vary the amount of training.
                     partValidation = train;
+                    partIndex = index;
                     realPercTrain = percTrain*(part+1.0);
                     break;
                 case VARIABLE: // Fix the data percentage used for training, but vary the amount of test.
                     partValidation = train.subList(0, splitPoints.get(part));
+                    partIndex = index.prefix(splitPoints.get(part));
                     realPercTrain = percTrain;
                     break;
                 default:
                     System.err.println("ERROR: Invalid parameter");
                     return;
             }
-            int realVal = partition.split(dataset, partValidation, realPercTrain);
+            int realVal = partition.split(partIndex, realPercTrain);
 
             List<Pair<Integer>> partTrain = train.subList(0, realVal);
             Dataset<U,I> validDataset = this.getValidationDataset(partValidation);
@@ -185,8 +189,6 @@ public abstract class WarmupValidation<U,I>
                 // Get the recommender:
                 String name = entry.getKey();
                 InteractiveRecommenderSupplier<U, I> rec = entry.getValue();
-                // Obtain the corresponding random numbers:
-                UntieRandomNumberReader rngSeedGen = new UntieRandomNumberReader();
                 // Configure and initialize the recommendation loop:
                 System.out.println("Starting algorithm " + name);
                 long aaa = System.nanoTime();
@@ -197,13 +199,14 @@ public abstract class WarmupValidation<U,I>
                 // Execute each recommender k times.
                 for (int i = 0; i < k; ++i)
                 {
-                    // Obtain the random seed:
-                    int rngSeed = rngSeedGen.nextSeed();
+                    // Obtain the random seeds: the loop seed is shared by all the algorithms.
+                    int rngSeed = seeds.getSeed(i);
+                    InteractiveRecommenderSupplier<U, I> seededRec = rec.withSeed(seeds.getSeed(name, i));
                     long bbb = System.nanoTime();
                     System.out.println("Algorithm " + name + " (" + i + ") " + " starting (" + (bbb - aaa) / 1000000.0 + " ms.)");
 
                     // Create the recommendation loop: in this case, a general offline dataset loop
-                    FastRecommendationLoop<U, I> loop = this.getRecommendationLoop(validDataset, rec, endCond.get(), rngSeed);
+                    FastRecommendationLoop<U, I> loop = this.getRecommendationLoop(validDataset, seededRec, endCond.get(), rngSeed);
 
                     // Execute the loop:
                     Executor<U, I> executor = new Executor<>(ioSelector);
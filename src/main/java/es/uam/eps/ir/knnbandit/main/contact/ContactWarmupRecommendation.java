@@ -102,8 +102,8 @@ public class ContactWarmupRecommendation<U> extends WarmupRecommendation<U,U>
     }
 
     @Override
-    protected Warmup getWarmup(List<Pair<Integer>> trainData)
+    protected List<? extends Warmup> getWarmups(List<Pair<Integer>> trainData, List<Integer> splitPoints)
     {
-        return ContactWarmup.load(dataset, trainData.stream(), warmupType);
+        return ContactWarmup.loadNested(dataset, trainData, splitPoints, warmupType);
     }
 }
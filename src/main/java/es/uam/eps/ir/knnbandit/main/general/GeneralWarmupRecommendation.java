@@ -113,8 +113,8 @@ public class GeneralWarmupRecommendation<U,I> extends WarmupRecommendation<U,I>
     }
 
     @Override
-    protected Warmup getWarmup(List<Pair<Integer>> trainData)
+    protected List<? extends Warmup> getWarmups(List<Pair<Integer>> trainData, List<Integer> splitPoints)
     {
-        return GeneralWarmup.load(dataset, trainData.stream(), warmupType);
+        return GeneralWarmup.loadNested(dataset, trainData, splitPoints, warmupType);
     }
 }
@@ -9,25 +9,18 @@
  */
 package es.uam.eps.ir.knnbandit.main.others;
 
-import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.AdditiveRatingFastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.SimpleFastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.SimpleFastUpdateableUserIndex;
-import es.uam.eps.ir.knnbandit.utils.Pair;
-import es.uam.eps.ir.ranksys.core.preference.IdPref;
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.ranksys.formats.parsing.Parsers;
 
 import java.io.*;
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Optional;
+import java.util.Iterator;
 import java.util.Set;
-import java.util.stream.Stream;
-import java.util.zip.GZIPInputStream;
+import java.util.stream.IntStream;
 
 /**
  * Given the Yahoo! R6B dataset, this class is used for analyzing the different
@@ -99,6 +92,7 @@ public class YahooR6BAnalyzer
      * Optional arguments:
      * <ul>
      *  <li><b>--files file1,file2,...</b> a comma-separated list of the files in the dataset to consider for this sampling</li>
+     *  <li><b>--threads num</b> the number of threads for reading the files in the dataset (by default, the number of processors)</li>
      * </ul>
      * @throws IOException if something fails while reading/writing.
      */
@@ -113,11 +107,14 @@ public class YahooR6BAnalyzer
             System.err.println("\tOutput: the directory in which we want to store the reduced dataset and statistics.");
             System.err.println("Optional arguments:");
             System.err.println("--files file1,file2,... : the subset of the files to consider for the reduction");
+            System.err.println("--threads num : the number of threads for reading the files of the dataset");
+            return;
         }
 
         String input = args[0];
         String outputDir = args[1];
         Set<String> files = new HashSet<>();
+        int numThreads = Runtime.getRuntime().availableProcessors();
         for(int i = 2; i < args.length; ++i)
         {
             if(args[i].equalsIgnoreCase("--files"))
@@ -126,179 +123,65 @@ public class YahooR6BAnalyzer
                 String[] split = args[i].split(",");
                 files.addAll(Arrays.asList(split));
             }
+            else if(args[i].equalsIgnoreCase("--threads"))
+            {
+                ++i;
+                numThreads = Parsers.ip.parse(args[i]);
+            }
         }
 
-        GzipCompressorInputStream gzipIn = new GzipCompressorInputStream(new FileInputStream(input));
-        TarArchiveInputStream tarIn = new TarArchiveInputStream(gzipIn);
-
-        FastUpdateableUserIndex<String> uIndex = new SimpleFastUpdateableUserIndex<>();
-        FastUpdateableItemIndex<String> iIndex = new SimpleFastUpdateableItemIndex<>();
-        AdditiveRatingFastUpdateablePreferenceData<String, String> numTimes = AdditiveRatingFastUpdateablePreferenceData.load(Stream.empty(), uIndex, iIndex);
-        AdditiveRatingFastUpdateablePreferenceData<String, String> numPos = AdditiveRatingFastUpdateablePreferenceData.load(Stream.empty(), uIndex, iIndex);
-
         System.out.println("Reading the log");
         long a = System.currentTimeMillis();
-        TarArchiveEntry entry;
-        while((entry = (TarArchiveEntry) tarIn.getNextEntry()) != null)
-        {
-            String name = entry.getName();
-            if(!name.equals("README.txt") && (files.isEmpty() || files.contains(name)))
-            {
-                System.out.println("Processing the file " + name);
-                BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(tarIn)));
-                {
-                    br.lines().forEach(line ->
-                    {
-                        String[] split = line.split("\\s+");
-                        String item = split[1];
-                        numTimes.addItem(item);
-                        numPos.addItem(item);
-                        double rating = Parsers.dp.parse(split[2]);
-                        boolean isCurrentUser = false;
-                        boolean isEmptyUser = true;
-                        char[] user = new char[135];
-
-                        for(int i = 0; i < 134; ++i) user[i] = '0';
-
-                        for (int i = 3; i < split.length; ++i)
-                        {
-                            if (split[i].equals("|user"))
-                            {
-                                isCurrentUser = true;
-                            }
-                            else if (split[i].startsWith("|"))
-                            {
-                                isCurrentUser = false;
-                                String itemId = split[i].substring(1);
-                                numTimes.addItem(itemId);
-                                numPos.addItem(itemId);
-                            }
-                            else if (isCurrentUser)
-                            {
-                                int index = Parsers.ip.parse(split[i]);
-                                if (index > 1)
-                                {
-                                    isEmptyUser = false;
-                                    user[index - 2] = '1';
-                                }
-                            }
-                        }
-
-                        if (!isEmptyUser)
-                        {
-                            String userId = new String(user);
-                            numTimes.addUser(userId);
-                            numPos.addUser(userId);
-
-                            numTimes.update(userId, item, 1.0);
-                            numPos.update(userId, item, rating);
-                        }
-
-                    });
-                }
-            }
-        }
+        YahooR6BLog log = YahooR6BLog.read(input, files, numThreads);
         long b = System.currentTimeMillis();
         System.out.println("Finished reading the log (" + (b-a) + " ms.)");
 
-        // now, print everything:
-        // STEP 1: the user index file
-        System.out.println("Writing the user files");
+        YahooR6BAnalyzer.analyze(log, outputDir);
+        b = System.currentTimeMillis();
+        System.out.println("Finished writing the statistics (" + (b-a) + " ms.)");
+    }
 
-        try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[1] + USERFILE)));
-            BufferedWriter bwUserData = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[1] + USERDATAFILE))))
+    /**
+     * Writes the indexes and statistics of a log.
+     * @param log the log.
+     * @param outputDir the directory (or prefix) for storing the indexes and statistics.
+     * @return the user index, in which users have the same indexes as in the log.
+     * @throws IOException if something fails while writing.
+     */
+    static FastUpdateableUserIndex<String> analyze(YahooR6BLog log, String outputDir) throws IOException
+    {
+        FastUpdateableUserIndex<String> uIndex = SimpleFastUpdateableUserIndex.load(IntStream.range(0, log.numUsers()).mapToObj(log::getUser));
+        FastUpdateableItemIndex<String> iIndex = SimpleFastUpdateableItemIndex.load(IntStream.range(0, log.numItems()).mapToObj(log::getItem));
+
+        // STEP 1: the index files
+        System.out.println("Writing the user and item files");
+        try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputDir + USERFILE))))
         {
-            bwUserData.write("userId\tnumRatings\tnumRel\tnumRep\tnumRepRel\n");
-            uIndex.getAllUsers().forEach(user ->
+            Iterator<String> users = uIndex.getAllUsers().iterator();
+            while(users.hasNext())
             {
-                try
-                {
-                    bw.write(user + "\n");
-                    bwUserData.write(user);
-                    if(numTimes.numItems(user) > 0)
-                    {
-                        Pair<Double> pair1 = numTimes.getUserPreferences(user).map(pref -> new Pair<>(pref.v2, pref.v2 - 1)).reduce(new Pair<>(0.0,0.0), (x,y) -> new Pair<>(x.v1()+y.v1(), x.v2()+y.v2()));
-                        Pair<Double> pair2 = numPos.getUserPreferences(user).map(pref -> new Pair<>(pref.v2, pref.v2 > 1 ? pref.v2 - 1 : 0)).reduce(new Pair<>(0.0,0.0), (x,y) -> new Pair<>(x.v1()+y.v1(), x.v2()+y.v2()));
-                        bwUserData.write("\t" + pair1.v1() + "\t" + pair2.v1() + "\t" + pair1.v2() + "\t" + pair2.v2() + "\n");
-                    }
-                    else
-                    {
-                        bwUserData.write("\t0\t0\t0\n");
-                    }
-                }
-                catch(IOException ioe)
-                {
-                    System.err.println("Something wrong occurred");
-                }
-            });
-
+                bw.write(users.next() + "\n");
+            }
         }
-        b = System.currentTimeMillis();
-        System.out.println("Finished writing the user files (" + (b-a) + " ms.)");
 
-        // STEP 2: the item index files
-        System.out.println("Writing the item files");
-        try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[1] + ITEMFILE)));
-            BufferedWriter bwUserData = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[1] + ITEMDATAFILE))))
+        try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputDir + ITEMFILE))))
         {
-            bwUserData.write("itemId\tnumRatings\tnumRel\tnumRep\tnumRepRel\n");
-            iIndex.getAllItems().forEach(item ->
+            Iterator<String> items = iIndex.getAllItems().iterator();
+            while(items.hasNext())
             {
-                try
-                {
-                    bw.write(item + "\n");
-                    bwUserData.write(item);
-                    if(numTimes.numUsers(item) > 0)
-                    {
-                        Pair<Double> pair1 = numTimes.getItemPreferences(item).map(pref -> new Pair<>(pref.v2, pref.v2 - 1)).reduce(new Pair<>(0.0,0.0), (x,y) -> new Pair<>(x.v1()+y.v1(), x.v2()+y.v2()));
-                        Pair<Double> pair2 = numPos.getItemPreferences(item).map(pref -> new Pair<>(pref.v2, pref.v2 > 1 ? pref.v2 - 1 : 0)).reduce(new Pair<>(0.0,0.0), (x,y) -> new Pair<>(x.v1()+y.v1(), x.v2()+y.v2()));
-                        bwUserData.write("\t" + pair1.v1() + "\t" + pair2.v1() + "\t" + pair1.v2() + "\t" + pair2.v2() + "\n");
-                    }
-                    else
-                    {
-                        bwUserData.write("\t0\t0\t0\n");
-                    }
-                }
-                catch(IOException ioe)
-                {
-                    System.err.println("Something wrong occurred");
-                }
-            });
+                bw.write(items.next() + "\n");
+            }
         }
-        b = System.currentTimeMillis();
-        System.out.println("Finished writing the item files (" + (b-a) + " ms.)");
 
-        // STEP 3: the ratings file
-        System.out.println("Writing the ratings file");
-        try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[1] + RATINGSFILE))))
+        // STEP 2: the statistics files
+        System.out.println("Writing the statistics files");
+        YahooR6BStatistics stats = new YahooR6BStatistics();
+        int numLines = log.numLines();
+        for(int l = 0; l < numLines; ++l)
         {
-            bw.write("userId\titemId\tnumPos\tnumTimes\tCTR\n");
-            numTimes.getUsersWithPreferences().forEach(user ->
-                numTimes.getUserPreferences(user).forEach(item ->
-                {
-                    try
-                    {
-                        String i = item.v1();
-                        Optional<? extends IdPref<String>> opt = numPos.getPreference(user, i);
-                        if (opt.isPresent() && opt.get().v2 > 0.0)
-                        {
-                            bw.write(user + "\t" + i + "\t" + opt.get().v2() + "\t" + item.v2() + "\t" + (opt.get().v2/item.v2()) + "\n");
-                        }
-                        else
-                        {
-                            bw.write(user + "\t" + i + "\t" + 0.0 + "\t" + item.v2() + "\t" + 0 + "\n");
-
-                        }
-                    }
-                    catch(IOException ioe)
-                    {
-                        System.err.println("Something wrong occurred");
-                    }
-                })
-            );
+            stats.update(log.getLineUser(l), log.getLineItem(l), log.getLineRating(l));
         }
-        b = System.currentTimeMillis();
-        System.out.println("Finished writing the rating file (" + (b-a) + " ms.)");
+        stats.write(outputDir + USERDATAFILE, outputDir + ITEMDATAFILE, outputDir + RATINGSFILE, uIndex, iIndex);
+        return uIndex;
     }
-
 }
@@ -0,0 +1,918 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.main.others;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.utils.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-memory representation of (a subset of) the Yahoo! R6B log. The log is read in a single pass
+ * over the .tgz file: the daily files in the archive are decompressed and parsed concurrently,
+ * and their contents are merged in the order of the archive. Therefore, users and items are indexed
+ * in order of first appearance in the log, as if the files were read sequentially.
+ * <p>
+ * Each line of the log has the format <i>timestamp item rating |user f1 f2 ... |item1 |item2 ...</i>.
+ * Lines are tokenized directly over the decompressed bytes: identifiers of users, items and
+ * candidate pools are interned, so strings and arrays are only created for unseen identifiers.
+ * Only lines of non-empty users (i.e. users with, at least, a feature greater than 1) are stored,
+ * but items are indexed for every line.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+class YahooR6BLog
+{
+    /**
+     * Length of the user identifiers.
+     */
+    static final int USER_LENGTH = 135;
+    /**
+     * Number of longs needed for storing a user identifier as a bitset.
+     */
+    private static final int USER_WORDS = (USER_LENGTH + 63) >>> 6;
+    /**
+     * Size of the buffers for reading the files.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The users, in order of first appearance.
+     */
+    private final List<UserKey> users;
+    /**
+     * Map from users to their indexes.
+     */
+    private final Object2IntOpenHashMap<UserKey> userIds;
+    /**
+     * The items, in order of first appearance.
+     */
+    private final List<String> items;
+    /**
+     * Map from items to their indexes.
+     */
+    private final Object2IntOpenHashMap<String> itemIds;
+    /**
+     * The different pools of candidate items.
+     */
+    private final List<IntArrayList> pools;
+    /**
+     * Map from pools of candidate items to their indexes.
+     */
+    private final Object2IntOpenHashMap<IntArrayList> poolIds;
+    /**
+     * The user of each line.
+     */
+    private final IntArrayList lineUsers;
+    /**
+     * The featured item of each line.
+     */
+    private final IntArrayList lineItems;
+    /**
+     * The rating of each line.
+     */
+    private final DoubleArrayList lineRatings;
+    /**
+     * The pool of candidate items of each line.
+     */
+    private final IntArrayList linePools;
+
+    /**
+     * Constructor. Builds an empty log.
+     */
+    private YahooR6BLog()
+    {
+        this.users = new ArrayList<>();
+        this.userIds = new Object2IntOpenHashMap<>();
+        this.userIds.defaultReturnValue(-1);
+        this.items = new ArrayList<>();
+        this.itemIds = new Object2IntOpenHashMap<>();
+        this.itemIds.defaultReturnValue(-1);
+        this.pools = new ArrayList<>();
+        this.poolIds = new Object2IntOpenHashMap<>();
+        this.poolIds.defaultReturnValue(-1);
+        this.lineUsers = new IntArrayList();
+        this.lineItems = new IntArrayList();
+        this.lineRatings = new DoubleArrayList();
+        this.linePools = new IntArrayList();
+    }
+
+    /**
+     * Reads the log.
+     *
+     * @param input      the .tgz file containing the dataset.
+     * @param files      the subset of the files in the dataset to read (all of them if empty).
+     * @param numThreads the number of threads for parsing the files.
+     * @return the log.
+     * @throws IOException if something fails while reading.
+     */
+    static YahooR6BLog read(String input, Set<String> files, int numThreads) throws IOException
+    {
+        YahooR6BLog log = new YahooR6BLog();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        Deque<Future<LogFile>> pending = new ArrayDeque<>();
+
+        try (TarArchiveInputStream tarIn = new TarArchiveInputStream(new GzipCompressorInputStream(new FileInputStream(input))))
+        {
+            TarArchiveEntry entry;
+            while ((entry = tarIn.getNextTarEntry()) != null)
+            {
+                String name = entry.getName();
+                if (!name.equals("README.txt") && (files.isEmpty() || files.contains(name)))
+                {
+                    System.out.println("Processing the file " + name);
+                    if (entry.getSize() > Integer.MAX_VALUE)
+                    {
+                        throw new IOException("The file " + name + " is too large");
+                    }
+
+                    // The compressed file is read here, and decompressed and parsed by the workers.
+                    byte[] data = new byte[(int) entry.getSize()];
+                    IOUtils.readFully(tarIn, data);
+                    pending.add(executor.submit(() -> LogFile.parse(new GZIPInputStream(new ByteArrayInputStream(data), BUFFER_SIZE))));
+
+                    // Bound the number of files kept in memory: merge the oldest ones.
+                    while (pending.size() > 2 * numThreads)
+                    {
+                        log.merge(take(pending.poll()));
+                    }
+                }
+            }
+
+            while (!pending.isEmpty())
+            {
+                log.merge(take(pending.poll()));
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return log;
+    }
+
+    /**
+     * Waits for a file to be parsed.
+     *
+     * @param future the pending result.
+     * @return the parsed file.
+     * @throws IOException if something failed while parsing the file.
+     */
+    private static LogFile take(Future<LogFile> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException(ie);
+        }
+        catch (ExecutionException ee)
+        {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Appends a parsed file to the log, translating its local identifiers into global ones.
+     *
+     * @param file the parsed file.
+     */
+    private void merge(LogFile file)
+    {
+        int[] userMap = new int[file.users.size()];
+        for (int i = 0; i < userMap.length; ++i)
+        {
+            UserKey user = file.users.get(i);
+            int uidx = userIds.getInt(user);
+            if (uidx < 0)
+            {
+                uidx = users.size();
+                users.add(user);
+                userIds.put(user, uidx);
+            }
+            userMap[i] = uidx;
+        }
+
+        int[] itemMap = new int[file.items.size()];
+        for (int i = 0; i < itemMap.length; ++i)
+        {
+            String item = file.items.get(i);
+            int iidx = itemIds.getInt(item);
+            if (iidx < 0)
+            {
+                iidx = items.size();
+                items.add(item);
+                itemIds.put(item, iidx);
+            }
+            itemMap[i] = iidx;
+        }
+
+        int[] poolMap = new int[file.pools.size()];
+        for (int i = 0; i < poolMap.length; ++i)
+        {
+            IntArrayList local = file.pools.get(i);
+            int[] pool = new int[local.size()];
+            for (int j = 0; j < pool.length; ++j)
+            {
+                pool[j] = itemMap[local.getInt(j)];
+            }
+
+            IntArrayList key = IntArrayList.wrap(pool);
+            int pidx = poolIds.getInt(key);
+            if (pidx < 0)
+            {
+                pidx = pools.size();
+                pools.add(key);
+                poolIds.put(key, pidx);
+            }
+            poolMap[i] = pidx;
+        }
+
+        int numLines = file.lineUsers.size();
+        for (int l = 0; l < numLines; ++l)
+        {
+            lineUsers.add(userMap[file.lineUsers.getInt(l)]);
+            lineItems.add(itemMap[file.lineItems.getInt(l)]);
+            lineRatings.add(file.lineRatings.getDouble(l));
+            linePools.add(poolMap[file.linePools.getInt(l)]);
+        }
+    }
+
+    /**
+     * Obtains the number of users.
+     *
+     * @return the number of users.
+     */
+    int numUsers()
+    {
+        return users.size();
+    }
+
+    /**
+     * Obtains the identifier of a user.
+     *
+     * @param uidx the index of the user.
+     * @return the identifier of the user.
+     */
+    String getUser(int uidx)
+    {
+        return users.get(uidx).toString();
+    }
+
+    /**
+     * Obtains the number of items.
+     *
+     * @return the number of items.
+     */
+    int numItems()
+    {
+        return items.size();
+    }
+
+    /**
+     * Obtains the identifier of an item.
+     *
+     * @param iidx the index of the item.
+     * @return the identifier of the item.
+     */
+    String getItem(int iidx)
+    {
+        return items.get(iidx);
+    }
+
+    /**
+     * Obtains the number of (stored) lines of the log.
+     *
+     * @return the number of lines.
+     */
+    int numLines()
+    {
+        return lineUsers.size();
+    }
+
+    /**
+     * Obtains the user of a line.
+     *
+     * @param line the line.
+     * @return the index of the user.
+     */
+    int getLineUser(int line)
+    {
+        return lineUsers.getInt(line);
+    }
+
+    /**
+     * Obtains the featured item of a line.
+     *
+     * @param line the line.
+     * @return the index of the item.
+     */
+    int getLineItem(int line)
+    {
+        return lineItems.getInt(line);
+    }
+
+    /**
+     * Obtains the rating of a line.
+     *
+     * @param line the line.
+     * @return the rating.
+     */
+    double getLineRating(int line)
+    {
+        return lineRatings.getDouble(line);
+    }
+
+    /**
+     * Obtains the pool of candidate items of a line.
+     *
+     * @param line the line.
+     * @return the indexes of the candidate items (it must not be modified).
+     */
+    IntList getLinePool(int line)
+    {
+        return pools.get(linePools.getInt(line));
+    }
+
+    /**
+     * A user identifier, stored as a bitset over the user features. Instances are mutable, so a
+     * single one can be reused for looking up the users of every line; stored keys are never modified.
+     */
+    private static class UserKey
+    {
+        /**
+         * The bits of the identifier.
+         */
+        private final long[] words;
+
+        /**
+         * Constructor. Builds an empty identifier.
+         */
+        UserKey()
+        {
+            this.words = new long[USER_WORDS];
+        }
+
+        /**
+         * Constructor. Copies an identifier.
+         *
+         * @param other the identifier to copy.
+         */
+        UserKey(UserKey other)
+        {
+            this.words = other.words.clone();
+        }
+
+        /**
+         * Sets a position of the identifier to 1.
+         *
+         * @param bit the position.
+         */
+        void set(int bit)
+        {
+            words[bit >>> 6] |= 1L << (bit & 63);
+        }
+
+        /**
+         * Checks whether a position of the identifier is set to 1.
+         *
+         * @param bit the position.
+         * @return true if it is set, false otherwise.
+         */
+        boolean get(int bit)
+        {
+            return (words[bit >>> 6] & (1L << (bit & 63))) != 0;
+        }
+
+        /**
+         * Empties the identifier.
+         */
+        void clear()
+        {
+            Arrays.fill(words, 0L);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            long h = 0;
+            for (long word : words)
+            {
+                h = HashCommon.mix(h + word);
+            }
+            return (int) (h ^ (h >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            return obj instanceof UserKey && Arrays.equals(words, ((UserKey) obj).words);
+        }
+
+        /**
+         * Obtains the identifier, as written in the user files: the last position is only written when set.
+         *
+         * @return the identifier.
+         */
+        @Override
+        public String toString()
+        {
+            char[] user = new char[USER_LENGTH];
+            for (int i = 0; i < USER_LENGTH; ++i)
+            {
+                user[i] = this.get(i) ? '1' : (i < USER_LENGTH - 1 ? '0' : '\0');
+            }
+            return new String(user);
+        }
+    }
+
+    /**
+     * A slice of a byte array, used for looking up item identifiers without building strings.
+     * As with users, a single instance is reused for lookups, and stored keys own their bytes.
+     */
+    private static class ByteSlice
+    {
+        /**
+         * The bytes.
+         */
+        private byte[] bytes;
+        /**
+         * The first position of the slice.
+         */
+        private int offset;
+        /**
+         * The length of the slice.
+         */
+        private int length;
+        /**
+         * The hash code of the slice.
+         */
+        private int hash;
+
+        /**
+         * Points the slice to a fragment of a byte array.
+         *
+         * @param bytes the bytes.
+         * @param from  the first position of the slice.
+         * @param to    the position after the last one of the slice.
+         */
+        void set(byte[] bytes, int from, int to)
+        {
+            this.bytes = bytes;
+            this.offset = from;
+            this.length = to - from;
+            int h = 1;
+            for (int i = from; i < to; ++i)
+            {
+                h = 31 * h + bytes[i];
+            }
+            this.hash = h;
+        }
+
+        /**
+         * Obtains a copy of the slice which owns its bytes.
+         *
+         * @return the copy.
+         */
+        ByteSlice copy()
+        {
+            ByteSlice copy = new ByteSlice();
+            copy.bytes = Arrays.copyOfRange(bytes, offset, offset + length);
+            copy.offset = 0;
+            copy.length = length;
+            copy.hash = hash;
+            return copy;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof ByteSlice))
+            {
+                return false;
+            }
+
+            ByteSlice other = (ByteSlice) obj;
+            if (other.length != length || other.hash != hash)
+            {
+                return false;
+            }
+            for (int i = 0; i < length; ++i)
+            {
+                if (bytes[offset + i] != other.bytes[other.offset + i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString()
+        {
+            return new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The contents of a single file of the log, indexed with local identifiers (in order of first
+     * appearance in the file).
+     */
+    private static class LogFile
+    {
+        /**
+         * The users of the file.
+         */
+        private final List<UserKey> users = new ArrayList<>();
+        /**
+         * Map from users to their local indexes.
+         */
+        private final Object2IntOpenHashMap<UserKey> userIds = new Object2IntOpenHashMap<>();
+        /**
+         * The items of the file.
+         */
+        private final List<String> items = new ArrayList<>();
+        /**
+         * Map from items to their local indexes.
+         */
+        private final Object2IntOpenHashMap<ByteSlice> itemIds = new Object2IntOpenHashMap<>();
+        /**
+         * The pools of candidate items of the file.
+         */
+        private final List<IntArrayList> pools = new ArrayList<>();
+        /**
+         * Map from pools of candidate items to their local indexes.
+         */
+        private final Object2IntOpenHashMap<IntArrayList> poolIds = new Object2IntOpenHashMap<>();
+        /**
+         * The user of each line.
+         */
+        private final IntArrayList lineUsers = new IntArrayList();
+        /**
+         * The featured item of each line.
+         */
+        private final IntArrayList lineItems = new IntArrayList();
+        /**
+         * The rating of each line.
+         */
+        private final DoubleArrayList lineRatings = new DoubleArrayList();
+        /**
+         * The pool of candidate items of each line.
+         */
+        private final IntArrayList linePools = new IntArrayList();
+        /**
+         * Reusable key for looking up users.
+         */
+        private final UserKey userProbe = new UserKey();
+        /**
+         * Reusable key for looking up items.
+         */
+        private final ByteSlice itemProbe = new ByteSlice();
+        /**
+         * Reusable key for looking up pools of candidate items.
+         */
+        private final IntArrayList poolProbe = new IntArrayList();
+
+        /**
+         * Constructor.
+         */
+        private LogFile()
+        {
+            userIds.defaultReturnValue(-1);
+            itemIds.defaultReturnValue(-1);
+            poolIds.defaultReturnValue(-1);
+        }
+
+        /**
+         * Parses a (decompressed) file of the log.
+         *
+         * @param in the input stream of the file.
+         * @return the contents of the file.
+         * @throws IOException if something fails while reading.
+         */
+        static LogFile parse(InputStream in) throws IOException
+        {
+            LogFile file = new LogFile();
+            try (InputStream input = in)
+            {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int start = 0;
+                int end = 0;
+                int scanned = 0;
+                boolean eof = false;
+                while (true)
+                {
+                    int nl = scanned;
+                    while (nl < end && buffer[nl] != '\n')
+                    {
+                        ++nl;
+                    }
+
+                    if (nl < end)
+                    {
+                        file.line(buffer, start, nl);
+                        start = nl + 1;
+                        scanned = start;
+                    }
+                    else if (eof)
+                    {
+                        if (start < end)
+                        {
+                            file.line(buffer, start, end);
+                        }
+                        break;
+                    }
+                    else
+                    {
+                        // Move the incomplete line to the beginning of the buffer, and read more bytes.
+                        if (start > 0)
+                        {
+                            System.arraycopy(buffer, start, buffer, 0, end - start);
+                            end -= start;
+                            start = 0;
+                        }
+                        else if (end == buffer.length)
+                        {
+                            buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                        }
+                        scanned = end;
+
+                        int read = input.read(buffer, end, buffer.length - end);
+                        if (read < 0)
+                        {
+                            eof = true;
+                        }
+                        else
+                        {
+                            end += read;
+                        }
+                    }
+                }
+            }
+            return file;
+        }
+
+        /**
+         * Parses a line of the log.
+         *
+         * @param b    the bytes containing the line.
+         * @param from the first position of the line.
+         * @param to   the position after the last one of the line.
+         * @throws IOException if the line is not valid.
+         */
+        private void line(byte[] b, int from, int to) throws IOException
+        {
+            // First token: the timestamp (ignored).
+            int pos = skipSpaces(b, from, to);
+            pos = skipSpaces(b, tokenEnd(b, pos, to), to);
+
+            // Second token: the featured item.
+            int itemEnd = tokenEnd(b, pos, to);
+            if (pos == itemEnd)
+            {
+                return;
+            }
+            int item = this.item(b, pos, itemEnd);
+
+            // Third token: the rating.
+            pos = skipSpaces(b, itemEnd, to);
+            int ratingEnd = tokenEnd(b, pos, to);
+            if (pos == ratingEnd)
+            {
+                return;
+            }
+            double rating = parseRating(b, pos, ratingEnd);
+
+            // The rest of the line: the user features and the pool of candidate items.
+            userProbe.clear();
+            poolProbe.clear();
+            boolean isCurrentUser = false;
+            boolean isEmptyUser = true;
+            pos = skipSpaces(b, ratingEnd, to);
+            while (pos < to)
+            {
+                int tokEnd = tokenEnd(b, pos, to);
+                if (b[pos] == '|')
+                {
+                    if (isUserMarker(b, pos, tokEnd))
+                    {
+                        isCurrentUser = true;
+                    }
+                    else
+                    {
+                        isCurrentUser = false;
+                        poolProbe.add(this.item(b, pos + 1, tokEnd));
+                    }
+                }
+                else if (isCurrentUser)
+                {
+                    int index = parseInt(b, pos, tokEnd);
+                    if (index > 1)
+                    {
+                        if (index - 2 >= USER_LENGTH)
+                        {
+                            throw new IOException("Invalid user feature " + index);
+                        }
+                        isEmptyUser = false;
+                        userProbe.set(index - 2);
+                    }
+                }
+                pos = skipSpaces(b, tokEnd, to);
+            }
+
+            if (!isEmptyUser)
+            {
+                int uidx = userIds.getInt(userProbe);
+                if (uidx < 0)
+                {
+                    uidx = users.size();
+                    UserKey user = new UserKey(userProbe);
+                    users.add(user);
+                    userIds.put(user, uidx);
+                }
+
+                int pidx = poolIds.getInt(poolProbe);
+                if (pidx < 0)
+                {
+                    pidx = pools.size();
+                    IntArrayList pool = new IntArrayList(poolProbe);
+                    pools.add(pool);
+                    poolIds.put(pool, pidx);
+                }
+
+                lineUsers.add(uidx);
+                lineItems.add(item);
+                lineRatings.add(rating);
+                linePools.add(pidx);
+            }
+        }
+
+        /**
+         * Obtains the local index of an item, indexing it if it is new.
+         *
+         * @param b    the bytes containing the item identifier.
+         * @param from the first position of the identifier.
+         * @param to   the position after the last one of the identifier.
+         * @return the local index of the item.
+         */
+        private int item(byte[] b, int from, int to)
+        {
+            itemProbe.set(b, from, to);
+            int iidx = itemIds.getInt(itemProbe);
+            if (iidx < 0)
+            {
+                iidx = items.size();
+                ByteSlice item = itemProbe.copy();
+                items.add(item.toString());
+                itemIds.put(item, iidx);
+            }
+            return iidx;
+        }
+
+        /**
+         * Checks whether a byte is a whitespace character.
+         *
+         * @param c the byte.
+         * @return true if it is a whitespace character, false otherwise.
+         */
+        private static boolean isSpace(byte c)
+        {
+            return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f' || c == 0x0B;
+        }
+
+        /**
+         * Finds the first non-whitespace position of a fragment.
+         *
+         * @param b    the bytes.
+         * @param from the first position of the fragment.
+         * @param to   the position after the last one of the fragment.
+         * @return the first non-whitespace position, or {@code to} if there is none.
+         */
+        private static int skipSpaces(byte[] b, int from, int to)
+        {
+            while (from < to && isSpace(b[from]))
+            {
+                ++from;
+            }
+            return from;
+        }
+
+        /**
+         * Finds the end of the token starting at a position.
+         *
+         * @param b    the bytes.
+         * @param from the first position of the token.
+         * @param to   the position after the last one of the fragment.
+         * @return the position after the last one of the token.
+         */
+        private static int tokenEnd(byte[] b, int from, int to)
+        {
+            while (from < to && !isSpace(b[from]))
+            {
+                ++from;
+            }
+            return from;
+        }
+
+        /**
+         * Checks whether a token is the "|user" marker.
+         *
+         * @param b    the bytes.
+         * @param from the first position of the token.
+         * @param to   the position after the last one of the token.
+         * @return true if the token is the marker, false otherwise.
+         */
+        private static boolean isUserMarker(byte[] b, int from, int to)
+        {
+            return to - from == 5 && b[from + 1] == 'u' && b[from + 2] == 's' && b[from + 3] == 'e' && b[from + 4] == 'r';
+        }
+
+        /**
+         * Parses a rating. The usual values (0 and 1) are parsed without building a string.
+         *
+         * @param b    the bytes.
+         * @param from the first position of the token.
+         * @param to   the position after the last one of the token.
+         * @return the rating.
+         */
+        private static double parseRating(byte[] b, int from, int to)
+        {
+            if (to - from == 1 && (b[from] == '0' || b[from] == '1'))
+            {
+                return b[from] - '0';
+            }
+            return Double.parseDouble(new String(b, from, to - from, StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Parses a (user feature) integer. Short sequences of digits are parsed without building a string.
+         *
+         * @param b    the bytes.
+         * @param from the first position of the token.
+         * @param to   the position after the last one of the token.
+         * @return the integer.
+         */
+        private static int parseInt(byte[] b, int from, int to)
+        {
+            if (to - from <= 9)
+            {
+                int value = 0;
+                int i = from;
+                while (i < to && b[i] >= '0' && b[i] <= '9')
+                {
+                    value = 10 * value + (b[i] - '0');
+                    ++i;
+                }
+                if (i == to && to > from)
+                {
+                    return value;
+                }
+            }
+            return Integer.parseInt(new String(b, from, to - from, StandardCharsets.UTF_8));
+        }
+    }
+}
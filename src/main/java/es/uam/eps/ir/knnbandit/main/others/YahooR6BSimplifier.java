@@ -9,26 +9,19 @@
  */
 package es.uam.eps.ir.knnbandit.main.others;
 
-import es.uam.eps.ir.knnbandit.data.datasets.reader.LogRegister;
-import es.uam.eps.ir.knnbandit.data.datasets.reader.SimpleStreamDatasetReader;
-import es.uam.eps.ir.knnbandit.data.datasets.reader.StreamDatasetReader;
-import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.AdditiveRatingFastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.SimpleFastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.SimpleFastUpdateableUserIndex;
-import es.uam.eps.ir.knnbandit.utils.Pair;
-import es.uam.eps.ir.ranksys.core.preference.IdPref;
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import it.unimi.dsi.fastutil.ints.IntList;
 import org.ranksys.formats.parsing.Parsers;
 
 import java.io.*;
-import java.util.*;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
-import java.util.zip.GZIPInputStream;
 
 /**
  * Given the Yahoo! R6B dataset, this obtains a subsample which might be used
@@ -40,7 +33,8 @@ import java.util.zip.GZIPInputStream;
 public class YahooR6BSimplifier
 {
     /**
-     * The program for obtaining a subsample of the Yahoo! R6B dataset.
+     * The program for obtaining a subsample of the Yahoo! R6B dataset. The dataset is read only once:
+     * the whole dataset statistics (if needed) and the reduced log are both obtained from the same pass.
      * @param args Execution arguments:
      * <ol>
      *  <li><b>Input:</b> the .tgz file containing the dataset.</li>
@@ -51,13 +45,14 @@ public class YahooR6BSimplifier
      * <ul>
      *  <li><b>--files file1,file2,...</b> a comma-separated list of the files in the dataset to consider for this sampling</li>
      *  <li><b>--userdatafile name</b> a file containing the statistics for each user. If not available, it is computed.</li>
+     *  <li><b>--threads num</b> the number of threads for reading the files in the dataset (by default, the number of processors)</li>
      * </ul>
      * @throws IOException if something fails while reading/writing.
      */
     public static void main(String[] args) throws IOException
     {
         // Read the arguments of the program.
-        if(args.length < 2)
+        if(args.length < 3)
         {
             System.err.println("ERROR: Invalid arguments");
             System.err.println("Arguments");
@@ -67,6 +62,8 @@ public class YahooR6BSimplifier
             System.err.println("Optional arguments:");
             System.err.println("--files file1,file2,... : the subset of the files to consider for the reduction");
             System.err.println("--userdataFile : a file containing the statistics for each user. Otherwise, it is computed");
+            System.err.println("--threads num : the number of threads for reading the files of the dataset");
+            return;
         }
 
         String input = args[0];
@@ -74,14 +71,13 @@ public class YahooR6BSimplifier
         long threshold = Parsers.lp.parse(args[2]);
         Set<String> files = new HashSet<>();
         String userDataFile = null;
-        String fileList = "";
+        int numThreads = Runtime.getRuntime().availableProcessors();
 
         for(int i = 3; i < args.length; ++i)
         {
             if(args[i].equalsIgnoreCase("--files"))
             {
                 ++i;
-                fileList = args[i];
                 String[] split = args[i].split(",");
                 files.addAll(Arrays.asList(split));
             }
@@ -90,145 +86,129 @@ public class YahooR6BSimplifier
                 ++i;
                 userDataFile = args[i];
             }
+            else if(args[i].equalsIgnoreCase("--threads"))
+            {
+                ++i;
+                numThreads = Parsers.ip.parse(args[i]);
+            }
         }
 
-        // Step 1: if userDataFile == null, then, we have to compute the statistics:
-        System.out.println("Obtaining the whole dataset statistics");
+        // Step 1: read the log.
+        System.out.println("Reading the log");
         long a = System.currentTimeMillis();
+        YahooR6BLog log = YahooR6BLog.read(input, files, numThreads);
+        long b = System.currentTimeMillis();
+        System.out.println("Finished reading the log (" + (b-a) + " ms.)");
+
+        // Step 2: determine the valid set of users. Users are numbered in the order of the user statistics file.
+        System.out.println("Determining the valid set of users");
+        int[] userMap = new int[log.numUsers()];
+        Arrays.fill(userMap, -1);
+        int numUsers = 0;
         if(userDataFile == null)
         {
-            String[] auxArgs;
-            if(files.isEmpty())
+            // The whole dataset statistics are obtained from the log we have just read.
+            System.out.println("Obtaining the whole dataset statistics");
+            FastUpdateableUserIndex<String> fullIndex = YahooR6BAnalyzer.analyze(log, outputDir + "full");
+            b = System.currentTimeMillis();
+            System.out.println("Obtained the whole dataset statistics (" + (b-a) + " ms.)");
+
+            int[] numRatings = new int[log.numUsers()];
+            int numLines = log.numLines();
+            for(int l = 0; l < numLines; ++l)
             {
-                auxArgs = new String[]{input, outputDir + "full"};
+                ++numRatings[log.getLineUser(l)];
             }
-            else
+
+            // Users are taken in the same order as in the statistics file.
+            Iterator<String> users = fullIndex.getAllUsers().iterator();
+            while(users.hasNext())
             {
-                auxArgs = new String[]{input, outputDir + "full", "--files", fileList};
+                int uidx = fullIndex.user2uidx(users.next());
+                if(numRatings[uidx] >= threshold)
+                {
+                    userMap[uidx] = numUsers++;
+                }
             }
-
-            YahooR6BAnalyzer.main(auxArgs);
-            userDataFile = outputDir + "full" + YahooR6BAnalyzer.USERDATAFILE;
         }
-        long b = System.currentTimeMillis();
-        System.out.println("Obtained the whole dataset statistics (" + (b-a) + " ms.)");
-
-        // Step 2: determine the valid set of users:
-        System.out.println("Determining the valid set of users");
-        FastUpdateableUserIndex<String> uIndex = new SimpleFastUpdateableUserIndex<>();
-        try(BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(userDataFile))))
+        else
         {
-            String line = br.readLine();
-            while((line = br.readLine()) != null)
+            FastUpdateableUserIndex<String> uIndex = new SimpleFastUpdateableUserIndex<>();
+            try(BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(userDataFile))))
             {
-                String[] split = line.split("\\s+");
-                String user = split[0];
-                double numRatings = Parsers.dp.parse(split[1]);
+                String line = br.readLine();
+                while((line = br.readLine()) != null)
+                {
+                    String[] split = line.split("\\s+");
+                    String user = split[0];
+                    double numRatings = Parsers.dp.parse(split[1]);
 
-                if(numRatings >= threshold)
+                    if(numRatings >= threshold)
+                    {
+                        uIndex.addUser(user);
+                    }
+                }
+            }
+
+            numUsers = uIndex.numUsers();
+            for(int uidx = 0; uidx < userMap.length; ++uidx)
+            {
+                String user = log.getUser(uidx);
+                if(uIndex.containsUser(user))
                 {
-                    uIndex.addUser(user);
+                    userMap[uidx] = uIndex.user2uidx(user);
                 }
             }
         }
         b = System.currentTimeMillis();
-        System.out.println("Determined the valid set of " + uIndex.numUsers() + " users (" + (b-a) + "ms.)");
-
+        System.out.println("Determined the valid set of " + numUsers + " users (" + (b-a) + "ms.)");
 
-        // Initialize the variables:
-        FastUpdateableItemIndex<String> iIndex = new SimpleFastUpdateableItemIndex<>();
+        // Step 3: write the reduced log, and, at the same time, obtain its statistics.
+        int[] itemMap = new int[log.numItems()];
+        Arrays.fill(itemMap, -1);
+        int numItems = 0;
+        YahooR6BStatistics stats = new YahooR6BStatistics();
 
-        // Now, we want to generate an individual file containing all the reduced log
+        System.out.println("Starting writing the log file");
         try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputDir + "log.txt"))))
         {
-            // Open the .tgz file:
-            GzipCompressorInputStream gzipIn = new GzipCompressorInputStream(new FileInputStream(input));
-            TarArchiveInputStream tarIn = new TarArchiveInputStream(gzipIn);
-
-            TarArchiveEntry entry;
-
-            System.out.println("Starting writing the log file");
-            while((entry = (TarArchiveEntry) tarIn.getNextEntry()) != null)
+            int numLines = log.numLines();
+            for(int l = 0; l < numLines; ++l)
             {
-                String name = entry.getName();
-                if(!name.equals("README.txt") && (files.isEmpty() || files.contains(name)))
+                int uidx = userMap[log.getLineUser(l)];
+                if(uidx >= 0)
                 {
-                    b = System.currentTimeMillis();
-                    System.out.println("Processing file " + name + " (" + (b-a) + " ms.)");
-                    BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(tarIn)));
+                    int item = log.getLineItem(l);
+                    if(itemMap[item] < 0)
                     {
-                        String line;
-                        while((line = br.readLine()) != null)
-                        {
-                            String[] split = line.split("\\s+");
-                            String item = split[1];
-                            List<String> items = new ArrayList<>();
-                            double rating = Parsers.dp.parse(split[2]);
-
-                            boolean isCurrentUser = false;
-                            boolean isEmptyUser = true;
-                            char[] user = new char[135];
-
-                            for(int i = 0; i < 134; ++i) user[i] = '0';
-
-                            for (int i = 3; i < split.length; ++i)
-                            {
-                                if (split[i].equals("|user"))
-                                {
-                                    isCurrentUser = true;
-                                }
-                                else if (split[i].startsWith("|"))
-                                {
-                                    isCurrentUser = false;
-                                    String itemId = split[i].substring(1);
-                                    items.add(itemId);
-                                }
-                                else if (isCurrentUser)
-                                {
-                                    int index = Parsers.ip.parse(split[i]);
-                                    if (index > 1)
-                                    {
-                                        isEmptyUser = false;
-                                        user[index - 2] = '1';
-                                    }
-                                }
-                            }
-
-                            if (!isEmptyUser)
-                            {
-                                String userId = new String(user);
-                                if(uIndex.containsUser(userId))
-                                {
-                                    int uidx = uIndex.user2uidx(userId);
-                                    int iidx = iIndex.addItem(item);
+                        itemMap[item] = numItems++;
+                    }
+                    int iidx = itemMap[item];
+                    double rating = log.getLineRating(l);
 
-                                    bw.write(uidx + "\t" + iidx + "\t" + rating);
-                                    for(String itemId : items)
-                                    {
-                                        bw.write("\t" + iIndex.addItem(itemId));
-                                    }
-                                    bw.write("\n");
-                                }
-                            }
-                       }
+                    bw.write(uidx + "\t" + iidx + "\t" + rating);
+                    IntList pool = log.getLinePool(l);
+                    for(int j = 0; j < pool.size(); ++j)
+                    {
+                        int poolItem = pool.getInt(j);
+                        if(itemMap[poolItem] < 0)
+                        {
+                            itemMap[poolItem] = numItems++;
+                        }
+                        bw.write("\t" + itemMap[poolItem]);
                     }
+                    bw.write("\n");
 
-                    b = System.currentTimeMillis();
-                    System.out.println("Finished processing file " + name + " (" + (b-a) + " ms.)");
+                    stats.update(uidx, iidx, rating);
                 }
             }
-            b = System.currentTimeMillis();
-            System.out.println("Finished writing the log file (" + (b-a) + " ms.)");
-        }
-        catch(IOException ioe)
-        {
-            System.err.println("ERROR: something happened while reading/writing the log file.");
         }
+        b = System.currentTimeMillis();
+        System.out.println("Finished writing the log file (" + (b-a) + " ms.)");
 
         // Now, we print the user index:
         try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputDir + YahooR6BAnalyzer.USERFILE))))
         {
-            int numUsers = uIndex.numUsers();
             for(int i = 0; i < numUsers; ++i)
             {
                 bw.write(i + "\n");
@@ -238,114 +218,17 @@ public class YahooR6BSimplifier
         // Now, we print the item index:
         try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputDir + YahooR6BAnalyzer.ITEMFILE))))
         {
-            int numUsers = iIndex.numItems();
-            for(int i = 0; i < numUsers; ++i)
+            for(int i = 0; i < numItems; ++i)
             {
                 bw.write(i + "\n");
             }
         }
 
-        FastUpdateableUserIndex<Integer> userIndex = SimpleFastUpdateableUserIndex.load(IntStream.range(0, uIndex.numUsers()).boxed());
-        FastUpdateableItemIndex<Integer> itemIndex = SimpleFastUpdateableItemIndex.load(IntStream.range(0, iIndex.numItems()).boxed());
-        AdditiveRatingFastUpdateablePreferenceData<Integer, Integer> numTimes = AdditiveRatingFastUpdateablePreferenceData.load(Stream.empty(), userIndex, itemIndex);
-        AdditiveRatingFastUpdateablePreferenceData<Integer, Integer> numPos = AdditiveRatingFastUpdateablePreferenceData.load(Stream.empty(), userIndex, itemIndex);
-        StreamDatasetReader<Integer, Integer> streamReader = new SimpleStreamDatasetReader<>(outputDir + "log.txt", Parsers.ip, Parsers.ip, "\t");
-        streamReader.initialize();
-
-        while(!streamReader.hasEnded())
-        {
-            LogRegister<Integer, Integer> register = streamReader.readRegister();
-            if(register != null)
-            {
-                int uidx = register.getUser();
-                int iidx = register.getFeaturedItem();
-                double reward = register.getRating();
-
-                numTimes.update(uidx, iidx, 1.0);
-                numPos.update(uidx, iidx, reward);
-            }
-        }
-
-        // Now, we print the whole statistics file.
-        // STEP 1: the user index file
-        try(BufferedWriter bwUserData = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputDir + YahooR6BAnalyzer.USERDATAFILE))))
-        {
-            bwUserData.write("userId\tnumRatings\tnumRel\tnumRep\tnumRepRel\n");
-            userIndex.getAllUsers().forEach(user ->
-            {
-                try
-                {
-                    bwUserData.write(user + "");
-                    if(numTimes.numItems(user) > 0)
-                    {
-                        Pair<Double> pair1 = numTimes.getUserPreferences(user).map(pref -> new Pair<>(pref.v2, pref.v2 - 1)).reduce(new Pair<>(0.0,0.0), (x,y) -> new Pair<>(x.v1()+y.v1(), x.v2()+y.v2()));
-                        Pair<Double> pair2 = numPos.getUserPreferences(user).map(pref -> new Pair<>(pref.v2, pref.v2 > 1 ? pref.v2 - 1 : 0)).reduce(new Pair<>(0.0,0.0), (x,y) -> new Pair<>(x.v1()+y.v1(), x.v2()+y.v2()));
-                        bwUserData.write("\t" + pair1.v1() + "\t" + pair2.v1() + "\t" + pair1.v2() + "\t" + pair2.v2() + "\n");
-                    }
-                    else
-                    {
-                        bwUserData.write("\t0\t0\t0\n");
-                    }
-                }
-                catch(IOException ioe)
-                {
-                    System.err.println("Something wrong occurred");
-                }
-            });
-        }
-
-        // STEP 2: the item index files
-        try(BufferedWriter bwItemData = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputDir + YahooR6BAnalyzer.ITEMDATAFILE))))
-        {
-            bwItemData.write("itemId\tnumRatings\tnumRel\tnumRep\tnumRepRel\n");
-            itemIndex.getAllItems().forEach(item ->
-            {
-                try
-                {
-                    bwItemData.write(item + "");
-                    if(numTimes.numUsers(item) > 0)
-                    {
-                        Pair<Double> pair1 = numTimes.getItemPreferences(item).map(pref -> new Pair<>(pref.v2, pref.v2 - 1)).reduce(new Pair<>(0.0,0.0), (x,y) -> new Pair<>(x.v1()+y.v1(), x.v2()+y.v2()));
-                        Pair<Double> pair2 = numPos.getItemPreferences(item).map(pref -> new Pair<>(pref.v2, pref.v2 > 1 ? pref.v2 - 1 : 0)).reduce(new Pair<>(0.0,0.0), (x,y) -> new Pair<>(x.v1()+y.v1(), x.v2()+y.v2()));
-                        bwItemData.write("\t" + pair1.v1() + "\t" + pair2.v1() + "\t" + pair1.v2() + "\t" + pair2.v2() + "\n");
-                    }
-                    else
-                    {
-                        bwItemData.write("\t0\t0\t0\n");
-                    }
-                 }
-                 catch(IOException ioe)
-                 {
-                     System.err.println("Something wrong occurred");
-                 }
-             });
-        }
-
-        // STEP 3: the ratings file
-        try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputDir + YahooR6BAnalyzer.RATINGSFILE))))
-        {
-            bw.write("userId\titemId\tnumPos\tnumTimes\tCTR\n");
-            numTimes.getUsersWithPreferences().forEach(user -> numTimes.getUserPreferences(user).forEach(item ->
-            {
-                try
-                {
-                    Integer i = item.v1();
-                    Optional<? extends IdPref<Integer>> opt = numPos.getPreference(user, i);
-                    if (opt.isPresent() && opt.get().v2 > 0.0)
-                    {
-                        bw.write(user + "\t" + i + "\t" + opt.get().v2() + "\t" + item.v2() + "\t" + (opt.get().v2/item.v2()) + "\n");
-                    }
-                    else
-                    {
-                        bw.write(user + "\t" + i + "\t" + 0.0 + "\t" + item.v2() + "\t" + 0 + "\n");
-                    }
-                }
-                catch(IOException ioe)
-                {
-                    System.err.println("Something wrong occurred");
-                }
-            })
-            );
-        }
+        // Now, we print the whole statistics files.
+        FastUpdateableUserIndex<Integer> userIndex = SimpleFastUpdateableUserIndex.load(IntStream.range(0, numUsers).boxed());
+        FastUpdateableItemIndex<Integer> itemIndex = SimpleFastUpdateableItemIndex.load(IntStream.range(0, numItems).boxed());
+        stats.write(outputDir + YahooR6BAnalyzer.USERDATAFILE, outputDir + YahooR6BAnalyzer.ITEMDATAFILE, outputDir + YahooR6BAnalyzer.RATINGSFILE, userIndex, itemIndex);
+        b = System.currentTimeMillis();
+        System.out.println("Finished writing the statistics (" + (b-a) + " ms.)");
     }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.main.others;
+
+import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
+import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Statistics of the Yahoo! R6B log: for each user-item pair, it stores the number of times the
+ * item has been shown to the user, and the sum of the ratings. From them, it writes the user,
+ * item and ratings statistics files described in {@link YahooR6BAnalyzer}.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+class YahooR6BStatistics
+{
+    /**
+     * Map from user-item pairs (the user in the upper 32 bits, the item in the lower ones) to their positions.
+     */
+    private final Long2IntOpenHashMap pairs;
+    /**
+     * The number of times each pair appears.
+     */
+    private final IntArrayList times;
+    /**
+     * The sum of the ratings of each pair.
+     */
+    private final DoubleArrayList pos;
+
+    /**
+     * Constructor.
+     */
+    YahooR6BStatistics()
+    {
+        this.pairs = new Long2IntOpenHashMap();
+        this.pairs.defaultReturnValue(-1);
+        this.times = new IntArrayList();
+        this.pos = new DoubleArrayList();
+    }
+
+    /**
+     * Adds a rating.
+     *
+     * @param uidx   the user.
+     * @param iidx   the item.
+     * @param rating the rating.
+     */
+    void update(int uidx, int iidx, double rating)
+    {
+        long key = ((long) uidx << 32) | iidx;
+        int p = pairs.get(key);
+        if (p < 0)
+        {
+            pairs.put(key, times.size());
+            times.add(1);
+            pos.add(rating);
+        }
+        else
+        {
+            times.set(p, times.getInt(p) + 1);
+            pos.set(p, pos.getDouble(p) + rating);
+        }
+    }
+
+    /**
+     * Writes the statistics. The user and item statistics are written in the order in which the
+     * indexes list their users and items.
+     *
+     * @param userDataFile file for the user statistics.
+     * @param itemDataFile file for the item statistics.
+     * @param ratingsFile  file for the statistics of the user-item pairs.
+     * @param uIndex       the user index.
+     * @param iIndex       the item index.
+     * @param <U>          type of the users.
+     * @param <I>          type of the items.
+     * @throws IOException if something fails while writing.
+     */
+    <U, I> void write(String userDataFile, String itemDataFile, String ratingsFile, FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex) throws IOException
+    {
+        // Sort the pairs by user, and then, by item.
+        long[] keys = pairs.keySet().toLongArray();
+        Arrays.parallelSort(keys);
+
+        // Aggregate, for each user and item: the number of ratings, the positive ones, the repeated ones, and the relevant repeated ones.
+        double[][] userStats = new double[4][uIndex.numUsers()];
+        double[][] itemStats = new double[4][iIndex.numItems()];
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(ratingsFile))))
+        {
+            bw.write("userId\titemId\tnumPos\tnumTimes\tCTR\n");
+            for (long key : keys)
+            {
+                int uidx = (int) (key >>> 32);
+                int iidx = (int) key;
+                int p = pairs.get(key);
+                double t = times.getInt(p);
+                double r = pos.getDouble(p);
+
+                accumulate(userStats, uidx, t, r);
+                accumulate(itemStats, iidx, t, r);
+
+                U u = uIndex.uidx2user(uidx);
+                I i = iIndex.iidx2item(iidx);
+                if (r > 0.0)
+                {
+                    bw.write(u + "\t" + i + "\t" + r + "\t" + t + "\t" + (r / t) + "\n");
+                }
+                else
+                {
+                    bw.write(u + "\t" + i + "\t" + 0.0 + "\t" + t + "\t" + 0 + "\n");
+                }
+            }
+        }
+
+        write(userDataFile, "userId\tnumRatings\tnumRel\tnumRep\tnumRepRel\n", userStats, uIndex.getAllUsers(), uIndex::user2uidx);
+        write(itemDataFile, "itemId\tnumRatings\tnumRel\tnumRep\tnumRepRel\n", itemStats, iIndex.getAllItems(), iIndex::item2iidx);
+    }
+
+    /**
+     * Adds the statistics of a pair to the aggregated statistics of a user or an item.
+     *
+     * @param stats the aggregated statistics.
+     * @param idx   the user or item.
+     * @param t     the number of times the pair appears.
+     * @param r     the sum of the ratings of the pair.
+     */
+    private static void accumulate(double[][] stats, int idx, double t, double r)
+    {
+        stats[0][idx] += t;
+        stats[1][idx] += r;
+        stats[2][idx] += t - 1;
+        stats[3][idx] += r > 1 ? r - 1 : 0;
+    }
+
+    /**
+     * Writes the aggregated statistics of the users or the items.
+     *
+     * @param file   the file.
+     * @param header the header of the file.
+     * @param stats  the aggregated statistics.
+     * @param ids    the users or items, in the order in which they are written.
+     * @param index  function for obtaining the index of each user or item.
+     * @param <T>    type of the users or items.
+     * @throws IOException if something fails while writing.
+     */
+    private static <T> void write(String file, String header, double[][] stats, Stream<T> ids, ToIntFunction<T> index) throws IOException
+    {
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file))))
+        {
+            bw.write(header);
+            Iterator<T> it = ids.iterator();
+            while (it.hasNext())
+            {
+                T id = it.next();
+                int idx = index.applyAsInt(id);
+                bw.write(id + "");
+                if (stats[0][idx] > 0)
+                {
+                    bw.write("\t" + stats[0][idx] + "\t" + stats[1][idx] + "\t" + stats[2][idx] + "\t" + stats[3][idx] + "\n");
+                }
+                else
+                {
+                    bw.write("\t0\t0\t0\n");
+                }
+            }
+        }
+    }
+}
@@ -92,6 +92,7 @@ public class RecommendationSelector
         int k = 1;
         int interval = 10000;
         int cutoff = 1;
+        int window = 0;
         IOType iotype = IOType.TEXT;
         boolean gzipped = false;
         for (int i = lastIndex; i < execArgs.length; ++i)
@@ -111,6 +112,11 @@ public class RecommendationSelector
                 ++i;
                 cutoff = Parsers.ip.parse(args[i]);
             }
+            else if("-window".equals(args[i]))
+            {
+                ++i;
+                window = Parsers.ip.parse(args[i]);
+            }
             else if("-io-type".equals(args[i]))
             {
                 ++i;
@@ -134,11 +140,19 @@ public class RecommendationSelector
                 if(args[0].equalsIgnoreCase("movielens"))
                 {
                     Recommendation<Long, Long> rec = new GeneralRecommendation<>(input, "::", Parsers.lp, Parsers.lp, threshold, useRatings, cutoff, ioSelector);
+                    if (window > 0)
+                    {
+                        rec.addWindowedMetrics(window);
+                    }
                     rec.recommend(algorithms, output, endCond, resume, k, interval);
                 }
                 else if(args[0].equalsIgnoreCase("foursquare"))
                 {
                     Recommendation<Long, String> rec = new GeneralRecommendation<>(input, "::", Parsers.lp, Parsers.sp, threshold, useRatings, cutoff, ioSelector);
+                    if (window > 0)
+                    {
+                        rec.addWindowedMetrics(window);
+                    }
                     rec.recommend(algorithms, output, endCond, resume, k, interval);
                 }
                 break;
@@ -149,6 +163,10 @@ public class RecommendationSelector
                 boolean notReciprocal = execArgs[6].equalsIgnoreCase("true");
 
                 Recommendation<Long, Long> rec = new ContactRecommendation<>(input, "\t", Parsers.lp, directed, notReciprocal, cutoff, ioSelector);
+                if (window > 0)
+                {
+                    rec.addWindowedMetrics(window);
+                }
                 rec.recommend(algorithms, output, endCond, resume, k, interval);
 
                 break;
@@ -160,6 +178,10 @@ public class RecommendationSelector
                 KnowledgeDataUse dataUse = KnowledgeDataUse.fromString(execArgs[7]);
 
                 Recommendation<Long, Long> rec = new WithKnowledgeRecommendation<>(input, "::", Parsers.lp, Parsers.lp, threshold, useRatings, dataUse, cutoff, ioSelector);
+                if (window > 0)
+                {
+                    rec.addWindowedMetrics(window);
+                }
                 rec.recommend(algorithms, output, endCond, resume, k, interval);
                 break;
             }
@@ -170,6 +192,10 @@ public class RecommendationSelector
                 String itemIndex = execArgs[7];
 
                 Recommendation<Integer, Integer> rec = new ReplayerRecommendation<>(input, "\t", userIndex, itemIndex, threshold, Parsers.ip, Parsers.ip, ioSelector);
+                if (window > 0)
+                {
+                    rec.addWindowedMetrics(window);
+                }
                 rec.recommend(algorithms, output,endCond, resume, k, interval);
                 break;
             }
@@ -223,6 +249,7 @@ public class RecommendationSelector
         builder.append("\t-k value : The number of times each individual approach has to be executed (by default: 1)\n");
         builder.append("\t-interval value : Distance between time points in the summary (by default: 10000)\n");
         builder.append("\t-cutoff value : The number of items to recommend on each iteration (by default: 1)\n");
+        builder.append("\t-window value : Also computes the metrics over the last value recommendations (by default, they are not computed)\n");
         builder.append("\t-io-type : establishes the format of the input-output files. Possible values:\n");
         builder.append("\t\tbinary : for binary files\n");
         builder.append("\t\ttext : for text files (default value)\n");
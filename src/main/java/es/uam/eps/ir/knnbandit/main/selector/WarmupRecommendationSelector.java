@@ -93,6 +93,7 @@ public class WarmupRecommendationSelector
         int interval = 10000;
         double percTrain = Double.NaN;
         int cutoff = 1;
+        int window = 0;
         IOType iotype = IOType.TEXT;
         boolean gzipped = false;
         IOType warmupIotype = IOType.TEXT;
@@ -124,6 +125,11 @@ public class WarmupRecommendationSelector
                 ++i;
                 cutoff = Parsers.ip.parse(args[i]);
             }
+            else if("-window".equals(args[i]))
+            {
+                ++i;
+                window = Parsers.ip.parse(args[i]);
+            }
             else if("-io-type".equals(args[i]))
             {
                 ++i;
@@ -162,11 +168,19 @@ public class WarmupRecommendationSelector
                 if(args[0].equalsIgnoreCase("movielens"))
                 {
                     WarmupRecommendation<Long, Long> rec = new GeneralWarmupRecommendation<>(input, "::", Parsers.lp, Parsers.lp, threshold, useRatings, warmup, cutoff, ioSelector, warmupIOSelector);
+                    if (window > 0)
+                    {
+                        rec.addWindowedMetrics(window);
+                    }
                     rec.recommend(algorithms, output, endCond, resume, training, partition, numParts, percTrain, k, interval);
                 }
                 else if(args[0].equalsIgnoreCase("foursquare"))
                 {
                     WarmupRecommendation<Long, String> rec = new GeneralWarmupRecommendation<>(input, "::", Parsers.lp, Parsers.sp, threshold, useRatings, warmup, cutoff, ioSelector, warmupIOSelector);
+                    if (window > 0)
+                    {
+                        rec.addWindowedMetrics(window);
+                    }
                     rec.recommend(algorithms, output, endCond, resume, training, partition, numParts, percTrain, k, interval);
                 }
                 break;
@@ -177,6 +191,10 @@ public class WarmupRecommendationSelector
                 boolean notReciprocal = execArgs[8].equalsIgnoreCase("true");
 
                 WarmupRecommendation<Long, Long> rec = new ContactWarmupRecommendation<>(input, "\t", Parsers.lp, directed, notReciprocal, warmup, cutoff, ioSelector, warmupIOSelector);
+                if (window > 0)
+                {
+                    rec.addWindowedMetrics(window);
+                }
                 rec.recommend(algorithms, output, endCond, resume, training, partition, numParts, percTrain, k, interval);
 
                 break;
@@ -188,6 +206,10 @@ public class WarmupRecommendationSelector
                 KnowledgeDataUse dataUse = KnowledgeDataUse.fromString(execArgs[9]);
 
                 WarmupRecommendation<Long, Long> rec = new WithKnowledgeWarmupRecommendation<>(input, "::", Parsers.lp, Parsers.lp, threshold, useRatings, dataUse, warmup, cutoff, ioSelector, warmupIOSelector);
+                if (window > 0)
+                {
+                    rec.addWindowedMetrics(window);
+                }
                 rec.recommend(algorithms, output, endCond, resume, training, partition, numParts, percTrain, k, interval);
                 break;
             }
@@ -244,6 +266,7 @@ public class WarmupRecommendationSelector
         builder.append("\t-interval value : Distance between time points in the summary (by default: 10000)");
         builder.append("\t-cutoff value : The number of items to recommend on each iteration (by default: 1)");
         builder.append("\t-perctrain perc : The percentage of the warm-up data to use as training (by default, it is splitted in equal parts");
+        builder.append("\t-window value : Also computes the metrics over the last value recommendations (by default, they are not computed)\n");
         builder.append("\t-io-type : establishes the format of the input-output files. Possible values:\n");
         builder.append("\t\tbinary : for binary files\n");
         builder.append("\t\ttext : for text files (default value)\n");
@@ -119,8 +119,8 @@ public class WithKnowledgeWarmupRecommendation<U,I> extends WarmupRecommendation
     }
 
     @Override
-    protected Warmup getWarmup(List<Pair<Integer>> trainData)
+    protected List<? extends Warmup> getWarmups(List<Pair<Integer>> trainData, List<Integer> splitPoints)
     {
-        return GeneralWarmup.load(dataset, trainData.stream(), warmupType);
+        return GeneralWarmup.loadNested(dataset, trainData, splitPoints, warmupType);
     }
 }
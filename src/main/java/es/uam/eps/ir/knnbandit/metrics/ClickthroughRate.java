@@ -24,7 +24,7 @@ import java.util.function.DoublePredicate;
  * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
  * @author Pablo Castells (pablo.castells@uam.es)
  */
-public class ClickthroughRate<U,I> implements CumulativeMetric<U,I>
+public class ClickthroughRate<U,I> implements RemovableCumulativeMetric<U,I>
 {
     /**
      * The number of successes
@@ -74,6 +74,13 @@ public class ClickthroughRate<U,I> implements CumulativeMetric<U,I>
         hits += relevance.test(value) ? 1.0 : 0.0;
     }
 
+    @Override
+    public void remove(int uidx, int iidx, double value)
+    {
+        --total;
+        hits -= relevance.test(value) ? 1.0 : 0.0;
+    }
+
     @Override
     public void reset()
     {
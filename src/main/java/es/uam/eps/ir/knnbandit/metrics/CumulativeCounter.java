@@ -23,7 +23,7 @@ import java.util.List;
  * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
  * @author Pablo Castells (pablo.castells@uam.es)
  */
-public class CumulativeCounter<U,I> implements CumulativeMetric<U, I>
+public class CumulativeCounter<U,I> implements RemovableCumulativeMetric<U, I>
 {
     private double counter;
     @Override
@@ -50,6 +50,12 @@ public class CumulativeCounter<U,I> implements CumulativeMetric<U, I>
         counter++;
     }
 
+    @Override
+    public void remove(int uidx, int iidx, double value)
+    {
+        counter--;
+    }
+
     @Override
     public void reset()
     {
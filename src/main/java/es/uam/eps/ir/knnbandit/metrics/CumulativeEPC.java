@@ -10,16 +10,10 @@ package es.uam.eps.ir.knnbandit.metrics;
 
 import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
-import it.unimi.dsi.fastutil.ints.Int2LongMap;
-import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
-import org.jooq.lambda.tuple.Tuple2;
+import es.uam.eps.ir.knnbandit.utils.statistics.PopularityCounter;
 
 import java.util.List;
 
-
-// TODO: Finish
-
 /**
  * Cumulative Expected Popularity Complement (EPC) metric. Finds how popular are the different
  * recommended items.
@@ -30,7 +24,7 @@ import java.util.List;
  * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
  * @author Pablo Castells (pablo.castells@uam.es)
  */
-public class CumulativeEPC<U, I> implements CumulativeMetric<U, I>
+public class CumulativeEPC<U, I> implements RemovableCumulativeMetric<U, I>, PopularityMetric<U, I>
 {
     /**
      * Number of users.
@@ -41,13 +35,21 @@ public class CumulativeEPC<U, I> implements CumulativeMetric<U, I>
      */
     private int numItems;
     /**
-     * A map containing the popularity of each item.
+     * The popularity of each item (including the training data).
      */
-    private final Int2LongMap popularities;
+    private PopularityCounter popularities;
     /**
-     * Current number of ratings
+     * True if the popularity counter is shared with other metrics, false if this metric updates it.
      */
-    private double numRatings;
+    private boolean shared;
+    /**
+     * The popularity of the items in the training data, if the counter is not shared (null if there is no training data).
+     */
+    private long[] training;
+    /**
+     * The sum of the popularities of the items in the training data.
+     */
+    private long trainingTotal;
     /**
      * The EPC main sum.
      */
@@ -67,30 +69,49 @@ public class CumulativeEPC<U, I> implements CumulativeMetric<U, I>
     {
         this.numUsers = numUsers;
         this.numItems = numItems;
-        this.numRatings = 0.0;
-        this.popularities = new Int2LongOpenHashMap();
-        this.popularities.defaultReturnValue(0L);
+        this.popularities = new PopularityCounter(numItems);
+        this.shared = false;
+        this.training = null;
+        this.trainingTotal = 0L;
         this.epcValue = Double.NaN;
         this.sum = 0.0;
     }
 
+    @Override
+    public void setPopularity(PopularityCounter popularity)
+    {
+        this.popularities = popularity;
+        this.shared = true;
+    }
+
     @Override
     public void initialize(Dataset<U,I> dataset)
     {
         this.numUsers = dataset.numUsers();
         this.numItems = dataset.numItems();
-        this.numRatings = 0.0;
-        this.popularities.clear();
-        this.epcValue = Double.NaN;
-        this.sum = 0.0;
+        this.training = null;
+        if (!shared)
+        {
+            this.popularities.clear();
+            this.popularities.ensureCapacity(numItems);
+        }
+        this.reset();
     }
 
     @Override
     public void initialize(Dataset<U,I> dataset, List<FastRating> train)
     {
         this.initialize(dataset);
-        // Initialize the popularity values.
-        train.forEach(rating -> ((Int2LongOpenHashMap) this.popularities).addTo(rating.iidx(), 1));
+        if (!shared)
+        {
+            // Initialize the popularity values, and keep them for resetting the metric.
+            for (FastRating rating : train)
+            {
+                this.popularities.increment(rating.iidx());
+            }
+            this.training = this.popularities.snapshot();
+        }
+        this.trainingTotal = this.popularities.total();
     }
 
     @Override
@@ -102,22 +123,66 @@ public class CumulativeEPC<U, I> implements CumulativeMetric<U, I>
     @Override
     public void update(int uidx, int iidx, double value)
     {
-        if (numUsers > 0 && numRatings > 0.0)
+        if (!shared)
         {
-            this.epcValue = 1 - 1 / (numUsers * numRatings) * sum;
+            this.popularities.increment(iidx);
         }
 
-        long pop = this.popularities.getOrDefault(iidx, this.popularities.defaultReturnValue());
+        // The value to return is the one before the change.
+        this.refresh(this.popularities.total() - trainingTotal - 1);
+
+        long pop = this.popularities.get(iidx) - 1;
         sum += 2 * pop + 1;
-        numRatings++;
-        this.popularities.put(iidx, pop + 1);
+    }
+
+    @Override
+    public void remove(int uidx, int iidx, double value)
+    {
+        if (!shared)
+        {
+            if (this.popularities.get(iidx) < 1)
+            {
+                return;
+            }
+            this.popularities.decrement(iidx);
+        }
+
+        // As in the update, the value to return is the one before the change.
+        this.refresh(this.popularities.total() - trainingTotal + 1);
+
+        // Undo the increment of the sum: when the item was added, its popularity was the current one.
+        long pop = this.popularities.get(iidx);
+        sum -= 2 * pop + 1;
+    }
+
+    /**
+     * Stores the value of the metric before a change.
+     *
+     * @param numRatings the number of ratings before the change.
+     */
+    private void refresh(long numRatings)
+    {
+        if (numUsers > 0 && numRatings > 0)
+        {
+            this.epcValue = 1 - 1 / (numUsers * (double) numRatings) * sum;
+        }
     }
 
     @Override
     public void reset()
     {
-        this.numRatings = 0.0;
-        this.popularities.clear();
+        if (!shared)
+        {
+            if (training == null)
+            {
+                this.popularities.clear();
+            }
+            else
+            {
+                this.popularities.restore(training);
+            }
+        }
+        this.trainingTotal = this.popularities.total();
         this.sum = 0.0;
         this.epcValue = Double.NaN;
     }
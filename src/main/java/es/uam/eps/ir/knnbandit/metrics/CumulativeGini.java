@@ -10,24 +10,36 @@ package es.uam.eps.ir.knnbandit.metrics;
 
 import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
-import es.uam.eps.ir.knnbandit.utils.statistics.FastGiniIndex;
+import es.uam.eps.ir.knnbandit.utils.statistics.FenwickGiniIndex;
+import es.uam.eps.ir.knnbandit.utils.statistics.PopularityCounter;
 
 import java.util.List;
 
 /**
  * Cumulative version of the Gini index.
+ * <p>
+ * The Gini index only considers the recommended items. Therefore, when the popularity of the items is read
+ * from a shared counter, the frequency of each item is its popularity minus its popularity in the training data.
  *
  * @param <U> User type.
  * @param <I> Item type.
  * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
  * @author Pablo Castells (pablo.castells@uam.es)
  */
-public class CumulativeGini<U, I> implements CumulativeMetric<U, I>
+public class CumulativeGini<U, I> implements RemovableCumulativeMetric<U, I>, PopularityMetric<U, I>
 {
     /**
      * The updateable Gini index to compute all the operations.
      */
-    private FastGiniIndex gini;
+    private FenwickGiniIndex gini;
+    /**
+     * The shared popularity counter (null if the metric counts the frequencies by itself).
+     */
+    private PopularityCounter popularity;
+    /**
+     * The popularity of the items in the shared counter when the metric was initialized.
+     */
+    private long[] training;
 
     /**
      * Constructor.
@@ -37,10 +49,17 @@ public class CumulativeGini<U, I> implements CumulativeMetric<U, I>
     {
     }
 
+    @Override
+    public void setPopularity(PopularityCounter popularity)
+    {
+        this.popularity = popularity;
+    }
+
     @Override
     public void initialize(Dataset<U, I> dataset)
     {
-        this.gini = new FastGiniIndex(dataset.numItems());
+        this.gini = new FenwickGiniIndex(dataset.numItems());
+        this.training = popularity == null ? null : popularity.snapshot();
     }
 
     @Override
@@ -58,7 +77,38 @@ public class CumulativeGini<U, I> implements CumulativeMetric<U, I>
     @Override
     public void update(int uidx, int iidx, double value)
     {
-        this.gini.increaseFrequency(iidx);
+        if (popularity == null)
+        {
+            this.gini.increaseFrequency(iidx);
+        }
+        else
+        {
+            this.synchronize(iidx);
+        }
+    }
+
+    @Override
+    public void remove(int uidx, int iidx, double value)
+    {
+        if (popularity == null)
+        {
+            this.gini.decreaseFrequency(iidx);
+        }
+        else
+        {
+            this.synchronize(iidx);
+        }
+    }
+
+    /**
+     * Updates the frequency of an item in the Gini index with its popularity in the shared counter.
+     *
+     * @param iidx the item.
+     */
+    private void synchronize(int iidx)
+    {
+        long frequency = this.popularity.get(iidx) - (iidx < training.length ? training[iidx] : 0L);
+        this.gini.updateFrequency(iidx, (int) (frequency - this.gini.getFrequency(iidx)));
     }
 
     @Override
@@ -9,13 +9,13 @@
 package es.uam.eps.ir.knnbandit.metrics;
 
 import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
-import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
+import es.uam.eps.ir.knnbandit.metrics.distance.CachedItemDistanceProvider;
+import es.uam.eps.ir.knnbandit.metrics.distance.ItemDistanceProvider;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
-import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.novdiv.distance.FeatureItemDistanceModel;
 import it.unimi.dsi.fastutil.ints.*;
-import org.jooq.lambda.tuple.Tuple2;
 
+import java.util.Collections;
 import java.util.List;
 
 
@@ -42,14 +42,10 @@ public class CumulativeILD<U, I, F, V> implements CumulativeMetric<U, I>
      */
     private int numItems;
     /**
-     * Model for the distance between different items. We assume that this is static, i.e. it depends on external properties
-     * of the items, such as features.
+     * Provider of the distance between different items. We assume that distances are static, i.e. they depend on external
+     * properties of the items, such as features.
      */
-    private final FeatureItemDistanceModel<I, F, V> distModel;
-    /**
-     * Index for translating from items to indexes and viceversa.
-     */
-    private FastUpdateableItemIndex<I> index;
+    private final ItemDistanceProvider<I> distances;
     /**
      * Global ILD sum.
      */
@@ -71,45 +67,47 @@ public class CumulativeILD<U, I, F, V> implements CumulativeMetric<U, I>
     /**
      * Constructor. This metric assumes that the distance model is static
      * (i.e. it does not change with time). Therefore, it does not depend on
-     * the ratings: only on external features.
+     * the ratings: only on external features. The distances are cached by this metric
+     * alone: when several metrics use the same model, it is better to build a single
+     * {@link CachedItemDistanceProvider} for the dataset, and pass it to all of them.
      *
      * @param distanceModel model for computing the distance between pairs of
      *                      items in the system.
      */
     public CumulativeILD(FeatureItemDistanceModel<I, F, V> distanceModel)
+    {
+        this(new CachedItemDistanceProvider<>(distanceModel));
+    }
+
+    /**
+     * Constructor. This metric assumes that the distances between items are static
+     * (i.e. they do not change with time).
+     *
+     * @param distances provider of the distance between pairs of items in the system.
+     */
+    public CumulativeILD(ItemDistanceProvider<I> distances)
     {
         // Create the user-related elements.
         this.usersItemsSets = new Int2ObjectOpenHashMap<>();
         this.usersItemsCount = new Int2IntOpenHashMap();
         this.sums = new Int2DoubleOpenHashMap();
 
-        this.distModel = distanceModel;
+        this.distances = distances;
     }
 
     @Override
     public void initialize(Dataset<U,I> dataset)
     {
-        this.numUsers = dataset.numUsers();
-        this.numItems = dataset.numItems();
-        this.index = dataset;
-
-        this.sum = 0.0;
-        this.sums.clear();
-        this.usersItemsCount.clear();
-        this.usersItemsSets.clear();
-
-        for (int i = 0; i < this.numUsers; ++i)
-        {
-            this.sums.put(i, 0.0);
-            this.usersItemsCount.put(i, 0);
-            this.usersItemsSets.put(i, new IntOpenHashSet());
-        }
+        this.initialize(dataset, Collections.emptyList());
     }
 
     @Override
     public void initialize(Dataset<U, I> dataset, List<FastRating> train)
     {
-        this.initialize(dataset);
+        this.numUsers = dataset.numUsers();
+        this.numItems = dataset.numItems();
+        this.distances.initialize(dataset, train);
+        this.reset();
     }
 
     @Override
@@ -141,14 +139,11 @@ public class CumulativeILD<U, I, F, V> implements CumulativeMetric<U, I>
             sum -= count * (count - 1.0) * userSum;
         }
 
-        I newItem = index.iidx2item(iidx);
-
         // Now, we compute the increment on the metric.
         double addition = 0.0;
         for (int itemId : this.usersItemsSets.getOrDefault(uidx, new IntOpenHashSet()))
         {
-            I oldItem = index.iidx2item(itemId);
-            addition += this.distModel.dist(newItem, oldItem) + this.distModel.dist(oldItem, newItem);
+            addition += this.distances.dist(iidx, itemId) + this.distances.dist(itemId, iidx);
         }
 
         userSum += addition;
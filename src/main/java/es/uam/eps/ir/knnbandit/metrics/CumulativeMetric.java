@@ -72,6 +72,19 @@ public interface CumulativeMetric<U, I>
         }
     }
 
+    /**
+     * Updates the current value of the metric with a batch of ratings, in order.
+     *
+     * @param ratings the ratings.
+     */
+    default void update(List<FastRating> ratings)
+    {
+        for (FastRating rating : ratings)
+        {
+            this.update(rating.uidx(), rating.iidx(), rating.value());
+        }
+    }
+
     /**
      * Resets the metric.
      */
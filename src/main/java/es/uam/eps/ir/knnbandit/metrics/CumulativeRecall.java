@@ -22,7 +22,7 @@ import java.util.function.DoublePredicate;
  * @author Javier Sanz-Cruzado Puig (javier.sanz-cruzado@uam.es)
  * @author Pablo Castells (pablo.castells@uam.es)
  */
-public class CumulativeRecall<U, I> implements CumulativeMetric<U, I>
+public class CumulativeRecall<U, I> implements RemovableCumulativeMetric<U, I>
 {
     /**
      * Number of relevant (user,item) pairs.
@@ -84,6 +84,12 @@ public class CumulativeRecall<U, I> implements CumulativeMetric<U, I>
         if(relevance.test(value)) this.current++;
     }
 
+    @Override
+    public void remove(int uidx, int iidx, double value)
+    {
+        if(relevance.test(value)) this.current--;
+    }
+
     @Override
     public void reset()
     {
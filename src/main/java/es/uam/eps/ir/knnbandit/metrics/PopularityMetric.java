@@ -0,0 +1,41 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.metrics;
+
+import es.uam.eps.ir.knnbandit.utils.statistics.PopularityCounter;
+
+/**
+ * Interface for cumulative metrics which depend on the popularity of the items. By default, these metrics
+ * count the popularity by themselves. Alternatively, they can read it from a counter shared with other
+ * metrics (for instance, the metrics of a recommendation loop), so the popularity is counted once per rating.
+ * <p>
+ * The owner of the shared counter is responsible for keeping it up to date:
+ * <ul>
+ *     <li>Before initializing the metric, the counter must contain the popularity of the items in the
+ *     training data (if any), and nothing else.</li>
+ *     <li>Before updating (or removing) a rating from the metric, its item must have been counted
+ *     (or discounted) in the counter.</li>
+ * </ul>
+ * The metric never modifies the shared counter.
+ *
+ * @param <U> User type.
+ * @param <I> Item type.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public interface PopularityMetric<U, I> extends CumulativeMetric<U, I>
+{
+    /**
+     * Makes the metric read the popularity of the items from a shared counter. It must be called
+     * before initializing the metric.
+     *
+     * @param popularity the shared popularity counter.
+     */
+    void setPopularity(PopularityCounter popularity);
+}
@@ -0,0 +1,31 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.metrics;
+
+/**
+ * Interface for cumulative metrics which support removing previous updates.
+ *
+ * @param <U> User type.
+ * @param <I> Item type.
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public interface RemovableCumulativeMetric<U, I> extends CumulativeMetric<U, I>
+{
+    /**
+     * Removes a previous update from the metric, i.e. it updates the value of the metric
+     * as if the (user, item, value) triplet had not been received. This allows computing the
+     * metric over a sliding window of recommendations without re-aggregating the window.
+     *
+     * @param uidx  User identifier.
+     * @param iidx  Item identifier.
+     * @param value the value of the removed update.
+     */
+    void remove(int uidx, int iidx, double value);
+}
@@ -9,17 +9,19 @@
 package es.uam.eps.ir.knnbandit.metrics.atk;
 
 import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
+import es.uam.eps.ir.knnbandit.metrics.PopularityMetric;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
-import it.unimi.dsi.fastutil.ints.Int2IntMap;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
-import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import es.uam.eps.ir.knnbandit.utils.statistics.PopularityCounter;
 
 import java.util.List;
 
-// TODO: Think how to compute this
-
 /**
- * Cumulative version of Expected Popularity Complement at cutoff k
+ * Cumulative version of Expected Popularity Complement at cutoff k. It measures the popularity (including
+ * the training data) of the last k recommended items.
+ * <p>
+ * The main sum is kept as the sum, over the items in the last k recommendations, of their frequency in
+ * those recommendations times their popularity. Since the popularity of an item only changes when
+ * it is rated, the contribution of each item is brought up to date when it enters or leaves the window.
  *
  * @param <U> Type of the users.
  * @param <I> Type of the items.
@@ -27,7 +29,7 @@ import java.util.List;
  * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
  * @author Pablo Castells (pablo.castells@uam.es)
  */
-public class CumulativeEPCAtK<U, I> extends CumulativeMetricAtK<U, I>
+public class CumulativeEPCAtK<U, I> extends CumulativeMetricAtK<U, I> implements PopularityMetric<U, I>
 {
     /**
      * Number of users.
@@ -38,17 +40,29 @@ public class CumulativeEPCAtK<U, I> extends CumulativeMetricAtK<U, I>
      */
     private int numItems;
     /**
-     * A map containing the popularity of each item.
+     * The popularity of each item (including the training data).
+     */
+    private PopularityCounter popularities;
+    /**
+     * True if the popularity counter is shared with other metrics, false if this metric updates it.
+     */
+    private boolean shared;
+    /**
+     * The popularity of the items in the training data, if the counter is not shared (null if there is no training data).
      */
-    private final Int2IntMap popularities;
+    private long[] training;
     /**
-     * A map containing the frequency of the items in the top K.
+     * The frequency of the items in the top K.
      */
-    private final Int2IntMap frequencies;
+    private final PopularityCounter frequencies;
     /**
-     * Current number of ratings
+     * The popularity of each item currently accounted in the main sum.
      */
-    private double numRatings;
+    private final PopularityCounter seen;
+    /**
+     * Current number of ratings in the top K.
+     */
+    private int numRatings;
     /**
      * The EPC main sum.
      */
@@ -57,7 +71,9 @@ public class CumulativeEPCAtK<U, I> extends CumulativeMetricAtK<U, I>
     /**
      * Constructor.
      *
-     * @param k number of recommendations to consider.
+     * @param k        number of recommendations to consider.
+     * @param numUsers the number of users.
+     * @param numItems the number of items.
      */
     public CumulativeEPCAtK(int k, int numUsers, int numItems)
     {
@@ -65,11 +81,19 @@ public class CumulativeEPCAtK<U, I> extends CumulativeMetricAtK<U, I>
         this.numUsers = numUsers;
         this.numItems = numItems;
         this.sum = 0.0;
-        this.numRatings = k;
-        this.popularities = new Int2IntOpenHashMap();
-        this.frequencies = new Int2IntOpenHashMap();
-        this.popularities.defaultReturnValue(0);
-        this.frequencies.defaultReturnValue(0);
+        this.numRatings = 0;
+        this.popularities = new PopularityCounter(numItems);
+        this.shared = false;
+        this.training = null;
+        this.frequencies = new PopularityCounter(numItems);
+        this.seen = new PopularityCounter(numItems);
+    }
+
+    @Override
+    public void setPopularity(PopularityCounter popularity)
+    {
+        this.popularities = popularity;
+        this.shared = true;
     }
 
     @Override
@@ -77,63 +101,97 @@ public class CumulativeEPCAtK<U, I> extends CumulativeMetricAtK<U, I>
     {
         this.numUsers = dataset.numUsers();
         this.numItems = dataset.numItems();
-        this.sum = 0.0;
-        this.popularities.clear();
-        this.frequencies.clear();
+        this.training = null;
+        this.frequencies.ensureCapacity(numItems);
+        this.seen.ensureCapacity(numItems);
+        if (!shared)
+        {
+            this.popularities.ensureCapacity(numItems);
+        }
+        this.reset();
     }
 
     @Override
     public void initialize(Dataset<U,I> dataset, List<FastRating> train)
     {
-        this.numUsers = dataset.numUsers();
-        this.numItems = dataset.numItems();
-        this.sum = 0.0;
-        this.popularities.clear();
-        this.frequencies.clear();
-
-
+        this.initialize(dataset);
+        if (!shared)
+        {
+            // Initialize the popularity values, and keep them for resetting the metric.
+            for (FastRating rating : train)
+            {
+                this.popularities.increment(rating.iidx());
+            }
+            this.training = this.popularities.snapshot();
+        }
     }
 
-
     @Override
-    protected void updateAdd(int uidx, int iidx)
+    public void update(int uidx, int iidx, double value)
     {
-        int popularity = this.popularities.getOrDefault(iidx, this.popularities.defaultReturnValue());
-        sum += popularity;
+        if (!shared)
+        {
+            this.popularities.increment(iidx);
+        }
+        super.update(uidx, iidx, value);
+    }
 
-        ((Int2IntOpenHashMap) this.frequencies).addTo(iidx, 1);
-        ((Int2IntOpenHashMap) this.popularities).addTo(iidx, 1);
+    @Override
+    protected void updateAdd(int uidx, int iidx, double value)
+    {
+        this.refresh(iidx);
+        sum += this.seen.get(iidx);
+        this.frequencies.increment(iidx);
+        ++this.numRatings;
     }
 
     @Override
-    protected void updateDel(int uidx, int iidx)
+    protected void updateDel(int uidx, int iidx, double value)
     {
-        // First, we obtain the frequency:
-        int frequency = this.frequencies.getOrDefault(iidx, this.frequencies.defaultReturnValue());
-        int popularity = this.popularities.getOrDefault(iidx, this.popularities.defaultReturnValue());
-        if (frequency < 1)
+        if (this.frequencies.get(iidx) < 1)
         {
             return; // An error ocurred.
         }
 
-        // as we are removing a single item, the popularity
-
-        // Then: update the value of the sum.
-        sum -= frequency * popularity;
-        sum += (frequency - 1) * (popularity + 1);
-        // And update the frequency of the item in the last k elements.
-        this.frequencies.put(iidx, frequency - 1);
-
-        ((Int2IntOpenHashMap) this.frequencies).addTo(iidx, -1);
+        this.refresh(iidx);
+        sum -= this.seen.get(iidx);
+        this.frequencies.decrement(iidx);
+        --this.numRatings;
+    }
 
+    /**
+     * Brings the contribution of an item to the main sum up to date with its current popularity.
+     *
+     * @param iidx the item.
+     */
+    private void refresh(int iidx)
+    {
+        long delta = this.popularities.get(iidx) - this.seen.get(iidx);
+        if (delta != 0)
+        {
+            sum += this.frequencies.get(iidx) * (double) delta;
+            this.seen.add(iidx, delta);
+        }
     }
 
     @Override
     protected void resetMetric()
     {
         this.frequencies.clear();
-        this.popularities.clear();
+        this.seen.clear();
         this.sum = 0.0;
+        this.numRatings = 0;
+        if (!shared)
+        {
+            if (training == null)
+            {
+                this.popularities.clear();
+            }
+            else
+            {
+                this.popularities.restore(training);
+            }
+        }
     }
 
     @Override
@@ -143,6 +201,6 @@ public class CumulativeEPCAtK<U, I> extends CumulativeMetricAtK<U, I>
         {
             return Double.NaN;
         }
-        return 1 - this.sum / (this.numRatings * this.numUsers);
+        return 1 - this.sum / ((double) this.numRatings * this.numUsers);
     }
 }
@@ -10,7 +10,7 @@ package es.uam.eps.ir.knnbandit.metrics.atk;
 
 import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
-import es.uam.eps.ir.knnbandit.utils.statistics.FastGiniIndex;
+import es.uam.eps.ir.knnbandit.utils.statistics.FenwickGiniIndex;
 
 import java.util.List;
 
@@ -28,7 +28,7 @@ public class CumulativeGiniAtK<U, I> extends CumulativeMetricAtK<U, I>
     /**
      * The updateable Gini index.
      */
-    private FastGiniIndex gini;
+    private FenwickGiniIndex gini;
 
     /**
      * Constructor.
@@ -43,13 +43,13 @@ public class CumulativeGiniAtK<U, I> extends CumulativeMetricAtK<U, I>
     @Override
     public void initialize(Dataset<U,I> dataset)
     {
-        this.gini = new FastGiniIndex(dataset.numItems());
+        this.gini = new FenwickGiniIndex(dataset.numItems());
     }
 
     @Override
     public void initialize(Dataset<U,I> dataset, List<FastRating> warmup)
     {
-        this.gini = new FastGiniIndex(dataset.numItems());
+        this.gini = new FenwickGiniIndex(dataset.numItems());
     }
 
     @Override
@@ -59,13 +59,13 @@ public class CumulativeGiniAtK<U, I> extends CumulativeMetricAtK<U, I>
     }
 
     @Override
-    protected void updateAdd(int uidx, int iidx)
+    protected void updateAdd(int uidx, int iidx, double value)
     {
         this.gini.increaseFrequency(iidx);
     }
 
     @Override
-    protected void updateDel(int uidx, int iidx)
+    protected void updateDel(int uidx, int iidx, double value)
     {
         this.gini.decreaseFrequency(iidx);
     }
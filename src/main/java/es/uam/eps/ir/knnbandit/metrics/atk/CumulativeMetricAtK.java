@@ -9,13 +9,12 @@
 package es.uam.eps.ir.knnbandit.metrics.atk;
 
 import es.uam.eps.ir.knnbandit.metrics.CumulativeMetric;
-import es.uam.eps.ir.knnbandit.utils.Pair;
-
-import java.util.ArrayDeque;
-import java.util.Queue;
 
 /**
  * Cumulative metric that analyzes just the last k recommended elements.
+ * <p>
+ * The last k elements are stored in a ring buffer of primitive arrays, which grows (up to
+ * k positions) as needed, so the sliding window does not allocate any object per update.
  *
  * @param <U> Type of the users.
  * @param <I> Type of the items.
@@ -25,14 +24,34 @@ import java.util.Queue;
  */
 public abstract class CumulativeMetricAtK<U, I> implements CumulativeMetric<U, I>
 {
+    /**
+     * Initial capacity of the ring buffer.
+     */
+    private static final int INITIAL_CAPACITY = 16;
     /**
      * Maximum number of recommendations to consider.
      */
     private final int k;
     /**
-     * Last k recommendations.
+     * Users of the last k recommendations.
+     */
+    private int[] uidxs;
+    /**
+     * Items of the last k recommendations.
+     */
+    private int[] iidxs;
+    /**
+     * Values of the last k recommendations.
+     */
+    private double[] values;
+    /**
+     * Position of the oldest recommendation in the ring buffer.
+     */
+    private int head;
+    /**
+     * Number of recommendations in the ring buffer.
      */
-    private final Queue<Pair<Integer>> lastK;
+    private int size;
 
     /**
      * Constructor.
@@ -42,42 +61,87 @@ public abstract class CumulativeMetricAtK<U, I> implements CumulativeMetric<U, I
     public CumulativeMetricAtK(int k)
     {
         this.k = k;
-        this.lastK = new ArrayDeque<>();
+        int capacity = Math.max(Math.min(k, INITIAL_CAPACITY), 1);
+        this.uidxs = new int[capacity];
+        this.iidxs = new int[capacity];
+        this.values = new double[capacity];
+        this.head = 0;
+        this.size = 0;
     }
 
     @Override
     public void update(int uidx, int iidx, double val)
     {
-        if (lastK.size() >= k)
+        if (size >= k)
+        {
+            int oldUidx = uidxs[head];
+            int oldIidx = iidxs[head];
+            double oldVal = values[head];
+            head = (head + 1) % uidxs.length;
+            size--;
+            this.updateDel(oldUidx, oldIidx, oldVal);
+        }
+        else if (size == uidxs.length)
         {
-            Pair<Integer> head = lastK.poll();
-            this.updateDel(head.v1(), head.v2());
+            this.grow();
         }
 
-        lastK.add(new Pair<>(uidx, iidx));
-        this.updateAdd(uidx, iidx);
+        int tail = (head + size) % uidxs.length;
+        uidxs[tail] = uidx;
+        iidxs[tail] = iidx;
+        values[tail] = val;
+        size++;
+        this.updateAdd(uidx, iidx, val);
+    }
+
+    /**
+     * Enlarges the ring buffer (without exceeding k positions), keeping the recommendations in order.
+     */
+    private void grow()
+    {
+        int capacity = uidxs.length;
+        int newCapacity = (int) Math.min(k, 2L * capacity);
+
+        int[] newUidxs = new int[newCapacity];
+        int[] newIidxs = new int[newCapacity];
+        double[] newValues = new double[newCapacity];
+        int first = Math.min(size, capacity - head);
+        System.arraycopy(uidxs, head, newUidxs, 0, first);
+        System.arraycopy(iidxs, head, newIidxs, 0, first);
+        System.arraycopy(values, head, newValues, 0, first);
+        System.arraycopy(uidxs, 0, newUidxs, first, size - first);
+        System.arraycopy(iidxs, 0, newIidxs, first, size - first);
+        System.arraycopy(values, 0, newValues, first, size - first);
+
+        this.uidxs = newUidxs;
+        this.iidxs = newIidxs;
+        this.values = newValues;
+        this.head = 0;
     }
 
     /**
      * Updates the value of the metric for adding the last recommended element.
      *
-     * @param uidx the identifier of the target user.
-     * @param iidx the identifier of the recommended candidate item.
+     * @param uidx  the identifier of the target user.
+     * @param iidx  the identifier of the recommended candidate item.
+     * @param value the value of the recommendation.
      */
-    protected abstract void updateAdd(int uidx, int iidx);
+    protected abstract void updateAdd(int uidx, int iidx, double value);
 
     /**
      * Updates the value of the metric for removing the oldest recommended element.
      *
-     * @param uidx the identifier of the target user.
-     * @param iidx the identifier of the recommended candidate item.
+     * @param uidx  the identifier of the target user.
+     * @param iidx  the identifier of the recommended candidate item.
+     * @param value the value of the recommendation.
      */
-    protected abstract void updateDel(int uidx, int iidx);
+    protected abstract void updateDel(int uidx, int iidx, double value);
 
     @Override
     public void reset()
     {
-        this.lastK.clear();
+        this.head = 0;
+        this.size = 0;
         this.resetMetric();
     }
 
@@ -0,0 +1,82 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.metrics.atk;
+
+import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
+import es.uam.eps.ir.knnbandit.metrics.RemovableCumulativeMetric;
+import es.uam.eps.ir.knnbandit.utils.FastRating;
+
+import java.util.List;
+
+/**
+ * Computes any cumulative metric supporting removals over the last k recommended elements.
+ * Each new recommendation is added to the metric, and the oldest one in the window is removed
+ * from it, so the value is updated in the same time as the underlying metric.
+ *
+ * @param <U> Type of the users.
+ * @param <I> Type of the items.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class WindowedMetricAtK<U, I> extends CumulativeMetricAtK<U, I>
+{
+    /**
+     * The underlying metric.
+     */
+    private final RemovableCumulativeMetric<U, I> metric;
+
+    /**
+     * Constructor.
+     *
+     * @param k      the number of recommendations to consider.
+     * @param metric the underlying metric.
+     */
+    public WindowedMetricAtK(int k, RemovableCumulativeMetric<U, I> metric)
+    {
+        super(k);
+        this.metric = metric;
+    }
+
+    @Override
+    public void initialize(Dataset<U, I> dataset)
+    {
+        this.metric.initialize(dataset);
+    }
+
+    @Override
+    public void initialize(Dataset<U, I> dataset, List<FastRating> train)
+    {
+        this.metric.initialize(dataset, train);
+    }
+
+    @Override
+    public double compute()
+    {
+        return this.metric.compute();
+    }
+
+    @Override
+    protected void updateAdd(int uidx, int iidx, double value)
+    {
+        this.metric.update(uidx, iidx, value);
+    }
+
+    @Override
+    protected void updateDel(int uidx, int iidx, double value)
+    {
+        this.metric.remove(uidx, iidx, value);
+    }
+
+    @Override
+    protected void resetMetric()
+    {
+        this.metric.reset();
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.metrics.distance;
+
+import es.uam.eps.ir.knnbandit.utils.FastRating;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.novdiv.distance.ItemDistanceModel;
+import it.unimi.dsi.fastutil.HashCommon;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Item distance provider which stores the distances it computes. Distances are assumed to be static
+ * (i.e. they depend on external properties of the items, such as features), so they can be reused
+ * along the whole execution.
+ * <p>
+ * Distances are stored in a bounded cache, keyed on the (ordered) pair of item indexes. The cache is
+ * direct-mapped: each pair has a single slot, and, when two pairs collide, the last one replaces the
+ * first. The cache is divided into segments, which are locked independently, so it can be shared by
+ * several threads (and by several metrics). Its memory is allocated on initialization, and it never
+ * exceeds the number of pairs of items. Optionally, the distances between the most popular items in the
+ * training data are precomputed in a dense table.
+ * <p>
+ * The state of the provider is published as an immutable snapshot, so initializing it while other
+ * threads read distances is safe. As distances are static, initializing it again over the same item
+ * index keeps the cached distances.
+ *
+ * @param <I> the type of the items.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class CachedItemDistanceProvider<I> implements ItemDistanceProvider<I>
+{
+    /**
+     * Default maximum number of distances stored in the cache.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    /**
+     * Number of segments of the cache.
+     */
+    private static final int NUM_SEGMENTS = 64;
+    /**
+     * Key of the empty slots.
+     */
+    private static final long EMPTY = -1L;
+
+    /**
+     * Model for computing the distance between items.
+     */
+    private final ItemDistanceModel<I> distModel;
+    /**
+     * Maximum number of distances stored in the cache.
+     */
+    private final int capacity;
+    /**
+     * Number of popular items whose distances are precomputed.
+     */
+    private final int numPopular;
+    /**
+     * The current state of the provider (null if it has not been initialized).
+     */
+    private volatile Snapshot<I> snapshot;
+
+    /**
+     * Constructor. Uses the default capacity, and does not precompute distances.
+     *
+     * @param distModel model for computing the distance between items.
+     */
+    public CachedItemDistanceProvider(ItemDistanceModel<I> distModel)
+    {
+        this(distModel, DEFAULT_CAPACITY, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param distModel  model for computing the distance between items.
+     * @param capacity   maximum number of distances stored in the cache.
+     * @param numPopular number of popular items whose distances are precomputed (0 for none).
+     */
+    public CachedItemDistanceProvider(ItemDistanceModel<I> distModel, int capacity, int numPopular)
+    {
+        this.distModel = distModel;
+        this.capacity = Math.max(capacity, 1);
+        this.numPopular = Math.max(numPopular, 0);
+        this.snapshot = null;
+    }
+
+    @Override
+    public synchronized void initialize(FastItemIndex<I> index, List<FastRating> train)
+    {
+        int numItems = index.numItems();
+
+        // The cached distances remain valid as long as the items do not change.
+        Snapshot<I> previous = this.snapshot;
+        Segment[] segments = (previous != null && previous.index == index) ? previous.segments : this.createSegments(numItems);
+
+        int[] popularPos = new int[numItems];
+        Arrays.fill(popularPos, -1);
+
+        if (numPopular == 0 || train == null || train.isEmpty())
+        {
+            this.snapshot = new Snapshot<>(index, segments, popularPos, null, 0);
+            return;
+        }
+
+        // Find the most popular items in the training data.
+        int[] pops = new int[numItems];
+        train.forEach(rating -> pops[rating.iidx()]++);
+        int[] popular = IntStream.range(0, numItems).filter(iidx -> pops[iidx] > 0).boxed()
+                .sorted((x, y) -> pops[x] != pops[y] ? Integer.compare(pops[y], pops[x]) : Integer.compare(x, y))
+                .limit(numPopular).mapToInt(x -> x).toArray();
+
+        int n = popular.length;
+        for (int pos = 0; pos < n; ++pos)
+        {
+            popularPos[popular[pos]] = pos;
+        }
+
+        // And precompute the distances between them.
+        double[] dists = new double[n * n];
+        IntStream.range(0, n).parallel().forEach(pos ->
+        {
+            ToDoubleFunction<I> dist = distModel.dist(index.iidx2item(popular[pos]));
+            for (int other = 0; other < n; ++other)
+            {
+                dists[pos * n + other] = dist.applyAsDouble(index.iidx2item(popular[other]));
+            }
+        });
+
+        this.snapshot = new Snapshot<>(index, segments, popularPos, dists, n);
+    }
+
+    @Override
+    public double dist(int iidx, int jidx)
+    {
+        Snapshot<I> snap = this.snapshot;
+
+        // First, look in the precomputed table.
+        if (snap.numPrecomputed > 0)
+        {
+            int iPos = snap.popularPos[iidx];
+            int jPos = snap.popularPos[jidx];
+            if (iPos >= 0 && jPos >= 0)
+            {
+                return snap.popularDists[iPos * snap.numPrecomputed + jPos];
+            }
+        }
+
+        // Then, look in the cache.
+        long key = ((long) iidx << 32) | (jidx & 0xFFFFFFFFL);
+        long hash = HashCommon.mix(key);
+        Segment segment = snap.segments[(int) (hash & (NUM_SEGMENTS - 1))];
+        int slot = (int) (hash >>> 32) & segment.mask;
+
+        synchronized (segment)
+        {
+            if (segment.keys[slot] == key)
+            {
+                return segment.values[slot];
+            }
+        }
+
+        // Otherwise, compute the distance and store it.
+        double value = distModel.dist(snap.index.iidx2item(iidx), snap.index.iidx2item(jidx));
+        synchronized (segment)
+        {
+            segment.keys[slot] = key;
+            segment.values[slot] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Creates the segments of the cache. The cache stores, at most, one slot for each pair of items.
+     *
+     * @param numItems the number of items.
+     * @return the segments.
+     */
+    private Segment[] createSegments(int numItems)
+    {
+        long size = Math.min(capacity, Math.max((long) numItems * numItems, 1L));
+        int segmentCapacity = HashCommon.nextPowerOfTwo((int) ((size + NUM_SEGMENTS - 1) / NUM_SEGMENTS));
+
+        Segment[] segments = new Segment[NUM_SEGMENTS];
+        for (int s = 0; s < NUM_SEGMENTS; ++s)
+        {
+            segments[s] = new Segment(segmentCapacity);
+        }
+        return segments;
+    }
+
+    /**
+     * Immutable state of the provider, for a given item index.
+     *
+     * @param <I> the type of the items.
+     */
+    private static class Snapshot<I>
+    {
+        /**
+         * Item index.
+         */
+        private final FastItemIndex<I> index;
+        /**
+         * Segments of the cache.
+         */
+        private final Segment[] segments;
+        /**
+         * Position of each item in the precomputed table (-1 if it is not there).
+         */
+        private final int[] popularPos;
+        /**
+         * Precomputed distances between the popular items, stored by rows.
+         */
+        private final double[] popularDists;
+        /**
+         * Number of items in the precomputed table.
+         */
+        private final int numPrecomputed;
+
+        /**
+         * Constructor.
+         *
+         * @param index          item index.
+         * @param segments       segments of the cache.
+         * @param popularPos     position of each item in the precomputed table.
+         * @param popularDists   precomputed distances between the popular items.
+         * @param numPrecomputed number of items in the precomputed table.
+         */
+        Snapshot(FastItemIndex<I> index, Segment[] segments, int[] popularPos, double[] popularDists, int numPrecomputed)
+        {
+            this.index = index;
+            this.segments = segments;
+            this.popularPos = popularPos;
+            this.popularDists = popularDists;
+            this.numPrecomputed = numPrecomputed;
+        }
+    }
+
+    /**
+     * Segment of the cache.
+     */
+    private static class Segment
+    {
+        /**
+         * Keys (pairs of items) stored in each slot.
+         */
+        private final long[] keys;
+        /**
+         * Distances stored in each slot.
+         */
+        private final double[] values;
+        /**
+         * Mask for finding the slot of a key.
+         */
+        private final int mask;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity the number of slots (a power of two).
+         */
+        Segment(int capacity)
+        {
+            this.keys = new long[capacity];
+            this.values = new double[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(keys, EMPTY);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.metrics.distance;
+
+import es.uam.eps.ir.knnbandit.utils.FastRating;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+
+import java.util.List;
+
+/**
+ * Provides the distance between pairs of items, identified by their indexes. It is used by
+ * diversity metrics, which need the distances between the item they receive and the items
+ * they have previously seen.
+ *
+ * @param <I> the type of the items.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public interface ItemDistanceProvider<I>
+{
+    /**
+     * Initializes the provider.
+     *
+     * @param index the item index.
+     * @param train the training data (it might be empty).
+     */
+    void initialize(FastItemIndex<I> index, List<FastRating> train);
+
+    /**
+     * Obtains the distance between two items.
+     *
+     * @param iidx the identifier of the first item.
+     * @param jidx the identifier of the second item.
+     * @return the distance between the items.
+     */
+    double dist(int iidx, int jidx);
+}
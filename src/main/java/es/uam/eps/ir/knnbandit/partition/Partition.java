@@ -10,7 +10,6 @@ package es.uam.eps.ir.knnbandit.partition;
 
 import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
 import es.uam.eps.ir.knnbandit.utils.Pair;
-import org.jooq.lambda.tuple.Tuple2;
 
 import java.util.List;
 
@@ -29,7 +28,10 @@ public interface Partition
      * @param numParts     the number of parts.
      * @return a list containing the split points.
      */
-    List<Integer> split(Dataset<?,?> dataset, List<Pair<Integer>> trainingData, int numParts);
+    default List<Integer> split(Dataset<?,?> dataset, List<Pair<Integer>> trainingData, int numParts)
+    {
+        return this.split(new PartitionIndex(dataset, trainingData), numParts);
+    }
 
     /**
      * Given a list of tuples, divides it in two parts given a percentage.
@@ -38,5 +40,26 @@ public interface Partition
      * @param percentage   the percentage of training.
      * @return the split point.
      */
-    int split(Dataset<?,?> dataset, List<Pair<Integer>> trainingData, double percentage);
+    default int split(Dataset<?,?> dataset, List<Pair<Integer>> trainingData, double percentage)
+    {
+        return this.split(new PartitionIndex(dataset, trainingData), percentage);
+    }
+
+    /**
+     * Given an index over a list of tuples, divides the list in a given number of parts.
+     *
+     * @param index    the index over the training data.
+     * @param numParts the number of parts.
+     * @return a list containing the split points.
+     */
+    List<Integer> split(PartitionIndex index, int numParts);
+
+    /**
+     * Given an index over a list of tuples, divides the list in two parts given a percentage.
+     *
+     * @param index      the index over the training data.
+     * @param percentage the percentage of training.
+     * @return the split point.
+     */
+    int split(PartitionIndex index, double percentage);
 }
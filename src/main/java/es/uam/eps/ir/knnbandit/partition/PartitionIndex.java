@@ -0,0 +1,190 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.partition;
+
+import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
+import es.uam.eps.ir.knnbandit.utils.Pair;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Index over a list of training pairs, which allows finding split points of the list without
+ * traversing it again. For each prefix of the list, it stores the number of pairs which are rated
+ * in the dataset, and the number of pairs which are relevant. These counts are computed in a single
+ * pass over the training data, the first time they are needed, and they are shared with the indexes
+ * over prefixes of the same data.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class PartitionIndex
+{
+    /**
+     * The dataset.
+     */
+    private final Dataset<?, ?> dataset;
+    /**
+     * The training data.
+     */
+    private final List<Pair<Integer>> trainingData;
+    /**
+     * Number of training pairs covered by the index.
+     */
+    private final int size;
+    /**
+     * Prefix counts, shared by all the indexes over the same training data. The first array
+     * contains the number of rated pairs in each prefix of the training data, and the second,
+     * the number of relevant pairs. Position j contains the count for the first j pairs.
+     */
+    private final int[][] counts;
+
+    /**
+     * Constructor.
+     *
+     * @param dataset      the dataset.
+     * @param trainingData the training data.
+     */
+    public PartitionIndex(Dataset<?, ?> dataset, List<Pair<Integer>> trainingData)
+    {
+        this(dataset, trainingData, trainingData.size(), new int[2][]);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dataset      the dataset.
+     * @param trainingData the training data.
+     * @param size         the number of training pairs covered by the index.
+     * @param counts       the (shared) prefix counts.
+     */
+    private PartitionIndex(Dataset<?, ?> dataset, List<Pair<Integer>> trainingData, int size, int[][] counts)
+    {
+        this.dataset = dataset;
+        this.trainingData = trainingData;
+        this.size = size;
+        this.counts = counts;
+    }
+
+    /**
+     * Obtains an index over a prefix of the training data. Both indexes share the prefix counts.
+     *
+     * @param end the length of the prefix.
+     * @return the index over the prefix.
+     */
+    public PartitionIndex prefix(int end)
+    {
+        return new PartitionIndex(dataset, trainingData, Math.min(end, size), counts);
+    }
+
+    /**
+     * Computes the prefix counts, if they have not been computed yet.
+     */
+    private void compute()
+    {
+        synchronized (counts)
+        {
+            if (counts[1] != null)
+            {
+                return;
+            }
+
+            int total = trainingData.size();
+            int[] rated = new int[total + 1];
+            int[] rel = new int[total + 1];
+            int j = 0;
+            for (Pair<Integer> tuple : trainingData)
+            {
+                Optional<Double> optional = dataset.getPreference(tuple.v1(), tuple.v2());
+                rated[j + 1] = rated[j] + (optional.isPresent() ? 1 : 0);
+                rel[j + 1] = rel[j] + ((optional.isPresent() && dataset.getRelevanceChecker().test(optional.get())) ? 1 : 0);
+                ++j;
+            }
+
+            counts[0] = rated;
+            counts[1] = rel;
+        }
+    }
+
+    /**
+     * Obtains the number of training pairs.
+     *
+     * @return the number of training pairs.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Obtains the number of pairs rated in the dataset among the first pairs of the training data.
+     *
+     * @param end the number of pairs to consider.
+     * @return the number of rated pairs.
+     */
+    public int numRated(int end)
+    {
+        this.compute();
+        return counts[0][end];
+    }
+
+    /**
+     * Obtains the number of relevant pairs among the first pairs of the training data.
+     *
+     * @param end the number of pairs to consider.
+     * @return the number of relevant pairs.
+     */
+    public int numRel(int end)
+    {
+        this.compute();
+        return counts[1][end];
+    }
+
+    /**
+     * Obtains the total number of relevant pairs in the training data.
+     *
+     * @return the number of relevant pairs.
+     */
+    public int numRel()
+    {
+        return this.numRel(this.size());
+    }
+
+    /**
+     * Finds the shortest prefix of the training data, longer than a given one, which contains an
+     * exact number of relevant pairs.
+     *
+     * @param from   the length of the prefix to exceed.
+     * @param numRel the number of relevant pairs.
+     * @return the length of the prefix if it exists, -1 otherwise.
+     */
+    public int findRel(int from, int numRel)
+    {
+        this.compute();
+
+        // Binary search for the first position after from with, at least, numRel relevant pairs.
+        int[] relPrefix = counts[1];
+        int low = from + 1;
+        int high = size + 1;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (relPrefix[mid] < numRel)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+
+        return (low <= size && relPrefix[low] == numRel) ? low : -1;
+    }
+}
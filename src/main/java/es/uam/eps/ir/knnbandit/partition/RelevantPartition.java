@@ -8,16 +8,8 @@
  */
 package es.uam.eps.ir.knnbandit.partition;
 
-import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
-import es.uam.eps.ir.knnbandit.utils.Pair;
-import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
-import org.jooq.lambda.tuple.Tuple2;
-import org.ranksys.fast.preference.FastPointWisePreferenceData;
-
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-import java.util.function.DoublePredicate;
 
 /**
  * Partitions the data acording to the relevant ratings.
@@ -27,72 +19,40 @@ import java.util.function.DoublePredicate;
 public class RelevantPartition implements Partition
 {
     @Override
-    public List<Integer> split(Dataset<?,?> dataset, List<Pair<Integer>> trainingData, int numParts)
+    public List<Integer> split(PartitionIndex index, int numParts)
     {
         List<Integer> splitPoints = new ArrayList<>();
 
         // Count the total number of relevant pairs
-        int numRel = trainingData.stream().mapToInt(tuple ->
-        {
-            Optional<Double> optional = dataset.getPreference(tuple.v1(), tuple.v2());
-            return (optional.isPresent() && dataset.getRelevanceChecker().test(optional.get())) ? 1 : 0;
-        }).sum();
+        int numRel = index.numRel();
 
-        int nextPoint = numRel / numParts;
-        int counter = 1;
-        int i = 0;
-        int j = 0;
-        for (Pair<Integer> tuple : trainingData)
+        // Each split point is the first position after the previous one which reaches the
+        // corresponding number of relevant pairs.
+        int last = 0;
+        for (int counter = 1; counter < numParts; ++counter)
         {
-            Optional<Double> optional = dataset.getPreference(tuple.v1(), tuple.v2());
-            if (optional.isPresent() && dataset.getRelevanceChecker().test(optional.get()))
+            int point = index.findRel(last, numRel * counter / numParts);
+            if (point < 0)
             {
-                i++;
-            }
-
-            ++j;
-            if (i == nextPoint && counter < numParts)
-            {
-                splitPoints.add(j);
-                counter++;
-                nextPoint = numRel * (counter) / numParts;
+                break;
             }
+            splitPoints.add(point);
+            last = point;
         }
-        splitPoints.add(j);
+        splitPoints.add(index.size());
         return splitPoints;
     }
 
     @Override
-    public int split(Dataset<?,?> dataset, List<Pair<Integer>> trainingData, double percentage)
+    public int split(PartitionIndex index, double percentage)
     {
-        int size = trainingData.size();
-
         // Count the total number of relevant pairs
-        int numRel = trainingData.stream().mapToInt(tuple ->
-        {
-            Optional<Double> optional = dataset.getPreference(tuple.v1(), tuple.v2());
-            return (optional.isPresent() && dataset.getRelevanceChecker().test(optional.get())) ? 1 : 0;
-        }).sum();
+        int numRel = index.numRel();
 
         Double point = percentage * numRel;
         int splitPoint = point.intValue();
 
-        int count = 0;
-        int j = 0;
-        for (Pair<Integer> tuple : trainingData)
-        {
-            Optional<Double> optional = dataset.getPreference(tuple.v1(), tuple.v2());
-            if (optional.isPresent() && dataset.getRelevanceChecker().test(optional.get()))
-            {
-                count++;
-            }
-            ++j;
-            if (count == splitPoint)
-            {
-                return j;
-            }
-        }
-
-        return point.intValue();
+        int j = index.findRel(0, splitPoint);
+        return (j >= 0) ? j : splitPoint;
     }
 }
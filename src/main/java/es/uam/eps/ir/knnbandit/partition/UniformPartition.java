@@ -8,10 +8,6 @@
  */
 package es.uam.eps.ir.knnbandit.partition;
 
-import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
-import es.uam.eps.ir.knnbandit.utils.Pair;
-import org.jooq.lambda.tuple.Tuple2;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -24,10 +20,10 @@ import java.util.List;
 public class UniformPartition implements Partition
 {
     @Override
-    public List<Integer> split(Dataset<?,?> dataset, List<Pair<Integer>> trainingData, int numParts)
+    public List<Integer> split(PartitionIndex index, int numParts)
     {
         List<Integer> splitPoints = new ArrayList<>();
-        int size = trainingData.size();
+        int size = index.size();
         for (int part = 1; part <= numParts; ++part)
         {
             int point = (size * part) / numParts;
@@ -38,9 +34,9 @@ public class UniformPartition implements Partition
     }
 
     @Override
-    public int split(Dataset<?,?> dataset, List<Pair<Integer>> trainingData, double percentage)
+    public int split(PartitionIndex index, double percentage)
     {
-        int size = trainingData.size();
+        int size = index.size();
         Double point = percentage * size;
         return point.intValue();
     }
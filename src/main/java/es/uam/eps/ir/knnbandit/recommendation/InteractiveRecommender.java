@@ -11,6 +11,7 @@ package es.uam.eps.ir.knnbandit.recommendation;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
+import es.uam.eps.ir.knnbandit.warmup.SharedWarmup;
 
 import it.unimi.dsi.fastutil.ints.IntList;
 import org.jooq.lambda.tuple.Tuple3;
@@ -97,6 +98,16 @@ public abstract class InteractiveRecommender<U, I>
      */
     public abstract void init(Stream<FastRating> values);
 
+    /**
+     * Initializes the specific variables of a method, using some information as training data,
+     * which can be shared with other recommenders. By default, the training data is just read.
+     * @param warmup the shared training data.
+     */
+    public void init(SharedWarmup warmup)
+    {
+        this.init(warmup.getRatings().stream());
+    }
+
     /**
      * Obtains the set of identifiers of the users.
      *
@@ -196,6 +207,22 @@ public abstract class InteractiveRecommender<U, I>
         train.forEach(tuple -> this.update(tuple.v1, tuple.v2, tuple.v3));
     }
 
+    /**
+     * Updates the method with a batch of ratings, received in order. It is equivalent to updating
+     * the method with each rating, one after the other, but recommenders whose models can be
+     * rebuilt at once (or whose updates can be aggregated) override it to process the batch in a
+     * single step. It is used for recovering the state of previous executions.
+     *
+     * @param ratings the ratings, in the order in which they were received.
+     */
+    public void bulkUpdate(List<FastRating> ratings)
+    {
+        for (FastRating rating : ratings)
+        {
+            this.update(rating.uidx(), rating.iidx(), rating.value());
+        }
+    }
+
     /**
      * Checks if the recommender uses all the received information, or only known data.
      *
@@ -42,4 +42,35 @@ public interface InteractiveRecommenderSupplier<U,I>
      * @return the name of the algorithm.
      */
     String getName();
+
+    /**
+     * Obtains a supplier which builds the same algorithms as this one, but always uses the same
+     * random number generator seed, regardless of the seed it receives.
+     * @param rngSeed the random number generator seed for the algorithms.
+     * @return the new supplier.
+     */
+    default InteractiveRecommenderSupplier<U,I> withSeed(int rngSeed)
+    {
+        InteractiveRecommenderSupplier<U,I> supplier = this;
+        return new InteractiveRecommenderSupplier<U,I>()
+        {
+            @Override
+            public InteractiveRecommender<U, I> apply(FastUpdateableUserIndex<U> userIndex, FastUpdateableItemIndex<I> itemIndex, int seed)
+            {
+                return supplier.apply(userIndex, itemIndex, rngSeed);
+            }
+
+            @Override
+            public InteractiveRecommender<U, I> apply(FastUpdateableUserIndex<U> userIndex, FastUpdateableItemIndex<I> itemIndex)
+            {
+                return supplier.apply(userIndex, itemIndex, rngSeed);
+            }
+
+            @Override
+            public String getName()
+            {
+                return supplier.getName();
+            }
+        };
+    }
 }
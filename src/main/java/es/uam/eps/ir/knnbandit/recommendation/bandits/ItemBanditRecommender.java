@@ -10,6 +10,7 @@
 package es.uam.eps.ir.knnbandit.recommendation.bandits;
 
 import es.uam.eps.ir.knnbandit.Constants;
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
@@ -17,9 +18,13 @@ import es.uam.eps.ir.knnbandit.recommendation.bandits.functions.ValueFunction;
 import es.uam.eps.ir.knnbandit.recommendation.bandits.item.ItemBandit;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 import org.jooq.lambda.tuple.Tuple3;
 
+import java.util.List;
 import java.util.stream.Stream;
 
 /**
@@ -57,12 +62,30 @@ public class ItemBanditRecommender<U, I> extends InteractiveRecommender<U, I>
         this.valFunc = valFunc;
     }
 
+    /**
+     * Constructor.
+     *
+     * @param uIndex        User index
+     * @param iIndex        Item index.
+     * @param ignoreNotRated True if we want to ignore missing ratings when updating, false if we want to count them as failures.
+     * @param rngSeed       Random number generator seed.
+     * @param itemBandit    An item bandit.
+     * @param valFunc       A value function of the reward.
+     */
+    public ItemBanditRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, boolean ignoreNotRated, int rngSeed, ItemBandit<U, I> itemBandit, ValueFunction valFunc)
+    {
+        super(uIndex, iIndex, ignoreNotRated, rngSeed);
+        this.itemBandit = itemBandit;
+        this.valFunc = valFunc;
+    }
+
     @Override
     public void init()
     {
         super.init();
 
         this.itemBandit.reset();
+        this.itemBandit.setRngSeed(RunSeeds.derive(rngSeed, "untie"));
     }
 
     @Override
@@ -85,10 +108,31 @@ public class ItemBanditRecommender<U, I> extends InteractiveRecommender<U, I>
         }
     }
 
+    @Override
+    public void bulkUpdate(List<FastRating> ratings)
+    {
+        IntList iidxs = new IntArrayList();
+        DoubleList values = new DoubleArrayList();
+        for (FastRating rating : ratings)
+        {
+            if(!Double.isNaN(rating.value()))
+            {
+                iidxs.add(rating.iidx());
+                values.add(rating.value());
+            }
+            else if(!this.ignoreNotRated)
+            {
+                iidxs.add(rating.iidx());
+                values.add(Constants.NOTRATEDNOTIGNORED);
+            }
+        }
+        this.itemBandit.update(iidxs, values);
+    }
+
     @Override
     public int next(int uidx, IntList availability)
     {
-        return this.itemBandit.next(uidx, availability.toIntArray(), valFunc);
+        return this.itemBandit.next(uidx, availability, valFunc);
     }
 
     @Override
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.recommendation.bandits.item;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples items from a categorical distribution, with probabilities proportional to a set of weights,
+ * restricted to the items which are available. The weights are stored in a Fenwick (binary indexed) tree,
+ * so updating the weight of an item takes logarithmic time, and an item can be drawn from the distribution
+ * over the whole collection in logarithmic time, too.
+ * <p>
+ * Availability is handled by masking: the available items are marked, and an item is drawn from the whole
+ * collection until an available one is found. Conditioned to the item being available, it follows the same
+ * distribution as the one obtained by a linear scan over the available items. When the available items only
+ * accumulate a small fraction of the total weight (or too many draws are rejected), the sampler falls back to
+ * the linear scan, so the output distribution is always the same.
+ * <p>
+ * Negative or NaN weights are considered as zero.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+class CategoricalSampler
+{
+    /**
+     * Minimum fraction of the total weight that the available items must accumulate for using the tree.
+     */
+    private static final double MIN_AVAILABLE_FRACTION = 0.25;
+    /**
+     * Maximum number of rejected draws before falling back to a linear scan.
+     */
+    private static final int MAX_REJECTIONS = 32;
+    /**
+     * The number of items.
+     */
+    private final int numItems;
+    /**
+     * The weight of each item.
+     */
+    private final double[] weights;
+    /**
+     * Fenwick tree over the weights (indexed from 1).
+     */
+    private final double[] tree;
+    /**
+     * The highest power of two which does not exceed the number of items.
+     */
+    private final int highBit;
+    /**
+     * For each item, the stamp of the last selection where it was available.
+     */
+    private final int[] marks;
+    /**
+     * The stamp of the current selection.
+     */
+    private int stamp;
+
+    /**
+     * Constructor.
+     *
+     * @param weights the initial weights of the items.
+     */
+    CategoricalSampler(double[] weights)
+    {
+        this.numItems = weights.length;
+        this.weights = new double[numItems];
+        this.tree = new double[numItems + 1];
+        this.marks = new int[numItems];
+        this.stamp = 0;
+        this.highBit = numItems == 0 ? 0 : Integer.highestOneBit(numItems);
+        this.reset(weights);
+    }
+
+    /**
+     * Sets the weights of all the items, and rebuilds the tree in linear time.
+     *
+     * @param weights the weights of the items.
+     */
+    void reset(double[] weights)
+    {
+        Arrays.fill(tree, 0.0);
+        for (int i = 0; i < numItems; ++i)
+        {
+            this.weights[i] = sanitize(weights[i]);
+            tree[i + 1] += this.weights[i];
+            int parent = (i + 1) + ((i + 1) & (-(i + 1)));
+            if (parent <= numItems)
+            {
+                tree[parent] += tree[i + 1];
+            }
+        }
+    }
+
+    /**
+     * Sets the weight of an item.
+     *
+     * @param iidx   the item.
+     * @param weight the new weight.
+     */
+    void set(int iidx, double weight)
+    {
+        double delta = sanitize(weight) - weights[iidx];
+        weights[iidx] += delta;
+        for (int i = iidx + 1; i <= numItems; i += i & (-i))
+        {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Samples an available item.
+     *
+     * @param available the available items.
+     * @param rng       the random number generator.
+     * @return the selected item. If all the available items have zero weight, the last one.
+     */
+    int sample(IntList available, Random rng)
+    {
+        double availableSum = this.mark(available);
+        return this.draw(available, availableSum, rng);
+    }
+
+    /**
+     * Samples (without replacement) several available items.
+     *
+     * @param available the available items.
+     * @param k         the number of items to select.
+     * @param rng       the random number generator.
+     * @return the selected items, in order of selection.
+     */
+    IntList sample(IntList available, int k, Random rng)
+    {
+        IntList list = new IntArrayList();
+        double availableSum = this.mark(available);
+        int num = Math.min(available.size(), k);
+        for (int i = 0; i < num; ++i)
+        {
+            int iidx = this.draw(available, availableSum, rng);
+            if (iidx < 0)
+            {
+                break;
+            }
+            list.add(iidx);
+            marks[iidx] = 0;
+            availableSum -= weights[iidx];
+        }
+        return list;
+    }
+
+    /**
+     * Marks the available items with a new stamp.
+     *
+     * @param available the available items.
+     * @return the sum of the weights of the available items.
+     */
+    private double mark(IntList available)
+    {
+        if (++stamp == Integer.MAX_VALUE)
+        {
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+
+        double availableSum = 0.0;
+        for (int j = 0, size = available.size(); j < size; ++j)
+        {
+            int iidx = available.getInt(j);
+            if (marks[iidx] != stamp)
+            {
+                marks[iidx] = stamp;
+                availableSum += weights[iidx];
+            }
+        }
+        return availableSum;
+    }
+
+    /**
+     * Draws one of the marked items.
+     *
+     * @param available    the available items.
+     * @param availableSum the sum of the weights of the marked items.
+     * @param rng          the random number generator.
+     * @return the selected item.
+     */
+    private int draw(IntList available, double availableSum, Random rng)
+    {
+        double total = this.prefix(numItems);
+        if (availableSum > 0.0 && availableSum >= MIN_AVAILABLE_FRACTION * total)
+        {
+            for (int r = 0; r < MAX_REJECTIONS; ++r)
+            {
+                int iidx = this.find(rng.nextDouble() * total);
+                if (iidx < numItems && marks[iidx] == stamp && weights[iidx] > 0.0)
+                {
+                    return iidx;
+                }
+            }
+        }
+
+        return this.scan(available, availableSum, rng);
+    }
+
+    /**
+     * Draws one of the marked items by a linear scan over the available ones.
+     *
+     * @param available    the available items.
+     * @param availableSum the sum of the weights of the marked items.
+     * @param rng          the random number generator.
+     * @return the selected item. If all the marked items have zero weight, the last one.
+     */
+    private int scan(IntList available, double availableSum, Random rng)
+    {
+        double val = rng.nextDouble() * availableSum;
+        double current = 0.0;
+        int last = -1;
+        for (int j = 0, size = available.size(); j < size; ++j)
+        {
+            int iidx = available.getInt(j);
+            if (marks[iidx] == stamp)
+            {
+                current += weights[iidx];
+                last = iidx;
+                if (availableSum > 0.0 && weights[iidx] > 0.0 && current >= val)
+                {
+                    return iidx;
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Finds the first item such that the sum of the weights up to it (included) exceeds a value.
+     *
+     * @param value the value.
+     * @return the item, or the number of items if there is none.
+     */
+    private int find(double value)
+    {
+        int pos = 0;
+        for (int step = highBit; step > 0; step >>= 1)
+        {
+            int next = pos + step;
+            if (next <= numItems && tree[next] <= value)
+            {
+                pos = next;
+                value -= tree[next];
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Obtains the sum of the weights of the first items.
+     *
+     * @param n the number of items.
+     * @return the sum of their weights.
+     */
+    private double prefix(int n)
+    {
+        double sum = 0.0;
+        for (int i = n; i > 0; i -= i & (-i))
+        {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Transforms a weight into a valid one.
+     *
+     * @param weight the weight.
+     * @return the weight if it is positive, zero otherwise.
+     */
+    private static double sanitize(double weight)
+    {
+        return weight > 0.0 ? weight : 0.0;
+    }
+}
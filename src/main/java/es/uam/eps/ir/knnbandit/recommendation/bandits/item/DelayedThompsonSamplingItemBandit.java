@@ -9,17 +9,22 @@
  */
 package es.uam.eps.ir.knnbandit.recommendation.bandits.item;
 
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.recommendation.bandits.functions.ValueFunction;
 import es.uam.eps.ir.knnbandit.stats.BetaDistribution;
 import it.unimi.dsi.fastutil.PriorityQueue;
-import it.unimi.dsi.fastutil.ints.*;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
 import it.unimi.dsi.fastutil.objects.ObjectHeapPriorityQueue;
 import org.ranksys.core.util.tuples.Tuple2id;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Random;
 
 /**
- * Item bandit using the Thompson sampling algorithm, delaying the updates
+ * Item bandit using the Thompson sampling algorithm, delaying the updates. The sampled value of
+ * an item is kept for a fixed number of plays before sampling it again (or until the item is updated).
  *
  * @param <U> User type.
  * @param <I> Item type.
@@ -29,18 +34,25 @@ import java.util.Comparator;
 public class DelayedThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
 {
     /**
-     * A Beta distribution for each possible item.
+     * The alpha parameter of the Beta distribution of each item.
      */
-    private final BetaDistribution[] betas;
-
+    private final double[] alphas;
+    /**
+     * The beta parameter of the Beta distribution of each item.
+     */
+    private final double[] betas;
     /**
-     * The time that has passed since the items were last updated.
+     * The number of plays left before sampling a new value for each item.
      */
-    private final Int2IntMap delays;
+    private final int[] delays;
     /**
-     * Current estimated value for each item.
+     * Current estimated value for each item. It is NaN if the value has not been sampled since the last update.
      */
-    private final Int2DoubleMap currentScores;
+    private final double[] currentScores;
+    /**
+     * Random number generator for sampling the values of the items.
+     */
+    private final Random rng;
     /**
      * Number of plays before recomputing the value of an item.
      */
@@ -74,22 +86,7 @@ public class DelayedThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
      */
     public DelayedThompsonSamplingItemBandit(int numItems, int delay)
     {
-        this.numItems = numItems;
-        this.betas = new BetaDistribution[numItems];
-        this.delays = new Int2IntOpenHashMap();
-        this.currentScores = new Int2DoubleOpenHashMap();
-        this.delay = delay;
-        for (int i = 0; i < numItems; ++i)
-        {
-            betas[i] = new BetaDistribution(1.0, 1.0);
-            this.delays.put(i, delay);
-            this.currentScores.put(i, betas[i].sample());
-        }
-
-        this.initialAlpha = 1.0;
-        this.initialBeta = 1.0;
-        this.initialAlphas = null;
-        this.initialBetas = null;
+        this(numItems, 1.0, 1.0, delay);
     }
 
     /**
@@ -103,21 +100,18 @@ public class DelayedThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
     public DelayedThompsonSamplingItemBandit(int numItems, double initialAlpha, double initialBeta, int delay)
     {
         this.numItems = numItems;
-        this.betas = new BetaDistribution[numItems];
-        this.delays = new Int2IntOpenHashMap();
-        this.currentScores = new Int2DoubleOpenHashMap();
+        this.alphas = new double[numItems];
+        this.betas = new double[numItems];
+        this.delays = new int[numItems];
+        this.currentScores = new double[numItems];
+        this.rng = new Random(0);
         this.delay = delay;
-        for (int i = 0; i < numItems; ++i)
-        {
-            betas[i] = new BetaDistribution(initialAlpha, initialBeta);
-            this.delays.put(i, delay);
-            this.currentScores.put(i, betas[i].sample());
-        }
 
         this.initialAlpha = initialAlpha;
         this.initialBeta = initialBeta;
         this.initialAlphas = null;
         this.initialBetas = null;
+        this.reset();
     }
 
     /**
@@ -130,77 +124,18 @@ public class DelayedThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
     public DelayedThompsonSamplingItemBandit(int numItems, double[] initialAlphas, double[] initialBetas, int delay)
     {
         this.numItems = numItems;
-        this.betas = new BetaDistribution[numItems];
-        this.delays = new Int2IntOpenHashMap();
-        this.currentScores = new Int2DoubleOpenHashMap();
+        this.alphas = new double[numItems];
+        this.betas = new double[numItems];
+        this.delays = new int[numItems];
+        this.currentScores = new double[numItems];
+        this.rng = new Random(0);
         this.delay = delay;
-        for (int i = 0; i < numItems; ++i)
-        {
-            betas[i] = new BetaDistribution(initialAlphas[i], initialBetas[i]);
-            this.delays.put(i, delay);
-            this.currentScores.put(i, betas[i].sample());
-        }
 
         this.initialAlpha = 1.0;
         this.initialBeta = 1.0;
         this.initialAlphas = initialAlphas;
         this.initialBetas = initialBetas;
-    }
-
-    @Override
-    public int next(int uidx, int[] available, ValueFunction valF)
-    {
-        if (available == null || available.length == 0)
-        {
-            return -1;
-        }
-        else if (available.length == 1)
-        {
-            return available[0];
-        }
-        else
-        {
-            double max = Double.NEGATIVE_INFINITY;
-            IntList top = new IntArrayList();
-            for (int i : available)
-            {
-                int currentDelay = this.delays.get(i);
-                double val;
-                if (currentDelay > 0)
-                {
-                    val = valF.apply(uidx, i, this.currentScores.get(i), 0);
-                    this.delays.put(i, currentDelay - 1);
-                }
-                else
-                {
-                    double aux = this.betas[i].sample();
-                    this.delays.put(i, delay);
-                    this.currentScores.put(i, aux);
-                    val = valF.apply(uidx, i, this.currentScores.get(i), 0);
-                }
-
-                if (val > max)
-                {
-                    max = val;
-                    top = new IntArrayList();
-                    top.add(i);
-                }
-                else if (val == max)
-                {
-                    top.add(i);
-                }
-            }
-
-            int size = top.size();
-            if (size == 1)
-            {
-                return top.get(0);
-            }
-            else
-            {
-                return top.get(untierng.nextInt(size));
-            }
-        }
+        this.reset();
     }
 
     @Override
@@ -212,50 +147,11 @@ public class DelayedThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
         }
         else if (available.size() == 1)
         {
-            return available.get(0);
+            return available.getInt(0);
         }
         else
         {
-            double max = Double.NEGATIVE_INFINITY;
-            IntList top = new IntArrayList();
-            for (int i : available)
-            {
-                int currentDelay = this.delays.get(i);
-                double val;
-                if (currentDelay > 0)
-                {
-                    val = valF.apply(uidx, i, this.currentScores.get(i), 0);
-                    this.delays.put(i, currentDelay - 1);
-                }
-                else
-                {
-                    double aux = this.betas[i].sample();
-                    this.delays.put(i, delay);
-                    this.currentScores.put(i, aux);
-                    val = valF.apply(uidx, i, this.currentScores.get(i), 0);
-                }
-
-                if (val > max)
-                {
-                    max = val;
-                    top = new IntArrayList();
-                    top.add(i);
-                }
-                else if (val == max)
-                {
-                    top.add(i);
-                }
-            }
-
-            int size = top.size();
-            if (size == 1)
-            {
-                return top.get(0);
-            }
-            else
-            {
-                return top.get(untierng.nextInt(size));
-            }
+            return this.argmax(available, i -> valF.apply(uidx, i, this.score(i), 0));
         }
     }
 
@@ -275,20 +171,7 @@ public class DelayedThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
 
             for(int i : available)
             {
-                int currentDelay = this.delays.get(i);
-                double val;
-                if (currentDelay > 0)
-                {
-                    val = valFunc.apply(uidx, i, this.currentScores.get(i), 0);
-                    this.delays.put(i, currentDelay - 1);
-                }
-                else
-                {
-                    double aux = this.betas[i].sample();
-                    this.delays.put(i, delay);
-                    this.currentScores.put(i, aux);
-                    val = valFunc.apply(uidx, i, this.currentScores.get(i), 0);
-                }
+                double val = valFunc.apply(uidx, i, this.score(i), 0);
                 if(queue.size() < num)
                 {
                     queue.enqueue(new Tuple2id(i, val));
@@ -322,31 +205,55 @@ public class DelayedThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
     @Override
     public void update(int i, double value)
     {
-        this.betas[i].updateAdd(value, (1.0 - value));
-        this.currentScores.put(i, this.betas[i].sample());
-        this.delays.put(i, delay);
+        this.alphas[i] += value;
+        this.betas[i] += 1.0 - value;
+        this.currentScores[i] = Double.NaN;
+        this.delays[i] = delay;
     }
 
     @Override
     public void reset()
     {
-        if (initialAlphas == null)
+        for (int i = 0; i < numItems; ++i)
+        {
+            this.alphas[i] = initialAlphas == null ? initialAlpha : initialAlphas[i];
+            this.betas[i] = initialBetas == null ? initialBeta : initialBetas[i];
+        }
+        Arrays.fill(this.currentScores, Double.NaN);
+        Arrays.fill(this.delays, delay);
+    }
+
+    @Override
+    public void setRngSeed(int rngSeed)
+    {
+        super.setRngSeed(rngSeed);
+        this.rng.setSeed(RunSeeds.derive(rngSeed, "thompson"));
+    }
+
+    /**
+     * Obtains the current value of an item, and advances its delay. The value of an item is only
+     * sampled when it is needed: after an update, the first play samples it, and it is then kept
+     * for the following plays, until the delay expires.
+     *
+     * @param i the item.
+     * @return the current value of the item.
+     */
+    private double score(int i)
+    {
+        int currentDelay = this.delays[i];
+        if (currentDelay > 0)
         {
-            for (int i = 0; i < numItems; ++i)
+            if (Double.isNaN(this.currentScores[i]))
             {
-                betas[i] = new BetaDistribution(initialAlpha, initialBeta);
-                this.currentScores.put(i, betas[i].sample());
-                this.delays.put(i, delay);
+                this.currentScores[i] = BetaDistribution.sample(alphas[i], betas[i], rng);
             }
+            this.delays[i] = currentDelay - 1;
         }
         else
         {
-            for (int i = 0; i < numItems; ++i)
-            {
-                betas[i] = new BetaDistribution(initialAlphas[i], initialBetas[i]);
-                this.currentScores.put(i, betas[i].sample());
-                this.delays.put(i, delay);
-            }
+            this.currentScores[i] = BetaDistribution.sample(alphas[i], betas[i], rng);
+            this.delays[i] = delay;
         }
+        return this.currentScores[i];
     }
 }
@@ -9,6 +9,7 @@
  */
 package es.uam.eps.ir.knnbandit.recommendation.bandits.item;
 
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.recommendation.bandits.functions.ValueFunction;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
@@ -36,7 +37,7 @@ public class EpsilonGreedyItemBandit<U, I> extends ItemBandit<U, I>
     /**
      * Random number generator.
      */
-    private final Random rng = new Random();
+    private final Random rng = new Random(0);
     /**
      * Epsilon greedy update function.
      */
@@ -73,57 +74,10 @@ public class EpsilonGreedyItemBandit<U, I> extends ItemBandit<U, I>
     }
 
     @Override
-    public int next(int uidx, int[] available, ValueFunction valF)
+    public void setRngSeed(int rngSeed)
     {
-        if (available == null || available.length == 0)
-        {
-            return -1;
-        }
-        if (available.length == 1)
-        {
-            return available[0];
-        }
-        else
-        {
-            if (rng.nextDouble() < epsilon)
-            {
-                int item = untierng.nextInt(available.length);
-                return available[item];
-            }
-            else
-            {
-                double max = Double.NEGATIVE_INFINITY;
-                IntList top = new IntArrayList();
-
-                for (int i : available)
-                {
-                    double val = valF.apply(uidx, i, values[i], numTimes[i]);
-                    if (val > max)
-                    {
-                        max = val;
-                        top = new IntArrayList();
-                        top.add(i);
-                    }
-                    else if (val == max)
-                    {
-                        top.add(i);
-                    }
-                }
-
-                int size = top.size();
-                int iidx;
-                if (size == 1)
-                {
-                    iidx = top.get(0);
-                }
-                else
-                {
-                    iidx = top.get(untierng.nextInt(size));
-                }
-
-                return iidx;
-            }
-        }
+        super.setRngSeed(rngSeed);
+        this.rng.setSeed(RunSeeds.derive(rngSeed, "epsilon"));
     }
 
     @Override
@@ -133,51 +87,17 @@ public class EpsilonGreedyItemBandit<U, I> extends ItemBandit<U, I>
         {
             return -1;
         }
-        if (available.size() == 1)
+        else if (available.size() == 1)
+        {
+            return available.getInt(0);
+        }
+        else if (rng.nextDouble() < epsilon)
         {
-            return available.get(0);
+            return available.getInt(untierng.nextInt(available.size()));
         }
         else
         {
-            int asize = available.size();
-            if (rng.nextDouble() < epsilon)
-            {
-                int item = untierng.nextInt(asize);
-                return available.get(item);
-            }
-            else
-            {
-                double max = Double.NEGATIVE_INFINITY;
-                IntList top = new IntArrayList();
-
-                for (int i : available)
-                {
-                    double val = valF.apply(uidx, i, values[i], numTimes[i]);
-                    if (val > max)
-                    {
-                        max = val;
-                        top = new IntArrayList();
-                        top.add(i);
-                    }
-                    else if (val == max)
-                    {
-                        top.add(i);
-                    }
-                }
-
-                int size = top.size();
-                int iidx;
-                if (size == 1)
-                {
-                    iidx = top.get(0);
-                }
-                else
-                {
-                    iidx = top.get(untierng.nextInt(size));
-                }
-
-                return iidx;
-            }
+            return this.argmax(available, i -> valF.apply(uidx, i, values[i], numTimes[i]));
         }
     }
 
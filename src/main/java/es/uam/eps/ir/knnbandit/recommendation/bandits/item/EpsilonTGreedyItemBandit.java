@@ -9,6 +9,7 @@
  */
 package es.uam.eps.ir.knnbandit.recommendation.bandits.item;
 
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.recommendation.bandits.functions.ValueFunction;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
@@ -36,7 +37,7 @@ public class EpsilonTGreedyItemBandit<U, I> extends ItemBandit<U, I>
     /**
      * Random number generator.
      */
-    private final Random rng = new Random();
+    private final Random rng = new Random(0);
     /**
      * Epsilon greedy update function.
      */
@@ -78,58 +79,10 @@ public class EpsilonTGreedyItemBandit<U, I> extends ItemBandit<U, I>
     }
 
     @Override
-    public int next(int uidx, int[] available, ValueFunction valF)
+    public void setRngSeed(int rngSeed)
     {
-        if (available == null || available.length == 0)
-        {
-            return -1;
-        }
-        if (available.length == 1)
-        {
-            return available[0];
-        }
-        else
-        {
-            double epsilon = Math.min(1.0, this.alpha * numItems / (numIter + 0.0));
-            if (rng.nextDouble() < epsilon)
-            {
-                int item = untierng.nextInt(available.length);
-                return available[item];
-            }
-            else
-            {
-                double max = Double.NEGATIVE_INFINITY;
-                IntList top = new IntArrayList();
-
-                for (int i : available)
-                {
-                    double val = valF.apply(uidx, i, values[i], numTimes[i]);
-                    if (val > max)
-                    {
-                        max = val;
-                        top = new IntArrayList();
-                        top.add(i);
-                    }
-                    else if (val == max)
-                    {
-                        top.add(i);
-                    }
-                }
-
-                int size = top.size();
-                int iidx;
-                if (size == 1)
-                {
-                    iidx = top.get(0);
-                }
-                else
-                {
-                    iidx = top.get(untierng.nextInt(size));
-                }
-
-                return iidx;
-            }
-        }
+        super.setRngSeed(rngSeed);
+        this.rng.setSeed(RunSeeds.derive(rngSeed, "epsilon"));
     }
 
     @Override
@@ -139,51 +92,18 @@ public class EpsilonTGreedyItemBandit<U, I> extends ItemBandit<U, I>
         {
             return -1;
         }
-        if (available.size() == 1)
+        else if (available.size() == 1)
         {
-            return available.get(0);
+            return available.getInt(0);
         }
         else
         {
             double epsilon = Math.min(1.0, this.alpha * numItems / (numIter + 0.0));
             if (rng.nextDouble() < epsilon)
             {
-                int item = untierng.nextInt(available.size());
-                return available.get(item);
-            }
-            else
-            {
-                double max = Double.NEGATIVE_INFINITY;
-                IntList top = new IntArrayList();
-
-                for (int i : available)
-                {
-                    double val = valF.apply(uidx, i, values[i], numTimes[i]);
-                    if (val > max)
-                    {
-                        max = val;
-                        top = new IntArrayList();
-                        top.add(i);
-                    }
-                    else if (val == max)
-                    {
-                        top.add(i);
-                    }
-                }
-
-                int size = top.size();
-                int iidx;
-                if (size == 1)
-                {
-                    iidx = top.get(0);
-                }
-                else
-                {
-                    iidx = top.get(untierng.nextInt(size));
-                }
-
-                return iidx;
+                return available.getInt(untierng.nextInt(available.size()));
             }
+            return this.argmax(available, i -> valF.apply(uidx, i, values[i], numTimes[i]));
         }
     }
 
@@ -9,11 +9,13 @@
  */
 package es.uam.eps.ir.knnbandit.recommendation.bandits.item;
 
-import es.uam.eps.ir.knnbandit.UntieRandomNumber;
 import es.uam.eps.ir.knnbandit.recommendation.bandits.functions.ValueFunction;
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 
 import java.util.Random;
+import java.util.function.IntToDoubleFunction;
 
 /**
  * Bandit in which arms are items.
@@ -35,18 +37,32 @@ public abstract class ItemBandit<U, I>
      */
     public ItemBandit()
     {
-        this.untierng = new Random(UntieRandomNumber.RNG);
+        this.untierng = new Random(0);
     }
 
     /**
-     * Selects the next item, assuming a selection of them is available.
+     * Sets the seed of the random number generators of the bandit.
+     *
+     * @param rngSeed the random number generator seed.
+     */
+    public void setRngSeed(int rngSeed)
+    {
+        this.untierng.setSeed(rngSeed);
+    }
+
+    /**
+     * Selects the next item, assuming a selection of them is available. By default, it
+     * views the array as a list (without copying it), and selects the item from the list.
      *
      * @param uidx      Identifier of the user that selects the item.
      * @param available The selection of available items.
      * @param valF      A function that determines the effective value of the arm, given a context.
      * @return the next selected item.
      */
-    public abstract int next(int uidx, int[] available, ValueFunction valF);
+    public int next(int uidx, int[] available, ValueFunction valF)
+    {
+        return this.next(uidx, available == null ? null : IntArrayList.wrap(available), valF);
+    }
 
     /**
      * Selects the next item, given that a selection of them is available.
@@ -76,6 +92,53 @@ public abstract class ItemBandit<U, I>
      */
     public abstract void update(int iidx, double value);
 
+    /**
+     * Updates the bandit with a batch of rewards, in order. By default, it updates the
+     * corresponding items one after the other.
+     *
+     * @param iidxs  The items to update.
+     * @param values The rewards, in the same order as the items.
+     */
+    public void update(IntList iidxs, DoubleList values)
+    {
+        for (int j = 0; j < iidxs.size(); ++j)
+        {
+            this.update(iidxs.getInt(j), values.getDouble(j));
+        }
+    }
+
+    /**
+     * Finds the available item with the maximum score. Ties are broken uniformly at random, using
+     * reservoir sampling over the tied items, so no memory is allocated. Items with a NaN score
+     * are never selected.
+     *
+     * @param available The selection of available items.
+     * @param score     Function that computes the score of each item.
+     * @return the item with the maximum score, -1 if there is none.
+     */
+    protected int argmax(IntList available, IntToDoubleFunction score)
+    {
+        int top = -1;
+        int numTies = 0;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int j = 0, size = available.size(); j < size; ++j)
+        {
+            int iidx = available.getInt(j);
+            double val = score.applyAsDouble(iidx);
+            if (val > max || (top == -1 && val == max))
+            {
+                max = val;
+                top = iidx;
+                numTies = 1;
+            }
+            else if (val == max && untierng.nextInt(++numTies) == 0)
+            {
+                top = iidx;
+            }
+        }
+        return top;
+    }
+
     /**
      * Resets the different structures of the bandit.
      */
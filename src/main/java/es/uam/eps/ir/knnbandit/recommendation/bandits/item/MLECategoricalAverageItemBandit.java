@@ -47,6 +47,10 @@ public class MLECategoricalAverageItemBandit<U,I> extends ItemBandit<U,I>
      * The initial number of misses for all items.
      */
     private final double initialBeta;
+    /**
+     * Sampler for selecting the items proportionally to their average values.
+     */
+    private final CategoricalSampler sampler;
 
     /**
      * Constructor.
@@ -68,6 +72,7 @@ public class MLECategoricalAverageItemBandit<U,I> extends ItemBandit<U,I>
             this.hits[i] = this.initialAlpha;
             this.misses[i] = this.initialBeta;
         }
+        this.sampler = new CategoricalSampler(this.averages());
     }
 
     /**
@@ -91,6 +96,7 @@ public class MLECategoricalAverageItemBandit<U,I> extends ItemBandit<U,I>
             this.hits[i] = this.initialAlpha;
             this.misses[i] = this.initialBeta;
         }
+        this.sampler = new CategoricalSampler(this.averages());
     }
 
     /**
@@ -114,40 +120,7 @@ public class MLECategoricalAverageItemBandit<U,I> extends ItemBandit<U,I>
             hits[i] = this.initialAlphas[i];
             misses[i] = this.initialBetas[i];
         }
-    }
-
-    @Override
-    public int next(int uidx, int[] available, ValueFunction valF)
-    {
-        if (available == null || available.length == 0)
-        {
-            return -1;
-        }
-        else if (available.length == 1)
-        {
-            return available[0];
-        }
-        else
-        {
-            double availableSum = Arrays.stream(available).mapToDouble(i -> hits[i]/(hits[i]+misses[i])).sum();
-            double val = untierng.nextDouble();
-
-            double current = 0.0;
-            for (int i : available)
-            {
-                double value = (hits[i]/(hits[i]+misses[i]))/availableSum;
-                if ((current + value) >= val)
-                {
-                    return i;
-                }
-                else
-                {
-                    current += value;
-                }
-            }
-
-            return available[available.length-1];
-        }
+        this.sampler = new CategoricalSampler(this.averages());
     }
 
     @Override
@@ -163,43 +136,18 @@ public class MLECategoricalAverageItemBandit<U,I> extends ItemBandit<U,I>
         }
         else
         {
-            double availableSum = available.stream().mapToDouble(i -> hits[i]/(misses[i]+hits[i])).sum();
-            double val = untierng.nextDouble();
-
-            double current = 0.0;
-            for (int i : available)
-            {
-                double value = (hits[i]/(hits[i]+misses[i]))/availableSum;
-                if ((current + value) >= val)
-                {
-                    return i;
-                }
-                else
-                {
-                    current += value;
-                }
-            }
-
-            return available.getInt(available.size()-1);
+            return this.sampler.sample(available, untierng);
         }
     }
 
     @Override
     public IntList next(int uidx, IntList available, ValueFunction valFunc, int k)
     {
-        IntList avCopy = new IntArrayList();
-        available.forEach(avCopy::add);
-
-        IntList list = new IntArrayList();
-        int num = Math.min(available.size(), k);
-        for(int i = 0; i < num; ++i)
+        if (available == null || available.isEmpty())
         {
-            int elem = this.next(uidx, avCopy, valFunc);
-            list.add(elem);
-            avCopy.remove(avCopy.indexOf(elem));
+            return new IntArrayList();
         }
-
-        return list;
+        return this.sampler.sample(available, k, untierng);
     }
 
     @Override
@@ -207,6 +155,7 @@ public class MLECategoricalAverageItemBandit<U,I> extends ItemBandit<U,I>
     {
         this.hits[iidx] += value;
         this.misses[iidx] += (1.0-value);
+        this.sampler.set(iidx, hits[iidx]/(hits[iidx]+misses[iidx]));
     }
 
     @Override
@@ -228,5 +177,21 @@ public class MLECategoricalAverageItemBandit<U,I> extends ItemBandit<U,I>
                 misses[i] = initialBetas[i];
             }
         }
+        this.sampler.reset(this.averages());
+    }
+
+    /**
+     * Computes the average value (fraction of hits) of each item.
+     *
+     * @return the average values.
+     */
+    private double[] averages()
+    {
+        double[] averages = new double[numItems];
+        for (int i = 0; i < numItems; ++i)
+        {
+            averages[i] = hits[i]/(hits[i]+misses[i]);
+        }
+        return averages;
     }
 }
@@ -37,6 +37,10 @@ public class MLECategoricalItemBandit<U,I> extends ItemBandit<U,I>
      * The initial number of hits for all items.
      */
     private final double initialAlpha;
+    /**
+     * Sampler for selecting the items proportionally to their values.
+     */
+    private final CategoricalSampler sampler;
 
     /**
      * Constructor.
@@ -55,6 +59,7 @@ public class MLECategoricalItemBandit<U,I> extends ItemBandit<U,I>
             this.values[i] = this.initialAlpha;
         }
         sum = this.numItems*initialAlpha;
+        this.sampler = new CategoricalSampler(values);
     }
 
     /**
@@ -75,6 +80,7 @@ public class MLECategoricalItemBandit<U,I> extends ItemBandit<U,I>
             this.values[i] = this.initialAlpha;
         }
         sum = this.numItems*initialAlpha;
+        this.sampler = new CategoricalSampler(values);
     }
 
     /**
@@ -96,40 +102,7 @@ public class MLECategoricalItemBandit<U,I> extends ItemBandit<U,I>
             values[i] = this.initialAlphas[i];
             sum += this.initialAlphas[i];
         }
-    }
-
-    @Override
-    public int next(int uidx, int[] available, ValueFunction valF)
-    {
-        if (available == null || available.length == 0)
-        {
-            return -1;
-        }
-        else if (available.length == 1)
-        {
-            return available[0];
-        }
-        else
-        {
-            double availableSum = Arrays.stream(available).mapToDouble(i -> values[i]).sum();
-            double val = untierng.nextDouble();
-
-            double current = 0.0;
-            for (int i : available)
-            {
-                double value = values[i]/availableSum;
-                if ((current + value) >= val)
-                {
-                    return i;
-                }
-                else
-                {
-                    current += value;
-                }
-            }
-
-            return available[available.length-1];
-        }
+        this.sampler = new CategoricalSampler(values);
     }
 
     @Override
@@ -145,49 +118,25 @@ public class MLECategoricalItemBandit<U,I> extends ItemBandit<U,I>
         }
         else
         {
-            double availableSum = available.stream().mapToDouble(i -> values[i]).sum();
-            double val = untierng.nextDouble();
-
-            double current = 0.0;
-            for (int i : available)
-            {
-                double value = values[i]/availableSum;
-                if ((current + value) >= val)
-                {
-                    return i;
-                }
-                else
-                {
-                    current += value;
-                }
-            }
-
-            return available.getInt(available.size()-1);
+            return this.sampler.sample(available, untierng);
         }
     }
 
     @Override
     public IntList next(int uidx, IntList available, ValueFunction valFunc, int k)
     {
-        IntList avCopy = new IntArrayList();
-        available.forEach(avCopy::add);
-
-        IntList list = new IntArrayList();
-        int num = Math.min(available.size(), k);
-        for(int i = 0; i < num; ++i)
+        if (available == null || available.isEmpty())
         {
-            int elem = this.next(uidx, avCopy, valFunc);
-            list.add(elem);
-            avCopy.remove(avCopy.indexOf(elem));
+            return new IntArrayList();
         }
-
-        return list;
+        return this.sampler.sample(available, k, untierng);
     }
 
     @Override
     public void update(int iidx, double value)
     {
         this.values[iidx] += value;
+        this.sampler.set(iidx, this.values[iidx]);
     }
 
     @Override
@@ -204,5 +153,6 @@ public class MLECategoricalItemBandit<U,I> extends ItemBandit<U,I>
         {
             if (numItems >= 0) System.arraycopy(initialAlphas, 0, values, 0, numItems);
         }
+        this.sampler.reset(values);
     }
 }
@@ -9,15 +9,20 @@
  */
 package es.uam.eps.ir.knnbandit.recommendation.bandits.item;
 
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.recommendation.bandits.functions.ValueFunction;
 import es.uam.eps.ir.knnbandit.stats.BetaDistribution;
 import it.unimi.dsi.fastutil.PriorityQueue;
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 import it.unimi.dsi.fastutil.objects.ObjectHeapPriorityQueue;
 import org.ranksys.core.util.tuples.Tuple2id;
 
 import java.util.Comparator;
+import java.util.Random;
 
 /**
  * Item bandit using the Thompson sampling algorithm.
@@ -33,6 +38,10 @@ public class ThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
      * A Beta distribution for each possible item.
      */
     private final BetaDistribution[] betas;
+    /**
+     * Random number generator shared by the Beta distributions of all the items.
+     */
+    private final Random rng = new Random(0);
 
     /**
      * The number of items.
@@ -66,7 +75,7 @@ public class ThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
         this.betas = new BetaDistribution[numItems];
         for (int i = 0; i < numItems; ++i)
         {
-            betas[i] = new BetaDistribution(1.0, 1.0);
+            betas[i] = new BetaDistribution(1.0, 1.0, rng);
         }
 
         this.initialAlpha = 1.0;
@@ -88,7 +97,7 @@ public class ThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
         this.betas = new BetaDistribution[numItems];
         for (int i = 0; i < numItems; ++i)
         {
-            betas[i] = new BetaDistribution(initialAlpha, initialBeta);
+            betas[i] = new BetaDistribution(initialAlpha, initialBeta, rng);
         }
 
         this.initialAlpha = initialAlpha;
@@ -110,7 +119,7 @@ public class ThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
         this.betas = new BetaDistribution[numItems];
         for (int i = 0; i < numItems; ++i)
         {
-            betas[i] = new BetaDistribution(initialAlphas[i], initialBetas[i]);
+            betas[i] = new BetaDistribution(initialAlphas[i], initialBetas[i], rng);
         }
 
         this.initialAlpha = 1.0;
@@ -120,45 +129,10 @@ public class ThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
     }
 
     @Override
-    public int next(int uidx, int[] available, ValueFunction valF)
+    public void setRngSeed(int rngSeed)
     {
-        if (available == null || available.length == 0)
-        {
-            return -1;
-        }
-        else if (available.length == 1)
-        {
-            return available[0];
-        }
-        else
-        {
-            double max = Double.NEGATIVE_INFINITY;
-            IntList top = new IntArrayList();
-            for (int i : available)
-            {
-                double val = valF.apply(uidx, i, this.betas[i].sample(), 0);
-                if (val > max)
-                {
-                    max = val;
-                    top = new IntArrayList();
-                    top.add(i);
-                }
-                else if (val == max)
-                {
-                    top.add(i);
-                }
-            }
-
-            int size = top.size();
-            if (size == 1)
-            {
-                return top.get(0);
-            }
-            else
-            {
-                return top.get(untierng.nextInt(size));
-            }
-        }
+        super.setRngSeed(rngSeed);
+        this.rng.setSeed(RunSeeds.derive(rngSeed, "thompson"));
     }
 
     @Override
@@ -170,36 +144,11 @@ public class ThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
         }
         else if (available.size() == 1)
         {
-            return available.get(0);
+            return available.getInt(0);
         }
         else
         {
-            double max = Double.NEGATIVE_INFINITY;
-            IntList top = new IntArrayList();
-            for (int i : available)
-            {
-                double val = valF.apply(uidx, i, this.betas[i].sample(), 0);
-                if (val > max)
-                {
-                    max = val;
-                    top = new IntArrayList();
-                    top.add(i);
-                }
-                else if (val == max)
-                {
-                    top.add(i);
-                }
-            }
-
-            int size = top.size();
-            if (size == 1)
-            {
-                return top.get(0);
-            }
-            else
-            {
-                return top.get(untierng.nextInt(size));
-            }
+            return this.argmax(available, i -> valF.apply(uidx, i, this.betas[i].sample(), 0));
         }
     }
 
@@ -255,6 +204,32 @@ public class ThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
         this.betas[i].updateAdd(value, (1.0 - value));
     }
 
+    /**
+     * Updates the bandit with a batch of rewards. Since the updates are additive, the increments
+     * of the parameters are first aggregated for each item, and each distribution is updated once.
+     *
+     * @param iidxs  The items to update.
+     * @param values The rewards, in the same order as the items.
+     */
+    @Override
+    public void update(IntList iidxs, DoubleList values)
+    {
+        Int2DoubleOpenHashMap sums = new Int2DoubleOpenHashMap();
+        Int2IntOpenHashMap counts = new Int2IntOpenHashMap();
+        for (int j = 0; j < iidxs.size(); ++j)
+        {
+            int i = iidxs.getInt(j);
+            sums.addTo(i, values.getDouble(j));
+            counts.addTo(i, 1);
+        }
+
+        for (int i : counts.keySet())
+        {
+            double sum = sums.get(i);
+            this.betas[i].updateAdd(sum, counts.get(i) - sum);
+        }
+    }
+
     @Override
     public void reset()
     {
@@ -262,14 +237,14 @@ public class ThompsonSamplingItemBandit<U, I> extends ItemBandit<U, I>
         {
             for (int i = 0; i < numItems; ++i)
             {
-                betas[i] = new BetaDistribution(initialAlpha, initialBeta);
+                betas[i] = new BetaDistribution(initialAlpha, initialBeta, rng);
             }
         }
         else
         {
             for (int i = 0; i < numItems; ++i)
             {
-                betas[i] = new BetaDistribution(initialAlphas[i], initialBetas[i]);
+                betas[i] = new BetaDistribution(initialAlphas[i], initialBetas[i], rng);
             }
         }
     }
@@ -57,60 +57,6 @@ public class UCB1ItemBandit<U, I> extends ItemBandit<U, I>
         this.numTimes = new double[numItems];
     }
 
-    @Override
-    public int next(int uidx, int[] available, ValueFunction valF)
-    {
-        if (available == null || available.length == 0)
-        {
-            return -1;
-        }
-        else if (available.length == 1)
-        {
-            return available[0];
-        }
-        else
-        {
-            double max = Double.NEGATIVE_INFINITY;
-            IntList top = new IntArrayList();
-            for (int i : available)
-            {
-                double val;
-                if (this.numTimes[i] == 0)
-                {
-                    val = Double.POSITIVE_INFINITY;
-                }
-                else
-                {
-                    val = valF.apply(uidx, i, values[i] + Math.sqrt(2 * Math.log(numIter + 1) / (numTimes[i])), numTimes[i]);
-                }
-
-                if (val > max)
-                {
-                    max = val;
-                    top = new IntArrayList();
-                    top.add(i);
-                }
-                else if (val == max)
-                {
-                    top.add(i);
-                }
-            }
-
-            int size = top.size();
-            int item;
-            if (size == 1)
-            {
-                item = top.get(0);
-            }
-            else
-            {
-                item = top.get(untierng.nextInt(size));
-            }
-
-            return item;
-        }
-    }
-
     @Override
     public int next(int uidx, IntList available, ValueFunction valF)
     {
@@ -120,49 +66,19 @@ public class UCB1ItemBandit<U, I> extends ItemBandit<U, I>
         }
         else if (available.size() == 1)
         {
-            return available.get(0);
+            return available.getInt(0);
         }
         else
         {
-            double max = Double.NEGATIVE_INFINITY;
-            IntList top = new IntArrayList();
-            for (int i : available)
+            double logIter = Math.log(numIter + 1);
+            return this.argmax(available, i ->
             {
-                double val;
                 if (this.numTimes[i] == 0)
                 {
-                    val = Double.POSITIVE_INFINITY;
-                }
-                else
-                {
-                    val = valF.apply(uidx, i, values[i] + Math.sqrt(2 * Math.log(numIter + 1) / (numTimes[i])), numTimes[i]);
+                    return Double.POSITIVE_INFINITY;
                 }
-
-                if (val > max)
-                {
-                    max = val;
-                    top = new IntArrayList();
-                    top.add(i);
-                }
-                else if (val == max)
-                {
-                    top.add(i);
-                }
-            }
-
-            int size = top.size();
-            int item;
-            if (size == 1)
-            {
-                item = top.get(0);
-            }
-            else
-            {
-                item = top.get(untierng.nextInt(size));
-            }
-
-
-            return item;
+                return valF.apply(uidx, i, values[i] + Math.sqrt(2 * logIter / (numTimes[i])), numTimes[i]);
+            });
         }
     }
 
@@ -178,6 +94,7 @@ public class UCB1ItemBandit<U, I> extends ItemBandit<U, I>
             int num = Math.min(k, available.size());
             IntList top = new IntArrayList();
 
+            double logIter = Math.log(numIter + 1);
             PriorityQueue<Tuple2id> queue = new ObjectHeapPriorityQueue<>(num, Comparator.comparingDouble(x -> x.v2));
 
             for(int i : available)
@@ -186,7 +103,7 @@ public class UCB1ItemBandit<U, I> extends ItemBandit<U, I>
                 if(this.numTimes[i] == 0)
                     val = Double.POSITIVE_INFINITY;
                 else
-                    val = valFunc.apply(uidx, i, values[i] + Math.sqrt(2 * Math.log(numIter + 1) / (numTimes[i])), numTimes[i]);
+                    val = valFunc.apply(uidx, i, values[i] + Math.sqrt(2 * logIter / (numTimes[i])), numTimes[i]);
 
                 if(queue.size() < num)
                 {
@@ -63,60 +63,6 @@ public class UCB1TunedItemBandit<U, I> extends ItemBandit<U, I>
         this.numIter = 0;
     }
 
-    @Override
-    public int next(int uidx, int[] available, ValueFunction valF)
-    {
-        if (available == null || available.length == 0)
-        {
-            return -1;
-        }
-        else if (available.length == 1)
-        {
-            return available[0];
-        }
-        else
-        {
-            double max = Double.NEGATIVE_INFINITY;
-            IntList top = new IntArrayList();
-            for (int i : available)
-            {
-                double val;
-                if (this.numTimes[i] == 0)
-                {
-                    val = Double.POSITIVE_INFINITY;
-                }
-                else
-                {
-                    double ucb = this.variances[i] - values[i] * values[i] + Math.sqrt(2 * Math.log(numIter + 1) / (numTimes[i]));
-                    val = valF.apply(uidx, i, values[i] + Math.sqrt((Math.log(numIter + 1) / numTimes[i]) * Math.min(0.25, ucb)), numTimes[i]);
-                }
-
-                if (val > max)
-                {
-                    max = val;
-                    top = new IntArrayList();
-                    top.add(i);
-                }
-                else if (val == max)
-                {
-                    top.add(i);
-                }
-            }
-
-            int item;
-            int size = top.size();
-            if (size == 1)
-            {
-                item = top.get(0);
-            }
-            else
-            {
-                item = top.get(untierng.nextInt(size));
-            }
-            return item;
-        }
-    }
-
     @Override
     public int next(int uidx, IntList available, ValueFunction valF)
     {
@@ -126,48 +72,20 @@ public class UCB1TunedItemBandit<U, I> extends ItemBandit<U, I>
         }
         else if (available.size() == 1)
         {
-            return available.get(0);
+            return available.getInt(0);
         }
         else
         {
-            double max = Double.NEGATIVE_INFINITY;
-            IntList top = new IntArrayList();
-            for (int i : available)
+            double logIter = Math.log(numIter + 1);
+            return this.argmax(available, i ->
             {
-                double val;
                 if (this.numTimes[i] == 0)
                 {
-                    val = Double.POSITIVE_INFINITY;
+                    return Double.POSITIVE_INFINITY;
                 }
-                else
-                {
-                    double ucb = this.variances[i] - values[i] * values[i] + Math.sqrt(2 * Math.log(numIter + 1) / (numTimes[i]));
-                    val = valF.apply(uidx, i, values[i] + Math.sqrt((Math.log(numIter + 1) / numTimes[i]) * Math.min(0.25, ucb)), numTimes[i]);
-                }
-
-                if (val > max)
-                {
-                    max = val;
-                    top = new IntArrayList();
-                    top.add(i);
-                }
-                else if (val == max)
-                {
-                    top.add(i);
-                }
-            }
-
-            int item;
-            int size = top.size();
-            if (size == 1)
-            {
-                item = top.get(0);
-            }
-            else
-            {
-                item = top.get(untierng.nextInt(size));
-            }
-            return item;
+                double ucb = this.variances[i] - values[i] * values[i] + Math.sqrt(2 * logIter / (numTimes[i]));
+                return valF.apply(uidx, i, values[i] + Math.sqrt((logIter / numTimes[i]) * Math.min(0.25, ucb)), numTimes[i]);
+            });
         }
     }
 
@@ -183,6 +101,7 @@ public class UCB1TunedItemBandit<U, I> extends ItemBandit<U, I>
             int num = Math.min(k, available.size());
             IntList top = new IntArrayList();
 
+            double logIter = Math.log(numIter + 1);
             PriorityQueue<Tuple2id> queue = new ObjectHeapPriorityQueue<>(num, Comparator.comparingDouble(x -> x.v2));
 
             for(int i : available)
@@ -194,8 +113,8 @@ public class UCB1TunedItemBandit<U, I> extends ItemBandit<U, I>
                 }
                 else
                 {
-                    double ucb = this.variances[i] - values[i] * values[i] + Math.sqrt(2 * Math.log(numIter + 1) / (numTimes[i]));
-                    val = valFunc.apply(uidx, i, values[i] + Math.sqrt((Math.log(numIter + 1) / numTimes[i]) * Math.min(0.25, ucb)), numTimes[i]);
+                    double ucb = this.variances[i] - values[i] * values[i] + Math.sqrt(2 * logIter / (numTimes[i]));
+                    val = valFunc.apply(uidx, i, values[i] + Math.sqrt((logIter / numTimes[i]) * Math.min(0.25, ucb)), numTimes[i]);
                 }
 
                 if(queue.size() < num)
@@ -11,6 +11,7 @@ package es.uam.eps.ir.knnbandit.recommendation.basic;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
+import es.uam.eps.ir.knnbandit.warmup.SharedWarmup;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import org.jooq.lambda.tuple.Tuple3;
 
@@ -74,6 +75,23 @@ public class PopularityRecommender<U, I> extends AbstractBasicInteractiveRecomme
         values.filter(triplet -> relevanceChecker.test(triplet.value())).forEach(triplet -> ++this.values[triplet.iidx()]);
     }
 
+    /**
+     * Initializes the popularity from the relevant warm-up ratings. The counts are shared with all the
+     * recommenders using the same relevance checker, so they are only counted once.
+     *
+     * @param warmup the shared training data.
+     */
+    @Override
+    public void init(SharedWarmup warmup)
+    {
+        this.init();
+        long[] popularity = warmup.getPopularity(relevanceChecker);
+        for (int iidx = 0; iidx < popularity.length && iidx < this.values.length; ++iidx)
+        {
+            this.values[iidx] = popularity[iidx];
+        }
+    }
+
     @Override
     public void update(int uidx, int iidx, double value)
     {
@@ -8,7 +8,6 @@
  */
 package es.uam.eps.ir.knnbandit.recommendation.basic;
 
-import es.uam.eps.ir.knnbandit.UntieRandomNumber;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
@@ -18,7 +17,6 @@ import it.unimi.dsi.fastutil.ints.IntList;
 import org.jooq.lambda.tuple.Tuple3;
 
 import java.util.List;
-import java.util.Random;
 import java.util.stream.Stream;
 
 
@@ -32,11 +30,6 @@ import java.util.stream.Stream;
  */
 public class RandomRecommender<U, I> extends InteractiveRecommender<U, I>
 {
-    /**
-     * Random number generator.
-     */
-    private final Random rng = new Random(UntieRandomNumber.RNG);
-
     /**
      * Constructor.
      *
@@ -72,6 +72,10 @@ public abstract class AbstractCOFIBA<U,I> extends InteractiveRecommender<U,I>
      * If, in for a user, an item does not appear, it has never been recommended to u, and therefore, its value is zero.
      */
     private final Int2ObjectMap<Int2DoubleMap> ms;
+    /**
+     * For each item, the list of users who have been recommended the item (i.e. those users with statistics for the item).
+     */
+    private IntArrayList[] itemUsers;
 
     // User cluster structures:
     /**
@@ -157,6 +161,11 @@ public abstract class AbstractCOFIBA<U,I> extends InteractiveRecommender<U,I>
         super.init();
         this.bs.clear();
         this.ms.clear();
+        this.itemUsers = new IntArrayList[this.numItems()];
+        for (int iidx = 0; iidx < this.numItems(); ++iidx)
+        {
+            this.itemUsers[iidx] = new IntArrayList();
+        }
         this.clustB.clear();
         this.clustM.clear();
         this.userGraphs.clear();
@@ -371,6 +380,10 @@ public abstract class AbstractCOFIBA<U,I> extends InteractiveRecommender<U,I>
             this.bs.put(uidx, map);
         }
 
+        if (!this.ms.get(uidx).containsKey(iidx))
+        {
+            this.itemUsers[iidx].add(uidx);
+        }
         ((Int2DoubleOpenHashMap) this.bs.get(uidx)).addTo(iidx, newValue);
         ((Int2DoubleOpenHashMap) this.ms.get(uidx)).addTo(iidx, 1.0);
         double uCB = Math.log(this.iter + 1)/(this.ms.get(uidx).get(iidx) + 1.0);
@@ -447,53 +460,17 @@ public abstract class AbstractCOFIBA<U,I> extends InteractiveRecommender<U,I>
         // We first check the neighborhood of the user u
         IntSet iNeighs = userGraph.getNeighbourNodes(uidx).collect(Collectors.toCollection(IntOpenHashSet::new));
 
-        // Now:
-        List<Integer> itemNeighbors = itemGraph.getNeighbourNodes(iidx).collect(Collectors.toList());
-        boolean deletedItemEdge = itemNeighbors.stream().map(jidx ->
+        // Now, we remove the edges towards those items whose neighborhood for u differs from the one above.
+        IntList itemNeighbors = itemGraph.getNeighbourNodes(iidx).collect(Collectors.toCollection(IntArrayList::new));
+        boolean deletedItemEdge = false;
+        for (int jidx : itemNeighbors)
         {
-            IntSet jNeighs = new IntOpenHashSet();
-            double uidxM = this.ms.get(uidx).getOrDefault(jidx, 0.0) + 1.0;
-            double uidxW = this.bs.get(uidx).getOrDefault(jidx, 0.0) / uidxM;
-            double uidxCB = Math.sqrt(Math.log(this.iter+1.0)/uidxM);
-
-            this.getUidx().filter(vidx -> uidx != vidx).forEach(vidx ->
-            {
-                double vidxW;
-                double vidxCB;
-                if(this.ms.containsKey(vidx))
-                {
-                    double vidxM = this.ms.get(vidx).getOrDefault(jidx, 0.0) + 1.0;
-                    vidxW = this.bs.get(vidx).getOrDefault(jidx, 0.0) / vidxM;
-                    vidxCB = Math.sqrt(Math.log(this.iter+1.0)/vidxM);
-                }
-                else
-                {
-                    vidxW = 0.0;
-                    vidxCB = Math.sqrt(Math.log(this.iter+1.0));
-                }
-
-                if(Math.abs(uidxW - vidxW) <= alpha2*(uidxCB+vidxCB))
-                {
-                    jNeighs.add(vidx);
-                }
-            });
-
-            if(iNeighs.size() != jNeighs.size())
+            if (!this.agrees(uidx, jidx, iNeighs))
             {
                 itemGraph.removeEdge(iidx, jidx);
-                return true;
-            }
-            for(int neigh : jNeighs)
-            {
-                if(!iNeighs.contains(neigh))
-                {
-                    itemGraph.removeEdge(iidx, jidx);
-                    return true;
-                }
+                deletedItemEdge = true;
             }
-
-            return false;
-        }).reduce(false, (x,y) -> x || y);
+        }
 
         // In case this is deleted, we should check the cluster structure of the item graph
         if(deletedItemEdge)
@@ -540,6 +517,78 @@ public abstract class AbstractCOFIBA<U,I> extends InteractiveRecommender<U,I>
         this.iter++;
     }
 
+    /**
+     * Checks whether the neighborhood of a user for an item (the set of other users whose confidence intervals
+     * for the item overlap with the interval of the user) is equal to a given set of users.
+     * <p>
+     * The users without statistics for the item all share the same interval, so they are checked at once:
+     * only the users who have been recommended the item are checked individually, and the check stops at
+     * the first difference.
+     *
+     * @param uidx   the user.
+     * @param jidx   the item.
+     * @param neighs the set of users.
+     * @return true if both sets are equal, false otherwise.
+     */
+    private boolean agrees(int uidx, int jidx, IntSet neighs)
+    {
+        if (neighs.contains(uidx))
+        {
+            return false;
+        }
+
+        double defaultCB = Math.sqrt(Math.log(this.iter+1.0));
+
+        double uidxM = this.ms.get(uidx).getOrDefault(jidx, 0.0) + 1.0;
+        double uidxW = this.bs.get(uidx).getOrDefault(jidx, 0.0) / uidxM;
+        double uidxCB = Math.sqrt(Math.log(this.iter+1.0)/uidxM);
+
+        // Check whether the users without statistics for the item are neighbors of uidx.
+        boolean defaultNeigh = Math.abs(uidxW - 0.0) <= alpha2*(uidxCB + defaultCB);
+
+        // Then, check the users with statistics.
+        int numNeighs = 0;
+        int numOthers = 0;
+        IntArrayList users = this.itemUsers[jidx];
+        for (int i = 0; i < users.size(); ++i)
+        {
+            int vidx = users.getInt(i);
+            if (vidx == uidx)
+            {
+                continue;
+            }
+
+            double vidxM = this.ms.get(vidx).get(jidx) + 1.0;
+            double vidxW = this.bs.get(vidx).get(jidx) / vidxM;
+            double vidxCB = Math.sqrt(Math.log(this.iter+1.0)/vidxM);
+
+            boolean isNeigh = Math.abs(uidxW - vidxW) <= alpha2*(uidxCB+vidxCB);
+            if (isNeigh != neighs.contains(vidx))
+            {
+                return false;
+            }
+            else if (isNeigh)
+            {
+                ++numNeighs;
+            }
+            else
+            {
+                ++numOthers;
+            }
+        }
+
+        // If users without statistics are neighbors, all users but uidx and the ones not in the neighborhood
+        // must be in the set. Otherwise, the set must only contain the neighbors with statistics.
+        if (defaultNeigh)
+        {
+            return neighs.size() == this.numUsers() - 1 - numOthers;
+        }
+        else
+        {
+            return neighs.size() == numNeighs;
+        }
+    }
+
     /**
      * Initializes the weights for a user cluster.
      * @param itemCluster the item cluster identifier.
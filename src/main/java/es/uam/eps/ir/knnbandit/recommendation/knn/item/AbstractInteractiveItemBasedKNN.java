@@ -9,6 +9,7 @@
 package es.uam.eps.ir.knnbandit.recommendation.knn.item;
 
 import es.uam.eps.ir.knnbandit.Constants;
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.AbstractSimpleFastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.FastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.SimpleFastUpdateablePreferenceData;
@@ -18,6 +19,7 @@ import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdatea
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
 import es.uam.eps.ir.knnbandit.recommendation.knn.similarities.UpdateableSimilarity;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
+import es.uam.eps.ir.knnbandit.warmup.SharedWarmup;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
@@ -50,7 +52,7 @@ public abstract class AbstractInteractiveItemBasedKNN<U, I> extends InteractiveR
     /**
      * Random number generator to untie neighbors.
      */
-    private final Random neighborUntie = new Random();
+    private final Random neighborUntie = new Random(0);
 
     /**
      * Number of rated items of the user to pick
@@ -148,6 +150,7 @@ public abstract class AbstractInteractiveItemBasedKNN<U, I> extends InteractiveR
     public void init()
     {
         super.init();
+        this.initNeighborUntie();
         this.sim.initialize();
         this.retrievedData.clear();
     }
@@ -163,11 +166,32 @@ public abstract class AbstractInteractiveItemBasedKNN<U, I> extends InteractiveR
     @Override
     public void init(Stream<FastRating> values)
     {
+        super.init();
+        this.initNeighborUntie();
         this.retrievedData.clear();
         values.forEach(triplet -> this.retrievedData.updateRating(triplet.uidx(), triplet.iidx(), triplet.value()));
         this.sim.initialize(new TransposedUpdateablePreferenceData<>(retrievedData));
     }
 
+    @Override
+    public void init(SharedWarmup warmup)
+    {
+        super.init();
+        this.initNeighborUntie();
+        this.retrievedData.init(warmup);
+        this.sim.initialize(new TransposedUpdateablePreferenceData<>(retrievedData));
+    }
+
+    /**
+     * Restores the original order of the items and reseeds the generator which shuffles it, so
+     * ties between neighbors are broken in the same way every time the algorithm is run with the same seed.
+     */
+    private void initNeighborUntie()
+    {
+        this.itemList.sort(null);
+        this.neighborUntie.setSeed(RunSeeds.derive(rngSeed, "neighbors"));
+    }
+
 
     @Override
     public int next(int uidx, IntList availability)
@@ -13,6 +13,9 @@ import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.ints.IntSets;
 import org.ranksys.core.util.tuples.Tuple2id;
 
 import java.util.function.IntToDoubleFunction;
@@ -21,6 +24,10 @@ import java.util.stream.Stream;
 
 /**
  * Vector cosine similarity.
+ * <p>
+ * Apart from the similarity values, it keeps, for each user, the set of neighbours
+ * whose similarity exceeds a given threshold. This index is maintained as the similarity
+ * is updated.
  *
  * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
  * @author Pablo Castells (pablo.castells@uam.es)
@@ -39,12 +46,36 @@ public class RestrictedVectorCosineSimilarity implements UpdateableSimilarity
      * The number of users.
      */
     private final int numUsers;
+    /**
+     * Similarity threshold. Two users are neighbours if their similarity is greater than this value.
+     */
+    private final double threshold;
+    /**
+     * For each user, the set of users whose similarity exceeds the threshold.
+     */
+    private final Int2ObjectMap<IntSet> neighbours;
 
+    /**
+     * Constructor.
+     * @param numUsers the number of users.
+     */
     public RestrictedVectorCosineSimilarity(int numUsers)
+    {
+        this(numUsers, 0.0);
+    }
+
+    /**
+     * Constructor.
+     * @param numUsers  the number of users.
+     * @param threshold similarity threshold for the neighbour index. Only positive similarities are considered.
+     */
+    public RestrictedVectorCosineSimilarity(int numUsers, double threshold)
     {
         this.numUsers = numUsers;
+        this.threshold = Math.max(threshold, 0.0);
         this.num = new Int2ObjectOpenHashMap<>();
         this.common = new Int2ObjectOpenHashMap<>();
+        this.neighbours = new Int2ObjectOpenHashMap<>();
     }
 
     @Override
@@ -52,6 +83,7 @@ public class RestrictedVectorCosineSimilarity implements UpdateableSimilarity
     {
         this.num.clear();
         this.common.clear();
+        this.neighbours.clear();
     }
 
     @Override
@@ -59,6 +91,7 @@ public class RestrictedVectorCosineSimilarity implements UpdateableSimilarity
     {
         this.num.clear();
         this.common.clear();
+        this.neighbours.clear();
 
         trainData.getUidxWithPreferences().forEach(uidx ->
         {
@@ -75,6 +108,8 @@ public class RestrictedVectorCosineSimilarity implements UpdateableSimilarity
                 })
             );
         });
+
+        this.common.keySet().forEach(uidx -> this.common.get(uidx).keySet().forEach(vidx -> this.updateNeighbour(uidx, vidx)));
     }
 
 
@@ -118,6 +153,8 @@ public class RestrictedVectorCosineSimilarity implements UpdateableSimilarity
             ((Int2DoubleOpenHashMap) this.num.get(vidx)).addTo(uidx, uval*vval);
             ((Int2DoubleOpenHashMap) this.common.get(uidx)).addTo(vidx, 1.0);
             ((Int2DoubleOpenHashMap) this.common.get(vidx)).addTo(uidx, 1.0);
+            this.updateNeighbour(uidx, vidx);
+            this.updateNeighbour(vidx, uidx);
         }
     }
 
@@ -130,6 +167,8 @@ public class RestrictedVectorCosineSimilarity implements UpdateableSimilarity
             ((Int2DoubleOpenHashMap) this.num.get(vidx)).addTo(uidx, -uval*vval);
             ((Int2DoubleOpenHashMap) this.common.get(uidx)).addTo(vidx, -1.0);
             ((Int2DoubleOpenHashMap) this.common.get(vidx)).addTo(uidx, -1.0);
+            this.updateNeighbour(uidx, vidx);
+            this.updateNeighbour(vidx, uidx);
         }
     }
 
@@ -153,4 +192,55 @@ public class RestrictedVectorCosineSimilarity implements UpdateableSimilarity
         if(!this.common.containsKey(idx)) return Stream.empty();
         return this.common.get(idx).int2DoubleEntrySet().stream().map(v -> new Tuple2id(v.getIntKey(), this.num.get(idx).get(v.getIntKey())/v.getDoubleValue())).filter(v -> v.v2 > 0.0);
     }
+
+    @Override
+    public double similarity(int idx, int idx2)
+    {
+        Int2DoubleMap commonMap = this.common.get(idx);
+        if(commonMap == null) return 0.0;
+        double commonItems = commonMap.get(idx2);
+        if(commonItems == 0.0) return 0.0;
+        return this.num.get(idx).get(idx2) / commonItems;
+    }
+
+    /**
+     * Checks whether a user belongs to the neighbourhood of another one, i.e. whether
+     * their similarity exceeds the threshold.
+     * @param idx  the first user.
+     * @param idx2 the second user.
+     * @return true if the second user is a neighbour of the first one, false otherwise.
+     */
+    public boolean isNeighbour(int idx, int idx2)
+    {
+        IntSet set = this.neighbours.get(idx);
+        return set != null && set.contains(idx2);
+    }
+
+    /**
+     * Obtains the neighbours of a user, i.e. the users whose similarity exceeds the threshold.
+     * @param idx the user.
+     * @return the set of neighbours of the user.
+     */
+    public IntSet getNeighbours(int idx)
+    {
+        IntSet set = this.neighbours.get(idx);
+        return set == null ? IntSets.EMPTY_SET : set;
+    }
+
+    /**
+     * Updates the neighbour index for a pair of users.
+     * @param idx  the first user.
+     * @param idx2 the second user.
+     */
+    private void updateNeighbour(int idx, int idx2)
+    {
+        if(this.similarity(idx, idx2) > threshold)
+        {
+            this.neighbours.computeIfAbsent(idx, x -> new IntOpenHashSet()).add(idx2);
+        }
+        else if(this.neighbours.containsKey(idx))
+        {
+            this.neighbours.get(idx).remove(idx2);
+        }
+    }
 }
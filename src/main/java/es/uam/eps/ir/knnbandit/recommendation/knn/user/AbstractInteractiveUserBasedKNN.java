@@ -9,6 +9,7 @@
 package es.uam.eps.ir.knnbandit.recommendation.knn.user;
 
 import es.uam.eps.ir.knnbandit.Constants;
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.AbstractSimpleFastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.SimpleFastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
@@ -16,6 +17,7 @@ import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdatea
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
 import es.uam.eps.ir.knnbandit.recommendation.knn.similarities.UpdateableSimilarity;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
+import es.uam.eps.ir.knnbandit.warmup.SharedWarmup;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 import it.unimi.dsi.fastutil.ints.*;
@@ -47,7 +49,7 @@ public abstract class AbstractInteractiveUserBasedKNN<U, I> extends InteractiveR
     /**
      * Random number generator to untie neighbors.
      */
-    private final Random neighborUntie = new Random();
+    private final Random neighborUntie = new Random(0);
     /**
      * Number of neighbors to use.
      */
@@ -151,6 +153,7 @@ public abstract class AbstractInteractiveUserBasedKNN<U, I> extends InteractiveR
     public void init()
     {
         super.init();
+        this.initNeighborUntie();
         this.retrievedData.clear();
         this.sim.initialize();
     }
@@ -159,11 +162,31 @@ public abstract class AbstractInteractiveUserBasedKNN<U, I> extends InteractiveR
     public void init(Stream<FastRating> values)
     {
         super.init();
+        this.initNeighborUntie();
         this.retrievedData.clear();
         values.forEach(triplet -> this.retrievedData.updateRating(triplet.uidx(), triplet.iidx(), triplet.value()));
         this.sim.initialize(retrievedData);
     }
 
+    @Override
+    public void init(SharedWarmup warmup)
+    {
+        super.init();
+        this.initNeighborUntie();
+        this.retrievedData.init(warmup);
+        this.sim.initialize(retrievedData);
+    }
+
+    /**
+     * Restores the original order of the users and reseeds the generator which shuffles it, so
+     * ties between neighbors are broken in the same way every time the algorithm is run with the same seed.
+     */
+    private void initNeighborUntie()
+    {
+        this.userList.sort(null);
+        this.neighborUntie.setSeed(RunSeeds.derive(rngSeed, "neighbors"));
+    }
+
     @Override
     public int next(int uidx, IntList availability)
     {
@@ -9,6 +9,7 @@
 package es.uam.eps.ir.knnbandit.recommendation.knn.user;
 
 import es.uam.eps.ir.knnbandit.Constants;
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.SimpleFastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
@@ -17,12 +18,19 @@ import es.uam.eps.ir.knnbandit.recommendation.knn.similarities.RestrictedVectorC
 import es.uam.eps.ir.knnbandit.utils.FastRating;
 import it.unimi.dsi.fastutil.ints.*;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Random;
 import java.util.stream.Stream;
 
 /**
  * Implementation of the kNN-based collaborative-greedy algorithm.
+ * <p>
+ * For each user, the number of positive and total ratings that its neighbours have given
+ * to each item are kept, and updated whenever a neighbour receives feedback, or the
+ * neighbourhood changes. Then, the score of an item is the fraction of positive ratings
+ * it has received from the neighbours (1/2 when no neighbour has rated it).
+ *
  * @param <U> Type of the users.
  * @param <I> Type of the items.
  *
@@ -58,7 +66,31 @@ public class CollaborativeGreedy<U,I> extends InteractiveRecommender<U, I>
     /**
      * The position of the jointList for each user.
      */
-    private final Int2IntMap jointIndex = new Int2IntOpenHashMap();
+    private final int[] jointIndex;
+    /**
+     * For each user, the items which have already been recommended to the user.
+     */
+    private final IntSet[] consumed;
+    /**
+     * For each user, the number of positive ratings that its neighbours have given to each item.
+     */
+    private final Int2IntOpenHashMap[] positives;
+    /**
+     * For each user, the number of ratings that its neighbours have given to each item.
+     */
+    private final Int2IntOpenHashMap[] counts;
+    /**
+     * For each item, the stamp of the last selection where it was available.
+     */
+    private final int[] marks;
+    /**
+     * For each item, its position in the list of available items of the last selection.
+     */
+    private final int[] positions;
+    /**
+     * The stamp of the current selection.
+     */
+    private int stamp;
 
     /**
      * Similarity threshold to appear in a neighborhood
@@ -72,7 +104,7 @@ public class CollaborativeGreedy<U,I> extends InteractiveRecommender<U, I>
     /**
      * Random number to select the epsilon value.
      */
-    private final Random partrng = new Random();
+    private final Random partrng = new Random(0);
     /**
      * Similarity.
      */
@@ -96,7 +128,14 @@ public class CollaborativeGreedy<U,I> extends InteractiveRecommender<U, I>
         this.retrievedData = SimpleFastUpdateablePreferenceData.load(Stream.empty(), uIndex, iIndex);
         this.threshold = threshold;
         this.alpha = alpha;
-        this.sim = new RestrictedVectorCosineSimilarity(numUsers());
+        this.sim = new RestrictedVectorCosineSimilarity(numUsers(), threshold);
+        this.jointIndex = new int[numUsers()];
+        this.consumed = new IntSet[numUsers()];
+        this.positives = new Int2IntOpenHashMap[numUsers()];
+        this.counts = new Int2IntOpenHashMap[numUsers()];
+        this.marks = new int[numItems()];
+        this.positions = new int[numItems()];
+        this.stamp = 0;
     }
 
     /**
@@ -117,7 +156,14 @@ public class CollaborativeGreedy<U,I> extends InteractiveRecommender<U, I>
         this.retrievedData = SimpleFastUpdateablePreferenceData.load(Stream.empty(), uIndex, iIndex);
         this.threshold = threshold;
         this.alpha = alpha;
-        this.sim = new RestrictedVectorCosineSimilarity(numUsers());
+        this.sim = new RestrictedVectorCosineSimilarity(numUsers(), threshold);
+        this.jointIndex = new int[numUsers()];
+        this.consumed = new IntSet[numUsers()];
+        this.positives = new Int2IntOpenHashMap[numUsers()];
+        this.counts = new Int2IntOpenHashMap[numUsers()];
+        this.marks = new int[numItems()];
+        this.positions = new int[numItems()];
+        this.stamp = 0;
     }
 
     @Override
@@ -128,11 +174,15 @@ public class CollaborativeGreedy<U,I> extends InteractiveRecommender<U, I>
         // Sort the list containing random orders of the items.
         jointList.clear();
         this.getIidx().forEach(jointList::add);
-        Collections.shuffle(jointList);
+        Collections.shuffle(jointList, new Random(RunSeeds.derive(rngSeed, "joint")));
+        this.partrng.setSeed(RunSeeds.derive(rngSeed, "exploration"));
 
         jointExpl.clear();
         this.times.clear();
-        this.jointIndex.clear();
+        Arrays.fill(this.jointIndex, 0);
+        Arrays.fill(this.consumed, null);
+        Arrays.fill(this.positives, null);
+        Arrays.fill(this.counts, null);
 
         this.jointData.clear();
         this.retrievedData.clear();
@@ -156,7 +206,50 @@ public class CollaborativeGreedy<U,I> extends InteractiveRecommender<U, I>
         {
             return -1;
         }
+        return this.select(uidx, availability, false);
+    }
+
+    @Override
+    public IntList next(int uidx, IntList available, int k)
+    {
+        IntList list = new IntArrayList();
+        if (available == null || available.isEmpty())
+        {
+            return list;
+        }
+
+        IntList avCopy = new IntArrayList(available);
+        this.mark(avCopy);
 
+        int num = Math.min(available.size(), k);
+        for(int i = 0; i < num; ++i)
+        {
+            int elem = this.select(uidx, avCopy, true);
+            list.add(elem);
+
+            // Remove the element by swapping it with the last one.
+            int pos = this.positions[elem];
+            int last = avCopy.removeInt(avCopy.size() - 1);
+            if(pos < avCopy.size())
+            {
+                avCopy.set(pos, last);
+                this.positions[last] = pos;
+            }
+            this.marks[elem] = 0;
+        }
+
+        return list;
+    }
+
+    /**
+     * Selects an item for a user.
+     * @param uidx         the user.
+     * @param availability the (non-empty) list of available items.
+     * @param marked       true if the available items are already marked with the current stamp.
+     * @return the selected item.
+     */
+    private int select(int uidx, IntList availability, boolean marked)
+    {
         // Find the probabilities of exploring / joint exploring
         double probExpl = 1.0/Math.pow(numUsers(), alpha);
         double probJointExpl = 1.0/Math.pow(this.times.get(uidx), alpha);
@@ -169,14 +262,30 @@ public class CollaborativeGreedy<U,I> extends InteractiveRecommender<U, I>
         }
         else if(next < probExpl + probJointExpl) // return the next element by joint exploration.
         {
-            int index = this.jointIndex.getOrDefault(uidx, 0);
-            int iidx = this.jointList.getInt(index);
+            // Already recommended items are not available anymore, so we skip them
+            // without looking into the availability list. For the rest, we check the marks.
+            if(!marked)
+            {
+                this.mark(availability);
+            }
 
-            while(!availability.contains(iidx))
+            int index = this.jointIndex[uidx];
+            IntSet uConsumed = this.consumed[uidx];
+            int iidx = -1;
+            while(index < this.jointList.size())
             {
-                ++index;
-                this.jointIndex.put(uidx, index);
                 iidx = this.jointList.getInt(index);
+                if((uConsumed == null || !uConsumed.contains(iidx)) && iidx < this.marks.length && this.marks[iidx] == this.stamp)
+                {
+                    break;
+                }
+                ++index;
+            }
+            this.jointIndex[uidx] = index;
+
+            if(index >= this.jointList.size())
+            {
+                return availability.getInt(rng.nextInt(availability.size()));
             }
 
             if(!this.jointExpl.containsKey(uidx)) this.jointExpl.put(uidx, new IntOpenHashSet());
@@ -185,32 +294,8 @@ public class CollaborativeGreedy<U,I> extends InteractiveRecommender<U, I>
         }
 
         // Otherwise: exploit
-        Int2DoubleOpenHashMap itemScores = new Int2DoubleOpenHashMap();
-        Int2DoubleOpenHashMap itemDen = new Int2DoubleOpenHashMap();
-        itemScores.defaultReturnValue(1.0);
-        itemDen.defaultReturnValue(2.0);
-
-        // Compute the recommendation scores.
-        this.sim.similarElems(uidx).forEach(sim ->
-        {
-            if(sim.v2 > threshold)
-            {
-                int vidx = sim.v1;
-                this.retrievedData.getUidxPreferences(vidx).forEach(iidx ->
-                {
-                    if(itemScores.containsKey(iidx.v1))
-                    {
-                        if(iidx.v2 > 0) itemScores.addTo(iidx.v1, 1.0);
-                        itemDen.addTo(iidx.v1, 1.0);
-                    }
-                    else
-                    {
-                        if(iidx.v2 > 0) itemScores.put(iidx.v1, 1.0);
-                        itemDen.put(iidx.v1, 1.0);
-                    }
-                });
-            }
-        });
+        Int2IntOpenHashMap uPositives = this.positives[uidx];
+        Int2IntOpenHashMap uCounts = this.counts[uidx];
 
         // Select the best item:
         double max = Double.NEGATIVE_INFINITY;
@@ -218,14 +303,12 @@ public class CollaborativeGreedy<U,I> extends InteractiveRecommender<U, I>
 
         for(int iidx : availability)
         {
-            double val = itemScores.getOrDefault(iidx, itemScores.defaultReturnValue());
-            double count = itemDen.getOrDefault(iidx, itemDen.defaultReturnValue());
-
-            val = val/count;
+            int count = uCounts == null ? 0 : uCounts.get(iidx);
+            double val = count == 0 ? 0.5 : uPositives.get(iidx) / (double) count;
 
             if(top.isEmpty() || val > max)
             {
-                top = new IntArrayList();
+                top.clear();
                 max = val;
                 top.add(iidx);
             }
@@ -247,28 +330,32 @@ public class CollaborativeGreedy<U,I> extends InteractiveRecommender<U, I>
         return top.get(rng.nextInt(topSize));
     }
 
-    @Override
-    public IntList next(int uidx, IntList available, int k)
+    /**
+     * Marks the available items with a new stamp, and stores their positions in the list.
+     * @param availability the list of available items.
+     */
+    private void mark(IntList availability)
     {
-        IntList avCopy = new IntArrayList();
-        available.forEach(avCopy::add);
-
-        IntList list = new IntArrayList();
-        int num = Math.min(available.size(), k);
-        for(int i = 0; i < num; ++i)
+        if(++this.stamp == Integer.MAX_VALUE)
         {
-            int elem = this.next(uidx, avCopy);
-            list.add(elem);
-            avCopy.remove(avCopy.indexOf(elem));
+            Arrays.fill(this.marks, 0);
+            this.stamp = 1;
         }
 
-        return list;
+        for(int j = 0, size = availability.size(); j < size; ++j)
+        {
+            int iidx = availability.getInt(j);
+            this.marks[iidx] = this.stamp;
+            this.positions[iidx] = j;
+        }
     }
 
-
     @Override
     public void update(int uidx, int iidx, double value)
     {
+        if(this.consumed[uidx] == null) this.consumed[uidx] = new IntOpenHashSet();
+        this.consumed[uidx].add(iidx);
+
         double newValue;
         if(!Double.isNaN(value))
             newValue = value;
@@ -283,26 +370,67 @@ public class CollaborativeGreedy<U,I> extends InteractiveRecommender<U, I>
             // Update the number of times that the user u has been recommended.
             this.times.put(uidx, this.times.getOrDefault(uidx, 1) + 1);
 
+            // Update the scores of the users having uidx as a neighbour.
+            int positive = newValue > 0 ? 1 : 0;
+            this.sim.getNeighbours(uidx).forEach(vidx -> this.updateScore(vidx, iidx, positive, 1));
+
             double auxvalue = value > 0 ? 1 : -1;
 
             // If the item has been explored through joint exploration, update the similarities.
-            if (this.jointExpl.get(uidx).contains(iidx))
+            IntSet uJointExpl = this.jointExpl.get(uidx);
+            if (uJointExpl != null && uJointExpl.contains(iidx))
             {
                 this.jointData.update(this.uIndex.uidx2user(uidx), this.iIndex.iidx2item(iidx), auxvalue);
-                this.jointData.getIidxPreferences(iidx).forEach(vidx -> this.sim.update(uidx, vidx.v1, iidx, auxvalue, vidx.v2));
-            }
-
-            // Update the index for the joint exploration list.
-            int index = this.jointIndex.get(uidx);
-            if (index < this.retrievedData.numItemsWithPreferences() && iidx == this.jointList.get(index))
-            {
-                ++index;
-                while (index < this.jointList.size() && this.retrievedData.getPreference(uidx, this.jointList.get(index)).isPresent())
+                this.jointData.getIidxPreferences(iidx).forEach(vidx ->
                 {
-                    ++index;
-                }
-                this.jointIndex.put(uidx, index);
+                    boolean wasNeighbour = this.sim.isNeighbour(uidx, vidx.v1);
+                    this.sim.update(uidx, vidx.v1, iidx, auxvalue, vidx.v2);
+                    boolean isNeighbour = this.sim.isNeighbour(uidx, vidx.v1);
+                    if(wasNeighbour != isNeighbour)
+                    {
+                        int sign = isNeighbour ? 1 : -1;
+                        this.updateScores(uidx, vidx.v1, sign);
+                        if(uidx != vidx.v1) this.updateScores(vidx.v1, uidx, sign);
+                    }
+                });
             }
         }
     }
+
+    /**
+     * Adds (or removes) the ratings of a neighbour to the scores of a user.
+     * @param uidx the user.
+     * @param vidx the neighbour.
+     * @param sign 1 if the neighbour has been added, -1 if it has been removed.
+     */
+    private void updateScores(int uidx, int vidx, int sign)
+    {
+        this.retrievedData.getUidxPreferences(vidx).forEach(iidx -> this.updateScore(uidx, iidx.v1, iidx.v2 > 0 ? sign : 0, sign));
+    }
+
+    /**
+     * Updates the score of an item for a user.
+     * @param uidx     the user.
+     * @param iidx     the item.
+     * @param positive the change in the number of positive ratings.
+     * @param count    the change in the number of ratings.
+     */
+    private void updateScore(int uidx, int iidx, int positive, int count)
+    {
+        if(this.counts[uidx] == null)
+        {
+            this.positives[uidx] = new Int2IntOpenHashMap();
+            this.counts[uidx] = new Int2IntOpenHashMap();
+        }
+
+        if(this.counts[uidx].addTo(iidx, count) + count == 0)
+        {
+            this.counts[uidx].remove(iidx);
+            this.positives[uidx].remove(iidx);
+        }
+        else if(positive != 0)
+        {
+            this.positives[uidx].addTo(iidx, positive);
+        }
+    }
 }
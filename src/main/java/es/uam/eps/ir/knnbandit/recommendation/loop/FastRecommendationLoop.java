@@ -12,6 +12,7 @@ package es.uam.eps.ir.knnbandit.recommendation.loop;
 import es.uam.eps.ir.knnbandit.utils.Pair;
 import es.uam.eps.ir.ranksys.fast.FastRecommendation;
 
+import java.util.List;
 import java.util.stream.Stream;
 
 /**
@@ -64,7 +65,26 @@ public interface FastRecommendationLoop<U,I> extends RecommendationLoop<U,I>
 
     void fastUpdateNotRec (int uidx, int iidx);
     void fastUpdateNotRec(FastRecommendation rec);
+
+    /**
+     * Updates the metrics and the end condition (but not the recommender) with a batch of
+     * previously recommended user-item pairs, in order.
+     * @param pairs the recommended user-item pairs.
+     */
+    void fastUpdateNotRec(List<Pair<Integer>> pairs);
+
+    /**
+     * Updates the recommender with a sequence of previously recommended user-item pairs. The
+     * recommender receives all the resulting ratings at once.
+     * @param pair the recommended user-item pairs.
+     */
     void fastUpdateRec(Stream<Pair<Integer>> pair);
+
+    /**
+     * Updates the recommender with a sequence of previous recommendation rankings. The
+     * recommender receives all the resulting ratings at once.
+     * @param recs the recommendation rankings.
+     */
     void fastUpdateRecList(Stream<FastRecommendation> recs);
 
 }
@@ -10,6 +10,7 @@ package es.uam.eps.ir.knnbandit.recommendation.loop;
 
 import es.uam.eps.ir.knnbandit.data.datasets.Dataset;
 import es.uam.eps.ir.knnbandit.metrics.CumulativeMetric;
+import es.uam.eps.ir.knnbandit.metrics.PopularityMetric;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommenderSupplier;
 import es.uam.eps.ir.knnbandit.recommendation.loop.end.EndCondition;
@@ -17,6 +18,7 @@ import es.uam.eps.ir.knnbandit.recommendation.loop.selection.Selection;
 import es.uam.eps.ir.knnbandit.recommendation.loop.update.UpdateStrategy;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
 import es.uam.eps.ir.knnbandit.utils.Pair;
+import es.uam.eps.ir.knnbandit.utils.statistics.PopularityCounter;
 import es.uam.eps.ir.knnbandit.warmup.Warmup;
 import es.uam.eps.ir.ranksys.core.Recommendation;
 import es.uam.eps.ir.ranksys.fast.FastRecommendation;
@@ -63,6 +65,18 @@ public class GenericRecommendationLoop<U,I> implements FastRecommendationLoop<U,
      * The metrics to compute.
      */
     protected final Map<String, CumulativeMetric<U,I>> metrics;
+    /**
+     * The popularity of the items (including the warm-up data), shared by all the metrics which depend on it.
+     */
+    protected final PopularityCounter popularity;
+    /**
+     * The metrics which read the shared popularity counter.
+     */
+    private final List<CumulativeMetric<U,I>> popularityMetrics;
+    /**
+     * The rest of the metrics.
+     */
+    private final List<CumulativeMetric<U,I>> otherMetrics;
     /**
      * The number of iterations.
      */
@@ -105,6 +119,10 @@ public class GenericRecommendationLoop<U,I> implements FastRecommendationLoop<U,
         Collections.sort(metricNames);
         this.hasEnded = false;
         this.cutoff = 1;
+        this.popularity = new PopularityCounter(dataset.numItems());
+        this.popularityMetrics = new ArrayList<>();
+        this.otherMetrics = new ArrayList<>();
+        this.sharePopularity();
     }
 
     /**
@@ -132,6 +150,31 @@ public class GenericRecommendationLoop<U,I> implements FastRecommendationLoop<U,
         Collections.sort(metricNames);
         this.hasEnded = false;
         this.cutoff = cutoff;
+        this.popularity = new PopularityCounter(dataset.numItems());
+        this.popularityMetrics = new ArrayList<>();
+        this.otherMetrics = new ArrayList<>();
+        this.sharePopularity();
+    }
+
+    /**
+     * Makes the metrics which depend on the popularity of the items read it from the shared counter of the loop,
+     * so every rating is only counted once per iteration.
+     */
+    private void sharePopularity()
+    {
+        for (String name : metricNames)
+        {
+            CumulativeMetric<U,I> metric = metrics.get(name);
+            if (metric instanceof PopularityMetric)
+            {
+                ((PopularityMetric<U,I>) metric).setPopularity(popularity);
+                popularityMetrics.add(metric);
+            }
+            else
+            {
+                otherMetrics.add(metric);
+            }
+        }
     }
 
     @Override
@@ -141,6 +184,8 @@ public class GenericRecommendationLoop<U,I> implements FastRecommendationLoop<U,
         this.update.init(dataset);
         this.recommender.init();
         this.endCond.init(dataset);
+        this.popularity.clear();
+        this.popularity.ensureCapacity(dataset.numItems());
         this.metrics.forEach((name, metric) -> metric.initialize(dataset));
         this.numIter = 0;
         this.hasEnded = false;
@@ -151,8 +196,10 @@ public class GenericRecommendationLoop<U,I> implements FastRecommendationLoop<U,
     {
         this.selection.init(dataset, warmup);
         this.update.init(dataset);
-        this.recommender.init(this.update.getList(warmup).stream());
+        this.recommender.init(warmup.share(this.update.getList(warmup)));
         this.endCond.init(dataset);
+        this.popularity.restore(warmup.share(warmup.getFullTraining()).getPopularity());
+        this.popularity.ensureCapacity(dataset.numItems());
         this.metrics.forEach((name, metric) -> metric.initialize(dataset,warmup.getFullTraining()));
         this.numIter = 0;
         this.hasEnded = false;
@@ -270,8 +317,7 @@ public class GenericRecommendationLoop<U,I> implements FastRecommendationLoop<U,
         List<FastRating> metricValues = updateValues.v2();
         for(FastRating value : metricValues)
         {
-            metrics.forEach((name, metric) -> metric.update(value.uidx(), value.iidx(),value.value()));
-            endCond.update(value.uidx(), value.iidx(),value.value());
+            this.updateMetrics(value);
         }
     }
 
@@ -288,8 +334,7 @@ public class GenericRecommendationLoop<U,I> implements FastRecommendationLoop<U,
         }
 
         FastRecommendation fastRec = updateValues.v2();
-        metrics.forEach((name, metric) -> metric.update(fastRec));
-        endCond.update(fastRec);
+        this.updateMetrics(fastRec);
     }
 
     @Override
@@ -300,8 +345,7 @@ public class GenericRecommendationLoop<U,I> implements FastRecommendationLoop<U,
         List<FastRating> metricValues = updateValues.v2();
         for(FastRating value : metricValues)
         {
-            metrics.forEach((name, metric) -> metric.update(value.uidx(), value.iidx(),value.value()));
-            endCond.update(value.uidx(), value.iidx(),value.value());
+            this.updateMetrics(value);
         }
     }
 
@@ -311,40 +355,94 @@ public class GenericRecommendationLoop<U,I> implements FastRecommendationLoop<U,
         Tuple2<List<FastRating>, FastRecommendation> updateValues = this.update.selectUpdate(rec, this.selection);
 
         FastRecommendation fastRec = updateValues.v2();
-        metrics.forEach((name, metric) -> metric.update(fastRec));
+        this.updateMetrics(fastRec);
+    }
+
+    @Override
+    public void fastUpdateNotRec(List<Pair<Integer>> pairs)
+    {
+        List<FastRating> metricValues = new ArrayList<>();
+        for(Pair<Integer> pair : pairs)
+        {
+            metricValues.addAll(this.update.selectUpdate(pair.v1(), pair.v2(), this.selection).v2());
+        }
+
+        for(FastRating value : metricValues)
+        {
+            this.updateMetrics(value);
+        }
+    }
+
+    /**
+     * Updates the popularity of the items, the metrics and the end condition with a rating.
+     * @param value the rating.
+     */
+    protected void updateMetrics(FastRating value)
+    {
+        popularity.increment(value.iidx());
+        metrics.forEach((name, metric) -> metric.update(value.uidx(), value.iidx(), value.value()));
+        endCond.update(value.uidx(), value.iidx(), value.value());
+    }
+
+    /**
+     * Updates the popularity of the items, the metrics and the end condition with a recommendation. The
+     * metrics which depend on the popularity are updated item by item, after counting each item.
+     * @param fastRec the recommendation, containing the relevance values of the items.
+     */
+    protected void updateMetrics(FastRecommendation fastRec)
+    {
+        int uidx = fastRec.getUidx();
+        for(Tuple2id item : fastRec.getIidxs())
+        {
+            popularity.increment(item.v1);
+            for(CumulativeMetric<U,I> metric : popularityMetrics)
+            {
+                metric.update(uidx, item.v1, item.v2);
+            }
+        }
+        for(CumulativeMetric<U,I> metric : otherMetrics)
+        {
+            metric.update(fastRec);
+        }
         endCond.update(fastRec);
     }
 
     @Override
     public void fastUpdateRec(Stream<Pair<Integer>> pairs)
     {
+        List<FastRating> recValues = new ArrayList<>();
         pairs.forEach(pair ->
         {
-            int uidx = pair.v1();
-            int iidx = pair.v2();
-            Pair<List<FastRating>> updateValues = this.update.selectUpdate(uidx, iidx, this.selection);
-            List<FastRating> recValues = updateValues.v1();
-            for(FastRating value : recValues)
-            {
-                recommender.update(value.uidx(), value.iidx(), value.value());
-                selection.update(value.uidx(), value.iidx(), value.value());
-            }
+            Pair<List<FastRating>> updateValues = this.update.selectUpdate(pair.v1(), pair.v2(), this.selection);
+            this.updateSelection(updateValues.v1(), recValues);
         });
+        recommender.bulkUpdate(recValues);
     }
 
     @Override
     public void fastUpdateRecList(Stream<FastRecommendation> pairs)
     {
+        List<FastRating> recValues = new ArrayList<>();
         pairs.forEach(fastRec ->
         {
             Tuple2<List<FastRating>, FastRecommendation> updateValues = this.update.selectUpdate(fastRec, this.selection);
-            List<FastRating> recValues = updateValues.v1();
-            for(FastRating value : recValues)
-            {
-                recommender.update(value.uidx(), value.iidx(), value.value());
-                selection.update(value.uidx(), value.iidx(), value.value());
-            }
+            this.updateSelection(updateValues.v1(), recValues);
         });
+        recommender.bulkUpdate(recValues);
+    }
+
+    /**
+     * Updates the selection mechanism with a list of ratings, and stores them for updating the recommender later.
+     * @param values    the ratings.
+     * @param recValues the list in which to store the ratings.
+     */
+    private void updateSelection(List<FastRating> values, List<FastRating> recValues)
+    {
+        for(FastRating value : values)
+        {
+            selection.update(value.uidx(), value.iidx(), value.value());
+            recValues.add(value);
+        }
     }
 
     @Override
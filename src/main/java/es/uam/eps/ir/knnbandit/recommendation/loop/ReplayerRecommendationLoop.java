@@ -69,8 +69,7 @@ public class ReplayerRecommendationLoop<U,I> extends GenericRecommendationLoop<U
         List<FastRating> metricValues = updateValues.v2();
         for(FastRating value : metricValues)
         {
-            metrics.forEach((name, metric) -> metric.update(value.uidx(), value.iidx(),value.value()));
-            endCond.update(value.uidx(), value.iidx(),value.value());
+            this.updateMetrics(value);
         }
         numIter++;
     }
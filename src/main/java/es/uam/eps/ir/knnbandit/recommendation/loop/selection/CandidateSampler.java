@@ -0,0 +1,102 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.recommendation.loop.selection;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+
+import java.util.Random;
+
+/**
+ * Samples pools of candidate items, containing a fixed item and a uniformly random selection
+ * of distinct other items. It runs a partial Fisher-Yates shuffle over a permutation of the items
+ * which is kept between calls, so each pool is obtained in time proportional to its size, without
+ * rejections and without allocating memory. The fixed item is moved to the end of the permutation
+ * before shuffling, so it is never drawn again.
+ * <p>
+ * The returned list is reused by the following call.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+class CandidateSampler
+{
+    /**
+     * A permutation of the items.
+     */
+    private final int[] items;
+    /**
+     * The position of each item in the permutation.
+     */
+    private final int[] positions;
+    /**
+     * The sampled pool of candidate items.
+     */
+    private final IntArrayList candidates;
+
+    /**
+     * Constructor.
+     *
+     * @param allItems the items which can be sampled.
+     */
+    CandidateSampler(IntList allItems)
+    {
+        this.items = allItems.toIntArray();
+        int maxIidx = -1;
+        for (int iidx : items)
+        {
+            maxIidx = Math.max(maxIidx, iidx);
+        }
+
+        this.positions = new int[maxIidx + 1];
+        for (int i = 0; i < items.length; ++i)
+        {
+            positions[items[i]] = i;
+        }
+        this.candidates = new IntArrayList();
+    }
+
+    /**
+     * Samples a pool of candidate items.
+     *
+     * @param fixed    the item that the pool must contain (it is placed first).
+     * @param numOther the number of other items to sample. It must be smaller than the number of items.
+     * @param rng      the random number generator.
+     * @return the pool of candidate items.
+     */
+    IntList sample(int fixed, int numOther, Random rng)
+    {
+        int n = items.length - 1;
+        this.swap(positions[fixed], n);
+
+        candidates.clear();
+        candidates.add(fixed);
+        for (int i = 0; i < numOther; ++i)
+        {
+            this.swap(i, i + rng.nextInt(n - i));
+            candidates.add(items[i]);
+        }
+        return candidates;
+    }
+
+    /**
+     * Swaps two positions of the permutation.
+     *
+     * @param i the first position.
+     * @param j the second position.
+     */
+    private void swap(int i, int j)
+    {
+        int aux = items[i];
+        items[i] = items[j];
+        items[j] = aux;
+        positions[items[i]] = i;
+        positions[items[j]] = j;
+    }
+}
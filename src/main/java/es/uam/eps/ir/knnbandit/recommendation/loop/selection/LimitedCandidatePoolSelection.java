@@ -13,6 +13,7 @@ import es.uam.eps.ir.knnbandit.data.datasets.GeneralDataset;
 import es.uam.eps.ir.knnbandit.warmup.Warmup;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntLists;
 
 import java.util.Collections;
 import java.util.Random;
@@ -68,6 +69,19 @@ public class LimitedCandidatePoolSelection<U,I> implements Selection<U,I>
      * The item list.
      */
     private final IntList allItems;
+    /**
+     * For each user, the position of its first relevant item in the {@link #relevantItems} array
+     * (the relevant items of user uidx are in positions relevantStart[uidx] to relevantStart[uidx+1]).
+     */
+    private int[] relevantStart;
+    /**
+     * The relevant items of all the users, one user after another.
+     */
+    private int[] relevantItems;
+    /**
+     * Sampler for the pools of candidate items.
+     */
+    private CandidateSampler sampler;
 
     /**
      * Constructor.
@@ -93,28 +107,19 @@ public class LimitedCandidatePoolSelection<U,I> implements Selection<U,I>
     @Override
     public IntList selectCandidates(int uidx)
     {
-        IntList positiveItems = new IntArrayList();
-        this.dataset.getUidxPreferences(uidx).filter(item -> this.dataset.isRelevant(item.v2)).forEach(item -> positiveItems.add(item.v1));
-        if(positiveItems.isEmpty()) return null;
+        int start = this.relevantStart[uidx];
+        int numRel = this.relevantStart[uidx + 1] - start;
+        if(numRel == 0) return null;
 
-        IntList candidateItems = new IntArrayList();
         if(this.numCandidates >= this.dataset.numItems())
         {
-            this.dataset.getAllIidx().forEach(candidateItems::add);
+            return IntLists.unmodifiable(allItems);
         }
         else
         {
-            int iidx = positiveItems.getInt(rng.nextInt(positiveItems.size()));
-            candidateItems.add(iidx);
-            for(int i = 1; i < numCandidates; ++i)
-            {
-                int index = rng.nextInt(dataset.numItems());
-                iidx = allItems.getInt(index);
-                if(!candidateItems.contains(iidx)) candidateItems.add(iidx);
-                else --i;
-            }
+            int iidx = relevantItems[start + rng.nextInt(numRel)];
+            return sampler.sample(iidx, numCandidates - 1, rng);
         }
-        return candidateItems;
     }
 
     @Override
@@ -132,6 +137,19 @@ public class LimitedCandidatePoolSelection<U,I> implements Selection<U,I>
 
         this.dataset.getUidxWithPreferences().forEach(userList::add);
         this.dataset.getAllIidx().forEach(allItems::add);
+        this.sampler = new CandidateSampler(allItems);
+
+        // Index the relevant items of each user.
+        int numUsers = this.dataset.numUsers();
+        this.relevantStart = new int[numUsers + 1];
+        IntArrayList relevant = new IntArrayList();
+        for(int uidx = 0; uidx < numUsers; ++uidx)
+        {
+            this.relevantStart[uidx] = relevant.size();
+            this.dataset.getUidxPreferences(uidx).filter(item -> this.dataset.isRelevant(item.v2)).forEach(item -> relevant.add(item.v1));
+        }
+        this.relevantStart[numUsers] = relevant.size();
+        this.relevantItems = relevant.toIntArray();
 
         Collections.shuffle(this.userList, rng);
         this.numUsers = userList.size();
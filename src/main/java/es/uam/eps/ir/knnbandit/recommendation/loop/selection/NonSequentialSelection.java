@@ -161,13 +161,14 @@ public class NonSequentialSelection<U,I> implements Selection<U,I>
         this.availability.clear();
         this.rng = new Random(rngSeed);
 
+        // The warm-up availability lists are shared: each user only keeps track of the items removed from them.
         List<IntList> warmupAvailability = ((OfflineWarmup) warmup).getAvailability();
         general.getUidxWithPreferences().forEach(uidx ->
         {
              IntList uAvailable = warmupAvailability.get(uidx);
              if(uAvailable != null)
              {
-                 this.availability.put(uidx, new IntArrayList(uAvailable));
+                 this.availability.put(uidx, new RemovalIntList(uAvailable));
                  if(!uAvailable.isEmpty())
                  {
                      this.userList.add(uidx);
@@ -179,15 +180,6 @@ public class NonSequentialSelection<U,I> implements Selection<U,I>
              }
         });
 
-        IntSet keySet = availability.keySet();
-        keySet.forEach(uidx ->
-        {
-            if(availability.get(uidx).isEmpty())
-            {
-                this.userList.remove(uidx);
-            }
-        });
-
         Collections.shuffle(this.userList, rng);
         this.numUsers = userList.size();
         this.lastRemovedIndex = -1;
@@ -0,0 +1,248 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.recommendation.loop.selection;
+
+import it.unimi.dsi.fastutil.ints.AbstractIntList;
+import it.unimi.dsi.fastutil.ints.AbstractIntListIterator;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntListIterator;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * List containing the elements of a base list of distinct elements, minus the ones removed from it.
+ * The base list (which can be shared with other lists, or unmodifiable) is never modified or copied:
+ * the list only stores the sorted indexes (in the base list) of the removed elements. Therefore, the
+ * memory it needs is proportional to the number of removed elements, and not to the size of the list.
+ * <p>
+ * Random access, and the contains and indexOf queries, take logarithmic time on the number of
+ * removed elements (apart from the cost of the same query on the base list), whereas iterating
+ * over the list takes the same time per element as iterating over the base list. Elements can
+ * only be removed from the list.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+class RemovalIntList extends AbstractIntList
+{
+    /**
+     * The base list.
+     */
+    private final IntList base;
+    /**
+     * The sorted indexes (in the base list) of the removed elements.
+     */
+    private int[] removed;
+    /**
+     * The number of removed elements.
+     */
+    private int numRemoved;
+
+    /**
+     * Constructor.
+     *
+     * @param base the base list. It must not change while this list is in use.
+     */
+    RemovalIntList(IntList base)
+    {
+        this.base = base;
+        this.removed = new int[0];
+        this.numRemoved = 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return base.size() - numRemoved;
+    }
+
+    @Override
+    public int getInt(int index)
+    {
+        if (index < 0 || index >= this.size())
+        {
+            throw new IndexOutOfBoundsException("Index (" + index + ") is not in [0, " + this.size() + ")");
+        }
+        return base.getInt(index + this.rank(index));
+    }
+
+    @Override
+    public boolean contains(int k)
+    {
+        return this.indexOf(k) >= 0;
+    }
+
+    @Override
+    public int indexOf(int k)
+    {
+        int baseIndex = base.indexOf(k);
+        if (baseIndex < 0)
+        {
+            return -1;
+        }
+        int pos = Arrays.binarySearch(removed, 0, numRemoved, baseIndex);
+        // If it has not been removed, the number of removed elements before it is the insertion point.
+        return pos >= 0 ? -1 : baseIndex + pos + 1;
+    }
+
+    @Override
+    public int lastIndexOf(int k)
+    {
+        return this.indexOf(k);
+    }
+
+    @Override
+    public int removeInt(int index)
+    {
+        if (index < 0 || index >= this.size())
+        {
+            throw new IndexOutOfBoundsException("Index (" + index + ") is not in [0, " + this.size() + ")");
+        }
+
+        int numBefore = this.rank(index);
+        int baseIndex = index + numBefore;
+        if (numRemoved == removed.length)
+        {
+            removed = Arrays.copyOf(removed, Math.max(4, 2 * removed.length));
+        }
+        System.arraycopy(removed, numBefore, removed, numBefore + 1, numRemoved - numBefore);
+        removed[numBefore] = baseIndex;
+        ++numRemoved;
+
+        return base.getInt(baseIndex);
+    }
+
+    @Override
+    public IntListIterator listIterator(int index)
+    {
+        if (index < 0 || index > this.size())
+        {
+            throw new IndexOutOfBoundsException("Index (" + index + ") is not in [0, " + this.size() + "]");
+        }
+
+        return new AbstractIntListIterator()
+        {
+            /**
+             * The index of the next element.
+             */
+            int next = index;
+            /**
+             * The index in the base list of the next element.
+             */
+            int baseIndex;
+            /**
+             * The number of removed elements before baseIndex.
+             */
+            int numBefore;
+            /**
+             * An iterator over the base list, placed before baseIndex.
+             */
+            IntListIterator iterator;
+
+            {
+                this.locate();
+            }
+
+            /**
+             * Places the iterator over the base list before the next element.
+             */
+            private void locate()
+            {
+                numBefore = rank(next);
+                baseIndex = next + numBefore;
+                iterator = base.listIterator(baseIndex);
+            }
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < size();
+            }
+
+            @Override
+            public boolean hasPrevious()
+            {
+                return next > 0;
+            }
+
+            @Override
+            public int nextInt()
+            {
+                if (!this.hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                int value = iterator.nextInt();
+                ++next;
+                ++baseIndex;
+                while (numBefore < numRemoved && removed[numBefore] == baseIndex)
+                {
+                    iterator.nextInt();
+                    ++baseIndex;
+                    ++numBefore;
+                }
+                return value;
+            }
+
+            @Override
+            public int previousInt()
+            {
+                if (!this.hasPrevious())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                --next;
+                this.locate();
+                return base.getInt(baseIndex);
+            }
+
+            @Override
+            public int nextIndex()
+            {
+                return next;
+            }
+
+            @Override
+            public int previousIndex()
+            {
+                return next - 1;
+            }
+        };
+    }
+
+    /**
+     * Obtains the number of removed elements before the element at a given index of the list.
+     * As the removed indexes are sorted, the difference between the j-th removed index and j does
+     * not decrease, so it is found by binary search.
+     *
+     * @param index the index of the element.
+     * @return the number of removed elements.
+     */
+    private int rank(int index)
+    {
+        int lo = 0;
+        int hi = numRemoved;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (removed[mid] - mid <= index)
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
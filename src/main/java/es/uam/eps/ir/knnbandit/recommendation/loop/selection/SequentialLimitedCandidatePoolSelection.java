@@ -13,6 +13,7 @@ import es.uam.eps.ir.knnbandit.data.datasets.StreamDataset;
 import es.uam.eps.ir.knnbandit.warmup.Warmup;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntLists;
 
 import java.io.IOException;
 import java.util.Random;
@@ -54,6 +55,10 @@ public class SequentialLimitedCandidatePoolSelection<U,I> implements Selection<U
      * List of all items.
      */
     IntList allItems = new IntArrayList();
+    /**
+     * Sampler for the pools of candidate items.
+     */
+    private CandidateSampler sampler;
 
     /**
      * Constructor.
@@ -79,28 +84,11 @@ public class SequentialLimitedCandidatePoolSelection<U,I> implements Selection<U
         {
             if (this.numExtra >= this.dataset.numItems() - 1)
             {
-                return new IntArrayList(allItems);
+                return IntLists.unmodifiable(allItems);
             }
             else
             {
-                IntList candidateList = new IntArrayList();
-                candidateList.add(this.dataset.getFeaturedIidx());
-
-                for (int j = 0; j < numExtra; ++j)
-                {
-                    int next = rng.nextInt(this.dataset.numItems());
-                    int iidx = this.allItems.get(next);
-                    if (!candidateList.contains(iidx))
-                    {
-                        candidateList.add(iidx);
-                    }
-                    else
-                    {
-                        --j;
-                    }
-                }
-
-                return candidateList;
+                return sampler.sample(this.dataset.getFeaturedIidx(), numExtra, rng);
             }
         }
 
@@ -127,9 +115,10 @@ public class SequentialLimitedCandidatePoolSelection<U,I> implements Selection<U
         {
             this.dataset = (StreamDataset<U, I>) dataset;
             this.dataset.restart();
-            this.rng = new Random();
+            this.rng = new Random(rngSeed);
             this.allItems = new IntArrayList();
             dataset.getAllIidx().forEach(allItems::add);
+            this.sampler = new CandidateSampler(allItems);
         }
         catch(IOException ignored)
         {
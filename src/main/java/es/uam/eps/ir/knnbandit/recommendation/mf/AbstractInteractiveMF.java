@@ -9,13 +9,13 @@
 package es.uam.eps.ir.knnbandit.recommendation.mf;
 
 import cern.colt.matrix.DoubleMatrix1D;
-import cern.colt.matrix.DoubleMatrix2D;
 import es.uam.eps.ir.knnbandit.Constants;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.AbstractSimpleFastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
+import es.uam.eps.ir.knnbandit.warmup.SharedWarmup;
 import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 import es.uam.eps.ir.ranksys.mf.Factorization;
 import es.uam.eps.ir.ranksys.mf.Factorizer;
@@ -25,6 +25,7 @@ import org.ranksys.core.util.tuples.Tuple2id;
 
 import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Optional;
 import java.util.PriorityQueue;
 import java.util.logging.Level;
@@ -57,6 +58,10 @@ public abstract class AbstractInteractiveMF<U, I> extends InteractiveRecommender
      * Decomposition in different matrices.
      */
     protected Factorization<U, I> factorization;
+    /**
+     * Item factors of the current factorization, stored in a contiguous array.
+     */
+    protected DenseFactorMatrix itemFactors;
 
     /**
      * The current rating matrix.
@@ -66,6 +71,14 @@ public abstract class AbstractInteractiveMF<U, I> extends InteractiveRecommender
      * Current hit counter.
      */
     protected int currentCounter = 0;
+    /**
+     * Buffer for the predicted ratings of the candidate items.
+     */
+    private double[] scores;
+    /**
+     * Buffer for the user vector.
+     */
+    private final double[] userVector;
 
     /**
      * Constructor.
@@ -89,6 +102,8 @@ public abstract class AbstractInteractiveMF<U, I> extends InteractiveRecommender
 
         this.retrievedData = retrievedData;
         this.limitCounter = limitCounter;
+        this.scores = new double[0];
+        this.userVector = new double[this.k];
     }
 
     /**
@@ -113,6 +128,8 @@ public abstract class AbstractInteractiveMF<U, I> extends InteractiveRecommender
 
         this.retrievedData = retrievedData;
         this.limitCounter = limitCounter;
+        this.scores = new double[0];
+        this.userVector = new double[this.k];
     }
 
     @Override
@@ -120,7 +137,7 @@ public abstract class AbstractInteractiveMF<U, I> extends InteractiveRecommender
     {
         super.init();
         this.retrievedData.clear();
-        this.factorization = factorizer.factorize(k, retrievedData);
+        this.factorize();
     }
 
     @Override
@@ -129,7 +146,44 @@ public abstract class AbstractInteractiveMF<U, I> extends InteractiveRecommender
         super.init();
         this.retrievedData.clear();
         values.forEach(triplet -> this.retrievedData.updateRating(triplet.uidx(), triplet.iidx(), triplet.value()));
+        this.factorize();
+    }
+
+    @Override
+    public void init(SharedWarmup warmup)
+    {
+        super.init();
+        this.retrievedData.init(warmup);
+        this.factorize();
+    }
+
+    /**
+     * Factorizes the current rating matrix, and stores the resulting item factors.
+     */
+    protected void factorize()
+    {
         this.factorization = factorizer.factorize(k, retrievedData);
+        this.itemFactors = DenseFactorMatrix.copyOf(factorization.getItemMatrix());
+    }
+
+    /**
+     * Predicts the ratings of a user for a set of candidate items.
+     *
+     * @param pu           the user vector.
+     * @param availability the candidate items.
+     * @return the predicted ratings, in the same order as the candidate items. The array is reused
+     * by the following calls, and it might have more positions than candidate items.
+     */
+    private double[] predict(DoubleMatrix1D pu, IntList availability)
+    {
+        if (scores.length < availability.size())
+        {
+            scores = new double[availability.size()];
+        }
+
+        pu.toArray(userVector);
+        itemFactors.dot(userVector, availability, scores);
+        return scores;
     }
 
     /*@Override
@@ -154,20 +208,21 @@ public abstract class AbstractInteractiveMF<U, I> extends InteractiveRecommender
             return availability.get(rng.nextInt(availability.size()));
         }
 
-        DoubleMatrix2D itemMatrix = factorization.getItemMatrix();
+        double[] scores = this.predict(pu, availability);
+
         double max = Double.NEGATIVE_INFINITY;
         IntList top = new IntArrayList();
-
-        for (int iidx : availability)
+        for (int i = 0, size = availability.size(); i < size; ++i)
         {
-            double val = itemMatrix.viewRow(iidx).zDotProduct(pu);
+            int iidx = availability.get(i);
+            double val = scores[i];
             if (Double.isNaN(val))
             {
                 val = Double.NEGATIVE_INFINITY;
             }
             if (top.isEmpty() || max < val)
             {
-                top = new IntArrayList();
+                top.clear();
                 top.add(iidx);
                 max = val;
             }
@@ -202,11 +257,13 @@ public abstract class AbstractInteractiveMF<U, I> extends InteractiveRecommender
         DoubleMatrix1D pu = factorization.getUserVector(uIndex.uidx2user(uidx));
         if (pu != null)
         {
-            DoubleMatrix2D itemMatrix = factorization.getItemMatrix();
+            double[] scores = this.predict(pu, availability);
+
             PriorityQueue<Tuple2id> queue = new PriorityQueue<>(num, Comparator.comparingDouble(x -> x.v2));
-            for (int iidx : availability)
+            for (int i = 0, size = availability.size(); i < size; ++i)
             {
-                double val = itemMatrix.viewRow(iidx).zDotProduct(pu);
+                int iidx = availability.get(i);
+                double val = scores[i];
                 if (Double.isNaN(val))
                 {
                     val = Double.NEGATIVE_INFINITY;
@@ -247,6 +304,45 @@ public abstract class AbstractInteractiveMF<U, I> extends InteractiveRecommender
 
     @Override
     public void update(int uidx, int iidx, double value)
+    {
+        if (this.updateData(uidx, iidx, value))
+        {
+            this.factorize();
+        }
+    }
+
+    /**
+     * Updates the method with a batch of ratings. All the ratings are stored, and, if any of them
+     * would have triggered a new factorization, the model is factorized once, at the end. Therefore,
+     * the model might also consider the ratings received after the last factorization of a
+     * one-by-one update.
+     *
+     * @param ratings the ratings, in the order in which they were received.
+     */
+    @Override
+    public void bulkUpdate(List<FastRating> ratings)
+    {
+        boolean factorize = false;
+        for (FastRating rating : ratings)
+        {
+            factorize |= this.updateData(rating.uidx(), rating.iidx(), rating.value());
+        }
+
+        if (factorize)
+        {
+            this.factorize();
+        }
+    }
+
+    /**
+     * Stores a rating, and checks whether the model has to be factorized again.
+     *
+     * @param uidx  User identifier.
+     * @param iidx  Item identifier.
+     * @param value The rating uidx provides to iidx.
+     * @return true if the model has to be factorized again, false otherwise.
+     */
+    protected boolean updateData(int uidx, int iidx, double value)
     {
         double newValue;
         if(!Double.isNaN(value))
@@ -254,7 +350,7 @@ public abstract class AbstractInteractiveMF<U, I> extends InteractiveRecommender
         else if(!this.ignoreNotRated)
             newValue = Constants.NOTRATEDNOTIGNORED;
         else
-            return;
+            return false;
 
         boolean hasRating = false;
         double oldValue = 0;
@@ -291,8 +387,9 @@ public abstract class AbstractInteractiveMF<U, I> extends InteractiveRecommender
         if (currentCounter >= this.limitCounter)
         {
             this.currentCounter = 0;
-            this.factorization = factorizer.factorize(k, retrievedData);
+            return true;
         }
+        return false;
     }
 
 }
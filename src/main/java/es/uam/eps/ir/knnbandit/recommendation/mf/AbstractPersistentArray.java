@@ -0,0 +1,157 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.recommendation.mf;
+
+import java.util.function.IntFunction;
+
+/**
+ * Array whose copies share their memory until they are modified. The elements are stored in chunks
+ * of {@link #CHUNK_SIZE} consecutive positions. A copy shares the chunks with the original array, and
+ * modifying an element of any of them only copies the chunk containing it (and, the first time, the
+ * table of chunks). Therefore, the cost of copying an array and then modifying a few elements is
+ * proportional to the number of chunks, and not to the number of elements.
+ * <p>
+ * It is used for storing the state of the particles of particle filtering approaches, which are
+ * copied on every resampling step, but only modify the rows of a user and an item on each update.
+ *
+ * @param <C> type of the chunks.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public abstract class AbstractPersistentArray<C>
+{
+    /**
+     * Base 2 logarithm of the number of elements in a chunk.
+     */
+    protected static final int CHUNK_BITS = 6;
+    /**
+     * The number of elements in a chunk.
+     */
+    protected static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    /**
+     * Mask for finding the position of an element in its chunk.
+     */
+    protected static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * The number of elements.
+     */
+    private final int size;
+    /**
+     * The chunks.
+     */
+    private Object[] chunks;
+    /**
+     * The owner of each chunk. A chunk can only be modified by the array which owns it.
+     */
+    private Object[] owners;
+    /**
+     * Identifier of this array, as the owner of chunks.
+     */
+    private Object owner;
+    /**
+     * True if the table of chunks is not shared with other arrays.
+     */
+    private boolean ownsTable;
+
+    /**
+     * Constructor.
+     *
+     * @param size     the number of elements.
+     * @param newChunk function for building a new chunk, given its number of elements.
+     */
+    protected AbstractPersistentArray(int size, IntFunction<C> newChunk)
+    {
+        this.size = size;
+        this.owner = new Object();
+        int numChunks = (size + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+        this.chunks = new Object[numChunks];
+        this.owners = new Object[numChunks];
+        for (int c = 0; c < numChunks; ++c)
+        {
+            this.chunks[c] = newChunk.apply(Math.min(CHUNK_SIZE, size - (c << CHUNK_BITS)));
+            this.owners[c] = owner;
+        }
+        this.ownsTable = true;
+    }
+
+    /**
+     * Copy constructor. After it, neither array owns any chunk, so both copy a chunk before modifying it.
+     *
+     * @param other the array to copy.
+     */
+    protected AbstractPersistentArray(AbstractPersistentArray<C> other)
+    {
+        this.size = other.size;
+        this.chunks = other.chunks;
+        this.owners = other.owners;
+        this.owner = new Object();
+        this.ownsTable = false;
+
+        other.owner = new Object();
+        other.ownsTable = false;
+    }
+
+    /**
+     * Obtains the number of elements.
+     *
+     * @return the number of elements.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Obtains the chunk containing an element, for reading it.
+     *
+     * @param idx the index of the element.
+     * @return the chunk.
+     */
+    @SuppressWarnings("unchecked")
+    protected C chunk(int idx)
+    {
+        return (C) chunks[idx >>> CHUNK_BITS];
+    }
+
+    /**
+     * Obtains the chunk containing an element, for modifying it. If the chunk is shared with other
+     * arrays, it is copied first.
+     *
+     * @param idx the index of the element.
+     * @return the chunk.
+     */
+    @SuppressWarnings("unchecked")
+    protected C writableChunk(int idx)
+    {
+        if (!ownsTable)
+        {
+            this.chunks = chunks.clone();
+            this.owners = owners.clone();
+            this.ownsTable = true;
+        }
+
+        int c = idx >>> CHUNK_BITS;
+        if (owners[c] != owner)
+        {
+            chunks[c] = this.copy((C) chunks[c]);
+            owners[c] = owner;
+        }
+        return (C) chunks[c];
+    }
+
+    /**
+     * Copies a chunk.
+     *
+     * @param chunk the chunk.
+     * @return the copy.
+     */
+    protected abstract C copy(C chunk);
+}
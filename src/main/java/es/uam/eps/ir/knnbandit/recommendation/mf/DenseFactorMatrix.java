@@ -0,0 +1,198 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.recommendation.mf;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import it.unimi.dsi.fastutil.ints.IntList;
+
+/**
+ * Dense matrix of latent factors, stored in a contiguous row-major array. It can be used as
+ * any other Colt matrix, but it also provides methods for scoring a set of candidate rows
+ * against a vector directly over the primitive array, without creating row views.
+ * <p>
+ * Dot products are computed in the same order as Colt, so scores are exactly the same as
+ * those obtained with {@code viewRow(idx).zDotProduct(vector)}.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class DenseFactorMatrix extends DenseDoubleMatrix2D
+{
+    /**
+     * Number of rows processed together when computing quadratic forms.
+     */
+    public static final int BLOCK_SIZE = 32;
+
+    /**
+     * Constructor. Builds a matrix full of zeros.
+     *
+     * @param rows    the number of rows.
+     * @param columns the number of columns (i.e. the number of latent factors).
+     */
+    public DenseFactorMatrix(int rows, int columns)
+    {
+        super(rows, columns);
+    }
+
+    /**
+     * Builds a dense factor matrix with the same values as another matrix.
+     *
+     * @param matrix the original matrix.
+     * @return the dense factor matrix.
+     */
+    public static DenseFactorMatrix copyOf(DoubleMatrix2D matrix)
+    {
+        DenseFactorMatrix copy = new DenseFactorMatrix(matrix.rows(), matrix.columns());
+        copy.assign(matrix);
+        return copy;
+    }
+
+    @Override
+    public DoubleMatrix2D like(int rows, int columns)
+    {
+        return new DenseFactorMatrix(rows, columns);
+    }
+
+    /**
+     * Copies a row of the matrix into an array.
+     *
+     * @param row    the row.
+     * @param vector the array where the row is copied. It must have, at least, as many positions as columns.
+     */
+    public void getRow(int row, double[] vector)
+    {
+        System.arraycopy(elements, rowZero + row * rowStride, vector, 0, columns);
+    }
+
+    /**
+     * Computes the dot product between a row of the matrix and a vector.
+     *
+     * @param row    the row.
+     * @param vector the vector. It must have, at least, as many positions as columns.
+     * @return the dot product.
+     */
+    public double dot(int row, double[] vector)
+    {
+        return dot(elements, rowZero + row * rowStride, vector, columns);
+    }
+
+    /**
+     * Computes the dot product between several rows of the matrix and a vector.
+     *
+     * @param vector the vector. It must have, at least, as many positions as columns.
+     * @param rows   the list of rows to score.
+     * @param scores the array where the scores are stored, in the same order as rows. It must have, at least, rows.size() positions.
+     */
+    public void dot(double[] vector, IntList rows, double[] scores)
+    {
+        for (int i = 0, size = rows.size(); i < size; ++i)
+        {
+            scores[i] = dot(elements, rowZero + rows.getInt(i) * rowStride, vector, columns);
+        }
+    }
+
+    /**
+     * Computes the quadratic form x^T M x, where x is a row of the matrix, and M is a square matrix
+     * with as many rows and columns as this matrix has columns.
+     *
+     * @param matrix  the square matrix M, stored row by row.
+     * @param row     the row.
+     * @param product buffer for the product of M and the row. It must have, at least, as many positions as columns.
+     * @return the quadratic form.
+     */
+    public double quadraticForm(double[] matrix, int row, double[] product)
+    {
+        int offset = rowZero + row * rowStride;
+        for (int r = 0; r < columns; ++r)
+        {
+            product[r] = dot(matrix, r * columns, elements, offset, columns);
+        }
+        return dot(elements, offset, product, 0, columns);
+    }
+
+    /**
+     * Computes the quadratic forms x^T M x, where x are several rows of the matrix, and M is a square
+     * matrix with as many rows and columns as this matrix has columns. The rows are processed in tiles
+     * of {@link #BLOCK_SIZE} rows: first, the product between the tile and M is computed into a buffer
+     * provided by the caller, going through M only once per tile, and then, each row of the product is
+     * multiplied by the corresponding row of the tile.
+     *
+     * @param matrix  the square matrix M, stored row by row.
+     * @param rows    the list of rows.
+     * @param scores  the array where the quadratic forms are stored, in the same order as rows. It must have, at least, rows.size() positions.
+     * @param product buffer for the product of a tile and M. It must have, at least, BLOCK_SIZE * columns positions.
+     */
+    public void quadraticForm(double[] matrix, IntList rows, double[] scores, double[] product)
+    {
+        for (int start = 0, size = rows.size(); start < size; start += BLOCK_SIZE)
+        {
+            int end = Math.min(start + BLOCK_SIZE, size);
+
+            // Product of the tile and M: each row of M is used for all the rows in the tile.
+            for (int r = 0; r < columns; ++r)
+            {
+                int matrixOffset = r * columns;
+                for (int i = start, productOffset = r; i < end; ++i, productOffset += columns)
+                {
+                    product[productOffset] = dot(matrix, matrixOffset, elements, rowZero + rows.getInt(i) * rowStride, columns);
+                }
+            }
+
+            // Row-wise dot products.
+            for (int i = start, productOffset = 0; i < end; ++i, productOffset += columns)
+            {
+                scores[i] = dot(elements, rowZero + rows.getInt(i) * rowStride, product, productOffset, columns);
+            }
+        }
+    }
+
+    /**
+     * Computes the dot product between a fragment of an array and a vector, using the same
+     * order of operations as Colt.
+     *
+     * @param elements the array.
+     * @param offset   the first position of the fragment.
+     * @param vector   the vector.
+     * @param length   the length of the fragment.
+     * @return the dot product.
+     */
+    private static double dot(double[] elements, int offset, double[] vector, int length)
+    {
+        return dot(elements, offset, vector, 0, length);
+    }
+
+    /**
+     * Computes the dot product between fragments of two arrays, using the same order of
+     * operations as Colt.
+     *
+     * @param a       the first array.
+     * @param aOffset the first position of the fragment of the first array.
+     * @param b       the second array.
+     * @param bOffset the first position of the fragment of the second array.
+     * @param length  the length of the fragments.
+     * @return the dot product.
+     */
+    private static double dot(double[] a, int aOffset, double[] b, int bOffset, int length)
+    {
+        double sum = 0.0;
+        int j = 0;
+        for (int blocks = length / 4; blocks > 0; --blocks, j += 4)
+        {
+            int i = aOffset + j;
+            int l = bOffset + j;
+            sum += a[i] * b[l] + a[i + 1] * b[l + 1] + a[i + 2] * b[l + 2] + a[i + 3] * b[l + 3];
+        }
+        for (; j < length; ++j)
+        {
+            sum += a[aOffset + j] * b[bOffset + j];
+        }
+        return sum;
+    }
+}
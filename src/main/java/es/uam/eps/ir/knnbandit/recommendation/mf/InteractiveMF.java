@@ -56,7 +56,7 @@ public class InteractiveMF<U, I> extends AbstractInteractiveMF<U, I>
     }
 
     @Override
-    public void update(int uidx, int iidx, double value)
+    protected boolean updateData(int uidx, int iidx, double value)
     {
         double newValue;
         if(!Double.isNaN(value))
@@ -64,7 +64,7 @@ public class InteractiveMF<U, I> extends AbstractInteractiveMF<U, I>
         else if(!this.ignoreNotRated)
             newValue = Constants.NOTRATEDNOTIGNORED;
         else
-            return;
+            return false;
         retrievedData.updateRating(uidx, iidx, newValue);
 
         if (newValue > 0.0)
@@ -74,7 +74,8 @@ public class InteractiveMF<U, I> extends AbstractInteractiveMF<U, I>
         if (currentCounter >= this.limitCounter)
         {
             this.currentCounter = 0;
-            this.factorization = factorizer.factorize(k, retrievedData);
+            return true;
         }
+        return false;
     }
 }
@@ -8,6 +8,8 @@
  */
 package es.uam.eps.ir.knnbandit.recommendation.mf;
 
+import it.unimi.dsi.fastutil.ints.IntList;
+
 /**
  * Individual particle for reinforcement learning algorithms.
  *
@@ -60,6 +62,21 @@ public interface Particle<U, I>
      */
     double getEstimatedReward(int uidx, int iidx);
 
+    /**
+     * Obtains the estimated values of the interactions between a user and a list of items.
+     *
+     * @param uidx   the user identifier.
+     * @param items  the list of item identifiers.
+     * @param scores the array where the estimated rewards are stored, in the same order as the items.
+     */
+    default void getEstimatedRewards(int uidx, IntList items, double[] scores)
+    {
+        for (int i = 0; i < items.size(); ++i)
+        {
+            scores[i] = this.getEstimatedReward(uidx, items.getInt(i));
+        }
+    }
+
     /**
      * Obtains the weight of the particle.
      *
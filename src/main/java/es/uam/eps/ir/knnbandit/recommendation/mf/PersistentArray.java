@@ -0,0 +1,81 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.recommendation.mf;
+
+/**
+ * Array of objects whose copies share their memory until they are modified. The stored objects are
+ * shared by all the copies, so they must not be modified in place, but replaced by new ones.
+ *
+ * @param <T> type of the elements.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @see AbstractPersistentArray
+ */
+public class PersistentArray<T> extends AbstractPersistentArray<Object[]>
+{
+    /**
+     * Constructor. Builds an array full of nulls.
+     *
+     * @param size the number of elements.
+     */
+    public PersistentArray(int size)
+    {
+        super(size, Object[]::new);
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other the array to copy.
+     */
+    private PersistentArray(PersistentArray<T> other)
+    {
+        super(other);
+    }
+
+    /**
+     * Obtains a copy of the array, which shares its memory with this array until one of them is modified.
+     *
+     * @return the copy.
+     */
+    public PersistentArray<T> share()
+    {
+        return new PersistentArray<>(this);
+    }
+
+    /**
+     * Obtains an element.
+     *
+     * @param idx the index of the element.
+     * @return the element.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int idx)
+    {
+        return (T) this.chunk(idx)[idx & CHUNK_MASK];
+    }
+
+    /**
+     * Replaces an element.
+     *
+     * @param idx   the index of the element.
+     * @param value the new element.
+     */
+    public void set(int idx, T value)
+    {
+        this.writableChunk(idx)[idx & CHUNK_MASK] = value;
+    }
+
+    @Override
+    protected Object[] copy(Object[] chunk)
+    {
+        return chunk.clone();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.recommendation.mf;
+
+/**
+ * Array of doubles whose copies share their memory until they are modified.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @see AbstractPersistentArray
+ */
+public class PersistentDoubleArray extends AbstractPersistentArray<double[]>
+{
+    /**
+     * Constructor. Builds an array full of zeros.
+     *
+     * @param size the number of elements.
+     */
+    public PersistentDoubleArray(int size)
+    {
+        super(size, double[]::new);
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other the array to copy.
+     */
+    private PersistentDoubleArray(PersistentDoubleArray other)
+    {
+        super(other);
+    }
+
+    /**
+     * Obtains a copy of the array, which shares its memory with this array until one of them is modified.
+     *
+     * @return the copy.
+     */
+    public PersistentDoubleArray share()
+    {
+        return new PersistentDoubleArray(this);
+    }
+
+    /**
+     * Obtains an element.
+     *
+     * @param idx the index of the element.
+     * @return the element.
+     */
+    public double get(int idx)
+    {
+        return this.chunk(idx)[idx & CHUNK_MASK];
+    }
+
+    /**
+     * Replaces an element.
+     *
+     * @param idx   the index of the element.
+     * @param value the new value.
+     */
+    public void set(int idx, double value)
+    {
+        this.writableChunk(idx)[idx & CHUNK_MASK] = value;
+    }
+
+    @Override
+    protected double[] copy(double[] chunk)
+    {
+        return chunk.clone();
+    }
+}
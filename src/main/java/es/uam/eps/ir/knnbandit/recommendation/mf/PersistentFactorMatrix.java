@@ -0,0 +1,122 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.recommendation.mf;
+
+import cern.colt.matrix.DoubleMatrix1D;
+import it.unimi.dsi.fastutil.ints.IntList;
+
+/**
+ * Matrix of latent factors whose copies share their memory until they are modified. Each chunk
+ * is a {@link DenseFactorMatrix} containing {@link #CHUNK_SIZE} consecutive rows, so candidate
+ * rows are scored with its kernel.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ * @see AbstractPersistentArray
+ */
+public class PersistentFactorMatrix extends AbstractPersistentArray<DenseFactorMatrix>
+{
+    /**
+     * Constructor. Builds a matrix full of zeros.
+     *
+     * @param rows    the number of rows.
+     * @param columns the number of columns (i.e. the number of latent factors).
+     */
+    public PersistentFactorMatrix(int rows, int columns)
+    {
+        super(rows, size -> new DenseFactorMatrix(size, columns));
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other the matrix to copy.
+     */
+    private PersistentFactorMatrix(PersistentFactorMatrix other)
+    {
+        super(other);
+    }
+
+    /**
+     * Obtains a copy of the matrix, which shares its memory with this matrix until one of them is modified.
+     *
+     * @return the copy.
+     */
+    public PersistentFactorMatrix share()
+    {
+        return new PersistentFactorMatrix(this);
+    }
+
+    /**
+     * Obtains a copy of a row.
+     *
+     * @param row the row.
+     * @return the copy of the row.
+     */
+    public DoubleMatrix1D get(int row)
+    {
+        return this.chunk(row).viewRow(row & CHUNK_MASK).copy();
+    }
+
+    /**
+     * Copies a row into an array.
+     *
+     * @param row    the row.
+     * @param vector the array where the row is copied. It must have, at least, as many positions as columns.
+     */
+    public void getRow(int row, double[] vector)
+    {
+        this.chunk(row).getRow(row & CHUNK_MASK, vector);
+    }
+
+    /**
+     * Replaces a row.
+     *
+     * @param row    the row.
+     * @param vector the new values of the row.
+     */
+    public void set(int row, DoubleMatrix1D vector)
+    {
+        this.writableChunk(row).viewRow(row & CHUNK_MASK).assign(vector);
+    }
+
+    /**
+     * Computes the dot product between a row of the matrix and a vector.
+     *
+     * @param row    the row.
+     * @param vector the vector. It must have, at least, as many positions as columns.
+     * @return the dot product.
+     */
+    public double dot(int row, double[] vector)
+    {
+        return this.chunk(row).dot(row & CHUNK_MASK, vector);
+    }
+
+    /**
+     * Computes the dot product between several rows of the matrix and a vector.
+     *
+     * @param vector the vector. It must have, at least, as many positions as columns.
+     * @param rows   the list of rows to score.
+     * @param scores the array where the scores are stored, in the same order as rows. It must have, at least, rows.size() positions.
+     */
+    public void dot(double[] vector, IntList rows, double[] scores)
+    {
+        for (int i = 0, size = rows.size(); i < size; ++i)
+        {
+            int row = rows.getInt(i);
+            scores[i] = this.chunk(row).dot(row & CHUNK_MASK, vector);
+        }
+    }
+
+    @Override
+    protected DenseFactorMatrix copy(DenseFactorMatrix chunk)
+    {
+        return DenseFactorMatrix.copyOf(chunk);
+    }
+}
@@ -13,6 +13,7 @@ import cern.colt.matrix.impl.DenseDoubleMatrix1D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 import cern.colt.matrix.linalg.LUDecompositionQuick;
 import es.uam.eps.ir.knnbandit.Constants;
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
@@ -67,7 +68,7 @@ public class EpsilonGreedyInteractivePMFRecommender<U, I> extends InteractivePMF
     {
         super(uIndex, iIndex, hasRating, k, stdevP, stdevQ, stdev, numIter);
         this.epsilon = epsilon;
-        this.epsrng = new Random();
+        this.epsrng = new Random(0);
     }
 
     /**
@@ -87,7 +88,14 @@ public class EpsilonGreedyInteractivePMFRecommender<U, I> extends InteractivePMF
     {
         super(uIndex, iIndex, hasRating, rngSeed, k, stdevP, stdevQ, stdev, numIter);
         this.epsilon = epsilon;
-        this.epsrng = new Random();
+        this.epsrng = new Random(0);
+    }
+
+    @Override
+    public void init()
+    {
+        super.init();
+        this.epsrng.setSeed(RunSeeds.derive(rngSeed, "epsilon"));
     }
 
     @Override
@@ -105,15 +113,15 @@ public class EpsilonGreedyInteractivePMFRecommender<U, I> extends InteractivePMF
         }
         else // Exploit
         {
-            DoubleMatrix1D pu = this.P.viewRow(uidx);
+            // score = p_u^t q_i
+            double[] scores = this.predict(uidx, availability);
 
             double max = Double.NEGATIVE_INFINITY;
             IntList top = new IntArrayList();
-            for (int iidx : availability)
+            for (int i = 0; i < availability.size(); ++i)
             {
-                DoubleMatrix1D qi = this.Q.viewRow(iidx);
-                // score = p_u^t q_i + x_ui
-                double val = ALG.mult(pu, qi);
+                int iidx = availability.get(i);
+                double val = scores[i];
 
                 if (Double.isNaN(val))
                 {
@@ -121,7 +129,7 @@ public class EpsilonGreedyInteractivePMFRecommender<U, I> extends InteractivePMF
                 }
                 if (top.isEmpty() || max < val)
                 {
-                    top = new IntArrayList();
+                    top.clear();
                     top.add(iidx);
                     max = val;
                 }
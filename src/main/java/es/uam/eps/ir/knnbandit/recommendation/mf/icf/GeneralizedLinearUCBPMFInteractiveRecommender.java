@@ -9,7 +9,6 @@
 package es.uam.eps.ir.knnbandit.recommendation.mf.icf;
 
 import cern.colt.matrix.DoubleMatrix1D;
-import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.impl.DenseDoubleMatrix1D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 import cern.colt.matrix.linalg.LUDecompositionQuick;
@@ -17,15 +16,13 @@ import es.uam.eps.ir.knnbandit.Constants;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
+import es.uam.eps.ir.knnbandit.warmup.SharedWarmup;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 import org.jooq.lambda.tuple.Tuple3;
-import org.ranksys.core.util.tuples.Tuple2id;
 
-import java.util.Comparator;
-import java.util.PriorityQueue;
 import java.util.stream.Stream;
 
 
@@ -113,6 +110,14 @@ public class GeneralizedLinearUCBPMFInteractiveRecommender<U, I> extends Interac
         uIndex.getAllUidx().forEach(uidx -> counters.add(this.retrievedData.numItems(uidx) + 1));
     }
 
+    @Override
+    public void init(SharedWarmup warmup)
+    {
+        super.init(warmup);
+        this.counters.clear();
+        uIndex.getAllUidx().forEach(uidx -> counters.add(this.retrievedData.numItems(uidx) + 1));
+    }
+
     /*@Override
     public void init(FastPreferenceData<U,I> trainData)
     {
@@ -129,36 +134,17 @@ public class GeneralizedLinearUCBPMFInteractiveRecommender<U, I> extends Interac
             return -1;
         }
 
-        DoubleMatrix1D pu = this.P.viewRow(uidx);
-        DoubleMatrix2D sigmau = this.stdevP[uidx];
+        double[] scores = this.scores(uidx, availability);
 
-        double utemp = Math.log(this.counters.get(uidx));
         double max = Double.NEGATIVE_INFINITY;
         IntList top = new IntArrayList();
-        for (int iidx : availability)
+        for (int i = 0; i < availability.size(); ++i)
         {
-            DoubleMatrix1D qi = this.Q.viewRow(iidx);
-            DoubleMatrix1D aux = new DenseDoubleMatrix1D(this.k);
-
-            sigmau.zMult(qi, aux);
-
-            // x_ui = \sqrt(log t)||q_i||_{2,\Sigma_{u,t}}
-            double extra = Math.log(utemp) * ALG.mult(qi, aux);
-
-            // rho(p_u^t q_i) = \frac{1}{1 + e^{- p_u^t q_i}}
-            double rho = ALG.mult(pu, qi);
-            rho = 1.0 / (1.0 + Math.exp(-rho));
-
-            // score = rho(p_u^t q_i) + x_ui
-            double val = rho + this.alpha * Math.sqrt(extra);
-
-            if (Double.isNaN(val))
-            {
-                val = Double.NEGATIVE_INFINITY;
-            }
+            int iidx = availability.getInt(i);
+            double val = scores[i];
             if (top.isEmpty() || max < val)
             {
-                top = new IntArrayList();
+                top.clear();
                 top.add(iidx);
                 max = val;
             }
@@ -188,55 +174,37 @@ public class GeneralizedLinearUCBPMFInteractiveRecommender<U, I> extends Interac
             return new IntArrayList();
         }
 
-        DoubleMatrix1D pu = this.P.viewRow(uidx);
-        DoubleMatrix2D sigmau = this.stdevP[uidx];
+        return topK(availability, this.scores(uidx, availability), k);
+    }
+
+    /**
+     * Computes the scores of a set of candidate items for a user.
+     *
+     * @param uidx         the user.
+     * @param availability the candidate items.
+     * @return the scores, in the same order as the candidate items. The array is reused by the following calls.
+     */
+    private double[] scores(int uidx, IntList availability)
+    {
+        double[] scores = this.predict(uidx, availability);
+        double[] norms = this.quadraticForms(uidx, availability);
 
         double utemp = Math.log(this.counters.get(uidx));
-        IntList top = new IntArrayList();
-
-        int num = Math.min(k, availability.size());
-        PriorityQueue<Tuple2id> queue = new PriorityQueue<>(num, Comparator.comparingDouble(x -> x.v2));
-        for (int iidx : availability)
+        for (int i = 0; i < availability.size(); ++i)
         {
-            DoubleMatrix1D qi = this.Q.viewRow(iidx);
-            DoubleMatrix1D aux = new DenseDoubleMatrix1D(this.k);
-
-            sigmau.zMult(qi, aux);
-
             // x_ui = \sqrt(log t)||q_i||_{2,\Sigma_{u,t}}
-            double extra = Math.log(utemp) * ALG.mult(qi, aux);
+            double extra = Math.log(utemp) * norms[i];
 
             // rho(p_u^t q_i) = \frac{1}{1 + e^{- p_u^t q_i}}
-            double rho = ALG.mult(pu, qi);
-            rho = 1.0 / (1.0 + Math.exp(-rho));
+            double rho = 1.0 / (1.0 + Math.exp(-scores[i]));
 
             // score = rho(p_u^t q_i) + x_ui
             double val = rho + this.alpha * Math.sqrt(extra);
-
-            if(queue.size() < num)
-            {
-                queue.add(new Tuple2id(iidx, val));
-            }
-            else
-            {
-                Tuple2id newTuple = new Tuple2id(iidx, val);
-                if(queue.comparator().compare(queue.peek(), newTuple) < 0)
-                {
-                    queue.poll();
-                    queue.add(newTuple);
-                }
-            }
-
-            while(!queue.isEmpty())
-            {
-                top.add(0, queue.poll().v1);
-            }
+            scores[i] = Double.isNaN(val) ? Double.NEGATIVE_INFINITY : val;
         }
-
-        return top;
+        return scores;
     }
 
-
     @Override
     public void update(int uidx, int iidx, double value)
     {
@@ -6,18 +6,27 @@ import cern.colt.matrix.impl.DenseDoubleMatrix1D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 import cern.colt.matrix.linalg.Algebra;
 import cern.colt.matrix.linalg.LUDecompositionQuick;
+import es.uam.eps.ir.knnbandit.RunSeeds;
+import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.AbstractSimpleFastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.AdditiveRatingFastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.FastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.SimpleFastUpdateablePreferenceData;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
+import es.uam.eps.ir.knnbandit.recommendation.mf.DenseFactorMatrix;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
+import es.uam.eps.ir.knnbandit.warmup.SharedWarmup;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 import org.jooq.lambda.tuple.Tuple3;
+import org.ranksys.core.util.tuples.Tuple2id;
 
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
 import java.util.stream.Stream;
 
 /**
@@ -67,11 +76,11 @@ public abstract class InteractivePMFRecommender<U, I> extends InteractiveRecomme
     /**
      * User matrix
      */
-    protected DoubleMatrix2D P;
+    protected DenseFactorMatrix P;
     /**
      * Item matrix
      */
-    protected DoubleMatrix2D Q;
+    protected DenseFactorMatrix Q;
     /**
      * Standard deviation matrix for the user factors.
      */
@@ -83,7 +92,27 @@ public abstract class InteractivePMFRecommender<U, I> extends InteractiveRecomme
     /**
      * The current rating matrix.
      */
-    protected FastUpdateablePreferenceData<U,I> retrievedData;
+    protected AbstractSimpleFastUpdateablePreferenceData<U,I> retrievedData;
+    /**
+     * Buffer for the predicted ratings of the candidate items.
+     */
+    private double[] predictions;
+    /**
+     * Buffer for the quadratic forms of the candidate items.
+     */
+    private double[] quadraticForms;
+    /**
+     * Buffer for the user vector.
+     */
+    private final double[] userVector;
+    /**
+     * Buffer for the user covariance matrix, stored row by row.
+     */
+    private final double[] userCovariance;
+    /**
+     * Buffer for the product of a tile of item vectors and the user covariance matrix.
+     */
+    private final double[] covarianceProduct;
 
 
     /**
@@ -111,6 +140,11 @@ public abstract class InteractivePMFRecommender<U, I> extends InteractiveRecomme
         this.k = k;
 
         this.retrievedData = AdditiveRatingFastUpdateablePreferenceData.load(Stream.empty(), uIndex, iIndex);
+        this.predictions = new double[0];
+        this.quadraticForms = new double[0];
+        this.userVector = new double[k];
+        this.userCovariance = new double[k * k];
+        this.covarianceProduct = new double[DenseFactorMatrix.BLOCK_SIZE * k];
 
         //this.P = new DenseDoubleMatrix2D(uIndex.numUsers(), k);
         //this.Q = new DenseDoubleMatrix2D(iIndex.numItems(), k);
@@ -141,6 +175,11 @@ public abstract class InteractivePMFRecommender<U, I> extends InteractiveRecomme
         this.k = k;
 
         this.retrievedData = AdditiveRatingFastUpdateablePreferenceData.load(Stream.empty(), uIndex, iIndex);
+        this.predictions = new double[0];
+        this.quadraticForms = new double[0];
+        this.userVector = new double[k];
+        this.userCovariance = new double[k * k];
+        this.covarianceProduct = new double[DenseFactorMatrix.BLOCK_SIZE * k];
 
         //this.P = new DenseDoubleMatrix2D(uIndex.numUsers(), k);
         //this.Q = new DenseDoubleMatrix2D(iIndex.numItems(), k);
@@ -152,11 +191,12 @@ public abstract class InteractivePMFRecommender<U, I> extends InteractiveRecomme
         super.init();
 
         // First, we initialize the values.
-        this.P = new DenseDoubleMatrix2D(uIndex.numUsers(), k);
+        this.P = new DenseFactorMatrix(uIndex.numUsers(), k);
 
         // Then, we initialize the Q matrix with random values.
-        this.Q = new DenseDoubleMatrix2D(iIndex.numItems(), k);
-        this.Q.assign(x -> Math.sqrt(1.0 / k) + Math.random());
+        Random factorRng = new Random(RunSeeds.derive(rngSeed, "factors"));
+        this.Q = new DenseFactorMatrix(iIndex.numItems(), k);
+        this.Q.assign(x -> Math.sqrt(1.0 / k) + factorRng.nextDouble());
 
         // Then, we declare standard deviation matrices for the users.
         this.stdevP = new DenseDoubleMatrix2D[uIndex.numUsers()];
@@ -192,6 +232,22 @@ public abstract class InteractivePMFRecommender<U, I> extends InteractiveRecomme
     {
         this.init();
         values.forEach(t -> this.retrievedData.updateRating(t.uidx(), t.iidx(), t.value()));
+        this.train();
+    }
+
+    @Override
+    public void init(SharedWarmup warmup)
+    {
+        this.init();
+        this.retrievedData.init(warmup);
+        this.train();
+    }
+
+    /**
+     * Trains the algorithm over the warm-up data, using alternate least squares (ALS).
+     */
+    private void train()
+    {
         if(this.retrievedData.numPreferences() > 0)
         {
             // We finally apply ALS for training the algorithm.
@@ -347,6 +403,88 @@ public abstract class InteractivePMFRecommender<U, I> extends InteractiveRecomme
         });
     }
 
+    /**
+     * Predicts the ratings of a user for a set of candidate items, as p_u^T q_i.
+     *
+     * @param uidx         the user.
+     * @param availability the candidate items.
+     * @return the predicted ratings, in the same order as the candidate items. The array is reused
+     * by the following calls, and it might have more positions than candidate items.
+     */
+    protected final double[] predict(int uidx, IntList availability)
+    {
+        if (predictions.length < availability.size())
+        {
+            predictions = new double[availability.size()];
+        }
+
+        this.P.getRow(uidx, userVector);
+        this.Q.dot(userVector, availability, predictions);
+        return predictions;
+    }
+
+    /**
+     * Computes the quadratic forms q_i^T Sigma_u q_i of a set of candidate items, where Sigma_u is
+     * the covariance matrix of the user.
+     *
+     * @param uidx         the user.
+     * @param availability the candidate items.
+     * @return the quadratic forms, in the same order as the candidate items. The array is reused
+     * by the following calls, and it might have more positions than candidate items.
+     */
+    protected final double[] quadraticForms(int uidx, IntList availability)
+    {
+        if (quadraticForms.length < availability.size())
+        {
+            quadraticForms = new double[availability.size()];
+        }
+
+        DoubleMatrix2D sigmau = this.stdevP[uidx];
+        for (int i = 0; i < k; ++i)
+        {
+            for (int j = 0; j < k; ++j)
+            {
+                userCovariance[i * k + j] = sigmau.getQuick(i, j);
+            }
+        }
+        this.Q.quadraticForm(userCovariance, availability, quadraticForms, covarianceProduct);
+        return quadraticForms;
+    }
+
+    /**
+     * Selects the candidate items with the highest scores.
+     *
+     * @param availability the candidate items.
+     * @param scores       the scores of the candidate items, in the same order.
+     * @param k            the number of items to select.
+     * @return the selected items, sorted by decreasing score.
+     */
+    protected static IntList topK(IntList availability, double[] scores, int k)
+    {
+        IntList top = new IntArrayList();
+        int num = Math.min(k, availability.size());
+        PriorityQueue<Tuple2id> queue = new PriorityQueue<>(num, Comparator.comparingDouble(x -> x.v2));
+        for (int i = 0; i < availability.size(); ++i)
+        {
+            Tuple2id newTuple = new Tuple2id(availability.getInt(i), scores[i]);
+            if (queue.size() < num)
+            {
+                queue.add(newTuple);
+            }
+            else if (queue.comparator().compare(queue.peek(), newTuple) < 0)
+            {
+                queue.poll();
+                queue.add(newTuple);
+            }
+        }
+
+        while (!queue.isEmpty())
+        {
+            top.add(0, queue.poll().v1);
+        }
+        return top;
+    }
+
     @Override
     public int next(int uidx, IntList available)
     {
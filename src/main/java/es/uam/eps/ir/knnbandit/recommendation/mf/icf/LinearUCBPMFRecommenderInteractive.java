@@ -18,10 +18,7 @@ import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdatea
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
-import org.ranksys.core.util.tuples.Tuple2id;
 
-import java.util.Comparator;
-import java.util.PriorityQueue;
 
 
 /**
@@ -88,31 +85,17 @@ public class LinearUCBPMFRecommenderInteractive<U, I> extends InteractivePMFReco
             return -1;
         }
 
-        DoubleMatrix1D pu = this.P.viewRow(uidx);
-        DoubleMatrix2D sigmau = this.stdevP[uidx];
+        double[] scores = this.scores(uidx, availability);
 
         double max = Double.NEGATIVE_INFINITY;
         IntList top = new IntArrayList();
-        for (int iidx : availability)
+        for (int i = 0; i < availability.size(); ++i)
         {
-            DoubleMatrix1D qi = this.Q.viewRow(iidx);
-            DoubleMatrix1D aux = new DenseDoubleMatrix1D(this.k);
-
-            sigmau.zMult(qi, aux);
-
-            // x_ui = alpha*||q_i||_{2,\Sigma_{u,t}}
-            double extra = ALG.mult(qi, aux);
-
-            // score = p_u^t q_i + x_ui
-            double val = ALG.mult(pu, qi) + this.alpha * Math.sqrt(extra);
-
-            if (Double.isNaN(val))
-            {
-                val = Double.NEGATIVE_INFINITY;
-            }
+            int iidx = availability.getInt(i);
+            double val = scores[i];
             if (top.isEmpty() || max < val)
             {
-                top = new IntArrayList();
+                top.clear();
                 top.add(iidx);
                 max = val;
             }
@@ -142,47 +125,28 @@ public class LinearUCBPMFRecommenderInteractive<U, I> extends InteractivePMFReco
             return new IntArrayList();
         }
 
-        DoubleMatrix1D pu = this.P.viewRow(uidx);
-        DoubleMatrix2D sigmau = this.stdevP[uidx];
+        return topK(availability, this.scores(uidx, availability), k);
+    }
 
-        IntList top = new IntArrayList();
+    /**
+     * Computes the scores of a set of candidate items for a user.
+     *
+     * @param uidx         the user.
+     * @param availability the candidate items.
+     * @return the scores, in the same order as the candidate items. The array is reused by the following calls.
+     */
+    private double[] scores(int uidx, IntList availability)
+    {
+        double[] scores = this.predict(uidx, availability);
+        double[] norms = this.quadraticForms(uidx, availability);
 
-        int num = Math.min(k, availability.size());
-        PriorityQueue<Tuple2id> queue = new PriorityQueue<>(num, Comparator.comparingDouble(x -> x.v2));
-        for (int iidx : availability)
+        for (int i = 0; i < availability.size(); ++i)
         {
-            DoubleMatrix1D qi = this.Q.viewRow(iidx);
-            DoubleMatrix1D aux = new DenseDoubleMatrix1D(this.k);
-
-            sigmau.zMult(qi, aux);
-
-            // x_ui = alpha*||q_i||_{2,\Sigma_{u,t}}
-            double extra = ALG.mult(qi, aux);
-
-            // score = p_u^t q_i + x_ui
-            double val = ALG.mult(pu, qi) + this.alpha * Math.sqrt(extra);
-
-            if(queue.size() < num)
-            {
-                queue.add(new Tuple2id(iidx, val));
-            }
-            else
-            {
-                Tuple2id newTuple = new Tuple2id(iidx, val);
-                if(queue.comparator().compare(queue.peek(), newTuple) < 0)
-                {
-                    queue.poll();
-                    queue.add(newTuple);
-                }
-            }
-
-            while(!queue.isEmpty())
-            {
-                top.add(0, queue.poll().v1);
-            }
+            // score = p_u^t q_i + alpha*||q_i||_{2,\Sigma_{u,t}}
+            double val = scores[i] + this.alpha * Math.sqrt(norms[i]);
+            scores[i] = Double.isNaN(val) ? Double.NEGATIVE_INFINITY : val;
         }
-
-        return top;
+        return scores;
     }
 
     @Override
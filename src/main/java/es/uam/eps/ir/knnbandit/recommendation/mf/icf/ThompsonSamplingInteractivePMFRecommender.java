@@ -12,21 +12,18 @@ import cern.colt.matrix.DoubleMatrix1D;
 import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.impl.DenseDoubleMatrix1D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
-import cern.colt.matrix.linalg.EigenvalueDecomposition;
 import cern.colt.matrix.linalg.LUDecompositionQuick;
 import es.uam.eps.ir.knnbandit.Constants;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
-import es.uam.eps.ir.knnbandit.utils.Pair;
-import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
-import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import es.uam.eps.ir.knnbandit.warmup.SharedWarmup;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
-import org.jooq.lambda.tuple.Tuple3;
 import org.ranksys.core.util.tuples.Tuple2id;
 
-import java.util.*;
+import java.util.Comparator;
+import java.util.PriorityQueue;
 import java.util.stream.Stream;
 
 /**
@@ -46,21 +43,35 @@ import java.util.stream.Stream;
 public class ThompsonSamplingInteractivePMFRecommender<U, I> extends InteractivePMFRecommender<U, I>
 {
     /**
-     * Sampled vector from the item distribution.
+     * Sampled vector from the item distribution, for the last recommended item.
      */
-    private DoubleMatrix1D lastqi;
+    private final double[] lastqi;
     /**
-     * Matrices L such that A = L^T L, where A is the user covariance matrix.
+     * Whether the last recommended item has a sampled vector which has not been used for updating yet.
      */
-    private DoubleMatrix2D[] userDecomposed;
-
-    private DoubleMatrix2D[] userEigenvalues;
+    private boolean hasLastqi;
     /**
-     * Matrices L such that A = L^T L, where A is the item covariance matrix.
+     * Buffer for the sampled user vector.
      */
-    private DoubleMatrix2D[] itemDecomposed;
-
-    private DoubleMatrix2D[] itemEigenvalues;
+    private final double[] sampledPu;
+    /**
+     * Buffer for the sampled item vectors.
+     */
+    private final double[] sampledQi;
+    /**
+     * Buffer for the standard normal samples.
+     */
+    private final double[] gaussian;
+    /**
+     * Lower triangular matrices L such that A = L L^T, where A is the user covariance matrix. They are
+     * stored row by row, in arrays of size k*k, and they are only computed when they are needed (null otherwise).
+     */
+    private double[][] userFactors;
+    /**
+     * Lower triangular matrices L such that A = L L^T, where A is the item covariance matrix. They are
+     * stored row by row, in arrays of size k*k, and they are only computed when they are needed (null otherwise).
+     */
+    private double[][] itemFactors;
 
     /**
      * Constructor.
@@ -77,6 +88,10 @@ public class ThompsonSamplingInteractivePMFRecommender<U, I> extends Interactive
     public ThompsonSamplingInteractivePMFRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, boolean hasRating, int k, double stdevP, double stdevQ, double stdev, int numIter)
     {
         super(uIndex, iIndex, hasRating, k, stdevP, stdevQ, stdev, numIter);
+        this.sampledPu = new double[k];
+        this.sampledQi = new double[k];
+        this.lastqi = new double[k];
+        this.gaussian = new double[k];
     }
 
     /**
@@ -94,35 +109,79 @@ public class ThompsonSamplingInteractivePMFRecommender<U, I> extends Interactive
     public ThompsonSamplingInteractivePMFRecommender(FastUpdateableUserIndex<U> uIndex, FastUpdateableItemIndex<I> iIndex, boolean hasRating, int rngSeed, int k, double stdevP, double stdevQ, double stdev, int numIter)
     {
         super(uIndex, iIndex, hasRating, rngSeed, k, stdevP, stdevQ, stdev, numIter);
+        this.sampledPu = new double[k];
+        this.sampledQi = new double[k];
+        this.lastqi = new double[k];
+        this.gaussian = new double[k];
     }
 
     /**
-     * Given a covariance matrix A, finds a matrix L such that A = L^T L
+     * Given a covariance matrix A, finds the lower triangular matrix L such that A = L L^T (the Cholesky
+     * factor of A). Since the covariance matrix is symmetric, only its symmetric part is considered.
      *
      * @param covarianceMatrix the covariance matrix.
-     * @return the covariance matrix.
+     * @param factor           array in which to store L, row by row.
      */
-    private static Pair<DoubleMatrix2D> findL(DoubleMatrix2D covarianceMatrix)
+    private void cholesky(DoubleMatrix2D covarianceMatrix, double[] factor)
     {
-        int k = covarianceMatrix.rows();
-
-        // First, compute the eigenvalue decomposition for the covariance matrix.
-        EigenvalueDecomposition eigen = new EigenvalueDecomposition(covarianceMatrix);
-        // Find the eigenvector matrix
-        DoubleMatrix2D V = eigen.getV();
-        // Find the eigenvalues diagonal matrix (they exist and they are real, since the covariance
-        // matrix is symmetrical)
-        DoubleMatrix2D D = eigen.getD();
-
-        // Find the square root of L
-        for(int i = 0; i < k; ++i)
+        for (int i = 0; i < k; ++i)
         {
-            D.setQuick(i,i,Math.sqrt(D.getQuick(i,i)));
+            for (int j = 0; j <= i; ++j)
+            {
+                double sum = (covarianceMatrix.getQuick(i, j) + covarianceMatrix.getQuick(j, i)) / 2.0;
+                for (int m = 0; m < j; ++m)
+                {
+                    sum -= factor[i * k + m] * factor[j * k + m];
+                }
+
+                if (i == j)
+                {
+                    // Numerical errors might produce tiny negative values for semi-definite matrices.
+                    factor[i * k + i] = Math.sqrt(Math.max(sum, 0.0));
+                }
+                else
+                {
+                    double diag = factor[j * k + j];
+                    factor[i * k + j] = diag > 0.0 ? sum / diag : 0.0;
+                }
+            }
+            for (int j = i + 1; j < k; ++j)
+            {
+                factor[i * k + j] = 0.0;
+            }
         }
+    }
 
-        // Multiply both matrices
-        DoubleMatrix2D L = ALG.mult(V,D);
-        return new Pair<>(V, D);
+    /**
+     * Obtains the Cholesky factor of the covariance matrix of a user, computing it if necessary.
+     *
+     * @param uidx the user.
+     * @return the Cholesky factor.
+     */
+    private double[] getUserFactor(int uidx)
+    {
+        if (userFactors[uidx] == null)
+        {
+            userFactors[uidx] = new double[k * k];
+            this.cholesky(this.stdevP[uidx], userFactors[uidx]);
+        }
+        return userFactors[uidx];
+    }
+
+    /**
+     * Obtains the Cholesky factor of the covariance matrix of an item, computing it if necessary.
+     *
+     * @param iidx the item.
+     * @return the Cholesky factor.
+     */
+    private double[] getItemFactor(int iidx)
+    {
+        if (itemFactors[iidx] == null)
+        {
+            itemFactors[iidx] = new double[k * k];
+            this.cholesky(this.stdevQ[iidx], itemFactors[iidx]);
+        }
+        return itemFactors[iidx];
     }
 
     @Override
@@ -139,34 +198,21 @@ public class ThompsonSamplingInteractivePMFRecommender<U, I> extends Interactive
         this.auxInit();
     }
 
-    /*@Override
-    public void init(FastPreferenceData<U,I> trainData)
+    @Override
+    public void init(SharedWarmup warmup)
     {
-        super.init(trainData);
+        super.init(warmup);
         this.auxInit();
-    }*/
+    }
 
+    /**
+     * Discards the Cholesky factors of the covariance matrices. They are computed again when they are needed.
+     */
     private void auxInit()
     {
-        userDecomposed = new DoubleMatrix2D[this.numUsers()];
-        userEigenvalues = new DoubleMatrix2D[this.numUsers()];
-        for (int uidx = 0; uidx < this.numUsers(); ++uidx)
-        {
-            Pair<DoubleMatrix2D> pair = findL(this.stdevP[uidx]);
-            userDecomposed[uidx] = pair.v1();
-            userEigenvalues[uidx] = pair.v2();
-        }
-
-        itemDecomposed = new DoubleMatrix2D[this.numItems()];
-        itemEigenvalues = new DoubleMatrix2D[this.numItems()];
-
-        for (int iidx = 0; iidx < this.numItems(); ++iidx)
-        {
-
-            Pair<DoubleMatrix2D> pair = findL(this.stdevQ[iidx]);
-            itemDecomposed[iidx] = pair.v1();
-            itemEigenvalues[iidx] = pair.v2();
-        }
+        this.userFactors = new double[this.numUsers()][];
+        this.itemFactors = new double[this.numItems()][];
+        this.hasLastqi = false;
     }
 
     @Override
@@ -178,54 +224,42 @@ public class ThompsonSamplingInteractivePMFRecommender<U, I> extends Interactive
         }
 
         // First, we estimate the user vector from a Multivariate Gaussian distribution
-        DoubleMatrix1D originalPU = this.P.viewRow(uidx);
-        DoubleMatrix1D pu = this.sampleMultivariateNormalDistrib(originalPU, this.userDecomposed[uidx], this.userEigenvalues[uidx]);
+        this.sampleMultivariateNormalDistrib(this.P.viewRow(uidx), this.getUserFactor(uidx), sampledPu);
 
-        // Next, for each item, we sample the item vector, and compute the score.
+        // Next, for each item, we sample the item vector, and compute the score. Ties are broken
+        // uniformly at random, by keeping each tied item with probability 1/(number of ties so far).
         double max = Double.NEGATIVE_INFINITY;
-        IntList top = new IntArrayList();
-        List<DoubleMatrix1D> itemVectors = new ArrayList<>();
+        int top = -1;
+        int numTies = 0;
 
         for (int iidx : availability)
         {
-            DoubleMatrix1D originalQi = this.Q.viewRow(iidx);
-            // First, we sample an item vector, using a Multivariate Gaussian distribution
-            DoubleMatrix1D qi = this.sampleMultivariateNormalDistrib(originalQi, this.itemDecomposed[iidx], this.itemEigenvalues[iidx]);
-
-            // Find the product of the sampled vectors: p_u^t *
-            double val = ALG.mult(pu, qi);
-
+            double val = this.sampleScore(iidx);
             if (Double.isNaN(val))
             {
                 val = Double.NEGATIVE_INFINITY;
             }
-            if (top.isEmpty() || max < val)
+
+            if (numTies == 0 || max < val)
             {
-                top = new IntArrayList();
-                itemVectors = new ArrayList<>();
-                top.add(iidx);
-                itemVectors.add(qi);
                 max = val;
+                top = iidx;
+                numTies = 1;
+                System.arraycopy(sampledQi, 0, lastqi, 0, k);
             }
             else if (max == val)
             {
-                top.add(iidx);
-                itemVectors.add(qi);
+                ++numTies;
+                if (rng.nextInt(numTies) == 0)
+                {
+                    top = iidx;
+                    System.arraycopy(sampledQi, 0, lastqi, 0, k);
+                }
             }
         }
 
-        int topSize = top.size();
-        if (topSize == 1)
-        {
-            this.lastqi = itemVectors.get(0);
-            return top.get(0);
-        }
-        else
-        {
-            int idx = rng.nextInt(top.size());
-            this.lastqi = itemVectors.get(idx);
-            return top.get(idx);
-        }
+        this.hasLastqi = true;
+        return top;
     }
 
     @Override
@@ -237,8 +271,7 @@ public class ThompsonSamplingInteractivePMFRecommender<U, I> extends Interactive
         }
 
         // First, we estimate the user vector from a Multivariate Gaussian distribution
-        DoubleMatrix1D originalPU = this.P.viewRow(uidx);
-        DoubleMatrix1D pu = this.sampleMultivariateNormalDistrib(originalPU, this.userDecomposed[uidx], this.userEigenvalues[uidx]);
+        this.sampleMultivariateNormalDistrib(this.P.viewRow(uidx), this.getUserFactor(uidx), sampledPu);
 
         IntList top = new IntArrayList();
 
@@ -246,12 +279,7 @@ public class ThompsonSamplingInteractivePMFRecommender<U, I> extends Interactive
         PriorityQueue<Tuple2id> queue = new PriorityQueue<>(num, Comparator.comparingDouble(x -> x.v2));
         for (int iidx : availability)
         {
-            DoubleMatrix1D originalQi = this.Q.viewRow(iidx);
-            // First, we sample an item vector, using a Multivariate Gaussian distribution
-            DoubleMatrix1D qi = this.sampleMultivariateNormalDistrib(originalQi, this.itemDecomposed[iidx], this.itemEigenvalues[iidx]);
-
-            // Find the product of the sampled vectors: p_u^t *
-            double val = ALG.mult(pu, qi);
+            double val = this.sampleScore(iidx);
 
             if(queue.size() < num)
             {
@@ -266,16 +294,35 @@ public class ThompsonSamplingInteractivePMFRecommender<U, I> extends Interactive
                     queue.add(newTuple);
                 }
             }
+        }
 
-            while(!queue.isEmpty())
-            {
-                top.add(0, queue.poll().v1);
-            }
+        while(!queue.isEmpty())
+        {
+            top.add(0, queue.poll().v1);
         }
 
         return top;
     }
 
+    /**
+     * Samples the vector of an item (which is stored in the sampled item vector buffer), and
+     * finds its product with the sampled user vector.
+     *
+     * @param iidx the item.
+     * @return the product of the sampled user and item vectors.
+     */
+    private double sampleScore(int iidx)
+    {
+        this.sampleMultivariateNormalDistrib(this.Q.viewRow(iidx), this.getItemFactor(iidx), sampledQi);
+
+        double val = 0.0;
+        for (int i = 0; i < k; ++i)
+        {
+            val += sampledPu[i] * sampledQi[i];
+        }
+        return val;
+    }
+
     @Override
     public void update(int uidx, int iidx, double value)
     {
@@ -287,24 +334,26 @@ public class ThompsonSamplingInteractivePMFRecommender<U, I> extends Interactive
         else
             return;
 
-        if (this.lastqi != null)
+        if (this.hasLastqi)
         {
-            // First, obtain the last qi
-            DenseDoubleMatrix2D aux = new DenseDoubleMatrix2D(this.k, this.k);
-            ALG.multOuter(this.lastqi, this.lastqi, aux);
-
-            // First, update the values for the A and b matrices for user u
-            As[uidx].assign(aux, Double::sum);
-            bs[uidx].assign(this.lastqi, (x, y) -> x + newValue * y);
+            // First, update the values for the A and b matrices for user u, using the last qi
+            DoubleMatrix2D A = As[uidx];
+            DoubleMatrix1D b = bs[uidx];
+            for (int i = 0; i < k; ++i)
+            {
+                for (int j = 0; j < k; ++j)
+                {
+                    A.setQuick(i, j, A.getQuick(i, j) + lastqi[i] * lastqi[j]);
+                }
+                b.setQuick(i, b.getQuick(i) + newValue * lastqi[i]);
+            }
 
             // Then, find A^-1 b and A^-1 sigma^2
-
-            ALG.inverse(As[uidx]);
             DenseDoubleMatrix1D c = new DenseDoubleMatrix1D(this.k);
             LUDecompositionQuick lu = new LUDecompositionQuick(0);
-            c.assign(bs[uidx]);
+            c.assign(b);
 
-            lu.decompose(As[uidx]);
+            lu.decompose(A);
             lu.solve(c);
 
             DenseDoubleMatrix2D sigmaI = new DenseDoubleMatrix2D(this.k, this.k);
@@ -317,38 +366,42 @@ public class ThompsonSamplingInteractivePMFRecommender<U, I> extends Interactive
             this.P.viewRow(uidx).assign(c);
             this.stdevP[uidx] = sigmaI;
 
-            // Update the decomposition for the covariance matrix.
-            Pair<DoubleMatrix2D> pair = findL(sigmaI);
-            this.userDecomposed[uidx] = pair.v1();
-            this.userEigenvalues[uidx] = pair.v2();
+            // Update the decomposition for the covariance matrix, if it has already been computed.
+            if (this.userFactors[uidx] != null)
+            {
+                this.cholesky(sigmaI, this.userFactors[uidx]);
+            }
 
-            this.lastqi = null;
+            this.hasLastqi = false;
         }
 
         this.retrievedData.updateRating(uidx, iidx, newValue);
     }
 
     /**
-     * Samples from a Multivariate Normal distribution.
+     * Samples from a Multivariate Normal distribution, as mean + L z, where z is a vector of
+     * independent standard normal values, and L is the Cholesky factor of the covariance matrix.
      *
-     * @param mean        mean.
-     * @param eigenvector eigenvector matrix.
-     * @param eigenvalues eigenvalues matrix.
-     * @return the sampled vector.
+     * @param mean   mean.
+     * @param factor Cholesky factor of the covariance matrix, stored row by row.
+     * @param res    array in which to store the sampled vector.
      */
-    private DoubleMatrix1D sampleMultivariateNormalDistrib(DoubleMatrix1D mean, DoubleMatrix2D eigenvector, DoubleMatrix2D eigenvalues)
+    private void sampleMultivariateNormalDistrib(DoubleMatrix1D mean, double[] factor, double[] res)
     {
-        // Sample the values.
-        Random rng = new Random();
-        DenseDoubleMatrix1D dense = new DenseDoubleMatrix1D(this.k);
-        for (int i = 0; i < this.k; ++i)
+        for (int i = 0; i < k; ++i)
         {
-            dense.setQuick(i, Math.sqrt(eigenvalues.getQuick(i, i)) * rng.nextGaussian());
+            gaussian[i] = rng.nextGaussian();
         }
 
-        DoubleMatrix1D res = ALG.mult(eigenvector, dense);
-        eigenvector.zMult(dense, dense);
-        res.assign(mean, Double::sum);
-        return res;
+        for (int i = 0; i < k; ++i)
+        {
+            double val = mean.getQuick(i);
+            int row = i * k;
+            for (int j = 0; j <= i; ++j)
+            {
+                val += factor[row + j] * gaussian[j];
+            }
+            res[i] = val;
+        }
     }
 }
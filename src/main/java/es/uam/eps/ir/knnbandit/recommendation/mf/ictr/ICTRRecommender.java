@@ -9,6 +9,7 @@
 package es.uam.eps.ir.knnbandit.recommendation.mf.ictr;
 
 import es.uam.eps.ir.knnbandit.Constants;
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
@@ -59,8 +60,18 @@ public abstract class ICTRRecommender<U, I> extends InteractiveRecommender<U, I>
      * Particle factory.
      */
     private final ICTRParticleFactory<U, I> factory;
-
-    private final Random ictrrng;
+    /**
+     * Random number generator for resampling the particles.
+     */
+    private Random ictrrng;
+    /**
+     * Buffer for the estimated rewards of the candidate items.
+     */
+    private double[] scores = new double[0];
+    /**
+     * Buffer for the estimated rewards of the candidate items according to a single particle.
+     */
+    private double[] particleScores = new double[0];
 
     /**
      * Constructor.
@@ -79,7 +90,7 @@ public abstract class ICTRRecommender<U, I> extends InteractiveRecommender<U, I>
         this.numParticles = numParticles;
         this.particleWeight = new DoubleArrayList();
         this.particles = new ArrayList<>();
-        this.ictrrng = new Random();
+        this.ictrrng = new Random(RunSeeds.derive(rngSeed, "particles"));
         this.factory = factory;
     }
 
@@ -90,11 +101,13 @@ public abstract class ICTRRecommender<U, I> extends InteractiveRecommender<U, I>
 
         this.particleWeight.clear();
         this.particles.clear();
+        this.ictrrng = new Random(RunSeeds.derive(rngSeed, "particles"));
 
-        // Initialize the different particles.
+        // Initialize the different particles. Their generators are seeded from the recommender one,
+        // so executions with the same seed are reproducible.
         for (int i = 0; i < numParticles; ++i)
         {
-            ICTRParticle<U,I> ICTRParticle = factory.create(this.uIndex, this.iIndex, this.K);
+            ICTRParticle<U,I> ICTRParticle = factory.create(this.uIndex, this.iIndex, this.K, ictrrng.nextLong());
             this.particles.add(ICTRParticle);
             this.particleWeight.add(1.0 / (this.numParticles + 0.0));
         }
@@ -116,11 +129,13 @@ public abstract class ICTRRecommender<U, I> extends InteractiveRecommender<U, I>
         }
 
         // Then, for each item:
+        double[] scores = this.scores(uidx, availability);
         double max = Double.NEGATIVE_INFINITY;
         IntList top = new IntArrayList();
-        for (int iidx : availability)
+        for (int i = 0, size = availability.size(); i < size; ++i)
         {
-            double val = this.getEstimatedReward(uidx, iidx);
+            int iidx = availability.getInt(i);
+            double val = scores[i];
 
             if (Double.isNaN(val))
             {
@@ -163,9 +178,11 @@ public abstract class ICTRRecommender<U, I> extends InteractiveRecommender<U, I>
 
         IntList top = new IntArrayList();
         PriorityQueue<Tuple2id> queue = new PriorityQueue<>(num, Comparator.comparingDouble(x -> x.v2));
-        for (int iidx : availability)
+        double[] scores = this.scores(uidx, availability);
+        for (int i = 0, size = availability.size(); i < size; ++i)
         {
-            double val = this.getEstimatedReward(uidx, iidx);
+            int iidx = availability.getInt(i);
+            double val = scores[i];
 
             if(queue.size() < num)
             {
@@ -180,24 +197,45 @@ public abstract class ICTRRecommender<U, I> extends InteractiveRecommender<U, I>
                     queue.add(newTuple);
                 }
             }
+        }
 
-            while(!queue.isEmpty())
-            {
-                top.add(0, queue.poll().v1);
-            }
+        while(!queue.isEmpty())
+        {
+            top.add(0, queue.poll().v1);
         }
 
         return top;
     }
 
     /**
-     * Obtains the estimated reward for a user-item pair.
+     * Obtains the estimated rewards of a list of candidate items for a user.
      *
-     * @param uidx the user identifier.
-     * @param iidx the item identifier.
-     * @return the estimated reward.
+     * @param uidx         the user identifier.
+     * @param availability the candidate items.
+     * @return the estimated rewards, in the same order as the candidate items. The array is reused
+     * by the following calls, and it might have more positions than candidate items.
      */
-    protected abstract double getEstimatedReward(int uidx, int iidx);
+    private double[] scores(int uidx, IntList availability)
+    {
+        if (scores.length < availability.size())
+        {
+            scores = new double[availability.size()];
+            particleScores = new double[availability.size()];
+        }
+
+        this.getEstimatedRewards(uidx, availability, scores, particleScores);
+        return scores;
+    }
+
+    /**
+     * Obtains the estimated rewards of a list of candidate items for a user.
+     *
+     * @param uidx           the user identifier.
+     * @param availability   the candidate items.
+     * @param scores         the array where the estimated rewards are stored, in the same order as the candidate items.
+     * @param particleScores buffer for the estimated rewards according to a single particle. It has, at least, as many positions as candidate items.
+     */
+    protected abstract void getEstimatedRewards(int uidx, IntList availability, double[] scores, double[] particleScores);
 
     @Override
     public void update(int uidx, int iidx, double value)
@@ -237,12 +275,15 @@ public abstract class ICTRRecommender<U, I> extends InteractiveRecommender<U, I>
                 ++idx;
             }
 
-            // The re-sampled particle:
+            // The re-sampled particle (it shares the state of the original one until it is updated):
             Particle<U, I> aux = this.particles.get(idx - 1).clone();
             // Update the particle.
             aux.update(uidx, iidx, newValue);
             // Store it as the new particle.
             defList.add(aux);
         }
+
+        this.particles.clear();
+        this.particles.addAll(defList);
     }
 }
@@ -10,10 +10,13 @@ package es.uam.eps.ir.knnbandit.recommendation.mf.ictr;
 
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
+import es.uam.eps.ir.knnbandit.recommendation.mf.Particle;
 import es.uam.eps.ir.knnbandit.recommendation.mf.ictr.particles.ICTRParticleFactory;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
 import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import it.unimi.dsi.fastutil.ints.IntList;
 
+import java.util.Arrays;
 import java.util.stream.Stream;
 
 /**
@@ -43,9 +46,23 @@ public class ThompsonSamplingICTRRecommender<U, I> extends ICTRRecommender<U, I>
     }
 
     @Override
-    protected double getEstimatedReward(int uidx, int iidx)
+    protected void getEstimatedRewards(int uidx, IntList availability, double[] scores, double[] particleScores)
     {
-        return this.particles.stream().mapToDouble(particle -> particle.getEstimatedReward(uidx, iidx)).average().getAsDouble();
+        int size = availability.size();
+        Arrays.fill(scores, 0, size, 0.0);
+        for (Particle<U, I> particle : particles)
+        {
+            particle.getEstimatedRewards(uidx, availability, particleScores);
+            for (int i = 0; i < size; ++i)
+            {
+                scores[i] += particleScores[i];
+            }
+        }
+
+        for (int i = 0; i < size; ++i)
+        {
+            scores[i] /= particles.size();
+        }
     }
 
 
@@ -13,6 +13,9 @@ import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdatea
 import es.uam.eps.ir.knnbandit.recommendation.mf.Particle;
 import es.uam.eps.ir.knnbandit.recommendation.mf.ictr.particles.ICTRParticle;
 import es.uam.eps.ir.knnbandit.recommendation.mf.ictr.particles.ICTRParticleFactory;
+import it.unimi.dsi.fastutil.ints.IntList;
+
+import java.util.Arrays;
 
 /**
  * UCB variant of the ICTR recommender.
@@ -48,24 +51,33 @@ public class UCBICTRRecommender<U, I> extends ICTRRecommender<U, I>
     }
 
     @Override
-    protected double getEstimatedReward(int uidx, int iidx)
+    protected void getEstimatedRewards(int uidx, IntList availability, double[] scores, double[] particleScores)
     {
-        double average = 0.0;
-        double averageVar = 0.0;
-        int counter = 0;
+        int size = availability.size();
+        Arrays.fill(scores, 0, size, 0.0);
         for (Particle<U, I> particle : particles)
         {
-            double reward = particle.getEstimatedReward(uidx, iidx);
-            double var = ((ICTRParticle<U, I>) particle).getVariance(iidx);
-            average += reward;
-            averageVar += var;
-            ++counter;
+            particle.getEstimatedRewards(uidx, availability, particleScores);
+            for (int i = 0; i < size; ++i)
+            {
+                scores[i] += particleScores[i];
+            }
         }
 
-        average /= (counter + 0.0);
-        averageVar /= (counter + 0.0);
+        int counter = particles.size();
+        for (int i = 0; i < size; ++i)
+        {
+            int iidx = availability.getInt(i);
+            double averageVar = 0.0;
+            for (Particle<U, I> particle : particles)
+            {
+                averageVar += ((ICTRParticle<U, I>) particle).getVariance(iidx);
+            }
 
-        return average + gamma * Math.sqrt(averageVar);
+            double average = scores[i] / (counter + 0.0);
+            averageVar /= (counter + 0.0);
 
+            scores[i] = average + gamma * Math.sqrt(averageVar);
+        }
     }
 }
@@ -17,8 +17,12 @@ import cern.colt.matrix.linalg.Algebra;
 import cern.colt.matrix.linalg.EigenvalueDecomposition;
 import es.uam.eps.ir.knnbandit.recommendation.mf.FastParticle;
 import es.uam.eps.ir.knnbandit.recommendation.mf.Particle;
+import es.uam.eps.ir.knnbandit.recommendation.mf.PersistentArray;
+import es.uam.eps.ir.knnbandit.recommendation.mf.PersistentDoubleArray;
+import es.uam.eps.ir.knnbandit.recommendation.mf.PersistentFactorMatrix;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import it.unimi.dsi.fastutil.ints.IntList;
 
 import java.util.Random;
 
@@ -27,14 +31,15 @@ import java.util.Random;
  * approach.
  * <p>
  * Wang, Q. et al. Online Interactive Collaborative Filtering Using Multi-Armed Bandit with Dependent Arms. IEEE TKDE (2019)
+ * <p>
+ * Each particle is a sample of the posterior distribution of the model, so it keeps its own hyperparameters:
+ * lambda for each user (Dirichlet prior of the user factors), and alpha and beta for each item (inverse Gamma
+ * prior of the variance of the item ratings). The state of the particle is stored in persistent arrays, so
+ * the copies created when resampling the particles share it, and an update only copies the chunks containing
+ * the rows of the user and the item.
  *
  * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
  * @author Pablo Castells (pablo.castells@uam.es)
- * <p>
- * TODO: Remaining doubts about the correctness of the implementation:
- * TODO: is lambda, alpha, beta unique for each particle? i.e. do they depend on the user/item? Otherwise, they would not be personalized...
- * TODO: is it necessary to update everything each time? At least, p_m must only be updated once
- * TODO: as I do not know the value of z_{m,t}, how do I estimate E[p_{m,k}|\lambda_k, r_m,t]?
  */
 public class ICTRParticle<U, I> extends FastParticle<U, I>
 {
@@ -51,45 +56,62 @@ public class ICTRParticle<U, I> extends FastParticle<U, I>
      */
     protected final Random rng;
     /**
-     * User matrix.
-     */
-    protected DoubleMatrix2D P;
-    /**
-     * Item matrix.
+     * User vectors (one row per user).
      */
-    protected DoubleMatrix2D Q;
+    protected PersistentFactorMatrix P;
     /**
-     * Matrix for modelling dependencies between items (arms).
+     * Item vectors (one row per item).
      */
-    protected DoubleMatrix2D phi;
+    protected PersistentFactorMatrix Q;
     /**
      * Variance of the rating prediction for each item.
      */
-    protected DoubleMatrix1D sigma;
+    protected PersistentDoubleArray sigma;
     /**
      * Hyperparameters to determine the Gaussian distribution of q_n (means)
      */
-    protected DoubleMatrix2D muQ;
+    protected PersistentArray<DoubleMatrix1D> muQ;
     /**
      * Hyperparameters to determine the Gaussian distribution of q_n (covariance matrices)
      */
-    protected DoubleMatrix2D[] sigmaQ;
+    protected PersistentArray<DoubleMatrix2D> sigmaQ;
     /**
-     * Hyperparameters to determine the Dirichlet distribution of the user factors.
+     * Hyperparameters to determine the Dirichlet distribution of the user factors (one row per user).
      */
-    protected DoubleMatrix2D lambdas;
+    protected PersistentArray<DoubleMatrix1D> lambdas;
     /**
-     * Hyperparameters to determine the Dirichlet distributions of the factors according to the item ratings.
+     * Hyperparameters to determine the Dirichlet distributions of the factors according to the item ratings (one row per item).
      */
-    protected DoubleMatrix2D etas;
+    protected PersistentArray<DoubleMatrix1D> etas;
+    /**
+     * Sum of the eta hyperparameters of every factor over all the items.
+     */
+    protected DoubleMatrix1D etaSums;
     /**
      * Hyperparameter for determining the variance of the rating prediction for each item.
      */
-    protected DoubleMatrix1D alpha;
+    protected PersistentDoubleArray alpha;
     /**
      * Hyperparameter for determining the variance of the rating prediction for each item.
      */
-    protected DoubleMatrix1D beta;
+    protected PersistentDoubleArray beta;
+    /**
+     * Buffer for a user vector.
+     */
+    private final double[] vector;
+
+    /**
+     * Constructor.
+     *
+     * @param uIndex user index.
+     * @param iIndex item index.
+     * @param K      the number of latent factors.
+     * @param seed   the seed for the random number generator.
+     */
+    public ICTRParticle(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int K, long seed)
+    {
+        this(uIndex, iIndex, K, new Random(seed));
+    }
 
     /**
      * Constructor.
@@ -97,12 +119,14 @@ public class ICTRParticle<U, I> extends FastParticle<U, I>
      * @param uIndex user index.
      * @param iIndex item index.
      * @param K      the number of latent factors.
+     * @param rng    the random number generator.
      */
-    public ICTRParticle(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int K)
+    private ICTRParticle(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int K, Random rng)
     {
         super(uIndex, iIndex);
         this.K = K;
-        this.rng = new Random();
+        this.rng = rng;
+        this.vector = new double[K];
     }
 
     /**
@@ -111,110 +135,98 @@ public class ICTRParticle<U, I> extends FastParticle<U, I>
     public void initialize()
     {
         DoubleFactory2D factory = DoubleFactory2D.dense;
+
         // Initialize the lambdas
-        this.lambdas = new DenseDoubleMatrix2D(K, numUsers);
-        this.lambdas.assign(1.0);
+        this.lambdas = new PersistentArray<>(numUsers);
+        for (int uidx = 0; uidx < numUsers; ++uidx)
+        {
+            DoubleMatrix1D lambda = new DenseDoubleMatrix1D(K);
+            lambda.assign(1.0);
+            this.lambdas.set(uidx, lambda);
+        }
 
         // Initialize the etas
-        this.etas = new DenseDoubleMatrix2D(K, numItems);
-        this.etas.assign(1.0);
-
-        // Initialize the phi values
-        this.phi = new DenseDoubleMatrix2D(K, numItems);
-        for (int k = 1; k < K; ++k)
+        this.etas = new PersistentArray<>(numItems);
+        for (int iidx = 0; iidx < numItems; ++iidx)
         {
-            DoubleMatrix1D phi = dirichletSampling(etas.viewRow(k));
-            this.phi.viewRow(k).assign(phi);
+            DoubleMatrix1D eta = new DenseDoubleMatrix1D(K);
+            eta.assign(1.0);
+            this.etas.set(iidx, eta);
         }
+        this.etaSums = new DenseDoubleMatrix1D(K);
+        this.etaSums.assign(numItems);
 
         // Then, we initialize the p_u
-        this.P = new DenseDoubleMatrix2D(numUsers, K);
+        this.P = new PersistentFactorMatrix(numUsers, K);
         for (int uidx = 0; uidx < numUsers; ++uidx)
         {
-            DoubleMatrix1D pu = dirichletSampling(lambdas.viewRow(uidx));
-            this.P.viewRow(uidx).assign(pu);
+            this.P.set(uidx, dirichletSampling(lambdas.get(uidx)));
         }
 
         // We initialize the mean vectors as 0.
-        this.muQ = new DenseDoubleMatrix2D(numItems, K);
-        this.sigmaQ = new DenseDoubleMatrix2D[numItems];
+        this.muQ = new PersistentArray<>(numItems);
+        this.sigmaQ = new PersistentArray<>(numItems);
         // Initialize the alpha and beta parameters:
-        this.alpha = new DenseDoubleMatrix1D(numItems);
-        this.beta = new DenseDoubleMatrix1D(numItems);
-        this.Q = new DenseDoubleMatrix2D(numItems, K);
-        this.sigma = new DenseDoubleMatrix1D(numItems);
+        this.alpha = new PersistentDoubleArray(numItems);
+        this.beta = new PersistentDoubleArray(numItems);
+        this.Q = new PersistentFactorMatrix(numItems, K);
+        this.sigma = new PersistentDoubleArray(numItems);
 
         for (int iidx = 0; iidx < numItems; ++iidx)
         {
             double a = 1;
             double b = 1;
 
-            alpha.setQuick(iidx, a);
-            beta.setQuick(iidx, b);
+            alpha.set(iidx, a);
+            beta.set(iidx, b);
 
             double val = this.inverseGammaSample(a, b);
-            this.sigma.setQuick(iidx, val);
+            this.sigma.set(iidx, val);
 
             // We initialize Sigma_q as the identity matrix.
-            this.sigmaQ[iidx] = factory.identity(K);
+            this.sigmaQ.set(iidx, factory.identity(K));
+            this.muQ.set(iidx, new DenseDoubleMatrix1D(K));
 
             // Initialize qi
+            DoubleMatrix1D qi = new DenseDoubleMatrix1D(K);
             for (int j = 0; j < K; ++j)
             {
                 double aux = Math.sqrt(val) * rng.nextGaussian();
-                Q.setQuick(iidx, j, aux);
+                qi.setQuick(j, aux);
             }
+            this.Q.set(iidx, qi);
         }
     }
 
     /**
-     * Returns a copy of the particle.
+     * Returns a copy of the particle. The copy shares the state of this particle: when any of
+     * them is updated, it only copies the chunks containing the modified rows. The random number
+     * generator of the copy is seeded from the generator of this particle.
      *
      * @return the copy of the particle.
      */
     public Particle<U, I> clone()
     {
-        ICTRParticle<U, I> particle = new ICTRParticle<>(this.getUserIndex(), this.getItemIndex(), this.K);
-
-        // Clone the user, item and interdependence matrices:
-        particle.P = new DenseDoubleMatrix2D(this.numUsers, this.K);
-        particle.P.assign(this.P);
-
-        particle.Q = new DenseDoubleMatrix2D(this.numItems, this.K);
-        particle.Q.assign(this.Q);
-
-        particle.phi = new DenseDoubleMatrix2D(this.K, this.numItems);
-        particle.phi.assign(this.phi);
-
-        // Clone the sigma vector
-        particle.sigma = new DenseDoubleMatrix1D(this.numItems);
-        particle.sigma.assign(this.sigma);
-
-        // Clone the hyperparameters
-        particle.muQ = new DenseDoubleMatrix2D(this.numItems, this.K);
-        particle.muQ.assign(this.muQ);
-
-        particle.sigmaQ = new DoubleMatrix2D[numItems];
-        for (int i = 0; i < numItems; ++i)
-        {
-            particle.sigmaQ[i] = new DenseDoubleMatrix2D(this.K, this.K);
-            particle.sigmaQ[i].assign(this.sigmaQ[i]);
-        }
-
-        particle.alpha = new DenseDoubleMatrix1D(this.numItems);
-        particle.alpha.assign(this.alpha);
-
-        particle.beta = new DenseDoubleMatrix1D(this.numItems);
-        particle.beta.assign(this.beta);
-
-        particle.lambdas = new DenseDoubleMatrix2D(this.numUsers, this.K);
-        particle.lambdas.assign(this.lambdas);
+        ICTRParticle<U, I> particle = new ICTRParticle<>(this.getUserIndex(), this.getItemIndex(), this.K, this.rng.nextLong());
+
+        particle.P = this.P.share();
+        particle.Q = this.Q.share();
+        particle.sigma = this.sigma.share();
+        particle.muQ = this.muQ.share();
+        particle.sigmaQ = this.sigmaQ.share();
+        particle.lambdas = this.lambdas.share();
+        particle.etas = this.etas.share();
+        particle.etaSums = this.etaSums;
+        particle.alpha = this.alpha.share();
+        particle.beta = this.beta.share();
 
         return particle;
     }
 
     /**
      * Given a triplet (user, item, value), updates the values of the different variables of the system.
+     * Only the rows of the user and the item are modified. The item dependency matrix (phi) is not stored:
+     * only the column of the rated item is read, so it is sampled from its marginal distribution when needed.
      *
      * @param uidx  The identifier of the user.
      * @param iidx  The identifier of the item.
@@ -223,59 +235,58 @@ public class ICTRParticle<U, I> extends FastParticle<U, I>
     public void update(int uidx, int iidx, double value)
     {
         // Step 1: Update the sufficient statistics for z_{m,t}:
+        DoubleMatrix1D lambda = this.lambdas.get(uidx);
         DenseDoubleMatrix1D thetas = new DenseDoubleMatrix1D(this.K);
         double sumLambdas = 0.0;
 
         // First, we compute the sum of the lambdas
         for (int k = 0; k < this.K; ++k)
         {
-            sumLambdas += this.lambdas.getQuick(uidx, k);
+            sumLambdas += lambda.getQuick(k);
         }
 
         double sumThetas = 0.0;
         // Then, find the theta[k] value
         for (int k = 0; k < this.K; ++k)
         {
-            double sumEtas = 0.0;
-            for (int n = 0; n < this.numItems; ++n)
-            {
-                sumEtas += this.etas.getQuick(k, n);
-            }
+            double sumEtas = this.etaSums.getQuick(k);
 
-            /* TODO: Not truly sure about this...*/
-            double expectedP = (this.lambdas.getQuick(uidx, k) + value) / (sumLambdas + value);
-            double expectedPhi = (this.phi.getQuick(k, iidx) + value) / (sumEtas + value);
+            // The factor z_{m,t} which explains the rating is not observed: it is sampled below with probabilities
+            // proportional to E[p_{m,k}] E[phi_{k,n}], where both expectations are taken under the posterior
+            // distributions which would result if the rating was assigned to factor k.
+            double expectedP = (lambda.getQuick(k) + value) / (sumLambdas + value);
+            double expectedPhi = (this.phiSample(k, iidx) + value) / (sumEtas + value);
 
             thetas.setQuick(k, expectedP * expectedPhi);
             sumThetas += thetas.getQuick(k);
         }
 
         // Step 2: Now, we sample the value of z_{m,t} using a multinomial distribution with \theta parameter.
-        double rnd = rng.nextDouble();
         int z = this.multinomialSampling(thetas, sumThetas);
 
         // Step 3: Update the statistics for the hyperparameters:
         // sigmaQ^-1
-        DoubleMatrix2D oldSigmaQ = this.sigmaQ[iidx];
+        DoubleMatrix1D pu = this.P.get(uidx);
+        DoubleMatrix2D oldSigmaQ = this.sigmaQ.get(iidx);
 
         DoubleMatrix2D newSigmaQ = new DenseDoubleMatrix2D(this.K, this.K);
-        ALG.multOuter(this.P.viewRow(uidx), this.P.viewRow(uidx), newSigmaQ);
+        ALG.multOuter(pu, pu, newSigmaQ);
         newSigmaQ.assign(oldSigmaQ, (x, y) -> x + y);
 
         // Now, find sigmaQ...
         DoubleMatrix2D inverse = ALG.inverse(newSigmaQ);
 
         // Find muQ
-        DoubleMatrix1D oldMuQ = this.muQ.viewRow(iidx);
+        DoubleMatrix1D oldMuQ = this.muQ.get(iidx);
 
         DoubleMatrix1D newMuQ = new DenseDoubleMatrix1D(this.K);
-        newMuQ.assign(this.P.viewRow(uidx));
+        newMuQ.assign(pu);
         oldSigmaQ.zMult(oldMuQ, newMuQ, 1.0, value, false);
         inverse.zMult(newMuQ, newMuQ);
 
         // Update alpha
-        double alpha = this.alpha.getQuick(iidx) + 0.5;
-        this.alpha.setQuick(iidx, alpha);
+        double alpha = this.alpha.get(iidx) + 0.5;
+        this.alpha.set(iidx, alpha);
 
         // Update beta
         DoubleMatrix1D newVal = new DenseDoubleMatrix1D(this.K);
@@ -286,52 +297,58 @@ public class ICTRParticle<U, I> extends FastParticle<U, I>
         beta += ALG.mult(oldMuQ, newVal);
         beta += value * value;
         beta /= 2.0;
-        beta += this.beta.getQuick(iidx);
+        beta += this.beta.get(iidx);
 
-        this.beta.setQuick(iidx, beta);
+        this.beta.set(iidx, beta);
 
-        lambdas.setQuick(uidx, z, lambdas.getQuick(uidx, z) + value);
+        DoubleMatrix1D newLambda = lambda.copy();
+        newLambda.setQuick(z, newLambda.getQuick(z) + value);
+        this.lambdas.set(uidx, newLambda);
+
+        DoubleMatrix1D newEta = this.etas.get(iidx).copy();
+        DoubleMatrix1D newEtaSums = this.etaSums.copy();
         for (int k = 0; k < K; ++k)
         {
-            etas.setQuick(k, iidx, etas.getQuick(k, iidx) + value);
+            newEta.setQuick(k, newEta.getQuick(k) + value);
+            newEtaSums.setQuick(k, newEtaSums.getQuick(k) + value);
         }
+        this.etas.set(iidx, newEta);
+        this.etaSums = newEtaSums;
 
-        this.sigmaQ[iidx] = newSigmaQ;
-        this.muQ.viewRow(iidx).assign(newMuQ);
+        this.sigmaQ.set(iidx, newSigmaQ);
+        this.muQ.set(iidx, newMuQ);
 
         // Step 4: Sample the random variables.
         // First, sample sigma_n^2
-
         double sigma_n = this.inverseGammaSample(alpha, beta);
-        this.sigma.setQuick(iidx, sigma_n);
-        DoubleMatrix1D newP = this.dirichletSampling(lambdas.viewRow(uidx));
-        this.P.viewRow(uidx).assign(newP);
-
-        for (int k = 0; k < this.K; ++k)
-        {
-            DoubleMatrix1D newPhi = this.dirichletSampling(etas.viewRow(k));
-            this.phi.viewRow(k).assign(newPhi);
-        }
+        this.sigma.set(iidx, sigma_n);
+        this.P.set(uidx, this.dirichletSampling(newLambda));
 
-        for (int idx = 0; idx < this.numItems; ++idx)
-        {
-            DoubleMatrix1D matrix = this.gaussianSample(this.muQ.viewRow(idx), this.sigmaQ[idx], this.sigma.getQuick(idx));
-            this.Q.viewRow(idx).assign(matrix);
-        }
+        // Only the item which has received the rating changes its distribution, so only its vector is sampled.
+        this.Q.set(iidx, this.gaussianSample(newMuQ, newSigmaQ, sigma_n));
     }
 
     @Override
     public double getEstimatedReward(int uidx, int iidx)
     {
-        return ALG.mult(this.P.viewRow(uidx), this.Q.viewRow(iidx));
+        this.P.getRow(uidx, vector);
+        return this.Q.dot(iidx, vector);
+    }
+
+    @Override
+    public void getEstimatedRewards(int uidx, IntList items, double[] scores)
+    {
+        this.P.getRow(uidx, vector);
+        this.Q.dot(vector, items, scores);
     }
 
     @Override
     public double getWeight(int uidx, int iidx, double value)
     {
         // First, we find the average and variance of the Gaussian of the rating value.
-        double mean = ALG.mult(this.P.viewRow(uidx), this.Q.viewRow(iidx));
-        double var = this.sigma.getQuick(iidx);
+        this.P.getRow(uidx, vector);
+        double mean = this.Q.dot(iidx, vector);
+        double var = this.sigma.get(iidx);
 
         // Then, we find the value of the density function:
         double diff = (mean - value);
@@ -344,11 +361,13 @@ public class ICTRParticle<U, I> extends FastParticle<U, I>
         double sum = 0.0;
         double lambdasSum = 0.0;
         double etasSum = 0.0;
+        DoubleMatrix1D uLambdas = this.lambdas.get(uidx);
+        DoubleMatrix1D iEtas = this.etas.get(iidx);
         // We iterate then over the different aspects:
         for (int k = 0; k < K; ++k)
         {
-            double lambda = this.lambdas.getQuick(uidx, k);
-            double eta = this.etas.getQuick(k, iidx);
+            double lambda = uLambdas.getQuick(k);
+            double eta = iEtas.getQuick(k);
             lambdasSum += lambda;
             etasSum += eta;
 
@@ -394,7 +413,7 @@ public class ICTRParticle<U, I> extends FastParticle<U, I>
      */
     private int multinomialSampling(DenseDoubleMatrix1D thetas, double sum)
     {
-        double rnd = rng.nextDouble();
+        double rnd = rng.nextDouble() * sum;
         int idx = -1;
         double w = 0.0;
         do
@@ -402,7 +421,7 @@ public class ICTRParticle<U, I> extends FastParticle<U, I>
             ++idx;
             w+= thetas.getQuick(idx);
         }
-        while (rnd <= w);
+        while (rnd > w && idx < thetas.size() - 1);
 
         return idx;
     }
@@ -420,7 +439,7 @@ public class ICTRParticle<U, I> extends FastParticle<U, I>
         double sum = 0.0;
         for (int i = 0; i < k; ++i)
         {
-            double val = this.gammaSample(lambda.getQuick(k));
+            double val = this.gammaSample(lambda.getQuick(i));
             sum += val;
             sample.setQuick(i, val);
         }
@@ -433,6 +452,24 @@ public class ICTRParticle<U, I> extends FastParticle<U, I>
         return sample;
     }
 
+    /**
+     * Samples an element of the item dependency matrix. Each row of the matrix follows a Dirichlet
+     * distribution over the items, with the eta hyperparameters of the corresponding factor, so each
+     * element follows a Beta distribution with parameters eta(item, factor) and the sum of the etas
+     * of the rest of items for that factor.
+     *
+     * @param k    the factor.
+     * @param iidx the item.
+     * @return the sampled value.
+     */
+    private double phiSample(int k, int iidx)
+    {
+        double eta = this.etas.get(iidx).getQuick(k);
+        double x = this.gammaSample(eta);
+        double y = this.gammaSample(this.etaSums.getQuick(k) - eta);
+        return (x + y) > 0.0 ? x / (x + y) : 0.0;
+    }
+
     /**
      * Function for sampling from an Inverse Gamma distribution.
      *
@@ -512,7 +549,7 @@ public class ICTRParticle<U, I> extends FastParticle<U, I>
     public double getVariance(I i)
     {
         int iidx = this.getItemIndex().item2iidx(i);
-        return this.sigma.getQuick(iidx);
+        return this.sigma.get(iidx);
     }
 
     /**
@@ -523,6 +560,6 @@ public class ICTRParticle<U, I> extends FastParticle<U, I>
      */
     public double getVariance(int iidx)
     {
-        return this.sigma.getQuick(iidx);
+        return this.sigma.get(iidx);
     }
 }
@@ -23,15 +23,18 @@ import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
 public class ICTRParticleFactory<U, I>
 {
     /**
-     * Creates a new particle.
+     * Creates a new particle, with a seeded random number generator.
      *
      * @param uIndex user index.
      * @param iIndex item index.
      * @param K      the number of latent factors for users/items.
+     * @param seed   the seed for the random number generator of the particle.
      * @return the created particle if everything went OK, null otherwise.
      */
-    public ICTRParticle<U, I> create(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int K)
+    public ICTRParticle<U, I> create(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int K, long seed)
     {
-        return new ICTRParticle<>(uIndex, iIndex, K);
+        ICTRParticle<U, I> particle = new ICTRParticle<>(uIndex, iIndex, K, seed);
+        particle.initialize();
+        return particle;
     }
 }
@@ -9,6 +9,7 @@
 package es.uam.eps.ir.knnbandit.recommendation.mf.ptsmf;
 
 import es.uam.eps.ir.knnbandit.Constants;
+import es.uam.eps.ir.knnbandit.RunSeeds;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableItemIndex;
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
@@ -52,6 +53,10 @@ public class ParticleThompsonSamplingMF<U, I> extends InteractiveRecommender<U,
      * Random number generator.
      */
     private Random ptsrng;
+    /**
+     * Buffer for the estimated rewards of the candidate items.
+     */
+    private double[] scores = new double[0];
 
     /**
      * Constructor.
@@ -67,7 +72,7 @@ public class ParticleThompsonSamplingMF<U, I> extends InteractiveRecommender<U,
         super(uIndex, iIndex, hasRating);
         this.factory = factory;
         this.particleList = new ArrayList<>();
-        this.ptsrng = new Random();
+        this.ptsrng = new Random(RunSeeds.derive(rngSeed, "particles"));
         this.numParticles = numParticles;
     }
 
@@ -85,7 +90,7 @@ public class ParticleThompsonSamplingMF<U, I> extends InteractiveRecommender<U,
         super(uIndex, iIndex, hasRating, rngSeed);
         this.factory = factory;
         this.particleList = new ArrayList<>();
-        this.ptsrng = new Random();
+        this.ptsrng = new Random(RunSeeds.derive(rngSeed, "particles"));
         this.numParticles = numParticles;
     }
 
@@ -94,9 +99,14 @@ public class ParticleThompsonSamplingMF<U, I> extends InteractiveRecommender<U,
     {
         super.init();
 
+        this.particleList.clear();
+        this.ptsrng = new Random(RunSeeds.derive(rngSeed, "particles"));
+
+        // Initialize the different particles. Their generators are seeded from the recommender one,
+        // so executions with the same seed are reproducible.
         for(int b = 0; b < numParticles; ++b)
         {
-            Particle<U,I> particle = factory.create(uIndex, iIndex);
+            Particle<U,I> particle = factory.create(uIndex, iIndex, ptsrng.nextLong());
             particleList.add(particle);
         }
     }
@@ -129,11 +139,15 @@ public class ParticleThompsonSamplingMF<U, I> extends InteractiveRecommender<U,
         Particle<U, I> current = particleList.get(idx);
 
         // Then, using that particle, for each item:
+        double[] scores = this.scores(availability);
+        current.getEstimatedRewards(uidx, availability, scores);
+
         double max = Double.NEGATIVE_INFINITY;
         IntList top = new IntArrayList();
-        for (int iidx : availability)
+        for (int i = 0, size = availability.size(); i < size; ++i)
         {
-            double val = current.getEstimatedReward(uidx, iidx);
+            int iidx = availability.get(i);
+            double val = scores[i];
 
             if (Double.isNaN(val))
             {
@@ -141,7 +155,7 @@ public class ParticleThompsonSamplingMF<U, I> extends InteractiveRecommender<U,
             }
             if (top.isEmpty() || max < val)
             {
-                top = new IntArrayList();
+                top.clear();
                 top.add(iidx);
                 max = val;
             }
@@ -182,9 +196,12 @@ public class ParticleThompsonSamplingMF<U, I> extends InteractiveRecommender<U,
         int num = Math.min(k, availability.size());
         PriorityQueue<Tuple2id> queue = new PriorityQueue<>(num, Comparator.comparingDouble(x -> x.v2));
 
-        for (int iidx : availability)
+        double[] scores = this.scores(availability);
+        current.getEstimatedRewards(uidx, availability, scores);
+        for (int i = 0, size = availability.size(); i < size; ++i)
         {
-            double val = current.getEstimatedReward(uidx, iidx);
+            int iidx = availability.get(i);
+            double val = scores[i];
 
             if(queue.size() < num)
             {
@@ -210,6 +227,21 @@ public class ParticleThompsonSamplingMF<U, I> extends InteractiveRecommender<U,
     }
 
 
+    /**
+     * Obtains the buffer for the estimated rewards of a list of candidate items.
+     *
+     * @param availability the candidate items.
+     * @return the buffer. It might have more positions than candidate items.
+     */
+    private double[] scores(IntList availability)
+    {
+        if (scores.length < availability.size())
+        {
+            scores = new double[availability.size()];
+        }
+        return scores;
+    }
+
     @Override
     public void update(int uidx, int iidx, double value)
     {
@@ -47,10 +47,11 @@ public class BayesianPTSMFParticle<U, I> extends PTSMFParticle<U, I>
      * @param sigmaQ Variance of the item latent factors.
      * @param alpha  Shape of the sigmaP inverse gamma distribution.
      * @param beta   Rate of the sigmaP inverse gamma distribution.
+     * @param seed   The seed for the random number generator.
      */
-    public BayesianPTSMFParticle(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int K, double sigma, double sigmaQ, double alpha, double beta)
+    public BayesianPTSMFParticle(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int K, double sigma, double sigmaQ, double alpha, double beta, long seed)
     {
-        super(uIndex, iIndex, K, sigma, 1.0, sigmaQ, true);
+        super(uIndex, iIndex, K, sigma, 1.0, sigmaQ, true, seed);
         this.alpha = alpha;
         this.beta = beta;
     }
@@ -24,17 +24,18 @@ public class NormalPTSMFParticle<U, I> extends PTSMFParticle<U, I>
      * @param sigma  Variance of the ratings.
      * @param sigmaP Variance of the user latent factors.
      * @param sigmaQ Variance of the item latent factors.
+     * @param seed   The seed for the random number generator.
      */
-    public NormalPTSMFParticle(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int K, double sigma, double sigmaP, double sigmaQ)
+    public NormalPTSMFParticle(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int K, double sigma, double sigmaP, double sigmaQ, long seed)
     {
-        super(uIndex, iIndex, K, sigma, sigmaP, sigmaQ, false);
+        super(uIndex, iIndex, K, sigma, sigmaP, sigmaQ, false, seed);
     }
 
 
     @Override
     public Particle<U, I> clone()
     {
-        PTSMFParticle<U, I> particle = new NormalPTSMFParticle<>(this.getUserIndex(), this.getItemIndex(), this.K, this.sigma, this.sigmaP, this.sigmaQ);
+        PTSMFParticle<U, I> particle = new NormalPTSMFParticle<>(this.getUserIndex(), this.getItemIndex(), this.K, this.sigma, this.sigmaP, this.sigmaQ, this.rng.nextLong());
         this.clone(particle);
         return particle;
     }
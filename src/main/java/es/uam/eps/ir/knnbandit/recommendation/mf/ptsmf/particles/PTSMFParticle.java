@@ -15,11 +15,14 @@ import cern.colt.matrix.impl.DenseDoubleMatrix1D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 import cern.colt.matrix.linalg.Algebra;
 import cern.colt.matrix.linalg.EigenvalueDecomposition;
+import es.uam.eps.ir.knnbandit.recommendation.mf.DenseFactorMatrix;
 import es.uam.eps.ir.knnbandit.recommendation.mf.FastParticle;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import it.unimi.dsi.fastutil.ints.IntList;
 import org.apache.commons.math3.distribution.MultivariateNormalDistribution;
 import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.random.RandomGeneratorFactory;
 
 import java.util.Random;
 
@@ -50,7 +53,7 @@ public abstract class PTSMFParticle<U, I> extends FastParticle<U, I>
     /**
      * User matrix
      */
-    protected DoubleMatrix2D P;
+    protected DenseFactorMatrix P;
     /**
      * Variance of the ratings.
      */
@@ -66,7 +69,7 @@ public abstract class PTSMFParticle<U, I> extends FastParticle<U, I>
     /**
      * Item matrix
      */
-    private DoubleMatrix2D Q;
+    private DenseFactorMatrix Q;
     /**
      * Inverse of the covariance matrix for the user vectors.
      */
@@ -87,6 +90,18 @@ public abstract class PTSMFParticle<U, I> extends FastParticle<U, I>
      * Vector representing the tastes of each item.
      */
     private DoubleMatrix1D[] bi;
+    /**
+     * Buffer for a user vector.
+     */
+    private final double[] vector;
+    /**
+     * Buffer for the inverse of the covariance matrix of a user, stored row by row.
+     */
+    private final double[] matrix;
+    /**
+     * Buffer for the product of the inverse of the covariance matrix of a user and an item vector.
+     */
+    private final double[] product;
 
     /**
      * Constructor.
@@ -97,29 +112,35 @@ public abstract class PTSMFParticle<U, I> extends FastParticle<U, I>
      * @param sigma  Variance of the ratings.
      * @param sigmaP Variance of the user latent factors.
      * @param sigmaQ Variance of the item latent factors.
+     * @param bayesian True if the particle uses the Bayesian algorithm, false otherwise.
+     * @param seed   The seed for the random number generator.
      */
-    public PTSMFParticle(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int K, double sigma, double sigmaP, double sigmaQ, boolean bayesian)
+    public PTSMFParticle(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, int K, double sigma, double sigmaP, double sigmaQ, boolean bayesian, long seed)
     {
         super(uIndex, iIndex);
         this.sigma = sigma;
         this.sigmaP = sigmaP;
         this.sigmaQ = sigmaQ;
         this.K = K;
-        this.rng = new Random();
+        this.rng = new Random(seed);
 
         this.bayesian = bayesian;
+        this.vector = new double[K];
+        this.matrix = new double[K * K];
+        this.product = new double[K];
     }
 
     @Override
     public void initialize()
     {
         // We initialize the different users.
-        this.P = new DenseDoubleMatrix2D(this.numUsers, this.K);
-        this.Q = new DenseDoubleMatrix2D(this.numItems, this.K);
+        this.P = new DenseFactorMatrix(this.numUsers, this.K);
+        this.Q = new DenseFactorMatrix(this.numItems, this.K);
 
         // Initialize users
         this.Au = new DenseDoubleMatrix2D[numUsers];
         this.bu = new DenseDoubleMatrix1D[numUsers];
+        this.muU = new DenseDoubleMatrix1D[numUsers];
 
         DoubleMatrix2D auxU = DoubleFactory2D.sparse.identity(this.K);
         for (int j = 0; j < this.K; ++j)
@@ -128,13 +149,14 @@ public abstract class PTSMFParticle<U, I> extends FastParticle<U, I>
         }
         DoubleMatrix2D auxUInv = ALG.inverse(auxU);
         DoubleMatrix1D auxB = new DenseDoubleMatrix1D(this.K);
-        MultivariateNormalDistribution mndU = new MultivariateNormalDistribution(auxB.toArray(), auxUInv.toArray());
+        MultivariateNormalDistribution mndU = new MultivariateNormalDistribution(RandomGeneratorFactory.createRandomGenerator(rng), auxB.toArray(), auxUInv.toArray());
 
         for(int uidx = 0; uidx < numUsers; ++uidx)
         {
             this.Au[uidx] = new DenseDoubleMatrix2D(this.K, this.K);
             this.Au[uidx].assign(auxU);
             this.bu[uidx] = new DenseDoubleMatrix1D(this.K);
+            this.muU[uidx] = new DenseDoubleMatrix1D(this.K);
 
             double[] pu = mndU.sample();
             this.P.viewRow(uidx).assign(pu);
@@ -150,7 +172,7 @@ public abstract class PTSMFParticle<U, I> extends FastParticle<U, I>
             auxI.setQuick(j, j, 1.0 / sigmaQ);
         }
         DoubleMatrix2D auxIInv = ALG.inverse(auxI);
-        MultivariateNormalDistribution mndI = new MultivariateNormalDistribution(auxB.toArray(), auxIInv.toArray());
+        MultivariateNormalDistribution mndI = new MultivariateNormalDistribution(RandomGeneratorFactory.createRandomGenerator(rng), auxB.toArray(), auxIInv.toArray());
 
 
         for(int iidx = 0; iidx < numItems; ++iidx)
@@ -188,6 +210,7 @@ public abstract class PTSMFParticle<U, I> extends FastParticle<U, I>
         DoubleMatrix1D mult = new DenseDoubleMatrix1D(this.K);
         DoubleMatrix2D inverse = ALG.inverse(this.Au[uidx]);
         inverse.zMult(this.bu[uidx], mult);
+        this.muU[uidx].assign(mult);
 
         // Update vector pu
         DoubleMatrix1D pu = this.gaussianSample(mult, inverse, 1.0 / sigma);
@@ -229,34 +252,43 @@ public abstract class PTSMFParticle<U, I> extends FastParticle<U, I>
     @Override
     public double getEstimatedReward(int uidx, int iidx)
     {
-        return ALG.mult(this.P.viewRow(uidx), this.Q.viewRow(iidx));
+        this.P.getRow(uidx, vector);
+        return this.Q.dot(iidx, vector);
+    }
+
+    @Override
+    public void getEstimatedRewards(int uidx, IntList items, double[] scores)
+    {
+        this.P.getRow(uidx, vector);
+        this.Q.dot(vector, items, scores);
     }
 
     @Override
     public double getWeight(int uidx, int iidx, double value)
     {
-        double mean = ALG.mult(this.Q.viewRow(iidx), this.muU[uidx]);
+        this.muU[uidx].toArray(vector);
+        double mean = this.Q.dot(iidx, vector);
 
-        DoubleMatrix1D aux = new DenseDoubleMatrix1D(this.K);
-        DoubleMatrix2D A;
-        if(bayesian)
+        DoubleMatrix2D A = Au[uidx];
+        for (int i = 0; i < this.K; ++i)
         {
-            A = new DenseDoubleMatrix2D(this.K, this.K);
-            A.assign(Au[uidx]);
-            for(int k = 0; k < this.K; ++k)
+            for (int j = 0; j < this.K; ++j)
             {
-                A.setQuick(k, k, A.getQuick(k, k) + 1.0 / sigmaP);
+                matrix[i * this.K + j] = A.getQuick(i, j);
             }
         }
-        else
+        if(bayesian)
         {
-            A = Au[uidx];
+            for(int k = 0; k < this.K; ++k)
+            {
+                matrix[k * this.K + k] += 1.0 / sigmaP;
+            }
         }
 
-        A.zMult(this.Q.viewRow(iidx), aux);
-        double variance = 1.0/sigma + ALG.mult(aux, this.Q.viewRow(iidx));
+        double variance = 1.0/sigma + this.Q.quadraticForm(matrix, iidx, product);
 
-        NormalDistribution nd = new NormalDistribution(mean, Math.sqrt(variance));
+        // Only the density is needed, so the distribution does not get a random number generator.
+        NormalDistribution nd = new NormalDistribution(null, mean, Math.sqrt(variance));
         return nd.density(value);
     }
 
@@ -293,10 +325,8 @@ public abstract class PTSMFParticle<U, I> extends FastParticle<U, I>
      */
     public void clone(PTSMFParticle<U, I> particle)
     {
-        particle.P = new DenseDoubleMatrix2D(this.numUsers, this.K);
-        particle.P.assign(this.P);
-        particle.Q = new DenseDoubleMatrix2D(this.numItems, this.K);
-        particle.Q.assign(this.Q);
+        particle.P = DenseFactorMatrix.copyOf(this.P);
+        particle.Q = DenseFactorMatrix.copyOf(this.Q);
 
         particle.Au = new DoubleMatrix2D[numUsers];
         particle.bu = new DoubleMatrix1D[numUsers];
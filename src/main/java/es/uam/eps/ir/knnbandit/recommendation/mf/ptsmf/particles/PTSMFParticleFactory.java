@@ -22,5 +22,13 @@ import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
  */
 public interface PTSMFParticleFactory<U, I>
 {
-    PTSMFParticle<U, I> create(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex);
+    /**
+     * Creates a new particle.
+     *
+     * @param uIndex user index.
+     * @param iIndex item index.
+     * @param seed   the seed for the random number generator of the particle.
+     * @return the created particle.
+     */
+    PTSMFParticle<U, I> create(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, long seed);
 }
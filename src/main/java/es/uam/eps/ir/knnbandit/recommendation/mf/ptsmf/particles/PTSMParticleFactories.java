@@ -29,9 +29,9 @@ public class PTSMParticleFactories
      */
     public static <U, I> PTSMFParticleFactory<U, I> normalFactory(int k, double sigma, double sigmaP, double sigmaQ)
     {
-        return (uIndex, iIndex) ->
+        return (uIndex, iIndex, seed) ->
         {
-            PTSMFParticle<U, I> particle = new NormalPTSMFParticle<>(uIndex, iIndex, k, sigma, sigmaP, sigmaQ);
+            PTSMFParticle<U, I> particle = new NormalPTSMFParticle<>(uIndex, iIndex, k, sigma, sigmaP, sigmaQ, seed);
             particle.initialize();
             return particle;
         };
@@ -51,9 +51,9 @@ public class PTSMParticleFactories
      */
     public static <U, I> PTSMFParticleFactory<U, I> bayesianFactory(int k, double sigma, double sigmaQ, double alpha, double beta)
     {
-        return (uIndex, iIndex) ->
+        return (uIndex, iIndex, seed) ->
         {
-            PTSMFParticle<U, I> particle = new BayesianPTSMFParticle<>(uIndex, iIndex, k, sigma, sigmaQ, alpha, beta);
+            PTSMFParticle<U, I> particle = new BayesianPTSMFParticle<>(uIndex, iIndex, k, sigma, sigmaQ, alpha, beta, seed);
             particle.initialize();
             return particle;
         };
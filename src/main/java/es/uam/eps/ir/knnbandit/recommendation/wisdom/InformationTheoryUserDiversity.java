@@ -16,11 +16,11 @@ import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdatea
 import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.FastUpdateableUserIndex;
 import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
 import es.uam.eps.ir.knnbandit.utils.FastRating;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 import org.ranksys.core.util.tuples.Tuple2id;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.PriorityQueue;
 import java.util.function.DoublePredicate;
@@ -29,6 +29,13 @@ import java.util.stream.Stream;
 /**
  * Class that uses the information theory of the ratings of the users that have
  * rated an item to compute the score.
+ * <p>
+ * The score of an item is the sum, over the users who have rated it as relevant, of
+ * log(den(u)) - log(num(u)). Such scores are stored in an array: when the term of
+ * a user changes, the items the user has found relevant are marked, and their scores
+ * are recomputed from the counts just before the next recommendation. This way, several
+ * updates over the same user are processed at once, and the scores do not accumulate
+ * floating point errors, so ties between items are exactly detected.
  *
  * @param <U> type of the users.
  * @param <I> type of the items.
@@ -41,11 +48,11 @@ public class InformationTheoryUserDiversity<U,I> extends InteractiveRecommender<
     /**
      * For the probabilities, the numerator for each user.
      */
-    protected final Int2DoubleOpenHashMap num;
+    protected final double[] num;
     /**
      * For the probabilities, the denominator for each user.
      */
-    protected final Int2DoubleOpenHashMap den;
+    protected final double[] den;
     /**
      * Preference data.
      */
@@ -54,6 +61,26 @@ public class InformationTheoryUserDiversity<U,I> extends InteractiveRecommender<
      * Predicate for determining whether a rating is relevant or not.
      */
     protected final DoublePredicate predicate;
+    /**
+     * The scores of the items.
+     */
+    private final double[] scores;
+    /**
+     * Indicates whether the term of each user has changed since the scores were last refreshed.
+     */
+    private final boolean[] dirtyUser;
+    /**
+     * Users whose term has changed since the scores were last refreshed.
+     */
+    private final IntList dirtyUsers;
+    /**
+     * Indicates whether the score of each item has to be recomputed.
+     */
+    private final boolean[] dirtyItem;
+    /**
+     * Items whose score has to be recomputed.
+     */
+    private final IntList dirtyItems;
 
     /**
      * Constructor.
@@ -66,9 +93,14 @@ public class InformationTheoryUserDiversity<U,I> extends InteractiveRecommender<
     {
         super(uIndex, iIndex, ignoreNotRated);
         retrievedData = AdditiveRatingFastUpdateablePreferenceData.load(Stream.empty(), uIndex, iIndex);
-        this.num = new Int2DoubleOpenHashMap();
-        this.den = new Int2DoubleOpenHashMap();
+        this.num = new double[uIndex.numUsers()];
+        this.den = new double[uIndex.numUsers()];
         this.predicate = predicate;
+        this.scores = new double[iIndex.numItems()];
+        this.dirtyUser = new boolean[uIndex.numUsers()];
+        this.dirtyUsers = new IntArrayList();
+        this.dirtyItem = new boolean[iIndex.numItems()];
+        this.dirtyItems = new IntArrayList();
     }
 
     /**
@@ -83,9 +115,14 @@ public class InformationTheoryUserDiversity<U,I> extends InteractiveRecommender<
     {
         super(uIndex, iIndex, ignoreNotRated, rngSeed);
         retrievedData = AdditiveRatingFastUpdateablePreferenceData.load(Stream.empty(), uIndex, iIndex);
-        this.num = new Int2DoubleOpenHashMap();
-        this.den = new Int2DoubleOpenHashMap();
+        this.num = new double[uIndex.numUsers()];
+        this.den = new double[uIndex.numUsers()];
         this.predicate = predicate;
+        this.scores = new double[iIndex.numItems()];
+        this.dirtyUser = new boolean[uIndex.numUsers()];
+        this.dirtyUsers = new IntArrayList();
+        this.dirtyItem = new boolean[iIndex.numItems()];
+        this.dirtyItems = new IntArrayList();
     }
 
     @Override
@@ -93,29 +130,29 @@ public class InformationTheoryUserDiversity<U,I> extends InteractiveRecommender<
     {
         super.init();
         this.retrievedData.clear();
-        this.num.clear();
-        this.den.clear();
-        this.uIndex.getAllUidx().forEach(uidx ->
-        {
-             num.put(uidx, 0.0);
-             den.put(uidx, 0.0);
-        });
+        Arrays.fill(num, 0.0);
+        Arrays.fill(den, 0.0);
+        Arrays.fill(scores, 0.0);
+        Arrays.fill(dirtyUser, false);
+        this.dirtyUsers.clear();
+        Arrays.fill(dirtyItem, false);
+        this.dirtyItems.clear();
     }
 
     @Override
     public void init(Stream<FastRating> values)
     {
-        super.init();
-        this.retrievedData.clear();
-        values.forEach(triplet -> this.retrievedData.updateRating(triplet.uidx(), triplet.iidx(), predicate.test(triplet.value()) ? 1.0 : 0.0));
-        this.num.clear();
-        this.den.clear();
+        this.init();
         values.forEach(triplet ->
         {
-           this.retrievedData.updateRating(triplet.uidx(), triplet.iidx(), predicate.test(triplet.value()) ? 1.0 : 0.0);
-           if(predicate.test(triplet.value())) num.addTo(triplet.uidx(), 1.0);
-           den.addTo(triplet.uidx(), 1.0);
+            double value = predicate.test(triplet.value()) ? 1.0 : 0.0;
+            this.retrievedData.updateRating(triplet.uidx(), triplet.iidx(), value);
+            num[triplet.uidx()] += value;
+            den[triplet.uidx()] += 1.0;
+            this.markUser(triplet.uidx());
         });
+
+        this.refresh();
     }
 
     @Override
@@ -124,12 +161,13 @@ public class InformationTheoryUserDiversity<U,I> extends InteractiveRecommender<
         if(available == null || available.isEmpty()) return -1;
         if(available.size() == 1) return available.get(0);
 
+        this.refresh();
         double max = Double.NEGATIVE_INFINITY;
         IntList top = new IntArrayList();
 
         for(int iidx : available)
         {
-            double value = this.retrievedData.getIidxPreferences(iidx).filter(u -> predicate.test(u.v2())).mapToDouble(u -> Math.log(den.get(u.v1)) - Math.log(num.get(u.v1))).sum();
+            double value = scores[iidx];
             if(value > max)
             {
                 top.clear();
@@ -158,26 +196,22 @@ public class InformationTheoryUserDiversity<U,I> extends InteractiveRecommender<
     {
         if(available == null || available.isEmpty()) return new IntArrayList();
 
-        double max = Double.NEGATIVE_INFINITY;
+        this.refresh();
         IntList top = new IntArrayList();
 
         int n = Math.min(available.size(), k);
         PriorityQueue<Tuple2id> queue = new PriorityQueue<>(n, Comparator.comparingDouble(x -> x.v2));
         for(int iidx : available)
         {
-            double val = this.retrievedData.getIidxPreferences(iidx).filter(u -> predicate.test(u.v2())).mapToDouble(u -> Math.log(den.get(u.v1)) - Math.log(num.get(u.v1))).sum();
+            double val = scores[iidx];
             if(queue.size() < n)
             {
                 queue.add(new Tuple2id(iidx, val));
             }
-            else
+            else if(queue.peek().v2 < val)
             {
-                Tuple2id newTuple = new Tuple2id(iidx, val);
-                if(queue.comparator().compare(queue.peek(), newTuple) < 0)
-                {
-                    queue.poll();
-                    queue.add(newTuple);
-                }
+                queue.poll();
+                queue.add(new Tuple2id(iidx, val));
             }
         }
 
@@ -199,8 +233,71 @@ public class InformationTheoryUserDiversity<U,I> extends InteractiveRecommender<
             newValue = Constants.NOTRATEDNOTIGNORED;
         else
             return;
-        this.retrievedData.updateRating(uidx, iidx, predicate.test(newValue) ? 1.0 : 0.0);
-        this.num.addTo(uidx, predicate.test(newValue) ? 1.0 : 0.0);
-        this.den.addTo(uidx, 1.0);
+
+        double rating = predicate.test(newValue) ? 1.0 : 0.0;
+        this.retrievedData.updateRating(uidx, iidx, rating);
+        this.num[uidx] += rating;
+        this.den[uidx] += 1.0;
+
+        // The item might stop being relevant for the user, so it is marked apart.
+        this.markItem(iidx);
+        this.markUser(uidx);
+    }
+
+    /**
+     * Marks the term of a user as changed.
+     * @param uidx the identifier of the user.
+     */
+    private void markUser(int uidx)
+    {
+        if(!dirtyUser[uidx])
+        {
+            dirtyUser[uidx] = true;
+            dirtyUsers.add(uidx);
+        }
+    }
+
+    /**
+     * Marks the score of an item to be recomputed.
+     * @param iidx the identifier of the item.
+     */
+    private void markItem(int iidx)
+    {
+        if(!dirtyItem[iidx])
+        {
+            dirtyItem[iidx] = true;
+            dirtyItems.add(iidx);
+        }
+    }
+
+    /**
+     * Recomputes the scores of the items affected by the changes since the last refresh:
+     * those that the marked users have found relevant, and the marked items.
+     */
+    private void refresh()
+    {
+        for(int uidx : dirtyUsers)
+        {
+            dirtyUser[uidx] = false;
+            this.retrievedData.getUidxPreferences(uidx).filter(i -> predicate.test(i.v2)).forEach(i -> this.markItem(i.v1));
+        }
+        dirtyUsers.clear();
+
+        for(int iidx : dirtyItems)
+        {
+            dirtyItem[iidx] = false;
+            scores[iidx] = this.retrievedData.getIidxPreferences(iidx).filter(u -> predicate.test(u.v2)).mapToDouble(u -> this.term(u.v1)).sum();
+        }
+        dirtyItems.clear();
+    }
+
+    /**
+     * Obtains the term a user contributes to the scores of the items the user has found relevant.
+     * @param uidx the identifier of the user.
+     * @return the term of the user. Users without relevant ratings cannot contribute to any item score.
+     */
+    private double term(int uidx)
+    {
+        return num[uidx] > 0.0 ? Math.log(den[uidx]) - Math.log(num[uidx]) : 0.0;
     }
 }
@@ -116,7 +116,8 @@ public class ItemBanditConfigurator<U,I> extends AbstractAlgorithmConfigurator<U
         @Override
         public InteractiveRecommender<U, I> apply(FastUpdateableUserIndex<U> userIndex, FastUpdateableItemIndex<I> itemIndex, int rngSeed)
         {
-            return this.apply(userIndex, itemIndex);
+            ValueFunction valueFunction = ValueFunctions.identity();
+            return new ItemBanditRecommender<>(userIndex, itemIndex, ignoreUnknown, rngSeed, banditSupplier.apply(itemIndex.numItems()), valueFunction);
         }
 
         @Override
@@ -41,10 +41,23 @@ public class BetaDistribution implements UnivariateStatisticalDistribution
      * @param beta  Initial value of beta.
      */
     public BetaDistribution(double alpha, double beta)
+    {
+        this(alpha, beta, new Random(0));
+    }
+
+    /**
+     * Constructor. Several distributions (for instance, one per arm of a bandit) can share
+     * the same random number generator, so all of them are reproduced from a single seed.
+     *
+     * @param alpha Initial value of alpha.
+     * @param beta  Initial value of beta.
+     * @param rng   Random number generator.
+     */
+    public BetaDistribution(double alpha, double beta, Random rng)
     {
         this.alpha = alpha;
         this.beta = beta;
-        this.rng = new Random();
+        this.rng = rng;
     }
 
     @Override
@@ -177,14 +190,45 @@ public class BetaDistribution implements UnivariateStatisticalDistribution
     @Override
     public double sample()
     {
-        double a = gammaSample(alpha);
-        return a / (a + gammaSample(beta));
+        return sample(alpha, beta, rng);
     }
 
     /**
-     * This implementation was adapted from https://github.com/gesiscss/promoss.
+     * Samples a value from a Gamma distribution with unit scale.
+     *
+     * @param shape the shape of the Gamma distribution.
+     * @return the sampled value.
      */
     public double gammaSample(double shape)
+    {
+        return gammaSample(shape, rng);
+    }
+
+    /**
+     * Samples a value from a Beta distribution. It allows sampling from many Beta distributions
+     * (for instance, one per item) whose parameters are stored in arrays, sharing a single random
+     * number generator, without building a distribution object for each of them.
+     *
+     * @param alpha the alpha parameter of the distribution.
+     * @param beta  the beta parameter of the distribution.
+     * @param rng   the random number generator.
+     * @return the sampled value.
+     */
+    public static double sample(double alpha, double beta, Random rng)
+    {
+        double a = gammaSample(alpha, rng);
+        return a / (a + gammaSample(beta, rng));
+    }
+
+    /**
+     * Samples a value from a Gamma distribution with unit scale.
+     * This implementation was adapted from https://github.com/gesiscss/promoss.
+     *
+     * @param shape the shape of the Gamma distribution.
+     * @param rng   the random number generator.
+     * @return the sampled value.
+     */
+    public static double gammaSample(double shape, Random rng)
     {
         if (shape <= 0) // Not well defined, set to zero and skip
         {
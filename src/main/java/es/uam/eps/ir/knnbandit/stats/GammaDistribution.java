@@ -39,10 +39,22 @@ public class GammaDistribution implements UnivariateStatisticalDistribution
      * @param scale Initial value of the scale parameter.
      */
     public GammaDistribution(double shape, double scale)
+    {
+        this(shape, scale, new Random(0));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param shape Initial value of the shape parameter.
+     * @param scale Initial value of the scale parameter.
+     * @param rng   Random number generator.
+     */
+    public GammaDistribution(double shape, double scale, Random rng)
     {
         this.shape = shape;
         this.scale = scale;
-        this.rng = new Random();
+        this.rng = rng;
     }
 
     @Override
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.utils.statistics;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Class for computing and updating the Gini index, using Fenwick trees.
+ * <p>
+ * The main term of the Gini index, &#8721;<sub>j</sub> (2j - n - 1) x<sub>(j)</sub> (where x<sub>(j)</sub> is the
+ * j-th smallest frequency), is equal to the sum of the absolute differences between every pair of frequencies.
+ * When the frequency of an element changes, the variation of this sum only depends on the number of elements
+ * with a frequency lower than a value, and the sum of those frequencies. Both are stored in Fenwick (binary indexed)
+ * trees indexed by frequency value, so any change in a frequency (not only unitary ones) is applied in logarithmic time,
+ * and without allocating memory (unless a frequency exceeds the largest frequency seen so far).
+ * <p>
+ * All the sums are computed over integers, so the result is exact.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class FenwickGiniIndex
+{
+    /**
+     * Default number of frequency values which can be initially stored in the trees.
+     */
+    private static final int DEFAULT_CAPACITY = 64;
+    /**
+     * The total number of elements.
+     */
+    private final int numElements;
+    /**
+     * For each element, the number of times it has been recommended.
+     */
+    private final long[] frequencies;
+    /**
+     * Fenwick tree storing, for each frequency value, the number of elements with that frequency.
+     */
+    private int[] counts;
+    /**
+     * Fenwick tree storing, for each frequency value, the sum of the frequencies of the elements with that frequency.
+     */
+    private long[] sums;
+    /**
+     * The sum of the frequencies of all elements.
+     */
+    private long freqSum;
+    /**
+     * The main term of the Gini index.
+     */
+    private long numSum;
+
+    /**
+     * Constructor. Assumes that the initial values for frequencies are equal to 0.
+     *
+     * @param numElements the number of elements to consider.
+     */
+    public FenwickGiniIndex(int numElements)
+    {
+        this.numElements = numElements;
+        this.frequencies = new long[numElements];
+        this.counts = new int[DEFAULT_CAPACITY + 1];
+        this.sums = new long[DEFAULT_CAPACITY + 1];
+        this.reset();
+    }
+
+    /**
+     * Constructor. Uses an initial setting for the different values.
+     *
+     * @param numElements total number of elements.
+     * @param frequencies frequencies for the different elements.
+     */
+    public FenwickGiniIndex(int numElements, Map<Integer, Long> frequencies)
+    {
+        this(numElements);
+        this.fillValues(frequencies);
+    }
+
+    /**
+     * Obtains the current value of the Gini index.
+     *
+     * @return the current value: a number between 0 and 1 representing the proper value of the index,
+     * NaN if the frequencies are all equal to zero, or there is less than one element in the collection.
+     */
+    public double getValue()
+    {
+        if (this.numElements <= 1)
+        {
+            return Double.NaN;
+        }
+        else if (this.freqSum == 0L)
+        {
+            return Double.NaN;
+        }
+        else
+        {
+            return this.numSum / ((this.numElements - 1.0) * this.freqSum);
+        }
+    }
+
+    /**
+     * Obtains the current frequency of an element.
+     *
+     * @param idx the index of the element.
+     * @return the frequency of the element, 0 if the index is invalid.
+     */
+    public long getFrequency(int idx)
+    {
+        return (idx < 0 || idx >= this.numElements) ? 0L : this.frequencies[idx];
+    }
+
+    /**
+     * Updates the different variables for the Gini index, considering a unit increment on the frequency of an element.
+     *
+     * @param idx the index of the element to increase in a unit.
+     * @return true if everything went OK, false otherwise.
+     */
+    public boolean increaseFrequency(int idx)
+    {
+        return this.updateFrequency(idx, 1);
+    }
+
+    /**
+     * Updates the different variables for the Gini index, considering a unit decrement on the frequency of an
+     * element. The value cannot descend below 0.
+     *
+     * @param idx the index of the element to decrease in a unit.
+     * @return true if everything went OK, false otherwise.
+     */
+    public boolean decreaseFrequency(int idx)
+    {
+        return this.updateFrequency(idx, -1);
+    }
+
+    /**
+     * Updates the different variables for the Gini index, considering that the frequency of an element varies.
+     * The frequency cannot descend below 0.
+     *
+     * @param idx       the index of the element to update.
+     * @param increment how much the frequency varies.
+     * @return true if everything is OK, false otherwise.
+     */
+    public boolean updateFrequency(int idx, int increment)
+    {
+        // ERROR CASE: the value of the index is invalid.
+        if (idx < 0 || idx >= this.numElements)
+        {
+            return false;
+        }
+
+        long oldFreq = this.frequencies[idx];
+        long newFreq = oldFreq + increment;
+        if (newFreq < 0)
+        {
+            return false;
+        }
+        else if (increment == 0)
+        {
+            return true;
+        }
+
+        this.ensureCapacity(newFreq);
+
+        // The sum of the absolute differences with the rest of elements varies from
+        // dist(oldFreq) - 0 to dist(newFreq) - |newFreq - oldFreq|.
+        this.numSum += this.distance(newFreq) - Math.abs(increment) - this.distance(oldFreq);
+        this.freqSum += increment;
+
+        this.add(oldFreq, -1);
+        this.add(newFreq, 1);
+        this.frequencies[idx] = newFreq;
+
+        return true;
+    }
+
+    /**
+     * Computes the sum of the absolute differences between a value and the frequencies of all the elements.
+     *
+     * @param value the value. It must be lower than the capacity of the trees.
+     * @return the sum of the absolute differences.
+     */
+    private long distance(long value)
+    {
+        int pos = (int) value + 1;
+        long lowerCount = 0L;
+        long lowerSum = 0L;
+        for (int i = pos; i > 0; i -= i & (-i))
+        {
+            lowerCount += this.counts[i];
+            lowerSum += this.sums[i];
+        }
+
+        return value * lowerCount - lowerSum + (this.freqSum - lowerSum) - value * (this.numElements - lowerCount);
+    }
+
+    /**
+     * Adds (or removes) an element with a given frequency to the trees.
+     *
+     * @param value the frequency of the element.
+     * @param count 1 if the element is added, -1 if it is removed.
+     */
+    private void add(long value, int count)
+    {
+        long sum = count * value;
+        for (int i = (int) value + 1; i < this.counts.length; i += i & (-i))
+        {
+            this.counts[i] += count;
+            this.sums[i] += sum;
+        }
+    }
+
+    /**
+     * Enlarges the trees (at least, doubling their capacity), if they cannot store a frequency value.
+     *
+     * @param value the frequency value.
+     */
+    private void ensureCapacity(long value)
+    {
+        if (value + 1 < this.counts.length)
+        {
+            return;
+        }
+
+        int capacity = (int) Math.max(2L * (this.counts.length - 1), value + 1);
+        this.counts = new int[capacity + 1];
+        this.sums = new long[capacity + 1];
+        this.build();
+    }
+
+    /**
+     * Builds the trees from the frequencies of the elements, in linear time.
+     */
+    private void build()
+    {
+        Arrays.fill(this.counts, 0);
+        Arrays.fill(this.sums, 0L);
+        for (long freq : this.frequencies)
+        {
+            this.counts[(int) freq + 1]++;
+            this.sums[(int) freq + 1] += freq;
+        }
+
+        for (int i = 1; i < this.counts.length; ++i)
+        {
+            int parent = i + (i & (-i));
+            if (parent < this.counts.length)
+            {
+                this.counts[parent] += this.counts[i];
+                this.sums[parent] += this.sums[i];
+            }
+        }
+    }
+
+    /**
+     * Given a relation of elements and frequencies, updates the values of the
+     * elements indicated in the relation. This method supposes that all the
+     * frequencies are equal to zero.
+     *
+     * @param frequencies the relation between elements and its frequencies.
+     */
+    private void fillValues(Map<Integer, Long> frequencies)
+    {
+        frequencies.forEach((idx, value) ->
+        {
+            if (idx >= 0 && idx < numElements && value > 0)
+            {
+                this.updateFrequency(idx, value.intValue());
+            }
+        });
+    }
+
+    /**
+     * Resets the metric to the state with no initial information.
+     */
+    public void reset()
+    {
+        Arrays.fill(this.frequencies, 0L);
+        this.freqSum = 0L;
+        this.numSum = 0L;
+        this.build();
+    }
+
+    /**
+     * Resets the metric to an initial state.
+     *
+     * @param frequencies the initial frequencies.
+     */
+    public void reset(Map<Integer, Long> frequencies)
+    {
+        this.reset();
+        this.fillValues(frequencies);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ * de Madrid, http://ir.ii.uam.es.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, you can obtain one at http://mozilla.org/MPL/2.0.
+ *
+ */
+package es.uam.eps.ir.knnbandit.utils.statistics;
+
+import java.util.Arrays;
+
+/**
+ * Counter of the popularity (number of occurrences) of a dense set of elements (identified
+ * by their indexes 0..n-1), stored in a primitive array. The array grows when an element
+ * beyond its capacity is counted, so it can follow updateable indexes.
+ * <p>
+ * A single counter can be shared by several readers (for instance, all the metrics of a recommendation
+ * loop), so the popularity is only counted once per rating. The state of the counter can be stored and
+ * recovered with {@link #snapshot()} and {@link #restore(long[])}, so a known state (for instance, the
+ * popularity of the items in the warm-up data) does not need to be counted again.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class PopularityCounter
+{
+    /**
+     * The popularity of each element.
+     */
+    private long[] counts;
+    /**
+     * The sum of the popularities of all the elements.
+     */
+    private long total;
+
+    /**
+     * Constructor.
+     *
+     * @param numElements the (initial) number of elements.
+     */
+    public PopularityCounter(int numElements)
+    {
+        this.counts = new long[Math.max(numElements, 0)];
+        this.total = 0L;
+    }
+
+    /**
+     * Obtains the popularity of an element.
+     *
+     * @param idx the index of the element.
+     * @return the popularity of the element (0 if it has never been counted).
+     */
+    public long get(int idx)
+    {
+        return idx < counts.length ? counts[idx] : 0L;
+    }
+
+    /**
+     * Increases the popularity of an element in a unit.
+     *
+     * @param idx the index of the element.
+     * @return the new popularity of the element.
+     */
+    public long increment(int idx)
+    {
+        return this.add(idx, 1L);
+    }
+
+    /**
+     * Decreases the popularity of an element in a unit.
+     *
+     * @param idx the index of the element.
+     * @return the new popularity of the element.
+     */
+    public long decrement(int idx)
+    {
+        return this.add(idx, -1L);
+    }
+
+    /**
+     * Modifies the popularity of an element.
+     *
+     * @param idx   the index of the element.
+     * @param delta the variation of the popularity.
+     * @return the new popularity of the element.
+     */
+    public long add(int idx, long delta)
+    {
+        this.ensureCapacity(idx + 1);
+        this.total += delta;
+        return (counts[idx] += delta);
+    }
+
+    /**
+     * Obtains the sum of the popularities of all the elements.
+     *
+     * @return the sum of the popularities.
+     */
+    public long total()
+    {
+        return total;
+    }
+
+    /**
+     * Ensures that the counter can store, at least, a given number of elements.
+     *
+     * @param numElements the number of elements.
+     */
+    public void ensureCapacity(int numElements)
+    {
+        if (numElements > counts.length)
+        {
+            this.counts = Arrays.copyOf(counts, Math.max(numElements, 2 * counts.length));
+        }
+    }
+
+    /**
+     * Sets the popularity of all the elements to zero.
+     */
+    public void clear()
+    {
+        Arrays.fill(counts, 0L);
+        this.total = 0L;
+    }
+
+    /**
+     * Obtains a copy of the current popularities.
+     *
+     * @return the copy, which can be used for restoring this state later.
+     */
+    public long[] snapshot()
+    {
+        return counts.clone();
+    }
+
+    /**
+     * Restores the popularities from a snapshot.
+     *
+     * @param snapshot the snapshot, as obtained from {@link #snapshot()}.
+     */
+    public void restore(long[] snapshot)
+    {
+        this.ensureCapacity(snapshot.length);
+        System.arraycopy(snapshot, 0, counts, 0, snapshot.length);
+        Arrays.fill(counts, snapshot.length, counts.length, 0L);
+
+        this.total = 0L;
+        for (long count : snapshot)
+        {
+            this.total += count;
+        }
+    }
+}
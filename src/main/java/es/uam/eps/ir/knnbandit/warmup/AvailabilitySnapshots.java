@@ -0,0 +1,128 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.warmup;
+
+import it.unimi.dsi.fastutil.ints.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds the availability lists of a sequence of nested warm-ups (i.e. warm-ups built from
+ * growing prefixes of the same training log). Items are removed as the log is traversed,
+ * and, at each split point, a snapshot of the availability lists is taken. The lists of the
+ * users who have not changed since the previous snapshot are shared between both snapshots.
+ * <p>
+ * Every user starts with the same universe of items, and the lists are stored as the complement
+ * of the items removed for each user (see {@link ComplementIntList}), so the universe is never
+ * copied. The returned lists are unmodifiable.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+class AvailabilitySnapshots
+{
+    /**
+     * The list containing all the items in the universe.
+     */
+    private final ComplementIntList universe;
+    /**
+     * Items removed from the availability list of each user.
+     */
+    private final IntSet[] removed;
+    /**
+     * The availability lists in the last snapshot.
+     */
+    private final IntList[] current;
+    /**
+     * Indicates whether the list of each user has changed since the last snapshot.
+     */
+    private final boolean[] dirty;
+    /**
+     * Users whose list has changed since the last snapshot.
+     */
+    private final IntList dirtyUsers;
+
+    /**
+     * Constructor.
+     *
+     * @param numUsers the number of users.
+     * @param universe the initial availability list of every user.
+     */
+    AvailabilitySnapshots(int numUsers, IntList universe)
+    {
+        this.universe = new ComplementIntList(universe);
+        this.removed = new IntSet[numUsers];
+        this.current = new IntList[numUsers];
+        this.dirty = new boolean[numUsers];
+        Arrays.fill(dirty, true);
+        this.dirtyUsers = new IntArrayList();
+        for (int uidx = 0; uidx < numUsers; ++uidx)
+        {
+            dirtyUsers.add(uidx);
+        }
+    }
+
+    /**
+     * Removes an item from the availability list of a user.
+     *
+     * @param uidx the user.
+     * @param iidx the item.
+     */
+    void remove(int uidx, int iidx)
+    {
+        if (removed[uidx] == null)
+        {
+            removed[uidx] = new IntOpenHashSet();
+        }
+        if (removed[uidx].add(iidx) && !dirty[uidx])
+        {
+            dirty[uidx] = true;
+            dirtyUsers.add(uidx);
+        }
+    }
+
+    /**
+     * Checks whether an item has been removed from the availability list of a user.
+     *
+     * @param uidx the user.
+     * @param iidx the item.
+     * @return true if the item has been removed, false otherwise.
+     */
+    boolean isRemoved(int uidx, int iidx)
+    {
+        return removed[uidx] != null && removed[uidx].contains(iidx);
+    }
+
+    /**
+     * Takes a snapshot of the current availability lists.
+     *
+     * @return the availability lists.
+     */
+    List<IntList> snapshot()
+    {
+        for (int uidx : dirtyUsers)
+        {
+            if (removed[uidx] != null && !removed[uidx].isEmpty())
+            {
+                current[uidx] = universe.without(removed[uidx]);
+            }
+            else
+            {
+                current[uidx] = universe;
+            }
+            dirty[uidx] = false;
+        }
+        dirtyUsers.clear();
+
+        return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(current)));
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.warmup;
+
+import it.unimi.dsi.fastutil.ints.AbstractIntList;
+import it.unimi.dsi.fastutil.ints.AbstractIntListIterator;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntListIterator;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Unmodifiable list containing the elements of a universe (a list of distinct non-negative
+ * integers) minus an excluded set. The universe is shared by all the lists obtained from it,
+ * and each list only stores the (sorted) positions of its excluded elements, so the memory it
+ * needs is proportional to the number of excluded elements, and not to the size of the list.
+ * <p>
+ * The elements keep the order of the universe. Random access, and the contains and indexOf
+ * queries, take logarithmic time on the number of excluded elements, whereas iterating over
+ * the list takes constant time per element.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+class ComplementIntList extends AbstractIntList
+{
+    /**
+     * The elements of the universe (shared).
+     */
+    private final int[] items;
+    /**
+     * The position of each element in the universe, -1 if it does not belong to it (shared).
+     */
+    private final int[] positions;
+    /**
+     * The sorted positions (in the universe) of the excluded elements.
+     */
+    private final int[] excluded;
+
+    /**
+     * Constructor. Builds the list containing the whole universe.
+     *
+     * @param universe the elements of the universe.
+     */
+    ComplementIntList(IntList universe)
+    {
+        this.items = universe.toIntArray();
+        int maxItem = -1;
+        for (int iidx : items)
+        {
+            maxItem = Math.max(maxItem, iidx);
+        }
+
+        this.positions = new int[maxItem + 1];
+        Arrays.fill(positions, -1);
+        for (int i = 0; i < items.length; ++i)
+        {
+            positions[items[i]] = i;
+        }
+        this.excluded = new int[0];
+    }
+
+    /**
+     * Constructor. Builds a list sharing the universe of another one.
+     *
+     * @param items     the elements of the universe.
+     * @param positions the position of each element in the universe.
+     * @param excluded  the sorted positions of the excluded elements.
+     */
+    private ComplementIntList(int[] items, int[] positions, int[] excluded)
+    {
+        this.items = items;
+        this.positions = positions;
+        this.excluded = excluded;
+    }
+
+    /**
+     * Obtains a list with the elements of this one, minus a set of elements. It shares the universe with this list.
+     *
+     * @param removed the elements to remove. Those which do not belong to the list are ignored.
+     * @return the new list.
+     */
+    ComplementIntList without(IntCollection removed)
+    {
+        int[] newExcluded = Arrays.copyOf(excluded, excluded.length + removed.size());
+        int numExcluded = excluded.length;
+        for (int iidx : removed)
+        {
+            int pos = this.position(iidx);
+            if (pos >= 0)
+            {
+                newExcluded[numExcluded++] = pos;
+            }
+        }
+
+        Arrays.sort(newExcluded, 0, numExcluded);
+        int numDistinct = 0;
+        for (int i = 0; i < numExcluded; ++i)
+        {
+            if (numDistinct == 0 || newExcluded[numDistinct - 1] != newExcluded[i])
+            {
+                newExcluded[numDistinct++] = newExcluded[i];
+            }
+        }
+
+        return new ComplementIntList(items, positions, Arrays.copyOf(newExcluded, numDistinct));
+    }
+
+    @Override
+    public int size()
+    {
+        return items.length - excluded.length;
+    }
+
+    @Override
+    public int getInt(int index)
+    {
+        if (index < 0 || index >= this.size())
+        {
+            throw new IndexOutOfBoundsException("Index (" + index + ") is not in [0, " + this.size() + ")");
+        }
+        return items[index + this.rank(index)];
+    }
+
+    @Override
+    public boolean contains(int k)
+    {
+        return this.position(k) >= 0;
+    }
+
+    @Override
+    public int indexOf(int k)
+    {
+        int pos = this.position(k);
+        if (pos < 0)
+        {
+            return -1;
+        }
+        // The number of excluded positions before pos is the insertion point of pos.
+        return pos + Arrays.binarySearch(excluded, pos) + 1;
+    }
+
+    @Override
+    public int lastIndexOf(int k)
+    {
+        return this.indexOf(k);
+    }
+
+    @Override
+    public IntListIterator listIterator(int index)
+    {
+        if (index < 0 || index > this.size())
+        {
+            throw new IndexOutOfBoundsException("Index (" + index + ") is not in [0, " + this.size() + "]");
+        }
+
+        return new AbstractIntListIterator()
+        {
+            /**
+             * The index of the next element.
+             */
+            int next = index;
+            /**
+             * The position in the universe of the next element.
+             */
+            int pos;
+            /**
+             * The number of excluded positions before pos.
+             */
+            int numBefore;
+
+            {
+                this.locate();
+            }
+
+            /**
+             * Finds the position in the universe of the next element.
+             */
+            private void locate()
+            {
+                numBefore = rank(next);
+                pos = next + numBefore;
+            }
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < size();
+            }
+
+            @Override
+            public boolean hasPrevious()
+            {
+                return next > 0;
+            }
+
+            @Override
+            public int nextInt()
+            {
+                if (!this.hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                int value = items[pos];
+                ++next;
+                ++pos;
+                while (numBefore < excluded.length && excluded[numBefore] == pos)
+                {
+                    ++pos;
+                    ++numBefore;
+                }
+                return value;
+            }
+
+            @Override
+            public int previousInt()
+            {
+                if (!this.hasPrevious())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                --next;
+                this.locate();
+                return items[pos];
+            }
+
+            @Override
+            public int nextIndex()
+            {
+                return next;
+            }
+
+            @Override
+            public int previousIndex()
+            {
+                return next - 1;
+            }
+        };
+    }
+
+    /**
+     * Obtains the position of an element in the universe, if it belongs to the list.
+     *
+     * @param iidx the element.
+     * @return the position, -1 if the element does not belong to the list.
+     */
+    private int position(int iidx)
+    {
+        if (iidx < 0 || iidx >= positions.length)
+        {
+            return -1;
+        }
+        int pos = positions[iidx];
+        return (pos >= 0 && Arrays.binarySearch(excluded, pos) < 0) ? pos : -1;
+    }
+
+    /**
+     * Obtains the number of excluded positions before the element at a given index of the list.
+     * As positions are sorted, the difference between the j-th excluded position and j does not
+     * decrease, so it is found by binary search.
+     *
+     * @param index the index of the element.
+     * @return the number of excluded positions.
+     */
+    private int rank(int index)
+    {
+        int lo = 0;
+        int hi = excluded.length;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (excluded[mid] - mid <= index)
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -16,8 +16,12 @@ import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -49,51 +53,103 @@ public class ContactWarmup extends GeneralWarmup
      * @return the contact warm-up data.
      */
     public static ContactWarmup load(ContactDataset<?> dataset, Stream<Pair<Integer>> training, WarmupType type)
+    {
+        return loadNested(dataset, training.collect(Collectors.toList()), Collections.singletonList(Integer.MAX_VALUE), type).get(0);
+    }
+
+    /**
+     * Loads a sequence of nested contact recommendation warm-ups, built from growing prefixes of the
+     * same list of pairs. The list is traversed only once, and the warm-ups share as much data as
+     * possible: the rating lists of each warm-up are prefixes of the same list, and the availability
+     * list of a user is only rebuilt when it changes.
+     *
+     * @param dataset     the dataset.
+     * @param training    the full list of training user-item pairs.
+     * @param splitPoints the lengths of the prefixes of the list used by each warm-up.
+     * @param type        filters the list of pairs. If ALL, it does not apply a filter. If ONLYRATED, ignores those user-item pairs not in the dataset.
+     * @return the contact warm-up data for each split point, in the same order as the split points.
+     */
+    public static List<ContactWarmup> loadNested(ContactDataset<?> dataset, List<Pair<Integer>> training, List<Integer> splitPoints, WarmupType type)
     {
         List<FastRating> fullTraining = new ArrayList<>();
         List<FastRating> cleanTraining = new ArrayList<>();
-        List<IntList> availability = new ArrayList<>();
 
-        IntList itemList = new IntArrayList();
-        IntStream.range(0, dataset.numUsers()).forEach(itemList::add);
-        IntStream.range(0, dataset.numUsers()).forEach(uidx ->
+        int numUsers = dataset.numUsers();
+        IntList userList = new IntArrayList(numUsers);
+        IntStream.range(0, numUsers).forEach(userList::add);
+        AvailabilitySnapshots availability = new AvailabilitySnapshots(numUsers, userList);
+        // A user is never available for itself.
+        for (int uidx = 0; uidx < numUsers; ++uidx)
         {
-            availability.add(new IntArrayList(itemList));
-            availability.get(uidx).remove(uidx);
-        });
+            availability.remove(uidx, uidx);
+        }
+        // Position of the first available item of each user (in the initial list order).
+        int[] first = new int[numUsers];
+
+        // Traverse the split points in increasing order.
+        Integer[] order = IntStream.range(0, splitPoints.size()).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingInt(splitPoints::get));
 
-        int numRel = training.mapToInt(t ->
+        int numParts = splitPoints.size();
+        int[] fullSizes = new int[numParts];
+        int[] cleanSizes = new int[numParts];
+        int[] numRels = new int[numParts];
+        List<List<IntList>> availabilities = new ArrayList<>(Collections.nCopies(numParts, null));
+        int numRel = 0;
+        int pos = 0;
+        for (int part : order)
         {
-            int uidx = t.v1();
-            int iidx = t.v2();
-            double value = 0.0;
-            Optional<Double> opt = dataset.getPreference(uidx, iidx);
-            if(opt.isPresent())
+            int end = Math.min(splitPoints.get(part), training.size());
+            for (; pos < end; ++pos)
             {
-                value = opt.get();
-                cleanTraining.add(new FastRating(uidx, iidx, value));
-                fullTraining.add(new FastRating(uidx, iidx, value));
-                availability.get(uidx).removeInt(availability.get(uidx).indexOf(iidx));
-
-                if(!dataset.isDirected() || !dataset.useReciprocal())
+                int uidx = training.get(pos).v1();
+                int iidx = training.get(pos).v2();
+                double value = 0.0;
+                Optional<Double> opt = dataset.getPreference(uidx, iidx);
+                if(opt.isPresent())
                 {
-                    int index = availability.get(iidx).indexOf(uidx);
-                    if(index > 0)
+                    value = opt.get();
+                    cleanTraining.add(new FastRating(uidx, iidx, value));
+                    fullTraining.add(new FastRating(uidx, iidx, value));
+                    availability.remove(uidx, iidx);
+
+                    if(!dataset.isDirected() || !dataset.useReciprocal())
                     {
-                        availability.get(iidx).removeInt(index);
+                        // As in load, the first available user of the item is never removed.
+                        while (first[iidx] < numUsers && (first[iidx] == iidx || availability.isRemoved(iidx, first[iidx])))
+                        {
+                            first[iidx]++;
+                        }
+                        if (uidx != iidx && first[iidx] != uidx)
+                        {
+                            availability.remove(iidx, uidx);
+                        }
                     }
                 }
-            }
-            else if(type == WarmupType.FULL)
-            {
-                value = Double.NaN;
-                fullTraining.add(new FastRating(uidx, iidx, value));
-                availability.get(uidx).removeInt(availability.get(uidx).indexOf(iidx));
+                else if(type == WarmupType.FULL)
+                {
+                    value = Double.NaN;
+                    fullTraining.add(new FastRating(uidx, iidx, value));
+                    availability.remove(uidx, iidx);
+                }
+
+                numRel += dataset.isRelevant(value) ? 1 : 0;
             }
 
-            return dataset.isRelevant(value) ? 1 : 0;
-        }).sum();
+            fullSizes[part] = fullTraining.size();
+            cleanSizes[part] = cleanTraining.size();
+            numRels[part] = numRel;
+            availabilities.set(part, availability.snapshot());
+        }
 
-        return new ContactWarmup(fullTraining, cleanTraining, availability, numRel);
+        // Once the lists are complete, each warm-up takes a view of a prefix of them.
+        List<ContactWarmup> warmups = new ArrayList<>();
+        for (int part = 0; part < numParts; ++part)
+        {
+            warmups.add(new ContactWarmup(Collections.unmodifiableList(fullTraining.subList(0, fullSizes[part])),
+                                          Collections.unmodifiableList(cleanTraining.subList(0, cleanSizes[part])),
+                                          availabilities.get(part), numRels[part]));
+        }
+        return warmups;
     }
 }
@@ -16,8 +16,14 @@ import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -45,6 +51,10 @@ public class GeneralWarmup implements OfflineWarmup
      * Number of relevant items.
      */
     private final int numRel;
+    /**
+     * Shareable versions of the training lists.
+     */
+    private final Map<List<FastRating>, SharedWarmup> shared = Collections.synchronizedMap(new IdentityHashMap<>());
 
     /**
      * Constructor.
@@ -79,6 +89,12 @@ public class GeneralWarmup implements OfflineWarmup
         return fullTraining;
     }
 
+    @Override
+    public SharedWarmup share(List<FastRating> training)
+    {
+        return shared.computeIfAbsent(training, SharedWarmup::new);
+    }
+
     @Override
     public List<FastRating> getCleanTraining()
     {
@@ -93,38 +109,82 @@ public class GeneralWarmup implements OfflineWarmup
      * @return the warm-up data.
      */
     public static GeneralWarmup load(OfflineDataset<?,?> dataset, Stream<Pair<Integer>> training, WarmupType type)
+    {
+        return loadNested(dataset, training.collect(Collectors.toList()), Collections.singletonList(Integer.MAX_VALUE), type).get(0);
+    }
+
+    /**
+     * Loads a sequence of nested warm-ups, built from growing prefixes of the same list of pairs.
+     * The list is traversed only once, and the warm-ups share as much data as possible: the
+     * rating lists of each warm-up are prefixes of the same list, and the availability list
+     * of a user is only rebuilt when it changes. Availability lists are stored as the complement
+     * of the items rated by each user, so the item list is never copied for each user.
+     *
+     * @param dataset     the dataset.
+     * @param training    the full list of user-item pairs.
+     * @param splitPoints the lengths of the prefixes of the list used by each warm-up.
+     * @param type        filters the list of pairs. If ALL, it does not apply a filter. If ONLYRATED, ignores those user-item pairs not in the dataset.
+     * @return the warm-up data for each split point, in the same order as the split points.
+     */
+    public static List<GeneralWarmup> loadNested(OfflineDataset<?,?> dataset, List<Pair<Integer>> training, List<Integer> splitPoints, WarmupType type)
     {
         List<FastRating> fullTraining = new ArrayList<>();
         List<FastRating> cleanTraining = new ArrayList<>();
-        List<IntList> availability = new ArrayList<>();
         IntList itemList = new IntArrayList();
         dataset.getAllIidx().forEach(itemList::add);
+        AvailabilitySnapshots availability = new AvailabilitySnapshots(dataset.numUsers(), itemList);
 
-        IntStream.range(0, dataset.numUsers()).forEach(uidx -> availability.add(new IntArrayList(itemList)));
+        // Traverse the split points in increasing order.
+        Integer[] order = IntStream.range(0, splitPoints.size()).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingInt(splitPoints::get));
 
-        int numRel = training.mapToInt(t ->
+        int numParts = splitPoints.size();
+        int[] fullSizes = new int[numParts];
+        int[] cleanSizes = new int[numParts];
+        int[] numRels = new int[numParts];
+        List<List<IntList>> availabilities = new ArrayList<>(Collections.nCopies(numParts, null));
+        int numRel = 0;
+        int pos = 0;
+        for (int part : order)
         {
-            int uidx = t.v1();
-            int iidx = t.v2();
-            double value = 0.0;
-            Optional<Double> opt = dataset.getPreference(uidx, iidx);
-            if(opt.isPresent())
+            int end = Math.min(splitPoints.get(part), training.size());
+            for (; pos < end; ++pos)
             {
-                value = opt.get();
-                cleanTraining.add(new FastRating(uidx, iidx, value));
-                fullTraining.add(new FastRating(uidx, iidx, value));
-                availability.get(uidx).removeInt(availability.get(uidx).indexOf(iidx));
-            }
-            else if(type == WarmupType.FULL)
-            {
-                value = Double.NaN;
-                fullTraining.add(new FastRating(uidx, iidx, value));
-                availability.get(uidx).removeInt(availability.get(uidx).indexOf(iidx));
+                int uidx = training.get(pos).v1();
+                int iidx = training.get(pos).v2();
+                double value = 0.0;
+                Optional<Double> opt = dataset.getPreference(uidx, iidx);
+                if(opt.isPresent())
+                {
+                    value = opt.get();
+                    cleanTraining.add(new FastRating(uidx, iidx, value));
+                    fullTraining.add(new FastRating(uidx, iidx, value));
+                    availability.remove(uidx, iidx);
+                }
+                else if(type == WarmupType.FULL)
+                {
+                    value = Double.NaN;
+                    fullTraining.add(new FastRating(uidx, iidx, value));
+                    availability.remove(uidx, iidx);
+                }
+
+                numRel += dataset.isRelevant(value) ? 1 : 0;
             }
 
-            return dataset.isRelevant(value) ? 1 : 0;
-        }).sum();
+            fullSizes[part] = fullTraining.size();
+            cleanSizes[part] = cleanTraining.size();
+            numRels[part] = numRel;
+            availabilities.set(part, availability.snapshot());
+        }
 
-        return new GeneralWarmup(fullTraining, cleanTraining, availability, numRel);
+        // Once the lists are complete, each warm-up takes a view of a prefix of them.
+        List<GeneralWarmup> warmups = new ArrayList<>();
+        for (int part = 0; part < numParts; ++part)
+        {
+            warmups.add(new GeneralWarmup(Collections.unmodifiableList(fullTraining.subList(0, fullSizes[part])),
+                                          Collections.unmodifiableList(cleanTraining.subList(0, cleanSizes[part])),
+                                          availabilities.get(part), numRels[part]));
+        }
+        return warmups;
     }
 }
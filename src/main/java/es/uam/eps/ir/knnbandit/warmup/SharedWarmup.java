@@ -0,0 +1,135 @@
+/*
+ *  Copyright (C) 2020 Information Retrieval Group at Universidad Autónoma
+ *  de Madrid, http://ir.ii.uam.es
+ *
+ *  This Source Code Form is subject to the terms of the Mozilla Public
+ *  License, v. 2.0. If a copy of the MPL was not distributed with this
+ *  file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package es.uam.eps.ir.knnbandit.warmup;
+
+import es.uam.eps.ir.knnbandit.data.preference.updateable.fast.SharedPreferenceBase;
+import es.uam.eps.ir.knnbandit.utils.FastRating;
+import es.uam.eps.ir.knnbandit.utils.statistics.PopularityCounter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoublePredicate;
+import java.util.function.Function;
+
+/**
+ * List of warm-up ratings which is shared by several executions of the recommendation loop.
+ * Apart from the ratings, it stores the immutable preference bases and item popularities built
+ * from them, so each of them is only built once, and all the executions read from the same copy.
+ *
+ * @author Javier Sanz-Cruzado (javier.sanz-cruzado@uam.es)
+ * @author Pablo Castells (pablo.castells@uam.es)
+ */
+public class SharedWarmup
+{
+    /**
+     * The warm-up ratings.
+     */
+    private final List<FastRating> ratings;
+    /**
+     * The preference bases built from the ratings, indexed by the type of preference data which reads them.
+     */
+    private final Map<Class<?>, SharedPreferenceBase> bases;
+    /**
+     * The popularity of the items in the ratings, indexed by the filter of the counted ratings.
+     */
+    private final Map<DoublePredicate, long[]> popularities;
+    /**
+     * Filter which counts all the ratings.
+     */
+    private static final DoublePredicate ALL = value -> true;
+
+    /**
+     * Constructor.
+     *
+     * @param ratings the warm-up ratings.
+     */
+    public SharedWarmup(List<FastRating> ratings)
+    {
+        this.ratings = ratings;
+        this.bases = new ConcurrentHashMap<>();
+        this.popularities = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Obtains the warm-up ratings.
+     *
+     * @return the list of ratings.
+     */
+    public List<FastRating> getRatings()
+    {
+        return ratings;
+    }
+
+    /**
+     * Obtains the preference base for a given type of preference data. If it has not been built yet,
+     * it is built outside of the map, so other types are not blocked meanwhile. If several threads
+     * build the same base at the same time, the first one stored is kept, and all of them return it.
+     *
+     * @param type    the type of the preference data which reads the base.
+     * @param builder a function for building the base from the list of ratings. It must not have side effects.
+     * @return the preference base.
+     */
+    public SharedPreferenceBase getBase(Class<?> type, Function<List<FastRating>, SharedPreferenceBase> builder)
+    {
+        SharedPreferenceBase base = bases.get(type);
+        if (base == null)
+        {
+            SharedPreferenceBase built = builder.apply(ratings);
+            base = bases.putIfAbsent(type, built);
+            if (base == null)
+            {
+                base = built;
+            }
+        }
+        return base;
+    }
+
+    /**
+     * Obtains the popularity of the items in the warm-up ratings.
+     *
+     * @return the popularity of each item, indexed by item. It is shared, so it must not be modified.
+     * @see #getPopularity(DoublePredicate)
+     */
+    public long[] getPopularity()
+    {
+        return this.getPopularity(ALL);
+    }
+
+    /**
+     * Obtains the popularity of the items in the warm-up ratings which pass a filter. As the preference
+     * bases, it is computed only once for each filter (compared by identity), outside of the map.
+     *
+     * @param filter a filter on the values of the ratings to count.
+     * @return the popularity of each item, indexed by item. It is shared, so it must not be modified.
+     */
+    public long[] getPopularity(DoublePredicate filter)
+    {
+        long[] popularity = popularities.get(filter);
+        if (popularity == null)
+        {
+            PopularityCounter counter = new PopularityCounter(0);
+            for (FastRating rating : ratings)
+            {
+                if (filter.test(rating.value()))
+                {
+                    counter.increment(rating.iidx());
+                }
+            }
+
+            long[] built = counter.snapshot();
+            popularity = popularities.putIfAbsent(filter, built);
+            if (popularity == null)
+            {
+                popularity = built;
+            }
+        }
+        return popularity;
+    }
+}
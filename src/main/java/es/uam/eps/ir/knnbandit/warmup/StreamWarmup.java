@@ -15,7 +15,10 @@ import es.uam.eps.ir.knnbandit.utils.Pair;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Warm-up for the streaming data.
@@ -33,6 +36,10 @@ public class StreamWarmup implements Warmup
      * The number of relevant ratings.
      */
     private final int numRel;
+    /**
+     * Shareable versions of the training lists.
+     */
+    private final Map<List<FastRating>, SharedWarmup> shared = Collections.synchronizedMap(new IdentityHashMap<>());
 
     /**
      * Constructor.
@@ -57,6 +64,12 @@ public class StreamWarmup implements Warmup
         return fullTraining;
     }
 
+    @Override
+    public SharedWarmup share(List<FastRating> training)
+    {
+        return shared.computeIfAbsent(training, SharedWarmup::new);
+    }
+
     @Override
     public List<FastRating> getCleanTraining()
     {
@@ -38,4 +38,17 @@ public interface Warmup
      * @return the full list of training tuples, null if the initializer has not been configured.
      */
     List<FastRating> getCleanTraining();
+
+    /**
+     * Obtains a shareable version of a list of training tuples of this warm-up. By default,
+     * a new object is created each time. Implementations can cache them, so all the executions
+     * of the recommendation loop with the same warm-up share the same data.
+     *
+     * @param training a list of training tuples of this warm-up (full or clean).
+     * @return the shareable version of the list.
+     */
+    default SharedWarmup share(List<FastRating> training)
+    {
+        return new SharedWarmup(training);
+    }
 }
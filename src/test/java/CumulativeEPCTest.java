@@ -0,0 +1,32 @@
+import es.uam.eps.ir.knnbandit.metrics.CumulativeEPC;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the CumulativeEPC class.
+ */
+public class CumulativeEPCTest
+{
+    @Test
+    public void removeAndAddBack()
+    {
+        CumulativeEPC<Long, Long> epc = new CumulativeEPC<>(2, 3);
+        epc.update(0, 0, 1.0);
+        epc.update(1, 0, 1.0);
+        epc.update(0, 1, 1.0);
+        epc.update(1, 2, 1.0);
+        double value = epc.compute();
+        // The value is the one before the last change: sum = 5, with 3 ratings.
+        Assertions.assertEquals(1.0 - 5.0 / 6.0, value, 1E-9);
+
+        // After a removal, the value is the one of the whole window: sum = 6, with 4 ratings.
+        epc.remove(1, 2, 1.0);
+        Assertions.assertEquals(1.0 - 6.0 / 8.0, epc.compute(), 1E-9);
+        epc.remove(0, 1, 1.0);
+        Assertions.assertEquals(value, epc.compute(), 1E-9);
+
+        epc.update(0, 1, 1.0);
+        epc.update(1, 2, 1.0);
+        Assertions.assertEquals(value, epc.compute(), 1E-9);
+    }
+}
@@ -1,10 +1,12 @@
 import es.uam.eps.ir.knnbandit.utils.statistics.FastGiniIndex;
+import es.uam.eps.ir.knnbandit.utils.statistics.FenwickGiniIndex;
 import es.uam.eps.ir.knnbandit.utils.statistics.GiniIndex;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 /**
  * Tests for the GiniIndex class.
@@ -166,4 +168,83 @@ public class GiniTest
         Assertions.assertTrue(Double.isNaN(gini.getValue()));
     }
 
+    @Test
+    public void severalStepsFenwick()
+    {
+        Map<Integer, Long> frequencies = new HashMap<>();
+        frequencies.put(0, 2L);
+        frequencies.put(1, 2L);
+        frequencies.put(2, 3L);
+        frequencies.put(3, 4L);
+
+        // 2 2 3 4
+        FenwickGiniIndex gini = new FenwickGiniIndex(4, frequencies);
+        Assertions.assertEquals(7.0 / 33.0, gini.getValue(), 1E-4);
+        // 4 2 3 4
+        gini.updateFrequency(0, 2);
+        Assertions.assertEquals(7.0 / 39.0, gini.getValue(), 1E-4);
+        // 2 2 3 4
+        gini.updateFrequency(0, -2);
+        Assertions.assertEquals(7.0 / 33.0, gini.getValue(), 1E-4);
+        // 2 2 3 0
+        gini.updateFrequency(3, -4);
+        Assertions.assertEquals(3.0 / 7.0, gini.getValue(), 1E-4);
+        // 2 2 3 5
+        gini.updateFrequency(3, 5);
+        Assertions.assertEquals(5.0 / 18.0, gini.getValue(), 1E-4);
+        // 1 2 3 5
+        gini.decreaseFrequency(0);
+        Assertions.assertEquals(13.0 / 33.0, gini.getValue(), 1E-4);
+        // 2 2 3 5
+        gini.increaseFrequency(0);
+        Assertions.assertEquals(5.0 / 18.0, gini.getValue(), 1E-4);
+        // 2 2 3 5
+        Assertions.assertFalse(gini.updateFrequency(0, -3));
+        Assertions.assertEquals(5.0 / 18.0, gini.getValue(), 1E-4);
+
+        gini.reset(frequencies);
+        Assertions.assertEquals(7.0 / 33.0, gini.getValue(), 1E-4);
+
+        gini.reset();
+        Assertions.assertTrue(Double.isNaN(gini.getValue()));
+
+        // Frequencies larger than the initial capacity of the trees.
+        gini.updateFrequency(0, 1000);
+        Assertions.assertEquals(1.0, gini.getValue(), 1E-4);
+
+        gini.updateFrequency(0, -1000);
+        Assertions.assertTrue(Double.isNaN(gini.getValue()));
+    }
+
+    @Test
+    public void randomFenwick()
+    {
+        int numItems = 50;
+        FastGiniIndex fast = new FastGiniIndex(numItems);
+        FenwickGiniIndex fenwick = new FenwickGiniIndex(numItems);
+        Random rng = new Random(0);
+        for (int i = 0; i < 20000; ++i)
+        {
+            int idx = rng.nextInt(numItems);
+            if (rng.nextDouble() < 0.7)
+            {
+                Assertions.assertEquals(fast.increaseFrequency(idx), fenwick.increaseFrequency(idx));
+            }
+            else
+            {
+                Assertions.assertEquals(fast.decreaseFrequency(idx), fenwick.decreaseFrequency(idx));
+            }
+
+            double expected = fast.getValue();
+            if (Double.isNaN(expected))
+            {
+                Assertions.assertTrue(Double.isNaN(fenwick.getValue()));
+            }
+            else
+            {
+                Assertions.assertEquals(expected, fenwick.getValue(), 1E-9);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,75 @@
+import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.SimpleFastUpdateableItemIndex;
+import es.uam.eps.ir.knnbandit.data.preference.updateable.index.fast.SimpleFastUpdateableUserIndex;
+import es.uam.eps.ir.knnbandit.recommendation.InteractiveRecommender;
+import es.uam.eps.ir.knnbandit.recommendation.knn.item.InteractiveItemBasedKNN;
+import es.uam.eps.ir.knnbandit.recommendation.knn.similarities.stochastic.BetaStochasticSimilarity;
+import es.uam.eps.ir.knnbandit.recommendation.knn.user.InteractiveUserBasedKNN;
+import es.uam.eps.ir.knnbandit.utils.FastRating;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Tests that updating the kNN recommenders with a batch of ratings is equivalent to updating them
+ * with each rating, one after the other.
+ */
+public class KNNBulkUpdateTest
+{
+    private static final int NUM_USERS = 6;
+    private static final int NUM_ITEMS = 8;
+
+    @Test
+    public void userBasedBulkEqualsSequential()
+    {
+        SimpleFastUpdateableUserIndex<Integer> uIndex = SimpleFastUpdateableUserIndex.load(IntStream.range(0, NUM_USERS).boxed());
+        SimpleFastUpdateableItemIndex<Integer> iIndex = SimpleFastUpdateableItemIndex.load(IntStream.range(0, NUM_ITEMS).boxed());
+
+        BetaStochasticSimilarity seqSim = new BetaStochasticSimilarity(NUM_USERS, 1.0, 1.0);
+        BetaStochasticSimilarity bulkSim = new BetaStochasticSimilarity(NUM_USERS, 1.0, 1.0);
+        check(new InteractiveUserBasedKNN<>(uIndex, iIndex, true, false, 3, seqSim), seqSim,
+              new InteractiveUserBasedKNN<>(uIndex, iIndex, true, false, 3, bulkSim), bulkSim, NUM_USERS);
+    }
+
+    @Test
+    public void itemBasedBulkEqualsSequential()
+    {
+        SimpleFastUpdateableUserIndex<Integer> uIndex = SimpleFastUpdateableUserIndex.load(IntStream.range(0, NUM_USERS).boxed());
+        SimpleFastUpdateableItemIndex<Integer> iIndex = SimpleFastUpdateableItemIndex.load(IntStream.range(0, NUM_ITEMS).boxed());
+
+        BetaStochasticSimilarity seqSim = new BetaStochasticSimilarity(NUM_ITEMS, 1.0, 1.0);
+        BetaStochasticSimilarity bulkSim = new BetaStochasticSimilarity(NUM_ITEMS, 1.0, 1.0);
+        check(new InteractiveItemBasedKNN<>(uIndex, iIndex, true, false, 3, 3, seqSim), seqSim,
+              new InteractiveItemBasedKNN<>(uIndex, iIndex, true, false, 3, 3, bulkSim), bulkSim, NUM_ITEMS);
+    }
+
+    /**
+     * Updates one recommender rating by rating and the other one with a single batch of non-binary
+     * ratings, and compares the resulting similarities.
+     */
+    private static void check(InteractiveRecommender<Integer, Integer> seq, BetaStochasticSimilarity seqSim, InteractiveRecommender<Integer, Integer> bulk, BetaStochasticSimilarity bulkSim, int numElems)
+    {
+        Random rng = new Random(7);
+        List<FastRating> ratings = new ArrayList<>();
+        for (int n = 0; n < 30; ++n)
+        {
+            ratings.add(new FastRating(rng.nextInt(NUM_USERS), rng.nextInt(NUM_ITEMS), 1 + rng.nextInt(5)));
+        }
+
+        seq.init();
+        bulk.init();
+        ratings.forEach(r -> seq.update(r.uidx(), r.iidx(), r.value()));
+        bulk.bulkUpdate(ratings);
+
+        for (int idx = 0; idx < numElems; ++idx)
+        {
+            for (int jdx = 0; jdx < numElems; ++jdx)
+            {
+                Assertions.assertEquals(seqSim.exactSimilarity(idx).applyAsDouble(jdx), bulkSim.exactSimilarity(idx).applyAsDouble(jdx), 1E-9);
+            }
+        }
+    }
+}